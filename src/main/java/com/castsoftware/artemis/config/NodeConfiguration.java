@@ -69,6 +69,26 @@ public class NodeConfiguration {
     return Path.of(nc.getWorkspace());
   }
 
+  /**
+   * Get the workspace path contained in the node configuration, without creating or completing the
+   * node. Used by the read only procedures.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return The workspace of the node, or the default one if the node is missing
+   * @throws Neo4jQueryException
+   */
+  public static Path findWorkspaceNodeConf(Neo4jAL neo4jAL) throws Neo4jQueryException {
+    String req =
+        String.format("MATCH (o:%s) RETURN o.%s as workspace LIMIT 1", NODE_LABEL, WORKSPACE_PROP);
+    try (Result res = neo4jAL.executeQuery(req)) {
+      if (res.hasNext()) {
+        String workspace = (String) res.next().get("workspace");
+        if (workspace != null && !workspace.isBlank()) return Path.of(workspace);
+      }
+    }
+    return Path.of(Configuration.get("artemis.workspace.folder"));
+  }
+
   /**
    * Get the current instance of the node configuration$
    *
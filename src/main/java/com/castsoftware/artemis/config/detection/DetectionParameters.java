@@ -24,7 +24,7 @@ import java.util.Optional;
 
 /**
  * Parameter class for the analysis { 'OnlineMode': true, 'RepositoryMode': false, 'PythiaURL':
- * String, 'PythiaToken': String, 'to_exclude': [] }
+ * String, 'PythiaToken': String, 'ChunkSize': 0, 'Resume': true, 'Incremental': false, 'to_exclude': [] }
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class DetectionParameters {
@@ -38,6 +38,17 @@ public class DetectionParameters {
   @JsonProperty(value = "PythiaToken", defaultValue = "")
   public String pythiaToken;
   public Boolean pythiaMode;
+
+  // Chunked detection, a chunk size of 0 keeps the whole run in the procedure transaction
+  @JsonProperty(value = "ChunkSize", defaultValue = "0")
+  public Integer chunkSize;
+  @JsonProperty(value = "Resume", defaultValue = "True")
+  public Boolean resume;
+
+  // Incremental detection, only the branches changed since the last run are processed
+  @JsonProperty(value = "Incremental", defaultValue = "False")
+  public Boolean incremental;
+
   private List<String> patternFullNameToExclude = new ArrayList<>();
   private List<String> patternObjectType = new ArrayList<>();
 
@@ -79,6 +90,11 @@ public class DetectionParameters {
     dp.onlineMode = false;
     dp.repositoryMode = false;
 
+    // Chunks
+    dp.chunkSize = 0;
+    dp.resume = true;
+    dp.incremental = false;
+
     // Exclusion
     dp.patternFullNameToExclude = new ArrayList<>();
     dp.patternObjectType = new ArrayList<>();
@@ -150,4 +166,43 @@ public class DetectionParameters {
   public String getPythiaToken() {
     return pythiaToken;
   }
+
+  // Chunk parameters
+
+  /**
+   * Get the number of units committed together during a chunked detection
+   *
+   * @return The size of the chunks, 0 if the detection is not chunked
+   */
+  public int getChunkSize() {
+    if (chunkSize == null || chunkSize < 0) return 0;
+    return chunkSize;
+  }
+
+  /**
+   * Check if the detection is committed in chunks
+   *
+   * @return True if the detection is chunked
+   */
+  public boolean isChunked() {
+    return getChunkSize() > 0;
+  }
+
+  /**
+   * Get the resume status of a chunked detection
+   *
+   * @return True if an interrupted run must be resumed from its checkpoint
+   */
+  public boolean getResume() {
+    return resume == null || resume;
+  }
+
+  /**
+   * Get the incremental status of the detection
+   *
+   * @return True if only the new or changed branches must be processed
+   */
+  public boolean getIncremental() {
+    return incremental != null && incremental;
+  }
 }
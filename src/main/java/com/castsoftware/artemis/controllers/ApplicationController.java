@@ -13,6 +13,7 @@ package com.castsoftware.artemis.controllers;
 
 import com.castsoftware.artemis.config.detection.LanguageConfiguration;
 import com.castsoftware.artemis.config.detection.LanguageProp;
+import com.castsoftware.artemis.datasets.FingerprintNode;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.artemis.global.SupportedLanguage;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
@@ -65,6 +66,19 @@ public class ApplicationController {
     Map<String, Object> params = Map.of("Name", application);
 
     neo4jAL.executeQuery(req, params);
+    resetFingerprints(neo4jAL, application); // The next detection will be complete
+  }
+
+  /**
+   * Remove the fingerprints of all the languages of an application
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @throws Neo4jQueryException
+   */
+  public static void resetFingerprints(Neo4jAL neo4jAL, String application)
+      throws Neo4jQueryException {
+    FingerprintNode.delete(neo4jAL, application);
   }
 
   /**
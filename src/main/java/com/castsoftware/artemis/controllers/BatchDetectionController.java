@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.controllers;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.config.detection.DetectionParameters;
+import com.castsoftware.artemis.datasets.FrameworkNode;
+import com.castsoftware.artemis.detector.plainAnalyzers.ADetector;
+import com.castsoftware.artemis.detector.plainAnalyzers.DetectorFactory;
+import com.castsoftware.artemis.detector.utils.TagWriter;
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadRequestException;
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jConnectionError;
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.artemis.global.SupportedLanguage;
+import com.castsoftware.artemis.modules.nlp.model.NLPEngine;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import com.castsoftware.artemis.results.BatchDetectionResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchDetectionController {
+
+  private static final int DEFAULT_CONCURRENCY = 2;
+  private static final double DEFAULT_MEMORY_BUDGET = 0.8;
+  private static final long MEMORY_POLL_INTERVAL = 1000L;
+  private static final int DEFAULT_CHUNK_SIZE = 500;
+
+  /**
+   * Launch the detection on every application and every language not scanned yet. The detections
+   * are scheduled on a pool, and each one runs in its own transaction. The detections are committed
+   * in chunks, so the locks taken on the shared property nodes are released quickly.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param detectionPropAsJson Detection parameters shared by all the detections
+   * @param concurrency Maximum number of detections running at the same time
+   * @param memoryBudget Heap usage ratio above which no new detection is started
+   * @return The status of each detection
+   * @throws Neo4jQueryException
+   * @throws Exception If the parameters are invalid
+   */
+  public static List<BatchDetectionResult> launchBatchDetection(
+      Neo4jAL neo4jAL, String detectionPropAsJson, Long concurrency, Double memoryBudget)
+      throws Neo4jQueryException, Exception {
+
+    DetectionParameters parameters;
+    try {
+      parameters =
+          DetectionParameters.deserializeOrDefault(detectionPropAsJson)
+              .orElse(DetectionParameters.getDefault());
+    } catch (IOException error) {
+      neo4jAL.logError("Failed to deserialized the parameters that have been passed.", error);
+      throw new Exception("Invalid parameters provided");
+    }
+
+    // Parallel detections must commit often, a single transaction would lock the shared nodes
+    if (!parameters.isChunked()) parameters.chunkSize = getChunkSize();
+
+    int poolSize =
+        (concurrency == null || concurrency < 1) ? DEFAULT_CONCURRENCY : concurrency.intValue();
+    double budget =
+        (memoryBudget == null || memoryBudget <= 0 || memoryBudget > 1)
+            ? DEFAULT_MEMORY_BUDGET
+            : memoryBudget;
+
+    // List the detections to run
+    Map<String, List<SupportedLanguage>> candidates =
+        ApplicationController.getAllCandidates(neo4jAL);
+    Set<SupportedLanguage> languages = new HashSet<>();
+    candidates.values().forEach(languages::addAll);
+
+    int numJobs = candidates.values().stream().mapToInt(List::size).sum();
+    neo4jAL.logInfo(
+        String.format(
+            "Batch detection : %d detections on %d applications, %d running at the same time, heap budget of %.0f%%, chunks of %d units.",
+            numJobs, candidates.size(), poolSize, budget * 100, parameters.getChunkSize()));
+
+    // The models are shared by the detections, train the missing ones only once
+    prepareModels(neo4jAL, languages);
+
+    MemoryBudget memory = new MemoryBudget(budget);
+    GraphDatabaseService db = neo4jAL.getDb();
+    Log log = neo4jAL.getLogger();
+
+    // The shared nodes must exist before the detections start, or each one would create its own
+    prepareSharedProperties(db);
+
+    ExecutorService pool = createPool(poolSize);
+    List<CompletableFuture<BatchDetectionResult>> jobs = new ArrayList<>();
+    try {
+      for (Map.Entry<String, List<SupportedLanguage>> en : candidates.entrySet()) {
+        for (SupportedLanguage language : en.getValue()) {
+          String application = en.getKey();
+          jobs.add(
+              CompletableFuture.supplyAsync(
+                  () -> runDetection(db, log, application, language, parameters, memory), pool));
+        }
+      }
+
+      List<BatchDetectionResult> results = new ArrayList<>();
+      for (CompletableFuture<BatchDetectionResult> job : jobs) {
+        results.add(job.join());
+      }
+      return results;
+    } finally {
+      pool.shutdownNow();
+      try {
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Get the chunk size of the detections, if the parameters don't set one
+   *
+   * @return The chunk size
+   */
+  private static int getChunkSize() {
+    try {
+      int size = Integer.parseInt(Configuration.get("artemis.batch.chunk_size"));
+      return size > 0 ? size : DEFAULT_CHUNK_SIZE;
+    } catch (NumberFormatException | NullPointerException e) {
+      return DEFAULT_CHUNK_SIZE;
+    }
+  }
+
+  /**
+   * Create the pool running the detections of the batch
+   *
+   * @param size Number of detections running at the same time
+   * @return The executor
+   */
+  private static ExecutorService createPool(int size) {
+    AtomicInteger count = new AtomicInteger(0);
+    return Executors.newFixedThreadPool(
+        size,
+        r -> {
+          Thread t = new Thread(r, String.format("artemis-batch-%d", count.incrementAndGet()));
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  /**
+   * Create the property nodes linked to the tagged objects, and commit them. The detections only
+   * match them afterwards, without creating duplicates.
+   *
+   * @param db Database service
+   */
+  private static void prepareSharedProperties(GraphDatabaseService db) {
+    try (Transaction tx = db.beginTx()) {
+      for (String description : TagWriter.getPropertyDescriptions()) {
+        tx.execute(
+            "MERGE (o:ObjectProperty { Description : $DescName })",
+            Map.of("DescName", description));
+      }
+      tx.commit();
+    }
+  }
+
+  /**
+   * Train the models missing for the languages of the batch
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param languages Languages of the batch
+   * @throws IOException
+   */
+  private static void prepareModels(Neo4jAL neo4jAL, Set<SupportedLanguage> languages)
+      throws IOException {
+    for (SupportedLanguage language : languages) {
+      NLPEngine nlpEngine = new NLPEngine(neo4jAL, language);
+      Path modelFile = nlpEngine.checkIfModelExists();
+      if (modelFile == null || !Files.exists(modelFile)) {
+        neo4jAL.logInfo(String.format("Batch detection : Training the NLP engine for %s.", language));
+        nlpEngine.train();
+      }
+    }
+  }
+
+  /**
+   * Run a detection in its own transaction. Called from the pool.
+   *
+   * @param db Database service
+   * @param log Neo4j Log
+   * @param application Name of the application
+   * @param language Language of the detection
+   * @param parameters Detection parameters
+   * @param memory Heap budget of the batch
+   * @return The status of the detection
+   */
+  private static BatchDetectionResult runDetection(
+      GraphDatabaseService db,
+      Log log,
+      String application,
+      SupportedLanguage language,
+      DetectionParameters parameters,
+      MemoryBudget memory) {
+    try {
+      memory.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new BatchDetectionResult(
+          application, language.toString(), "Cancelled", 0L, 0L, "The batch was interrupted.");
+    }
+
+    Instant start = Instant.now();
+    try (Transaction tx = db.beginTx()) {
+      Neo4jAL jobAL = new Neo4jAL(db, tx, log);
+      jobAL.logInfo(
+          String.format("Batch detection : Starting %s detection on '%s'.", language, application));
+
+      ADetector detector = DetectorFactory.getDetector(jobAL, application, language, parameters);
+      List<FrameworkNode> frameworks = detector.launch();
+      tx.commit();
+
+      long duration = Duration.between(start, Instant.now()).toMillis();
+      return new BatchDetectionResult(
+          application, language.toString(), "Done", (long) frameworks.size(), duration, "");
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException | Neo4jBadRequestException e) {
+      log.error(
+          String.format(
+              "ARTEMIS :: ERROR :: Batch detection : The %s detection on '%s' failed.",
+              language, application),
+          e);
+      long duration = Duration.between(start, Instant.now()).toMillis();
+      return new BatchDetectionResult(
+          application, language.toString(), "Failed", 0L, duration, e.getMessage());
+    } finally {
+      memory.release();
+    }
+  }
+
+  /** Admission of the detections under the heap budget */
+  private static class MemoryBudget {
+    private final double maxUsage;
+    private int running = 0;
+
+    private MemoryBudget(double maxUsage) {
+      this.maxUsage = maxUsage;
+    }
+
+    private static double getHeapUsage() {
+      Runtime rt = Runtime.getRuntime();
+      return (double) (rt.totalMemory() - rt.freeMemory()) / rt.maxMemory();
+    }
+
+    /**
+     * Wait until the heap usage is under the budget. A detection is always admitted if no other is
+     * running.
+     *
+     * @throws InterruptedException
+     */
+    private synchronized void acquire() throws InterruptedException {
+      while (running > 0 && getHeapUsage() > maxUsage) {
+        wait(MEMORY_POLL_INTERVAL);
+      }
+      running++;
+    }
+
+    private synchronized void release() {
+      running--;
+      notifyAll();
+    }
+  }
+}
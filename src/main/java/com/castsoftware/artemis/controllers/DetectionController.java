@@ -11,21 +11,36 @@
 
 package com.castsoftware.artemis.controllers;
 
+import com.castsoftware.artemis.config.Configuration;
 import com.castsoftware.artemis.config.detection.DetectionParameters;
+import com.castsoftware.artemis.config.detection.LanguageConfiguration;
+import com.castsoftware.artemis.config.detection.LanguageProp;
 import com.castsoftware.artemis.datasets.FrameworkNode;
 import com.castsoftware.artemis.detector.plainAnalyzers.ADetector;
 import com.castsoftware.artemis.detector.plainAnalyzers.DetectorFactory;
+import com.castsoftware.artemis.detector.session.DetectionSessionRegistry;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadRequestException;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.artemis.global.SupportedLanguage;
 import com.castsoftware.artemis.modules.nlp.model.NLPEngine;
+import com.castsoftware.artemis.modules.nlp.model.training.ModelEvaluator;
+import com.castsoftware.artemis.modules.nlp.model.training.NLPTrainingService;
+import com.castsoftware.artemis.modules.nlp.model.training.TrainingConfiguration;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
 import com.castsoftware.artemis.results.FrameworkResult;
+import com.castsoftware.artemis.results.ModelEvaluationResult;
+import com.castsoftware.artemis.results.TrainingStatusResult;
+import com.castsoftware.artemis.utils.Workspace;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class DetectionController {
 
@@ -40,6 +55,146 @@ public class DetectionController {
     nlpEngine.train();
   }
 
+  /**
+   * Start the training of the NLP engine in the background
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param language Language of the model, the generic model if blank
+   * @return The status of the training
+   */
+  public static TrainingStatusResult trainArtemisInBackground(Neo4jAL neo4jAL, String language) {
+    SupportedLanguage lang =
+        language == null || language.isBlank()
+            ? SupportedLanguage.ALL
+            : SupportedLanguage.getLanguage(language);
+    if (lang == SupportedLanguage.UNKNOWN) {
+      throw new IllegalArgumentException(
+          String.format("The language '%s' is not supported.", language));
+    }
+
+    NLPEngine nlpEngine = new NLPEngine(neo4jAL, lang);
+    return new TrainingStatusResult(nlpEngine.trainInBackground());
+  }
+
+  /**
+   * Run a k-fold cross-validation of a grid of training configurations on the training dataset of
+   * a language. The best configuration is the most accurate, then the fastest to train.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param language Language of the model, the generic model if blank
+   * @param folds Number of folds
+   * @param gridAsJson Grid as json : {"iterations":[..], "cutoffs":[..], "features":[..]}, the
+   *     default grid if blank
+   * @param promote If true, the best configuration is trained on the whole dataset in the
+   *     background, and replaces the current model
+   * @return The report of each configuration
+   * @throws IOException If the dataset could not be read or a training failed
+   */
+  public static List<ModelEvaluationResult> evaluateModel(
+      Neo4jAL neo4jAL, String language, Long folds, String gridAsJson, Boolean promote)
+      throws IOException {
+    SupportedLanguage lang =
+        language == null || language.isBlank()
+            ? SupportedLanguage.ALL
+            : SupportedLanguage.getLanguage(language);
+    if (lang == SupportedLanguage.UNKNOWN) {
+      throw new IllegalArgumentException(
+          String.format("The language '%s' is not supported.", language));
+    }
+
+    LanguageProp lp = LanguageConfiguration.getInstance().getLanguageProperties(lang.toString());
+    Path dataset =
+        Workspace.getWorkspacePath(neo4jAL)
+            .resolve(lp.getName())
+            .resolve(Configuration.get("nlp.dataset_train.name"));
+
+    List<TrainingConfiguration> grid = parseGrid(gridAsJson);
+    int parallelism;
+    try {
+      parallelism = Integer.parseInt(Configuration.get("artemis.nlp.evaluation.parallelism"));
+    } catch (NumberFormatException | NullPointerException e) {
+      parallelism = 0;
+    }
+    if (parallelism <= 0) parallelism = Runtime.getRuntime().availableProcessors();
+
+    neo4jAL.logInfo(
+        String.format(
+            "Evaluation of %d training configurations for %s on %d folds.",
+            grid.size(), lang, folds));
+    ModelEvaluator evaluator = new ModelEvaluator(dataset, folds.intValue(), parallelism, 42L);
+    List<ModelEvaluator.Report> reports = evaluator.evaluate(grid);
+
+    ModelEvaluator.Report best =
+        reports.stream()
+            .max(
+                Comparator.comparingDouble(ModelEvaluator.Report::getAccuracy)
+                    .thenComparing(
+                        Comparator.comparingDouble(ModelEvaluator.Report::getTrainingTime)
+                            .reversed()))
+            .orElse(null);
+
+    boolean promoted = false;
+    if (Boolean.TRUE.equals(promote) && best != null) {
+      NLPTrainingService.getInstance()
+          .submit(
+              lang,
+              dataset,
+              Workspace.getLanguageModelFile(neo4jAL, lang),
+              best.getConfiguration(),
+              neo4jAL.getLogger());
+      promoted = true;
+    }
+
+    List<ModelEvaluationResult> results = new ArrayList<>();
+    for (ModelEvaluator.Report report : reports) {
+      boolean isBest = report == best;
+      results.add(new ModelEvaluationResult(evaluator, report, isBest, isBest && promoted));
+    }
+    return results;
+  }
+
+  /**
+   * Build the grid of configurations
+   *
+   * @param gridAsJson Grid as json, the default grid if blank
+   * @return The cartesian product of the iterations, the cutoffs and the features
+   */
+  private static List<TrainingConfiguration> parseGrid(String gridAsJson) {
+    JSONObject grid =
+        gridAsJson == null || gridAsJson.isBlank() ? new JSONObject() : new JSONObject(gridAsJson);
+    JSONArray iterations = grid.optJSONArray("iterations");
+    JSONArray cutoffs = grid.optJSONArray("cutoffs");
+    JSONArray features = grid.optJSONArray("features");
+    if (iterations == null) iterations = new JSONArray(List.of(100, 500));
+    if (cutoffs == null) cutoffs = new JSONArray(List.of(0, 2));
+    if (features == null) features = new JSONArray(List.of("bow", "bow+ngram"));
+
+    List<TrainingConfiguration> configurations = new ArrayList<>();
+    for (int i = 0; i < iterations.length(); i++) {
+      for (int c = 0; c < cutoffs.length(); c++) {
+        for (int f = 0; f < features.length(); f++) {
+          configurations.add(
+              new TrainingConfiguration(
+                  iterations.getInt(i),
+                  cutoffs.getInt(c),
+                  TrainingConfiguration.Features.getFeatures(features.getString(f))));
+        }
+      }
+    }
+    return configurations;
+  }
+
+  /**
+   * Get the status of the last training of each language
+   *
+   * @return The status of the trainings
+   */
+  public static List<TrainingStatusResult> getTrainingStatus() {
+    return NLPTrainingService.getInstance().getJobs().stream()
+        .map(TrainingStatusResult::new)
+        .collect(Collectors.toList());
+  }
+
   /**
    * Launch the Artemis Detection against the specified application
    *
@@ -107,4 +262,32 @@ public class DetectionController {
 
     return aDetector.launch();
   }
+
+  /**
+   * Invalidate the detection sessions. Their components will be created again by the next
+   * detection.
+   *
+   * @param language Language of the sessions to invalidate, all the sessions if blank
+   * @return The number of sessions invalidated
+   */
+  public static int invalidateSessions(String language) {
+    if (language == null || language.isBlank()) return DetectionSessionRegistry.invalidateAll();
+    if (!SupportedLanguage.has(language)) return 0;
+    return DetectionSessionRegistry.invalidate(SupportedLanguage.getLanguage(language));
+  }
+
+  /**
+   * Describe the detection sessions currently open
+   *
+   * @return A description of each session
+   */
+  public static List<String> getSessions() {
+    return DetectionSessionRegistry.getSessions().stream()
+        .map(
+            s ->
+                String.format(
+                    "%s session opened at %d. Loaded components : [%s]",
+                    s.getLanguage(), s.getCreationDate(), s.getLoadedComponents()))
+        .collect(Collectors.toList());
+  }
 }
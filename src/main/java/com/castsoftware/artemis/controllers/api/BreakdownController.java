@@ -66,6 +66,8 @@ public class BreakdownController {
     if (!SupportedLanguage.has(language)) return null;
     SupportedLanguage sl = SupportedLanguage.getLanguage(language);
 
+    // Default parameters, the detector only opens the session of the language (no Pythia, no
+    // Google parser, no NLP model) to build the tree
     DetectionParameters dp = DetectionParameters.getDefault();
     ADetector aDetector = DetectorFactory.getDetector(neo4jAL, application, sl, dp);
 
@@ -15,7 +15,9 @@ import com.castsoftware.artemis.config.NodeConfiguration;
 import com.castsoftware.artemis.config.detection.LanguageConfiguration;
 import com.castsoftware.artemis.config.detection.LanguageProp;
 import com.castsoftware.artemis.datasets.CategoryNode;
+import com.castsoftware.artemis.datasets.FrameworkCatalog;
 import com.castsoftware.artemis.datasets.FrameworkNode;
+import com.castsoftware.artemis.datasets.FrameworkPatternIndex;
 import com.castsoftware.artemis.datasets.FrameworkType;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadNodeFormatException;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadRequestException;
@@ -63,8 +65,8 @@ public class FrameworkController {
   }
 
   /**
-   * Parse the list of framework compliant with the internal type and check if one of them match the
-   * name.
+   * Find the framework with the longest pattern matching the name, among the frameworks compliant
+   * with the internal type. The patterns are matched against the index of the internal type.
    *
    * @param neo4jAL Neo4j Access Layer
    * @param objectName Name of the object
@@ -76,25 +78,21 @@ public class FrameworkController {
   public static FrameworkNode findMatchingFrameworkByType(
       Neo4jAL neo4jAL, String objectName, String internalType)
       throws Neo4jQueryException, Neo4jBadNodeFormatException {
-    List<FrameworkNode> frameworkNodesList =
-        FrameworkNode.findFrameworkByType(neo4jAL, internalType);
-
-    FrameworkNode bestMatch = null;
-    for (FrameworkNode fn : frameworkNodesList) {
-      // Check if the pattern is matching
-      neo4jAL.logInfo(String.format("Comparing (Name) %s to fn %s", objectName, fn.getPattern()));
-      if (fn.isPatternMatching(objectName)) {
-        if (bestMatch != null) {
-          if (bestMatch.getPattern().length() < fn.getPattern().length()) {
-            bestMatch = fn;
-          }
-        } else {
-          bestMatch = fn;
-        }
-      }
+    FrameworkPatternIndex index = FrameworkPatternIndex.getIndex(neo4jAL, internalType);
+    Long idMatch = index.findLongestMatch(objectName);
+    if (idMatch == null) return null;
+
+    Node n = neo4jAL.getNodeById(idMatch);
+    if (n == null) {
+      // The index is outdated, rebuild it
+      FrameworkPatternIndex.invalidate(neo4jAL.getDb().databaseName(), Set.of(internalType));
+      idMatch = FrameworkPatternIndex.getIndex(neo4jAL, internalType).findLongestMatch(objectName);
+      if (idMatch == null) return null;
+      n = neo4jAL.getNodeById(idMatch);
+      if (n == null) return null;
     }
 
-    return bestMatch;
+    return FrameworkNode.fromNode(neo4jAL, n);
   }
 
   /**
@@ -667,6 +665,7 @@ public class FrameworkController {
       numGroupClean++;
     }
 
+    FrameworkNode.markModified(neo4jAL);
     return numGroupClean;
   }
 
@@ -789,6 +788,7 @@ public class FrameworkController {
 
       for (Relationship rel : oldFramework.getRelationships()) rel.delete();
       oldFramework.delete();
+      FrameworkNode.markModified(neo4jAl);
 
       return true;
     } else {
@@ -869,6 +869,7 @@ public class FrameworkController {
       Node oldFramework = (Node) res.next().get("framework");
       for (Relationship rel : oldFramework.getRelationships()) rel.delete();
       oldFramework.delete();
+      FrameworkNode.markModified(neo4jAl);
       return true;
     } else {
       return false;
@@ -904,4 +905,19 @@ public class FrameworkController {
       return false;
     }
   }
+
+  /**
+   * Get the statistics of the in-memory framework catalogs
+   *
+   * @return The list of catalogs loaded
+   */
+  public static List<FrameworkCatalog> getCatalogs() {
+    return FrameworkCatalog.getCatalogs();
+  }
+
+  /** Drop the in-memory framework catalogs and the pattern indexes */
+  public static void invalidateCatalogs() {
+    FrameworkCatalog.invalidate();
+    FrameworkPatternIndex.invalidate();
+  }
 }
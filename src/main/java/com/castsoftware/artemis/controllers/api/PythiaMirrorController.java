@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.controllers.api;
+
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadRequestException;
+import com.castsoftware.artemis.global.SupportedLanguage;
+import com.castsoftware.artemis.modules.pythia.Pythia;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaException;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaResponse;
+import com.castsoftware.artemis.modules.pythia.mirror.PythiaMirror;
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaImagingFramework;
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaLanguage;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import com.castsoftware.artemis.results.PythiaMirrorResult;
+import com.castsoftware.artemis.utils.Workspace;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+public class PythiaMirrorController {
+
+  /**
+   * Get the name of a language supported by Artemis
+   *
+   * @param language Language provided by the user
+   * @return The language
+   * @throws Neo4jBadRequestException If the language isn't supported
+   */
+  private static SupportedLanguage getLanguage(String language) throws Neo4jBadRequestException {
+    SupportedLanguage sl = SupportedLanguage.getLanguage(language);
+    if (sl == SupportedLanguage.UNKNOWN || sl == SupportedLanguage.ALL) {
+      throw new Neo4jBadRequestException(
+          String.format("The language '%s' is not supported.", language), "PYMIxGETL1");
+    }
+    return sl;
+  }
+
+  /**
+   * Export the whole Pythia catalog of a language into a new mirror
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param url Url of Pythia
+   * @param token Token of Pythia
+   * @param language Language to export
+   * @return The mirror created
+   * @throws Neo4jBadRequestException If the language isn't supported
+   * @throws PythiaException If Pythia refused the export
+   * @throws PythiaResponse If Pythia can't be reached
+   * @throws IOException If the mirror couldn't be written
+   */
+  public static PythiaMirrorResult exportCatalog(
+      Neo4jAL neo4jAL, String url, String token, String language)
+      throws Neo4jBadRequestException, PythiaException, PythiaResponse, IOException {
+    return synchronize(neo4jAL, url, token, language, 0L);
+  }
+
+  /**
+   * Apply the changes made on Pythia since a date to the mirror of a language
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param url Url of Pythia
+   * @param token Token of Pythia
+   * @param language Language to synchronize
+   * @param since Date of the changes in milliseconds. If negative, the date of the last
+   *     synchronization of the mirror is used. 0 exports the whole catalog.
+   * @return The mirror updated
+   * @throws Neo4jBadRequestException If the language isn't supported
+   * @throws PythiaException If Pythia refused the export
+   * @throws PythiaResponse If Pythia can't be reached
+   * @throws IOException If the mirror couldn't be written
+   */
+  public static PythiaMirrorResult synchronize(
+      Neo4jAL neo4jAL, String url, String token, String language, long since)
+      throws Neo4jBadRequestException, PythiaException, PythiaResponse, IOException {
+    SupportedLanguage sl = getLanguage(language);
+    Path folder = Workspace.getPythiaMirrorFolder(neo4jAL);
+    Optional<PythiaMirror> current = PythiaMirror.get(folder, sl.toString());
+
+    if (since < 0) since = current.map(PythiaMirror::getSyncTimestamp).orElse(0L);
+    long start = System.currentTimeMillis();
+
+    Pythia pythia = new Pythia(url, token);
+    PythiaLanguage pl = pythia.findLanguage(sl.toString());
+    if (pl == null) {
+      throw new PythiaException("Failed to export the catalog", "Unknown language on Pythia");
+    }
+    List<PythiaImagingFramework> changes = pythia.exportFrameworks(pl.name, since);
+
+    // Apply the changes on the previous entries, unless the whole catalog was exported
+    Map<String, String> entries = new HashMap<>();
+    if (since > 0 && current.isPresent()) current.get().forEach(entries::put);
+
+    Gson gson = new Gson();
+    for (PythiaImagingFramework pif : changes) entries.put(pif.pattern, gson.toJson(pif));
+
+    PythiaMirror mirror = PythiaMirror.write(folder, sl.toString(), entries, start);
+    neo4jAL.logInfo(
+        String.format(
+            "Pythia mirror of %s synchronized : %d frameworks received since %d, %d frameworks in the mirror.",
+            sl, changes.size(), since, mirror.getSize()));
+    return new PythiaMirrorResult(mirror, changes.size());
+  }
+
+  /**
+   * Get the mirrors of the workspace
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return The mirrors found
+   * @throws IOException If a mirror is corrupted
+   */
+  public static List<PythiaMirrorResult> getMirrors(Neo4jAL neo4jAL) throws IOException {
+    Path folder = Workspace.getPythiaMirrorFolder(neo4jAL);
+    List<PythiaMirrorResult> results = new ArrayList<>();
+    for (SupportedLanguage sl : SupportedLanguage.values()) {
+      if (sl == SupportedLanguage.UNKNOWN || sl == SupportedLanguage.ALL) continue;
+      PythiaMirror.get(folder, sl.toString()).ifPresent(m -> results.add(new PythiaMirrorResult(m, 0L)));
+    }
+    return results;
+  }
+}
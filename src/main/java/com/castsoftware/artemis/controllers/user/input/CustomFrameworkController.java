@@ -108,7 +108,7 @@ public class CustomFrameworkController {
         fn.setFrameworkType(FrameworkType.FRAMEWORK);
 
         // Update the framework if not exist in the database
-        if (FrameworkNode.findFrameworkByNameAndType(neo4jAL, name, internalType) == null) {
+        if (FrameworkNode.findFrameworkByNameAndType(neo4jAL, name, internalType).isEmpty()) {
           fn.createNode();
         }
 
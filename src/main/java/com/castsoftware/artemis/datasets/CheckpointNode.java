@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.datasets;
+
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONException;
+import kong.unirest.json.JSONObject;
+import org.neo4j.graphdb.Result;
+
+import java.util.*;
+
+/**
+ * Checkpoint of a chunked detection. The node is identified by its application and its language,
+ * and is always accessed through queries, so it can be used across the chunk transactions.
+ */
+public class CheckpointNode {
+  private static final String LABEL = "ArtemisCheckpoint";
+  private static final String APPLICATION_PROPERTY = "Application";
+  private static final String LANGUAGE_PROPERTY = "Language";
+  private static final String LAST_OBJECT_ID_PROPERTY = "LastObjectId";
+  private static final String LAST_LEAF_PROPERTY = "LastLeaf";
+  private static final String PROCESSED_PROPERTY = "Processed";
+  private static final String RESULTS_PROPERTY = "Results"; // List of serialized frameworks
+  private static final String START_DATE_PROPERTY = "StartDate";
+  private static final String LAST_UPDATE_PROPERTY = "LastUpdate";
+
+  private final Neo4jAL neo4jAL;
+  private final String application;
+  private final String language;
+  private Long lastObjectId;
+  private String lastLeaf;
+  private Long processed;
+  private List<String> results;
+
+  private CheckpointNode(
+      Neo4jAL neo4jAL,
+      String application,
+      String language,
+      Long lastObjectId,
+      String lastLeaf,
+      Long processed,
+      List<String> results) {
+    this.neo4jAL = neo4jAL;
+    this.application = application;
+    this.language = language;
+    this.lastObjectId = lastObjectId;
+    this.lastLeaf = lastLeaf;
+    this.processed = processed;
+    this.results = results;
+  }
+
+  public static String getLabel() {
+    return LABEL;
+  }
+
+  /**
+   * Find the checkpoint of a previous run
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param language Language of the detection
+   * @return The checkpoint or an empty optional if the previous run completed
+   * @throws Neo4jQueryException
+   */
+  public static Optional<CheckpointNode> find(Neo4jAL neo4jAL, String application, String language)
+      throws Neo4jQueryException {
+    String req =
+        String.format(
+            "MATCH (c:%s) WHERE c.%s=$application AND c.%s=$language RETURN c.%s as lastObjectId, "
+                + "c.%s as lastLeaf, c.%s as processed, c.%s as results LIMIT 1",
+            LABEL,
+            APPLICATION_PROPERTY,
+            LANGUAGE_PROPERTY,
+            LAST_OBJECT_ID_PROPERTY,
+            LAST_LEAF_PROPERTY,
+            PROCESSED_PROPERTY,
+            RESULTS_PROPERTY);
+
+    Result res =
+        neo4jAL.executeQuery(req, Map.of("application", application, "language", language));
+    if (!res.hasNext()) return Optional.empty();
+
+    Map<String, Object> record = res.next();
+    List<String> results = new ArrayList<>();
+    Object rawResults = record.get("results");
+    if (rawResults instanceof String[]) results.addAll(Arrays.asList((String[]) rawResults));
+    else if (rawResults instanceof List) ((List<?>) rawResults).forEach(x -> results.add(String.valueOf(x)));
+
+    Long lastObjectId = (Long) record.get("lastObjectId");
+    Long processed = (Long) record.get("processed");
+    String lastLeaf = (String) record.get("lastLeaf");
+
+    return Optional.of(
+        new CheckpointNode(
+            neo4jAL,
+            application,
+            language,
+            lastObjectId == null ? -1L : lastObjectId,
+            lastLeaf == null ? "" : lastLeaf,
+            processed == null ? 0L : processed,
+            results));
+  }
+
+  /**
+   * Start a new checkpoint. The checkpoint of a previous run is replaced.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param language Language of the detection
+   * @return The new checkpoint
+   * @throws Neo4jQueryException
+   */
+  public static CheckpointNode start(Neo4jAL neo4jAL, String application, String language)
+      throws Neo4jQueryException {
+    String req =
+        String.format(
+            "MERGE (c:%s { %s: $application, %s: $language }) "
+                + "SET c.%s=-1, c.%s='', c.%s=0, c.%s=[], c.%s=timestamp(), c.%s=timestamp()",
+            LABEL,
+            APPLICATION_PROPERTY,
+            LANGUAGE_PROPERTY,
+            LAST_OBJECT_ID_PROPERTY,
+            LAST_LEAF_PROPERTY,
+            PROCESSED_PROPERTY,
+            RESULTS_PROPERTY,
+            START_DATE_PROPERTY,
+            LAST_UPDATE_PROPERTY);
+
+    neo4jAL.executeQuery(req, Map.of("application", application, "language", language));
+    return new CheckpointNode(neo4jAL, application, language, -1L, "", 0L, new ArrayList<>());
+  }
+
+  /**
+   * Save the progress of the detection. Only the new results are sent to the node.
+   *
+   * @param lastObjectId Id of the last object processed, null to keep the previous one
+   * @param lastLeaf Full name of the last leaf processed, null to keep the previous one
+   * @param processed Number of units processed since the start of the run
+   * @param newResults Frameworks found since the last save
+   * @throws Neo4jQueryException
+   */
+  public void save(Long lastObjectId, String lastLeaf, long processed, List<FrameworkNode> newResults)
+      throws Neo4jQueryException {
+    List<String> serialized = new ArrayList<>();
+    for (FrameworkNode fn : newResults) serialized.add(serializeFramework(fn));
+
+    String req =
+        String.format(
+            "MATCH (c:%1$s) WHERE c.%2$s=$application AND c.%3$s=$language "
+                + "SET c.%4$s=coalesce($lastObjectId, c.%4$s), c.%5$s=coalesce($lastLeaf, c.%5$s), "
+                + "c.%6$s=$processed, c.%7$s=c.%7$s + $results, c.%8$s=timestamp()",
+            LABEL,
+            APPLICATION_PROPERTY,
+            LANGUAGE_PROPERTY,
+            LAST_OBJECT_ID_PROPERTY,
+            LAST_LEAF_PROPERTY,
+            PROCESSED_PROPERTY,
+            RESULTS_PROPERTY,
+            LAST_UPDATE_PROPERTY);
+
+    Map<String, Object> params = new HashMap<>();
+    params.put("application", application);
+    params.put("language", language);
+    params.put("lastObjectId", lastObjectId);
+    params.put("lastLeaf", lastLeaf);
+    params.put("processed", processed);
+    params.put("results", serialized);
+    neo4jAL.executeQuery(req, params);
+
+    if (lastObjectId != null) this.lastObjectId = lastObjectId;
+    if (lastLeaf != null) this.lastLeaf = lastLeaf;
+    this.processed = processed;
+    this.results.addAll(serialized);
+  }
+
+  /**
+   * Delete the checkpoint, once the detection is complete
+   *
+   * @throws Neo4jQueryException
+   */
+  public void delete() throws Neo4jQueryException {
+    String req =
+        String.format(
+            "MATCH (c:%s) WHERE c.%s=$application AND c.%s=$language DETACH DELETE c",
+            LABEL, APPLICATION_PROPERTY, LANGUAGE_PROPERTY);
+    neo4jAL.executeQuery(req, Map.of("application", application, "language", language));
+  }
+
+  /**
+   * Get the frameworks saved in the checkpoint. They are not attached to any node.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return The list of frameworks found before the interruption
+   */
+  public List<FrameworkNode> getResults(Neo4jAL neo4jAL) {
+    List<FrameworkNode> frameworks = new ArrayList<>();
+    for (String json : results) {
+      try {
+        frameworks.add(deserializeFramework(neo4jAL, json));
+      } catch (JSONException e) {
+        neo4jAL.logError("Failed to restore a framework from the checkpoint.", e);
+      }
+    }
+    return frameworks;
+  }
+
+  /**
+   * Serialize the properties of a framework
+   *
+   * @param fn Framework to serialize
+   * @return The framework as a json string
+   */
+  private static String serializeFramework(FrameworkNode fn) {
+    JSONObject jo = new JSONObject();
+    jo.put("name", fn.getName());
+    jo.put("pattern", fn.getPattern());
+    jo.put("isRegex", fn.getIsRegex());
+    jo.put("discoveryDate", fn.getDiscoveryDate());
+    jo.put("location", fn.getLocation());
+    jo.put("description", fn.getDescription());
+    jo.put("numberOfDetection", fn.getNumberOfDetection());
+    jo.put("percentageOfDetection", fn.getPercentageOfDetection());
+    jo.put("creationDate", fn.getCreationDate());
+    jo.put("type", fn.getFrameworkType().toString());
+    jo.put("detectionData", fn.getDetectionData());
+    jo.put("internalTypes", new JSONArray(fn.getInternalTypes()));
+    if (fn.getNode() != null) jo.put("nodeId", fn.getNode().getId());
+    return jo.toString();
+  }
+
+  /**
+   * Restore a framework serialized in the checkpoint
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param json Serialized framework
+   * @return The framework
+   */
+  private static FrameworkNode deserializeFramework(Neo4jAL neo4jAL, String json) {
+    JSONObject jo = new JSONObject(json);
+    FrameworkNode fn =
+        new FrameworkNode(
+            neo4jAL,
+            jo.getString("name"),
+            jo.optString("pattern", jo.getString("name")),
+            jo.optBoolean("isRegex", false),
+            jo.optString("discoveryDate", ""),
+            jo.optString("location", ""),
+            jo.optString("description", ""),
+            jo.optLong("numberOfDetection", 0L),
+            jo.optDouble("percentageOfDetection", 0.0),
+            jo.optLong("creationDate", new Date().getTime()));
+    fn.setFrameworkType(FrameworkType.getType(jo.optString("type", "")));
+    fn.setDetectionData(jo.optString("detectionData", ""));
+
+    List<String> internalTypes = new ArrayList<>();
+    JSONArray types = jo.optJSONArray("internalTypes");
+    if (types != null) {
+      for (int i = 0; i < types.length(); i++) internalTypes.add(types.getString(i));
+    }
+    fn.setInternalTypes(internalTypes);
+
+    // Re-attach the framework to its node if it still exists
+    if (jo.has("nodeId")) {
+      try {
+        fn.setNode(neo4jAL.getNodeById(jo.getLong("nodeId")));
+      } catch (Neo4jQueryException e) {
+        neo4jAL.logError("Failed to re-attach a framework of the checkpoint to its node.", e);
+      }
+    }
+    return fn;
+  }
+
+  public Long getLastObjectId() {
+    return lastObjectId;
+  }
+
+  public String getLastLeaf() {
+    return lastLeaf;
+  }
+
+  public Long getProcessed() {
+    return processed;
+  }
+
+  public int getNumResults() {
+    return results.size();
+  }
+}
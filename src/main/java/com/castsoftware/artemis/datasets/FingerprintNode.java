@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.datasets;
+
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import org.neo4j.graphdb.Result;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fingerprints of the branches recorded by the detections of an application, used by the
+ * incremental detection. The node is identified by its application and its language. The branches
+ * are stored as the hashes of their names, so the size of the node doesn't depend on the length of
+ * the full names.
+ */
+public class FingerprintNode {
+  private static final String LABEL = "ArtemisFingerprints";
+  private static final String APPLICATION_PROPERTY = "Application";
+  private static final String LANGUAGE_PROPERTY = "Language";
+  private static final String BRANCHES_PROPERTY = "Branches"; // Hashes of the names of the branches
+  private static final String VALUES_PROPERTY = "Values"; // Fingerprints, in the order of the branches
+  private static final String LAST_UPDATE_PROPERTY = "LastUpdate";
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  public static String getLabel() {
+    return LABEL;
+  }
+
+  /**
+   * Get the key identifying a branch in the fingerprints
+   *
+   * @param branch Name of the branch
+   * @return A 64 bits FNV-1a hash of the name
+   */
+  public static long hashBranch(String branch) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < branch.length(); i++) {
+      hash ^= branch.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Load the fingerprints recorded for an application and a language
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param language Language of the detection
+   * @return The fingerprints by branch hash, empty if no detection was recorded
+   * @throws Neo4jQueryException
+   */
+  public static Map<Long, Long> load(Neo4jAL neo4jAL, String application, String language)
+      throws Neo4jQueryException {
+    String req =
+        String.format(
+            "MATCH (f:%s) WHERE f.%s=$application AND f.%s=$language "
+                + "RETURN f.%s as branches, f.%s as values LIMIT 1",
+            LABEL, APPLICATION_PROPERTY, LANGUAGE_PROPERTY, BRANCHES_PROPERTY, VALUES_PROPERTY);
+
+    Map<Long, Long> fingerprints = new HashMap<>();
+    Result res =
+        neo4jAL.executeQuery(req, Map.of("application", application, "language", language));
+    if (!res.hasNext()) return fingerprints;
+
+    Map<String, Object> record = res.next();
+    long[] branches = (long[]) record.get("branches");
+    long[] values = (long[]) record.get("values");
+    if (branches == null || values == null) return fingerprints;
+
+    for (int i = 0; i < Math.min(branches.length, values.length); i++) {
+      fingerprints.put(branches[i], values[i]);
+    }
+    return fingerprints;
+  }
+
+  /**
+   * Add fingerprints to the ones recorded for an application and a language. The fingerprints of
+   * the other branches are kept.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param language Language of the detection
+   * @param fingerprints Fingerprints by branch hash
+   * @throws Neo4jQueryException
+   */
+  public static void merge(
+      Neo4jAL neo4jAL, String application, String language, Map<Long, Long> fingerprints)
+      throws Neo4jQueryException {
+    if (fingerprints.isEmpty()) return;
+
+    Map<Long, Long> merged = load(neo4jAL, application, language);
+    merged.putAll(fingerprints);
+    replace(neo4jAL, application, language, merged);
+  }
+
+  /**
+   * Replace the fingerprints recorded for an application and a language
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param language Language of the detection
+   * @param fingerprints Fingerprints by branch hash
+   * @throws Neo4jQueryException
+   */
+  public static void replace(
+      Neo4jAL neo4jAL, String application, String language, Map<Long, Long> fingerprints)
+      throws Neo4jQueryException {
+    long[] branches = new long[fingerprints.size()];
+    long[] values = new long[fingerprints.size()];
+    int i = 0;
+    for (Map.Entry<Long, Long> entry : fingerprints.entrySet()) {
+      branches[i] = entry.getKey();
+      values[i] = entry.getValue();
+      i++;
+    }
+
+    String req =
+        String.format(
+            "MERGE (f:%s { %s: $application, %s: $language }) "
+                + "SET f.%s=$branches, f.%s=$values, f.%s=timestamp()",
+            LABEL,
+            APPLICATION_PROPERTY,
+            LANGUAGE_PROPERTY,
+            BRANCHES_PROPERTY,
+            VALUES_PROPERTY,
+            LAST_UPDATE_PROPERTY);
+
+    Map<String, Object> params = new HashMap<>();
+    params.put("application", application);
+    params.put("language", language);
+    params.put("branches", branches);
+    params.put("values", values);
+    neo4jAL.executeQuery(req, params);
+  }
+
+  /**
+   * Delete the fingerprints of all the languages of an application
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @throws Neo4jQueryException
+   */
+  public static void delete(Neo4jAL neo4jAL, String application) throws Neo4jQueryException {
+    String req =
+        String.format(
+            "MATCH (f:%s) WHERE f.%s=$application DETACH DELETE f", LABEL, APPLICATION_PROPERTY);
+    neo4jAL.executeQuery(req, Map.of("application", application));
+  }
+}
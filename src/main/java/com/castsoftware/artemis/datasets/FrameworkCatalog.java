@@ -0,0 +1,478 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.datasets;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadNodeFormatException;
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory catalog of the frameworks, loaded once per database when the property
+ * 'artemis.properties.load_framework_in_memory' is set. The catalog maps the name of the frameworks
+ * to the id and the internal types of their nodes. It is bounded, the least recently used names are
+ * evicted once the maximum size is reached. If the whole database fits in the catalog, unknown names
+ * are answered without querying the database. The names modified are evicted once the transaction
+ * modifying the frameworks is committed, see {@link FrameworkChangeListener}. A transaction with
+ * uncommitted modifications of the frameworks bypasses the catalog.
+ */
+public class FrameworkCatalog {
+
+  private static final int DEFAULT_MAX_SIZE = 100000;
+  private static final Record[] STALE = new Record[0]; // Name modified, must be reloaded
+
+  private static final Map<String, FrameworkCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+  private final String database;
+  private final int maxSize;
+  private final LinkedHashMap<String, Record[]> entries;
+
+  private boolean loaded = false;
+  private boolean complete = false; // True if all the frameworks of the database are in memory
+
+  // Statistics
+  private long hits = 0L;
+  private long misses = 0L;
+  private long evictions = 0L;
+  private long loadTime = 0L;
+
+  private FrameworkCatalog(String database, int maxSize) {
+    this.database = database;
+    this.maxSize = maxSize;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Record[]> eldest) {
+            if (size() <= FrameworkCatalog.this.maxSize) return false;
+            evictions++;
+            complete = false;
+            return true;
+          }
+        };
+  }
+
+  /**
+   * Check if the frameworks must be kept in memory
+   *
+   * @return True if the catalog is enabled in the configuration
+   */
+  public static boolean isEnabled() {
+    return Boolean.parseBoolean(Configuration.get("artemis.properties.load_framework_in_memory"));
+  }
+
+  private static int getConfiguredMaxSize() {
+    try {
+      return Integer.parseInt(Configuration.get("artemis.properties.framework_cache.max_size"));
+    } catch (NumberFormatException | NullPointerException e) {
+      return DEFAULT_MAX_SIZE;
+    }
+  }
+
+  /**
+   * Get the catalog of the database
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return The catalog
+   */
+  public static FrameworkCatalog getCatalog(Neo4jAL neo4jAL) {
+    FrameworkChangeListener.register(neo4jAL);
+    return CATALOGS.computeIfAbsent(
+        neo4jAL.getDb().databaseName(), db -> new FrameworkCatalog(db, getConfiguredMaxSize()));
+  }
+
+  /**
+   * Get the catalogs of all the databases
+   *
+   * @return The list of catalogs
+   */
+  public static List<FrameworkCatalog> getCatalogs() {
+    return new ArrayList<>(CATALOGS.values());
+  }
+
+  /**
+   * Remove names from the catalog of the database, once the modification of the frameworks with
+   * these names is committed
+   *
+   * @param database Name of the database
+   * @param names Names of the frameworks modified
+   */
+  public static void evict(String database, Collection<String> names) {
+    FrameworkCatalog catalog = CATALOGS.get(database);
+    if (catalog == null) return;
+
+    synchronized (catalog) {
+      for (String name : names) {
+        // A complete catalog must keep track of the name, otherwise it would be considered as unknown
+        if (catalog.complete) catalog.entries.put(name, STALE);
+        else catalog.entries.remove(name);
+      }
+    }
+  }
+
+  /** Drop the catalogs of all the databases. They will be reloaded on the next lookup. */
+  public static void invalidate() {
+    CATALOGS.clear();
+  }
+
+  /**
+   * Load the frameworks of the database, until the maximum size is reached
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @throws Neo4jQueryException
+   */
+  private void load(Neo4jAL neo4jAL) throws Neo4jQueryException {
+    String req =
+        String.format(
+            "MATCH (n:%s) RETURN n.%s as name, ID(n) as id, n.%s as internalTypes ORDER BY id",
+            FrameworkNode.getLabel(),
+            FrameworkNode.getNameProperty(),
+            FrameworkNode.getInternalTypeProperty());
+
+    long start = System.currentTimeMillis();
+    Map<String, List<Record>> grouped = new LinkedHashMap<>();
+    boolean truncated = false;
+
+    Result res = neo4jAL.executeQuery(req);
+    while (res.hasNext()) {
+      Map<String, Object> record = res.next();
+      if (record.get("name") == null) continue;
+      String name = String.valueOf(record.get("name"));
+
+      List<Record> records = grouped.get(name);
+      if (records == null) {
+        if (grouped.size() >= maxSize) {
+          truncated = true;
+          continue;
+        }
+        records = new ArrayList<>(1);
+        grouped.put(name, records);
+      }
+      records.add(new Record((Long) record.get("id"), toArray(record.get("internalTypes"))));
+    }
+
+    grouped.forEach((name, records) -> entries.put(name, records.toArray(new Record[0])));
+    complete = !truncated;
+    loaded = true;
+    loadTime = System.currentTimeMillis() - start;
+
+    neo4jAL.logInfo(
+        String.format(
+            "Framework catalog of database '%s' loaded : %d names in %d ms%s.",
+            database, entries.size(), loadTime, complete ? "" : " (partial)"));
+  }
+
+  /**
+   * Query the frameworks with a specific name
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param name Name of the framework
+   * @return The records found, empty if the framework doesn't exist
+   * @throws Neo4jQueryException
+   */
+  private static Record[] queryName(Neo4jAL neo4jAL, String name) throws Neo4jQueryException {
+    String req =
+        String.format(
+            "MATCH (n:%s) WHERE n.%s=$name RETURN ID(n) as id, n.%s as internalTypes ORDER BY id",
+            FrameworkNode.getLabel(),
+            FrameworkNode.getNameProperty(),
+            FrameworkNode.getInternalTypeProperty());
+
+    List<Record> records = new ArrayList<>();
+    Result res = neo4jAL.executeQuery(req, Map.of("name", name));
+    while (res.hasNext()) {
+      Map<String, Object> record = res.next();
+      records.add(new Record((Long) record.get("id"), toArray(record.get("internalTypes"))));
+    }
+    return records.toArray(new Record[0]);
+  }
+
+  /**
+   * Query the frameworks of several names, with one query per batch of names
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param names Distinct names to query
+   * @return The records found, by name. Every name queried is present.
+   * @throws Neo4jQueryException
+   */
+  private static Map<String, Record[]> queryNames(Neo4jAL neo4jAL, List<String> names)
+      throws Neo4jQueryException {
+    String req =
+        String.format(
+            "UNWIND $names as name MATCH (n:%s) WHERE n.%s=name "
+                + "RETURN name, ID(n) as id, n.%s as internalTypes ORDER BY id",
+            FrameworkNode.getLabel(),
+            FrameworkNode.getNameProperty(),
+            FrameworkNode.getInternalTypeProperty());
+
+    Map<String, List<Record>> grouped = new HashMap<>();
+    for (int i = 0; i < names.size(); i += FrameworkNode.BULK_LOOKUP_SIZE) {
+      List<String> batch = names.subList(i, Math.min(i + FrameworkNode.BULK_LOOKUP_SIZE, names.size()));
+      batch.forEach(name -> grouped.put(name, new ArrayList<>(1)));
+
+      Result res = neo4jAL.executeQuery(req, Map.of("names", batch));
+      while (res.hasNext()) {
+        Map<String, Object> record = res.next();
+        grouped
+            .get((String) record.get("name"))
+            .add(new Record((Long) record.get("id"), toArray(record.get("internalTypes"))));
+      }
+    }
+
+    Map<String, Record[]> records = new HashMap<>();
+    grouped.forEach((name, list) -> records.put(name, list.toArray(new Record[0])));
+    return records;
+  }
+
+  private static String[] toArray(Object internalTypes) {
+    if (internalTypes instanceof String[]) return (String[]) internalTypes;
+    if (internalTypes instanceof List) {
+      return ((List<?>) internalTypes).stream().map(String::valueOf).toArray(String[]::new);
+    }
+    if (internalTypes != null) return new String[] {String.valueOf(internalTypes)};
+    return new String[0];
+  }
+
+  /**
+   * Get the records of a name, from the memory if possible
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param name Name of the framework
+   * @return The records of the frameworks with this name
+   * @throws Neo4jQueryException
+   */
+  private synchronized Record[] getRecords(Neo4jAL neo4jAL, String name)
+      throws Neo4jQueryException {
+    // The nodes created by the transaction must not be visible to the others
+    if (neo4jAL.hasUncommitted(FrameworkNode.getLabel())) return queryName(neo4jAL, name);
+    if (!loaded) load(neo4jAL);
+
+    Record[] records = entries.get(name);
+    if (records != null && records != STALE) {
+      hits++;
+      return records;
+    }
+
+    if (records == null && complete) {
+      hits++;
+      return STALE; // Unknown name
+    }
+
+    misses++;
+    records = queryName(neo4jAL, name);
+    entries.put(name, records);
+    return records;
+  }
+
+  /**
+   * Find the frameworks of several names. The names absent from the memory are queried in bulk.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param names Names of the frameworks
+   * @return The frameworks found, by name. Names without a framework are absent.
+   * @throws Neo4jQueryException
+   */
+  public Map<String, FrameworkNode> findByNames(Neo4jAL neo4jAL, Collection<String> names)
+      throws Neo4jQueryException {
+    Map<String, Record[]> found = new HashMap<>();
+
+    if (neo4jAL.hasUncommitted(FrameworkNode.getLabel())) {
+      // The nodes created by the transaction must not be visible to the others
+      List<String> distinct = new ArrayList<>(new LinkedHashSet<>(names));
+      distinct.remove(null);
+      found.putAll(queryNames(neo4jAL, distinct));
+    } else {
+      synchronized (this) {
+        if (!loaded) load(neo4jAL);
+
+        List<String> unknown = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names)) {
+          if (name == null) continue;
+          Record[] records = entries.get(name);
+          if (records != null && records != STALE) {
+            hits++;
+            found.put(name, records);
+          } else if (records == null && complete) {
+            hits++;
+          } else {
+            misses++;
+            unknown.add(name);
+          }
+        }
+
+        if (!unknown.isEmpty()) {
+          Map<String, Record[]> queried = queryNames(neo4jAL, unknown);
+          entries.putAll(queried);
+          found.putAll(queried);
+        }
+      }
+    }
+
+    Map<String, FrameworkNode> frameworks = new HashMap<>();
+    for (Map.Entry<String, Record[]> en : found.entrySet()) {
+      try {
+        toFramework(neo4jAL, en.getKey(), en.getValue(), null)
+            .ifPresent(fn -> frameworks.put(en.getKey(), fn));
+      } catch (Neo4jBadNodeFormatException e) {
+        neo4jAL.logError(String.format("Failed to retrieve the framework '%s'.", en.getKey()), e);
+      }
+    }
+    return frameworks;
+  }
+
+  /**
+   * Find a framework by its name
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param name Name of the framework
+   * @return The framework node if found, an empty optional otherwise
+   * @throws Neo4jQueryException
+   * @throws Neo4jBadNodeFormatException
+   */
+  public Optional<FrameworkNode> findByName(Neo4jAL neo4jAL, String name)
+      throws Neo4jQueryException, Neo4jBadNodeFormatException {
+    return find(neo4jAL, name, null);
+  }
+
+  /**
+   * Find a framework by its name and one of its internal types
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param name Name of the framework
+   * @param internalType Internal type of the framework
+   * @return The framework node if found, an empty optional otherwise
+   * @throws Neo4jQueryException
+   * @throws Neo4jBadNodeFormatException
+   */
+  public Optional<FrameworkNode> findByNameAndType(
+      Neo4jAL neo4jAL, String name, String internalType)
+      throws Neo4jQueryException, Neo4jBadNodeFormatException {
+    return find(neo4jAL, name, internalType);
+  }
+
+  private Optional<FrameworkNode> find(Neo4jAL neo4jAL, String name, String internalType)
+      throws Neo4jQueryException, Neo4jBadNodeFormatException {
+    if (name == null) return Optional.empty();
+    return toFramework(neo4jAL, name, getRecords(neo4jAL, name), internalType);
+  }
+
+  /**
+   * Get the framework node of the first record matching the internal type
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param name Name of the framework
+   * @param records Records of the name
+   * @param internalType Internal type of the framework, null to accept any type
+   * @return The framework node if found, an empty optional otherwise
+   * @throws Neo4jQueryException
+   * @throws Neo4jBadNodeFormatException
+   */
+  private Optional<FrameworkNode> toFramework(
+      Neo4jAL neo4jAL, String name, Record[] records, String internalType)
+      throws Neo4jQueryException, Neo4jBadNodeFormatException {
+    for (Record record : records) {
+      if (internalType != null && !record.hasType(internalType)) continue;
+
+      Node n = neo4jAL.getNodeById(record.nodeId);
+      if (n == null) {
+        // The node was removed outside of Artemis, or by a transaction rolled back
+        synchronized (this) {
+          entries.remove(name);
+          if (complete) entries.put(name, STALE);
+        }
+        return findInDatabase(neo4jAL, name, internalType);
+      }
+      return Optional.of(FrameworkNode.fromNode(neo4jAL, n));
+    }
+
+    return Optional.empty();
+  }
+
+  private Optional<FrameworkNode> findInDatabase(Neo4jAL neo4jAL, String name, String internalType)
+      throws Neo4jQueryException, Neo4jBadNodeFormatException {
+    for (Record record : queryName(neo4jAL, name)) {
+      if (internalType != null && !record.hasType(internalType)) continue;
+      Node n = neo4jAL.getNodeById(record.nodeId);
+      if (n != null) return Optional.of(FrameworkNode.fromNode(neo4jAL, n));
+    }
+    return Optional.empty();
+  }
+
+  public String getDatabase() {
+    return database;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  public synchronized boolean isLoaded() {
+    return loaded;
+  }
+
+  public synchronized boolean isComplete() {
+    return complete;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getLoadTime() {
+    return loadTime;
+  }
+
+  /**
+   * Get the ratio of lookups answered from the memory
+   *
+   * @return The hit ratio, between 0 and 1
+   */
+  public synchronized double getHitRatio() {
+    long total = hits + misses;
+    return total == 0L ? 0.0 : (double) hits / total;
+  }
+
+  /** Framework node known by the catalog */
+  private static class Record {
+    private final long nodeId;
+    private final String[] internalTypes;
+
+    private Record(long nodeId, String[] internalTypes) {
+      this.nodeId = nodeId;
+      this.internalTypes = internalTypes;
+    }
+
+    private boolean hasType(String internalType) {
+      for (String type : internalTypes) {
+        if (internalType.equals(type)) return true;
+      }
+      return false;
+    }
+  }
+}
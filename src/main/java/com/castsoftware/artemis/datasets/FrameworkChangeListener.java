@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.datasets;
+
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListenerAdapter;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Listener refreshing the in-memory framework catalog and pattern indexes once a transaction
+ * modifying the frameworks is committed. The names and internal types modified are collected before
+ * the commit, and only them are evicted after it, so the other threads can't cache the state
+ * preceding the commit. Nothing is done on rollback.
+ */
+public class FrameworkChangeListener
+    extends TransactionEventListenerAdapter<FrameworkChangeListener.Changes> {
+
+  private static final Set<String> REGISTERED = ConcurrentHashMap.newKeySet();
+
+  private FrameworkChangeListener() {}
+
+  /**
+   * Register the listener on the database, if not already done. Must be called before caching
+   * anything, and before modifying the frameworks.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   */
+  public static void register(Neo4jAL neo4jAL) {
+    GraphDatabaseService db = neo4jAL.getDb();
+    if (REGISTERED.contains(db.databaseName())) return;
+
+    synchronized (REGISTERED) {
+      if (REGISTERED.contains(db.databaseName())) return;
+      DatabaseManagementService managementService =
+          ((GraphDatabaseAPI) db)
+              .getDependencyResolver()
+              .resolveDependency(DatabaseManagementService.class);
+      managementService.registerTransactionEventListener(
+          db.databaseName(), new FrameworkChangeListener());
+      REGISTERED.add(db.databaseName());
+    }
+  }
+
+  @Override
+  public Changes beforeCommit(
+      TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+    Label label = Label.label(FrameworkNode.getLabel());
+    String nameProperty = FrameworkNode.getNameProperty();
+    String typeProperty = FrameworkNode.getInternalTypeProperty();
+    Set<String> indexed =
+        Set.of(
+            nameProperty,
+            typeProperty,
+            FrameworkNode.getPatternProperty(),
+            FrameworkNode.getIsRegexProperty());
+
+    // Nodes gaining or losing the label, deleted frameworks included
+    Map<Long, Node> modified = new HashMap<>();
+    for (LabelEntry entry : data.assignedLabels()) {
+      if (entry.label().equals(label)) modified.put(entry.node().getId(), entry.node());
+    }
+    for (LabelEntry entry : data.removedLabels()) {
+      if (entry.label().equals(label)) modified.put(entry.node().getId(), entry.node());
+    }
+    Set<Long> frameworks = new HashSet<>(modified.keySet());
+
+    Set<Long> deleted = new HashSet<>();
+    data.deletedNodes().forEach(n -> deleted.add(n.getId()));
+
+    Changes changes = new Changes();
+    for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+      if (!indexed.contains(entry.key())) continue;
+      if (!isFramework(entry.entity(), label, frameworks, deleted)) continue;
+      modified.put(entry.entity().getId(), entry.entity());
+      changes.add(entry.key(), entry.value(), nameProperty, typeProperty);
+      changes.add(entry.key(), entry.previouslyCommittedValue(), nameProperty, typeProperty);
+    }
+    for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+      if (!indexed.contains(entry.key())) continue;
+      if (!isFramework(entry.entity(), label, frameworks, deleted)) continue;
+      modified.put(entry.entity().getId(), entry.entity());
+      changes.add(entry.key(), entry.previouslyCommittedValue(), nameProperty, typeProperty);
+    }
+
+    // The current name and internal types of the nodes modified are affected too
+    for (Node n : modified.values()) {
+      if (deleted.contains(n.getId())) continue;
+      changes.add(nameProperty, n.getProperty(nameProperty, null), nameProperty, typeProperty);
+      changes.add(typeProperty, n.getProperty(typeProperty, null), nameProperty, typeProperty);
+    }
+
+    return changes.isEmpty() ? null : changes;
+  }
+
+  private static boolean isFramework(Node n, Label label, Set<Long> frameworks, Set<Long> deleted) {
+    if (frameworks.contains(n.getId())) return true;
+    return !deleted.contains(n.getId()) && n.hasLabel(label);
+  }
+
+  @Override
+  public void afterCommit(
+      TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+    if (changes == null) return;
+    String database = databaseService.databaseName();
+    FrameworkPatternIndex.invalidate(database, changes.internalTypes);
+    FrameworkCatalog.evict(database, changes.names);
+  }
+
+  /** Names and internal types of the frameworks modified by a transaction */
+  public static class Changes {
+    private final Set<String> names = new HashSet<>();
+    private final Set<String> internalTypes = new HashSet<>();
+
+    private void add(String key, Object value, String nameProperty, String typeProperty) {
+      if (value == null) return;
+      if (key.equals(nameProperty)) {
+        names.add(String.valueOf(value));
+      } else if (key.equals(typeProperty)) {
+        if (value instanceof String[]) internalTypes.addAll(Arrays.asList((String[]) value));
+        else internalTypes.add(String.valueOf(value));
+      }
+    }
+
+    private boolean isEmpty() {
+      return names.isEmpty() && internalTypes.isEmpty();
+    }
+  }
+}
@@ -66,6 +66,8 @@ public class FrameworkNode {
 
   private static final String ERROR_PREFIX = "FRAMNx";
 
+  public static final int BULK_LOOKUP_SIZE = 1000; // Names sent per bulk query
+
   // Neo4j Properties
   private final Neo4jAL neo4jAL;
   private Node node;
@@ -131,6 +133,17 @@ public class FrameworkNode {
     this.category = CategoryController.getDefaultName(neo4jAL);
   }
 
+  /**
+   * Flag the frameworks as modified in the current transaction. The in-memory catalog and pattern
+   * indexes are refreshed once the transaction is committed.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   */
+  public static void markModified(Neo4jAL neo4jAL) {
+    FrameworkChangeListener.register(neo4jAL);
+    neo4jAL.markUncommitted(LABEL_PROPERTY);
+  }
+
   public static String getLabel() {
     return LABEL_PROPERTY;
   }
@@ -182,6 +195,10 @@ public class FrameworkNode {
    */
   public static Optional<FrameworkNode> findFrameworkByName(Neo4jAL neo4jAL, String frameworkName)
       throws Neo4jQueryException, Neo4jBadNodeFormatException {
+    if (FrameworkCatalog.isEnabled()) {
+      return FrameworkCatalog.getCatalog(neo4jAL).findByName(neo4jAL, frameworkName);
+    }
+
     String matchReq =
         String.format(
             "MATCH (n:%s) WHERE n.%s=$frameworkName  RETURN n as node LIMIT 1;",
@@ -200,6 +217,45 @@ public class FrameworkNode {
     return Optional.of(fn);
   }
 
+  /**
+   * Find the frameworks matching a list of names, with one query per batch of names.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param names Names of the frameworks to find
+   * @return The frameworks found, by name. Names without a framework are absent.
+   * @throws Neo4jQueryException
+   */
+  public static Map<String, FrameworkNode> findFrameworksByNames(
+      Neo4jAL neo4jAL, Collection<String> names) throws Neo4jQueryException {
+    if (FrameworkCatalog.isEnabled()) {
+      return FrameworkCatalog.getCatalog(neo4jAL).findByNames(neo4jAL, names);
+    }
+
+    String matchReq =
+        String.format(
+            "UNWIND $names as name MATCH (n:%s) WHERE n.%s=name "
+                + "WITH name, collect(n)[0] as node RETURN name, node;",
+            LABEL_PROPERTY, NAME_PROPERTY);
+
+    Map<String, FrameworkNode> frameworks = new HashMap<>();
+    List<String> distinct = new ArrayList<>(new LinkedHashSet<>(names));
+    for (int i = 0; i < distinct.size(); i += BULK_LOOKUP_SIZE) {
+      List<String> batch = distinct.subList(i, Math.min(i + BULK_LOOKUP_SIZE, distinct.size()));
+      Result res = neo4jAL.executeQuery(matchReq, Map.of("names", batch));
+      while (res.hasNext()) {
+        Map<String, Object> record = res.next();
+        String name = (String) record.get("name");
+        try {
+          frameworks.put(name, FrameworkNode.fromNode(neo4jAL, (Node) record.get("node")));
+        } catch (Neo4jBadNodeFormatException e) {
+          neo4jAL.logError(String.format("Failed to retrieve the framework '%s'.", name), e);
+        }
+      }
+    }
+
+    return frameworks;
+  }
+
   /**
    * Find a Framework by its Type only
    *
@@ -243,9 +299,14 @@ public class FrameworkNode {
   public static Optional<FrameworkNode> findFrameworkByNameAndType(
       Neo4jAL neo4jAL, String objectName, String internalType)
       throws Neo4jQueryException, Neo4jBadNodeFormatException {
+    if (FrameworkCatalog.isEnabled()) {
+      return FrameworkCatalog.getCatalog(neo4jAL)
+          .findByNameAndType(neo4jAL, objectName, internalType);
+    }
+
     String matchReq =
         String.format(
-            "MATCH (n:%s) WHERE n.%s=$frameworkName  RETURN n as node LIMIT 1;",
+            "MATCH (n:%s) WHERE n.%s=$frameworkName AND $internalType in n.%s RETURN n as node LIMIT 1;",
             LABEL_PROPERTY, NAME_PROPERTY, INTERNAL_TYPE_PROPERTY);
 
     Map<String, Object> params = Map.of("frameworkName", objectName, "internalType", internalType);
@@ -445,6 +506,7 @@ public class FrameworkNode {
     Map<String, Object> params =
         Map.of("frameworkName", frameworkName, "internalTypes", internalTypes);
     neo4jAL.executeQuery(matchReq, params);
+    markModified(neo4jAL);
   }
 
   /**
@@ -473,6 +535,7 @@ public class FrameworkNode {
     n.setProperty(CREATION_DATE_PROPERTY, getCreationDate()); // Last modification
 
     setNode(n);
+    markModified(neo4jAL);
     return n;
   }
 
@@ -613,6 +676,7 @@ public class FrameworkNode {
 
     if (node == null) return;
     node.setProperty(getInternalTypeProperty(), listTypes.toArray(new String[0]));
+    markModified(neo4jAL);
   }
 
   /**
@@ -720,6 +784,7 @@ public class FrameworkNode {
   public void delete() {
     if (this.node == null) return;
     this.node.delete();
+    markModified(neo4jAL);
   }
 
   /**
@@ -782,6 +847,7 @@ public class FrameworkNode {
     if (node == null) return;
     node.setProperty(getPatternProperty(), pattern);
     node.setProperty(getIsRegexProperty(), isRegex);
+    markModified(neo4jAL);
   }
 
   /**
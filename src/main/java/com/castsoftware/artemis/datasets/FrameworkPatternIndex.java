@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.datasets;
+
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import org.neo4j.graphdb.Result;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * In-memory matching index of the framework patterns, built once per database and internal type.
+ * Plain patterns, and regexes reduced to a literal or to a literal followed by ".*", are stored in a
+ * trie. The other regexes are precompiled and combined in alternations, sorted by decreasing
+ * pattern length. The indexes of the internal types modified are invalidated once the transaction
+ * modifying the frameworks is committed, see {@link FrameworkChangeListener}. A transaction with
+ * uncommitted modifications of the frameworks builds its own index, never shared.
+ */
+public class FrameworkPatternIndex {
+
+  private static final int MAX_ALTERNATIVES = 256; // Number of regexes per combined pattern
+
+  private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\[1-9k]");
+  private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z]*x");
+
+  private static final Map<String, FrameworkPatternIndex> INDEXES = new ConcurrentHashMap<>();
+  private static final AtomicLong GENERATION = new AtomicLong(0L);
+
+  private final TrieNode root = new TrieNode();
+  private final List<CombinedPattern> combinedPatterns = new ArrayList<>();
+  private final List<Entry> standalonePatterns = new ArrayList<>();
+  private int size = 0;
+
+  private FrameworkPatternIndex() {}
+
+  /**
+   * Get the index of an internal type, and build it if necessary
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param internalType Internal type of the frameworks
+   * @return The index
+   * @throws Neo4jQueryException
+   */
+  public static FrameworkPatternIndex getIndex(Neo4jAL neo4jAL, String internalType)
+      throws Neo4jQueryException {
+    // The nodes created by the transaction must not be visible to the others
+    if (neo4jAL.hasUncommitted(FrameworkNode.getLabel())) return build(neo4jAL, internalType);
+
+    String key = getKey(neo4jAL.getDb().databaseName(), internalType);
+    FrameworkPatternIndex index = INDEXES.get(key);
+    if (index != null) return index;
+
+    FrameworkChangeListener.register(neo4jAL);
+    long generation = GENERATION.get();
+    index = build(neo4jAL, internalType);
+
+    // Don't publish an index built while the catalog was modified
+    if (generation == GENERATION.get()) INDEXES.put(key, index);
+    return index;
+  }
+
+  private static String getKey(String database, String internalType) {
+    return database + "|" + internalType;
+  }
+
+  /**
+   * Invalidate the indexes of some internal types. Must be called once the modification of the
+   * frameworks is committed.
+   *
+   * @param database Name of the database
+   * @param internalTypes Internal types modified
+   */
+  public static void invalidate(String database, Collection<String> internalTypes) {
+    GENERATION.incrementAndGet();
+    for (String internalType : internalTypes) {
+      INDEXES.remove(getKey(database, internalType));
+    }
+  }
+
+  /** Invalidate all the indexes */
+  public static void invalidate() {
+    GENERATION.incrementAndGet();
+    INDEXES.clear();
+  }
+
+  /**
+   * Build the index of an internal type from the framework nodes
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param internalType Internal type of the frameworks
+   * @return The new index
+   * @throws Neo4jQueryException
+   */
+  private static FrameworkPatternIndex build(Neo4jAL neo4jAL, String internalType)
+      throws Neo4jQueryException {
+    String req =
+        String.format(
+            "MATCH (n:%s) WHERE $internalType in n.%s RETURN ID(n) as id, n.%s as name, "
+                + "n.%s as pattern, n.%s as isRegex",
+            FrameworkNode.getLabel(),
+            FrameworkNode.getInternalTypeProperty(),
+            FrameworkNode.getNameProperty(),
+            FrameworkNode.getPatternProperty(),
+            FrameworkNode.getIsRegexProperty());
+
+    long start = System.currentTimeMillis();
+    FrameworkPatternIndex index = new FrameworkPatternIndex();
+    List<Entry> regexes = new ArrayList<>();
+
+    Result res = neo4jAL.executeQuery(req, Map.of("internalType", internalType));
+    while (res.hasNext()) {
+      Map<String, Object> record = res.next();
+      Object name = record.get("name");
+      Object pattern = record.get("pattern");
+      if (pattern == null) pattern = name; // Same default as the framework node
+      if (pattern == null) continue;
+
+      Entry entry =
+          new Entry((Long) record.get("id"), String.valueOf(pattern), isTrue(record.get("isRegex")));
+      index.size++;
+
+      if (!entry.isRegex) {
+        index.insert(entry.pattern, false, entry);
+        continue;
+      }
+
+      // Regexes reducible to a literal go to the trie
+      String literal = toLiteral(entry.pattern);
+      if (literal != null) {
+        index.insert(literal, false, entry);
+        continue;
+      }
+
+      if (entry.pattern.endsWith(".*")) {
+        literal = toLiteral(entry.pattern.substring(0, entry.pattern.length() - 2));
+        if (literal != null) {
+          index.insert(literal, true, entry);
+          continue;
+        }
+      }
+
+      regexes.add(entry);
+    }
+
+    index.compileRegexes(neo4jAL, regexes);
+    neo4jAL.logInfo(
+        String.format(
+            "Framework pattern index built for type '%s' : %d patterns, %d combined regexes, "
+                + "%d standalone regexes in %d ms.",
+            internalType,
+            index.size,
+            index.combinedPatterns.size(),
+            index.standalonePatterns.size(),
+            System.currentTimeMillis() - start));
+    return index;
+  }
+
+  private static boolean isTrue(Object o) {
+    if (o instanceof Boolean) return (Boolean) o;
+    return o != null && Boolean.parseBoolean(String.valueOf(o));
+  }
+
+  /**
+   * Convert a regex to the literal it matches, if it contains only plain or escaped characters
+   *
+   * @param regex Regex to convert
+   * @return The literal, or null if the regex uses an operator
+   */
+  private static String toLiteral(String regex) {
+    StringBuilder sb = new StringBuilder(regex.length());
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        if (i + 1 >= regex.length()) return null;
+        char next = regex.charAt(++i);
+        // Escaped letters and digits are classes or back-references
+        if (Character.isLetterOrDigit(next)) return null;
+        sb.append(next);
+      } else if (".[]{}()*+?^$|".indexOf(c) >= 0) {
+        return null;
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Insert a literal in the trie
+   *
+   * @param literal Literal to insert
+   * @param prefix True if the literal is a prefix of the names to match
+   * @param entry Entry of the framework
+   */
+  private void insert(String literal, boolean prefix, Entry entry) {
+    TrieNode current = root;
+    for (int i = 0; i < literal.length(); i++) {
+      current = current.children.computeIfAbsent(literal.charAt(i), c -> new TrieNode());
+    }
+
+    if (prefix) current.prefixEntry = Entry.longest(current.prefixEntry, entry);
+    else current.exactEntry = Entry.longest(current.exactEntry, entry);
+  }
+
+  /**
+   * Compile the remaining regexes. Regexes are combined by chunks, in decreasing order of pattern
+   * length, so the first alternative matching is always the longest one. Regexes using
+   * back-references, named groups or comments can't be combined and are compiled alone.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param regexes Regexes to compile
+   */
+  private void compileRegexes(Neo4jAL neo4jAL, List<Entry> regexes) {
+    regexes.sort(Comparator.comparingInt((Entry e) -> e.pattern.length()).reversed());
+
+    List<Entry> chunk = new ArrayList<>();
+    for (Entry entry : regexes) {
+      try {
+        entry.compiled = Pattern.compile(entry.pattern);
+      } catch (PatternSyntaxException e) {
+        neo4jAL.logError(
+            String.format("The pattern '%s' of a framework is not a valid regex.", entry.pattern),
+            e);
+        continue;
+      }
+
+      if (!isCombinable(entry.pattern)) {
+        standalonePatterns.add(entry);
+        continue;
+      }
+
+      chunk.add(entry);
+      if (chunk.size() >= MAX_ALTERNATIVES) {
+        addCombined(neo4jAL, chunk);
+        chunk = new ArrayList<>();
+      }
+    }
+    if (!chunk.isEmpty()) addCombined(neo4jAL, chunk);
+  }
+
+  private static boolean isCombinable(String regex) {
+    return !regex.contains("(?<")
+        && !BACK_REFERENCE.matcher(regex).find()
+        && !COMMENTS_FLAG.matcher(regex).find();
+  }
+
+  /**
+   * Combine a chunk of regexes. If the combination fails, the regexes are kept alone.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param chunk Chunk of regexes
+   */
+  private void addCombined(Neo4jAL neo4jAL, List<Entry> chunk) {
+    try {
+      combinedPatterns.add(new CombinedPattern(chunk));
+    } catch (PatternSyntaxException e) {
+      neo4jAL.logError("Failed to combine the framework regexes, they will be matched one by one.", e);
+      standalonePatterns.addAll(chunk);
+    }
+  }
+
+  /**
+   * Find the framework with the longest pattern matching the name
+   *
+   * @param name Name of the object
+   * @return The id of the framework node, or null if no pattern matches
+   */
+  public Long findLongestMatch(String name) {
+    Entry best = null;
+
+    // ".*" doesn't match line terminators
+    boolean multiline = name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0;
+
+    TrieNode current = root;
+    for (int i = 0; current != null; i++) {
+      if (current.prefixEntry != null && !multiline) {
+        best = Entry.longest(best, current.prefixEntry);
+      }
+      if (i == name.length()) {
+        best = Entry.longest(best, current.exactEntry);
+        break;
+      }
+      current = current.children.get(name.charAt(i));
+    }
+
+    for (CombinedPattern cp : combinedPatterns) {
+      // Patterns are sorted, nothing longer can be found in this chunk and the next ones
+      if (best != null && best.pattern.length() >= cp.maxLength) break;
+      Entry match = cp.match(name);
+      if (match != null) {
+        best = Entry.longest(best, match);
+        break;
+      }
+    }
+
+    for (Entry entry : standalonePatterns) {
+      if (best != null && best.pattern.length() >= entry.pattern.length()) continue;
+      if (entry.compiled.matcher(name).matches()) best = entry;
+    }
+
+    return best == null ? null : best.nodeId;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /** Framework indexed */
+  private static class Entry {
+    private final Long nodeId;
+    private final String pattern;
+    private final boolean isRegex;
+    private Pattern compiled;
+
+    private Entry(Long nodeId, String pattern, boolean isRegex) {
+      this.nodeId = nodeId;
+      this.pattern = pattern;
+      this.isRegex = isRegex;
+    }
+
+    private static Entry longest(Entry a, Entry b) {
+      if (a == null) return b;
+      if (b == null) return a;
+      return b.pattern.length() > a.pattern.length() ? b : a;
+    }
+  }
+
+  /** Node of the literal trie */
+  private static class TrieNode {
+    private final Map<Character, TrieNode> children = new HashMap<>();
+    private Entry exactEntry;
+    private Entry prefixEntry;
+  }
+
+  /** Alternation of several regexes, each one wrapped in a capturing group */
+  private static class CombinedPattern {
+    private final Pattern pattern;
+    private final Entry[] entries;
+    private final int[] groups; // Index of the group wrapping each entry
+    private final int maxLength;
+
+    private CombinedPattern(List<Entry> chunk) {
+      this.entries = chunk.toArray(new Entry[0]);
+      this.groups = new int[entries.length];
+      this.maxLength = entries[0].pattern.length();
+
+      StringBuilder sb = new StringBuilder();
+      int group = 1;
+      for (int i = 0; i < entries.length; i++) {
+        if (i > 0) sb.append('|');
+        sb.append('(').append(entries[i].pattern).append(')');
+        groups[i] = group;
+        group += 1 + entries[i].compiled.matcher("").groupCount();
+      }
+      this.pattern = Pattern.compile(sb.toString());
+    }
+
+    private Entry match(String name) {
+      Matcher m = pattern.matcher(name);
+      if (!m.matches()) return null;
+      for (int i = 0; i < entries.length; i++) {
+        if (m.start(groups[i]) != -1) return entries[i];
+      }
+      return null;
+    }
+  }
+}
@@ -13,15 +13,20 @@ package com.castsoftware.artemis.detector.plainAnalyzers;
 
 import com.castsoftware.artemis.config.Configuration;
 import com.castsoftware.artemis.config.detection.DetectionParameters;
-import com.castsoftware.artemis.config.detection.LanguageConfiguration;
 import com.castsoftware.artemis.config.detection.LanguageProp;
 import com.castsoftware.artemis.controllers.ApplicationController;
+import com.castsoftware.artemis.datasets.CheckpointNode;
+import com.castsoftware.artemis.datasets.FingerprintNode;
 import com.castsoftware.artemis.datasets.FrameworkNode;
 import com.castsoftware.artemis.datasets.FrameworkType;
+import com.castsoftware.artemis.detector.session.DetectionSession;
+import com.castsoftware.artemis.detector.session.DetectionSessionRegistry;
 import com.castsoftware.artemis.detector.utils.DetectionCategory;
+import com.castsoftware.artemis.detector.utils.trees.ALeaf;
 import com.castsoftware.artemis.detector.utils.trees.ATree;
 import com.castsoftware.artemis.detector.utils.DetectorNodesUtil;
 import com.castsoftware.artemis.detector.utils.DetectorPropertyUtil;
+import com.castsoftware.artemis.detector.utils.TagWriter;
 import com.castsoftware.artemis.exceptions.dataset.InvalidDatasetException;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadRequestException;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
@@ -31,21 +36,26 @@ import com.castsoftware.artemis.modules.nlp.model.NLPConfidence;
 import com.castsoftware.artemis.modules.nlp.model.NLPEngine;
 import com.castsoftware.artemis.modules.nlp.model.NLPResults;
 import com.castsoftware.artemis.modules.nlp.parser.GoogleParser;
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResult;
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResultCache;
 import com.castsoftware.artemis.modules.nlp.saver.NLPSaver;
 import com.castsoftware.artemis.modules.pythia.Pythia;
 import com.castsoftware.artemis.modules.pythia.exceptions.PythiaException;
 import com.castsoftware.artemis.modules.pythia.exceptions.PythiaResponse;
+import com.castsoftware.artemis.modules.pythia.mirror.PythiaMirror;
 import com.castsoftware.artemis.modules.pythia.models.api.*;
+import com.castsoftware.artemis.modules.pythia.upload.PythiaUploadQueue;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
 import com.castsoftware.artemis.reports.ReportGenerator;
 import org.neo4j.graphdb.Node;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class ADetector {
   // Imaging Properties
@@ -67,10 +77,26 @@ public abstract class ADetector {
   protected DetectionParameters detectionParameters;
 
   //
-  protected List<Node> toInvestigateNodes;
+  protected long numCandidates = 0L;
+  protected TagWriter tagWriter;
   protected ReportGenerator reportGenerator;
   private List<FrameworkNode> frameworkNodeList = new ArrayList<>();;
 
+  // Chunked detection
+  protected CheckpointNode checkpoint = null;
+  protected boolean interrupted = false;
+  private int checkpointedResults = 0;
+
+  // Incremental detection, the branches are identified by the hash of their name
+  private Map<Long, Long> previousFingerprints = new HashMap<>();
+  private final Map<Long, Long> currentFingerprints = new HashMap<>(); // Branches completed by this run
+  private final Map<Long, Long> unsavedFingerprints = new HashMap<>();
+  private final Set<Long> unchangedBranches = new HashSet<>();
+  private boolean resumed = false;
+
+  // Remote lookups which couldn't be completed, the branches concerned are not fingerprinted
+  protected final AtomicLong remoteFailures = new AtomicLong(0L);
+
   // NLP
   protected NLPEngine nlpEngine;
   protected NLPSaver nlpSaver;
@@ -80,10 +106,16 @@ public abstract class ADetector {
 
   protected Pythia pythiaController;
   protected PythiaLanguage pythiaLanguage;
+  protected PythiaUploadQueue pythiaUploadQueue; // Null if the Pythia mode is off
+  protected PythiaMirror pythiaMirror; // Offline catalog, null if none was exported
 
-  protected GoogleParser googleParser;
+  protected volatile GoogleParser googleParser;
+  protected GoogleResultCache googleResultCache; // Null if the online results are not cached
   protected LanguageProp languageProperties;
 
+  // Shared components of the detection
+  protected DetectionSession session;
+
   /**
    * Detector constructor
    *
@@ -105,136 +137,101 @@ public abstract class ADetector {
     this.neo4jAL = neo4jAL;
     this.application = application;
     this.detectionParameters = parameters;
-    this.pythiaController = new Pythia(parameters.getPythiaURL(), parameters.getPythiaToken());
+    this.tagWriter = new TagWriter(neo4jAL);
+    this.frameworkNodeList = new ArrayList<>();
 
+    // The heavy components are shared by the detectors through the session
     neo4jAL.logInfo(
-        String.format(
-            "[1/9] The instantiation of %s detector started.\nThis operation can take up to one minute.",
-            language.toString()));
-
-    neo4jAL.logInfo("[2/9] Retrieving the list of candidates nodes...");
-    // To investigate nodes
-    this.toInvestigateNodes = new ArrayList<>();
+        String.format("[1/4] Opening the detection session for %s...", language.toString()));
+    this.session = DetectionSessionRegistry.getSession(language, parameters);
 
+    // Configuration
+    neo4jAL.logInfo("[2/4] Retrieve information relative to the language...");
+    this.languageProperties = session.getLanguageProperties();
 
-    // Check pythia
-    neo4jAL.logInfo("[3/9] Check pythia...");
+    // Check pythia, once per session
+    neo4jAL.logInfo("[3/4] Check pythia...");
     this.initPythia();
 
-    // NLP : Make sure the nlp is trained, train it otherwise
-    neo4jAL.logInfo(String.format("[5/9] Starting the NLP¨Engine for %s...", language.toString()));
-    this.initNLP();
-
-    // Initiate the Report generator
-    neo4jAL.logInfo("[6/9] Starting the report generator...");
-    this.reportGenerator = new ReportGenerator(application);
-
-    neo4jAL.logInfo("[7/9] Starting the Google crawler...");
-    this.googleParser = new GoogleParser(neo4jAL);
-    this.frameworkNodeList = new ArrayList<>();
-
-    // Configuration
-    neo4jAL.logInfo("[8/9] Retrieve information relative to the language...");
-    LanguageConfiguration lc = LanguageConfiguration.getInstance();
-    this.languageProperties = lc.getLanguageProperties(language.toString());
+    // Google parser, only if the online mode is activated
+    neo4jAL.logInfo("[4/4] Starting the Google crawler if needed...");
+    this.googleParser = session.getGoogleParser(neo4jAL).orElse(null);
+    this.googleResultCache = session.getGoogleResultCache(neo4jAL).orElse(null);
 
-    getNodes();
-    neo4jAL.logInfo("[9/9] The instantiation is successful !");
+    // The NLP engine, the report and the NLP saver are created on first use
+    neo4jAL.logInfo("The instantiation is successful !");
   }
 
-  /** Initialize the Pythia connection */
+  /** Initialize the Pythia connection, using the status checked by the session */
   public void initPythia() {
-    try {
-      // If Pythia is not activated, log and return
-      if (!this.detectionParameters.getPythiaMode()) {
-        neo4jAL.logInfo("Pythia is deactivated. Skipping.");
-        return;
-      }
-
-      // Test Pythia communication
-      try {
-        neo4jAL.logInfo("Pythia :: Pythia is activated. Initializing.");
-        String status = this.pythiaController.getStatus();
-        neo4jAL.logInfo(String.format("Successful communication with Pythia. Status : %s", status));
-      } catch (PythiaException | PythiaResponse e) {
-        neo4jAL.logError("Pythia :: Failed to reach Pythia. Turning off Pythia mode.", e);
-        this.activatedPythia = false;
-        return;
-      }
-
-      // Get Pythia Language
-      String language = this.language.toString();
-
-      // Get the for the detection language if activated
-      try {
-        neo4jAL.logInfo("Pythia :: Looking for a language.");
-
-        // Find the language
-        pythiaLanguage = pythiaController.findLanguage(language);
-
-        // Make sure the result is not empty
-        if (pythiaLanguage == null) {
-          throw new Exception("Pythia language is null");
-        }
-
-        // Notify in the report
-        neo4jAL.logInfo(
-            String.format(
-                "Pythia :: Pythia found a corresponding language for the detector. Language : %s",
-                pythiaLanguage.toJson().toString()));
-      } catch (Exception | PythiaResponse | PythiaException pythiaResponse) {
-        neo4jAL.logError(
-            String.format("Pythia :: Failed to find '%s' language on pythia .", language),
-            pythiaResponse);
-        this.activatedPythia = false;
-        return;
-      }
-
-      // If everything is a success return true
-      this.activatedPythia = true;
-    } catch (Exception e) {
-      this.neo4jAL.logError("Pythia :: An error occurred during the initialisation of pythia.", e);
-      this.activatedPythia = false;
+    this.activatedPythia = session.isPythiaActivated(neo4jAL);
+    this.pythiaController = session.getPythia(neo4jAL);
+    this.pythiaLanguage = session.getPythiaLanguage();
+    this.pythiaUploadQueue = session.getUploadQueue(neo4jAL).orElse(null);
+    this.pythiaMirror = session.getPythiaMirror(neo4jAL).orElse(null);
+    if (pythiaMirror != null) {
+      neo4jAL.logInfo(
+          String.format(
+              "Pythia :: Offline mirror of %d frameworks found, synchronized on %s.",
+              pythiaMirror.getSize(), new Date(pythiaMirror.getSyncTimestamp())));
     }
   }
 
+  /**
+   * Check if the frameworks can be searched on Pythia, on the live service or on its offline mirror
+   *
+   * @return True if a lookup can succeed
+   */
+  public boolean isPythiaLookupAvailable() {
+    return this.activatedPythia || this.pythiaMirror != null;
+  }
+
   /**
    * Initialize the NLP Engine
    *
    * @throws IOException
    */
   public void initNLP() throws IOException {
-    this.nlpSaver = new NLPSaver(neo4jAL, application, language.toString());
-    this.nlpEngine = new NLPEngine(neo4jAL, language);
+    getNlpEngine();
+  }
 
-    Path modelFile = this.nlpEngine.checkIfModelExists();
-    if (!Files.exists(modelFile)) {
-      neo4jAL.logInfo(
-          String.format("[5-2/9] Training the NLP¨Engine for %s...", language.toString()));
-      this.nlpEngine.train();
-    } else {
-      neo4jAL.logInfo(
-          String.format("[5-2/9] NLP¨Engine already trained for %s...", language.toString()));
+  /**
+   * Get the NLP Engine of the session, loaded on first use
+   *
+   * @return The NLP Engine
+   * @throws IOException If the model failed to load or to train
+   */
+  protected NLPEngine getNlpEngine() throws IOException {
+    if (nlpEngine == null) {
+      neo4jAL.logInfo(String.format("Starting the NLP Engine for %s...", language.toString()));
+      this.nlpEngine = session.getNlpEngine(neo4jAL);
     }
+    return nlpEngine;
   }
 
   /**
-   * Get candidates nodes for the detection
+   * Get the NLP saver of the application, created on first use
    *
-   * @throws Neo4jQueryException
+   * @return The NLP saver
+   * @throws IOException If the enrichment file cannot be opened
    */
-  public void getNodes() throws Neo4jQueryException {
-    toInvestigateNodes = DetectorNodesUtil.getExternalObjects(neo4jAL, languageProperties, application);
+  protected NLPSaver getNlpSaver() throws IOException {
+    if (nlpSaver == null) {
+      this.nlpSaver = new NLPSaver(neo4jAL, application, language.toString());
+    }
+    return nlpSaver;
   }
 
   /**
-   * Get full list of internal candidates
+   * Get the report generator of the detection, created on first use
    *
-   * @return List of internal candidate
-   * @throws Neo4jQueryException
+   * @return The report generator
    */
-  public List<Node> getInternalNodes() throws Neo4jQueryException {
-    return DetectorNodesUtil.getInternalObjects(neo4jAL, languageProperties, application);
+  protected ReportGenerator getReportGenerator() {
+    if (reportGenerator == null) {
+      this.reportGenerator = new ReportGenerator(application);
+    }
+    return reportGenerator;
   }
 
   public abstract ATree getExternalBreakdown() throws Neo4jQueryException;
@@ -263,10 +260,12 @@ public abstract class ADetector {
   public void tagNodeWithFramework(Node n, FrameworkNode frameworkNode) throws Neo4jQueryException {
     String category = IMAGING_DEFAULT_FRAMEWORK_CAT;
 
-    DetectorPropertyUtil.applyDetectionProperty(n, frameworkNode.getFrameworkType().toDetectionCategory());
-    DetectorPropertyUtil.applyCategory(n, category);
-    DetectorPropertyUtil.applyFrameworkName(neo4jAL, n, frameworkNode.getName());
-    DetectorPropertyUtil.applyDescriptionProperty(neo4jAL, n, frameworkNode.getDescription());
+    tagWriter.applyCategoryProperties(
+        n,
+        frameworkNode.getFrameworkType().toDetectionCategory(),
+        category,
+        frameworkNode.getName(),
+        frameworkNode.getDescription());
   }
 
   /**
@@ -283,10 +282,12 @@ public abstract class ADetector {
     String taxonomy = String.format("%1$s##%2$s##%2$s", defaultTaxonomy, frameworkNode.getLevel5());
 
     // Apply properties
-    DetectorPropertyUtil.applyDetectionProperty(n, DetectionCategory.KNOWN_UTILITY);
-    DetectorPropertyUtil.applyTaxonomyProperty(n, taxonomy);
-    DetectorPropertyUtil.applyFrameworkName(neo4jAL, n, frameworkNode.getName());
-    DetectorPropertyUtil.applyDescriptionProperty(neo4jAL, n, frameworkNode.getDescription());
+    tagWriter.applyArtemisProperties(
+        n,
+        DetectionCategory.KNOWN_UTILITY,
+        taxonomy,
+        frameworkNode.getName(),
+        frameworkNode.getDescription());
   }
 
 
@@ -318,6 +319,88 @@ public abstract class ADetector {
     return false;
   }
 
+  /**
+   * Check if a branch is unchanged since the previous run. Always false if the detection is not
+   * incremental.
+   *
+   * @param branch Name of the branch
+   * @param fingerprint Fingerprint of the branch
+   * @return True if the branch can be skipped
+   */
+  protected boolean isUnchanged(String branch, long fingerprint) {
+    if (branch == null) return false;
+    long key = FingerprintNode.hashBranch(branch);
+
+    Long previous = previousFingerprints.get(key);
+    if (previous == null || previous != fingerprint) return false;
+    unchangedBranches.add(key);
+    return true;
+  }
+
+  /**
+   * Check if the branch of a tree is unchanged since the previous run
+   *
+   * @param leaf Leaf at the top of the branch
+   * @return True if the branch can be skipped
+   */
+  protected boolean isUnchanged(ALeaf leaf) {
+    return isUnchanged(leaf.getFullName(), leaf.getFingerprint());
+  }
+
+  /**
+   * Record the fingerprint of a branch whose resolution completed. A branch with a failed lookup
+   * must not be recorded, so the next run resolves it again.
+   *
+   * @param branch Name of the branch
+   * @param fingerprint Fingerprint of the branch after its resolution
+   */
+  protected void recordFingerprint(String branch, long fingerprint) {
+    if (branch == null) return;
+    long key = FingerprintNode.hashBranch(branch);
+    currentFingerprints.put(key, fingerprint);
+    unsavedFingerprints.put(key, fingerprint);
+  }
+
+  /**
+   * Record the fingerprint of the branch of a tree whose resolution completed
+   *
+   * @param leaf Leaf at the top of the branch
+   */
+  protected void recordFingerprint(ALeaf leaf) {
+    recordFingerprint(leaf.getFullName(), leaf.getFingerprint());
+  }
+
+  /**
+   * Save the fingerprints recorded since the last save, in the current transaction. They are added
+   * to the fingerprints already stored, so the branches of an interrupted run are kept.
+   *
+   * @throws Neo4jQueryException
+   */
+  private void saveFingerprints() throws Neo4jQueryException {
+    FingerprintNode.merge(neo4jAL, application, language.toString(), unsavedFingerprints);
+    unsavedFingerprints.clear();
+  }
+
+  /**
+   * Save the fingerprints of a completed run. A run started from scratch replaces the stored
+   * fingerprints, so the branches removed from the application are forgotten. A resumed run only
+   * adds its own.
+   *
+   * @throws Neo4jQueryException
+   */
+  private void saveCompletedFingerprints() throws Neo4jQueryException {
+    if (resumed) {
+      saveFingerprints();
+      return;
+    }
+
+    Map<Long, Long> kept = new HashMap<>();
+    for (Long key : unchangedBranches) kept.put(key, previousFingerprints.get(key));
+    kept.putAll(currentFingerprints);
+    FingerprintNode.replace(neo4jAL, application, language.toString(), kept);
+    unsavedFingerprints.clear();
+  }
+
   /***
    * Add a Framework to result list
    * @param fn Framework to add
@@ -349,12 +432,43 @@ public abstract class ADetector {
     // Launch before
     preLaunch();
 
+    // Only count the candidates, they are streamed by the detectors during the extraction
+    this.numCandidates =
+        DetectorNodesUtil.countExternalObjects(neo4jAL, languageProperties, application, "");
+
     // Print the configuration of the analysis
     printConfig();
 
-    // Detection flow
-    extractFrameworks();
+    // Fingerprints of the previous runs, for an incremental detection
+    if (detectionParameters.getIncremental()) {
+      this.previousFingerprints =
+          FingerprintNode.load(neo4jAL, application, language.toString());
+      neo4jAL.logInfo(
+          String.format(
+              "Incremental detection. %d branches recorded by the previous run.",
+              previousFingerprints.size()));
+    }
 
+    // Detection flow, committed in chunks if requested
+    if (detectionParameters.isChunked()) openCheckpoint();
+    boolean completed = false;
+    try {
+      extractFrameworks();
+      completed = !interrupted;
+    } finally {
+      closeCheckpoint(completed);
+    }
+    if (interrupted) neo4jAL.checkTermination(); // Nothing more can be written by a killed procedure
+    tagWriter.flush(); // Write the remaining tags before the post analysis
+
+    // Record the fingerprints of this run. The chunks already saved their own
+    if (completed) {
+      saveCompletedFingerprints();
+      neo4jAL.logInfo(
+          String.format(
+              "%d branches fingerprinted, %d unchanged since the previous run were skipped, %d remote lookups failed.",
+              currentFingerprints.size(), unchangedBranches.size(), remoteFailures.get()));
+    }
 
     // Add the language detected to the application
     neo4jAL.logInfo("Add the language to the Application controller.");
@@ -371,11 +485,113 @@ public abstract class ADetector {
     } catch (Exception e) {
       neo4jAL.logError("Failed to launched the post analysis operations.");
       neo4jAL.logError("Post launch methods failed and threw an exception.", e);
+    } finally {
+      tagWriter.close();
     }
 
+    // The uploads continue in the background
+    if (pythiaUploadQueue != null) neo4jAL.logInfo(pythiaUploadQueue.getStatistics());
+    if (googleResultCache != null) neo4jAL.logInfo(googleResultCache.getStatistics());
+
     return this.frameworkNodeList;
   }
 
+  /**
+   * Route the detection to chunk transactions and load the checkpoint of the previous run. If the
+   * previous run was interrupted, its partial results are restored.
+   *
+   * @throws Neo4jQueryException
+   */
+  private void openCheckpoint() throws Neo4jQueryException {
+    neo4jAL.beginChunk();
+
+    Optional<CheckpointNode> previous =
+        CheckpointNode.find(neo4jAL, application, language.toString());
+    if (previous.isPresent() && detectionParameters.getResume()) {
+      this.checkpoint = previous.get();
+      this.resumed = true;
+      for (FrameworkNode fn : checkpoint.getResults(neo4jAL)) {
+        this.addFrameworkToResults(fn);
+        this.getReportGenerator().addFrameworkBean(fn);
+      }
+      neo4jAL.logInfo(
+          String.format(
+              "Resuming the detection from its checkpoint. %d units already processed, %d frameworks restored.",
+              checkpoint.getProcessed(), checkpoint.getNumResults()));
+    } else {
+      this.checkpoint = CheckpointNode.start(neo4jAL, application, language.toString());
+    }
+
+    this.checkpointedResults = frameworkNodeList.size();
+    neo4jAL.commitChunk();
+  }
+
+  /**
+   * Commit the current chunk of the detection with its checkpoint. Does nothing if the detection
+   * is not chunked.
+   *
+   * @param lastObjectId Id of the last object processed, null if not relevant
+   * @param lastLeaf Full name of the last leaf processed, null if not relevant
+   * @param processed Number of units processed since the start of the run
+   * @throws Neo4jQueryException
+   */
+  protected void commitCheckpoint(Long lastObjectId, String lastLeaf, long processed)
+      throws Neo4jQueryException {
+    if (checkpoint == null) return;
+
+    tagWriter.flush(); // The tags of the chunk must be part of the commit
+    List<FrameworkNode> newResults =
+        frameworkNodeList.subList(checkpointedResults, frameworkNodeList.size());
+    checkpoint.save(lastObjectId, lastLeaf, processed, newResults);
+    checkpointedResults = frameworkNodeList.size();
+    saveFingerprints(); // The branches of the chunk are kept if the run is interrupted
+
+    neo4jAL.commitChunk();
+  }
+
+  /**
+   * Close the chunked detection. A completed detection deletes its checkpoint, otherwise the work
+   * done since the last checkpoint is rolled back and will be replayed by the next run.
+   *
+   * @param completed True if the extraction completed
+   * @throws Neo4jQueryException
+   */
+  private void closeCheckpoint(boolean completed) throws Neo4jQueryException {
+    if (checkpoint == null) return;
+
+    try {
+      if (completed) {
+        tagWriter.flush();
+        checkpoint.delete();
+      } else {
+        tagWriter.discard();
+        neo4jAL.logInfo(
+            String.format(
+                "Detection interrupted. The next run will resume after %d processed units.",
+                checkpoint.getProcessed()));
+      }
+      neo4jAL.endChunk(completed);
+    } finally {
+      this.checkpoint = null;
+      reattachResults();
+    }
+  }
+
+  /**
+   * Attach the frameworks found during a chunked detection to the transaction of the procedure
+   */
+  private void reattachResults() {
+    for (FrameworkNode fn : frameworkNodeList) {
+      if (fn.getNode() == null) continue;
+      try {
+        fn.setNode(neo4jAL.getNodeById(fn.getNode().getId()));
+      } catch (Neo4jQueryException e) {
+        neo4jAL.logError(String.format("Failed to re-attach the framework '%s'.", fn.getName()), e);
+        fn.setNode(null);
+      }
+    }
+  }
+
   /** Print the configuration of the current detection */
   public void printConfig() {
     neo4jAL.logInfo(
@@ -390,6 +606,8 @@ public abstract class ADetector {
             languageProperties.getName()));
     neo4jAL.logInfo(
         String.format("| Pythia Mode (Search on Pythia etc..) set on  : %s ", getPythiaMode()));
+    neo4jAL.logInfo(
+        String.format("| Pythia offline mirror available  : %s ", pythiaMirror != null));
     neo4jAL.logInfo(
         String.format(
             "| Online Mode (Google search, Duckduck go etc..) set on  : %s ", getOnlineMode()));
@@ -404,7 +622,11 @@ public abstract class ADetector {
     neo4jAL.logInfo(
         String.format(
             "| Candidates for the detection (before filtering)        : %s ",
-            toInvestigateNodes.size()));
+            numCandidates));
+    neo4jAL.logInfo(
+        String.format(
+            "| Chunk size (0 for a single transaction)                : %s ",
+            detectionParameters.getChunkSize()));
     neo4jAL.logInfo("| ----------------  Detection parameters  ---------------------- ");
     neo4jAL.logInfo(
         String.format(
@@ -516,21 +738,28 @@ public abstract class ADetector {
 
   // Pythia function
   /**
-   * Save a Framework on Pythia
+   * Save a Framework on Pythia. The framework is queued and uploaded in the background, or spooled
+   * in the workspace until Pythia can be reached.
    *
    * @param pf Framework to save
    */
   protected void saveFrameworkOnPythia(PythiaFramework pf, List<PythiaPattern> patterns) {
-    neo4jAL.logInfo(String.format("Sending Framework '%s' to Pythia.", pf.name));
+    if (pythiaUploadQueue == null) return; // Pythia mode off
 
-    // If Pythia activated
-    if (activatedPythia) {
-      try {
-        this.pythiaController.createFramework(pf, patterns);
-      } catch (PythiaException | PythiaResponse e) {
-        neo4jAL.logError(String.format("Failed to upload framework %s to pythia.", pf.name));
-      }
-    }
+    neo4jAL.logInfo(String.format("Queuing Framework '%s' for Pythia.", pf.name));
+    pythiaUploadQueue.submit(pf, patterns);
+  }
+
+  /**
+   * Find the result of a previous online search. The cache is used even if the search engine
+   * refused the connection during this run.
+   *
+   * @param query Query searched
+   * @return The cached result, or an empty optional
+   */
+  protected final Optional<GoogleResult> findCachedOnlineResult(String query) {
+    if (googleResultCache == null) return Optional.empty();
+    return googleResultCache.get(query);
   }
 
   /**
@@ -540,6 +769,12 @@ public abstract class ADetector {
    * @return Optional returning the pattern
    */
   protected final Optional<PythiaImagingFramework> findFrameworkOnPythia(String pattern) {
+    // Answer from the offline mirror first, the live service only completes it
+    if (pythiaMirror != null) {
+      Optional<PythiaImagingFramework> local = pythiaMirror.find(pattern);
+      if (local.isPresent() || (!activatedPythia && !isPythiaUnreachable())) return local;
+    }
+
     // If Pythia activated
     if (activatedPythia) {
       try {
@@ -549,18 +784,110 @@ public abstract class ADetector {
         if (pf == null) return Optional.empty();
         return Optional.of(pf); // Return the framework
       } catch (PythiaException | PythiaResponse e) {
+        remoteFailures.incrementAndGet();
         neo4jAL.logError(
             String.format("Failed to find a framework using pattern '%s' on pythia. Error: %s", pattern, e));
         return Optional.empty();
       }
     } else {
       // Not activated or error
+      if (isPythiaUnreachable()) remoteFailures.incrementAndGet();
       neo4jAL.logError("Failed to find a framework pythia communication is not active.");
     }
 
     return Optional.empty();
   }
 
+  /**
+   * Check if the Pythia mode was requested, but Pythia could not be reached. The lookups are then
+   * incomplete, the objects must be resolved again by the next run.
+   *
+   * @return True if Pythia is requested and unreachable
+   */
+  protected boolean isPythiaUnreachable() {
+    return Boolean.TRUE.equals(detectionParameters.getPythiaMode()) && !this.activatedPythia;
+  }
+
+  /**
+   * Find a Framework on pythia with a similar pattern, without blocking the caller. The lookups of
+   * several patterns can be kept in flight at the same time.
+   *
+   * @param pattern Pattern to search
+   * @return The future framework, empty if nothing was found. Completed exceptionally if the lookup
+   *     could not be completed
+   */
+  protected final CompletableFuture<Optional<PythiaImagingFramework>> findFrameworkOnPythiaAsync(
+      String pattern) {
+    if (pythiaMirror != null) {
+      Optional<PythiaImagingFramework> local = pythiaMirror.find(pattern);
+      if (local.isPresent() || (!activatedPythia && !isPythiaUnreachable())) {
+        return CompletableFuture.completedFuture(local);
+      }
+    }
+
+    if (!activatedPythia) {
+      if (isPythiaUnreachable()) {
+        remoteFailures.incrementAndGet();
+        return CompletableFuture.failedFuture(
+            new CompletionException(
+                new PythiaException("Pythia can't be reached.", "Pythia communication is not active")));
+      }
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+
+    return this.pythiaController
+        .findFrameworkByPatternAsync(pattern, this.pythiaLanguage.name)
+        .handle(
+            (pf, e) -> {
+              if (e != null) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                remoteFailures.incrementAndGet();
+                neo4jAL.logError(
+                    String.format(
+                        "Failed to find a framework using pattern '%s' on pythia. Error: %s",
+                        pattern, cause));
+                throw new CompletionException(cause);
+              }
+              return Optional.ofNullable(pf);
+            });
+  }
+
+  /**
+   * Find the Frameworks of several patterns on pythia, in as few requests as possible
+   *
+   * @param patterns Patterns to search
+   * @return The frameworks found, by pattern
+   */
+  protected final Map<String, PythiaImagingFramework> findFrameworksOnPythia(
+      Collection<String> patterns) {
+    Map<String, PythiaImagingFramework> results = new HashMap<>();
+    Collection<String> remaining = patterns;
+    if (pythiaMirror != null) {
+      results.putAll(pythiaMirror.findAll(patterns));
+      if (!activatedPythia && !isPythiaUnreachable()) return results;
+
+      remaining = new ArrayList<>();
+      for (String pattern : patterns) if (!results.containsKey(pattern)) remaining.add(pattern);
+      if (remaining.isEmpty()) return results;
+    }
+
+    if (!activatedPythia) {
+      if (isPythiaUnreachable()) remoteFailures.incrementAndGet();
+      neo4jAL.logError("Failed to find a framework pythia communication is not active.");
+      return results;
+    }
+
+    try {
+      results.putAll(this.pythiaController.findFrameworksByPatterns(remaining, this.pythiaLanguage.name));
+    } catch (PythiaResponse | RuntimeException e) {
+      remoteFailures.incrementAndGet();
+      neo4jAL.logError(
+          String.format("Failed to find the frameworks of %d patterns on pythia.", remaining.size()),
+          e);
+    }
+    return results;
+  }
+
   /**
    * Save a framework to the database and Pythia if activated
    *
@@ -16,8 +16,10 @@ import com.castsoftware.artemis.datasets.FrameworkNode;
 import com.castsoftware.artemis.datasets.FrameworkType;
 import com.castsoftware.artemis.detector.plainAnalyzers.ADetector;
 import com.castsoftware.artemis.detector.statisticalAnalyzers.cobol.CobolStatisticalAnalyzer;
+import com.castsoftware.artemis.detector.utils.DetectionCandidate;
 import com.castsoftware.artemis.detector.utils.DetectionCategory;
 import com.castsoftware.artemis.detector.utils.DetectorNodesUtil;
+import com.castsoftware.artemis.detector.utils.pipeline.ResolutionPipeline;
 import com.castsoftware.artemis.detector.utils.trees.ALeaf;
 import com.castsoftware.artemis.detector.utils.trees.TreeFactory;
 import com.castsoftware.artemis.detector.utils.trees.cobol.CobolFrameworkTree;
@@ -30,6 +32,7 @@ import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadNodeFormatException;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.artemis.exceptions.nlp.NLPBlankInputException;
 import com.castsoftware.artemis.global.SupportedLanguage;
+import com.castsoftware.artemis.modules.nlp.model.NLPEngine;
 import com.castsoftware.artemis.modules.nlp.model.NLPResults;
 import com.castsoftware.artemis.modules.nlp.parser.GoogleParser;
 import com.castsoftware.artemis.modules.nlp.parser.GoogleResult;
@@ -39,17 +42,35 @@ import com.castsoftware.artemis.modules.pythia.models.api.PythiaPattern;
 import com.castsoftware.artemis.modules.sof.SystemOfFramework;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.TransactionTerminatedException;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Detector for COBOL Internal Detection : OK Find framework locally : OK Pythia : OK */
 public class CobolDetector extends ADetector {
 
   // Global parameters
-  private int savedOnPythia = 0;
+  private final AtomicInteger savedOnPythia = new AtomicInteger(0);
+
+  // Online searches waiting for their slot, cancelled at the end of the detection
+  private final Set<CompletableFuture<GoogleResult>> onlineSearches = ConcurrentHashMap.newKeySet();
+
+  // Bulk resolution
+  private static final int LOOKUP_BATCH_SIZE = 500; // Candidates resolved locally in one query
+  private static final int PIPELINE_MAX_IN_FLIGHT = 20; // Resolutions waiting to be written
+  // Remote resolutions not yet written, shared by the candidates with the same name
+  private final Map<String, CompletableFuture<CandidateResolution>> remoteResolutions = new HashMap<>();
+  private long numLocalHits = 0L;
+  private long numRemoteLookups = 0L;
 
   public CobolDetector(Neo4jAL neo4jAL, String application, DetectionParameters detectionParameters)
       throws IOException, Neo4jQueryException {
@@ -57,131 +78,363 @@ public class CobolDetector extends ADetector {
   }
 
   /**
-   * Get the list of external nodes in the Cobol application
-   * @return
-   * @throws Neo4jQueryException
+   * Get the filter applied on the external nodes of the Cobol application
+   * @return The additional filter
    */
-  private List<Node> getCobolExternalNodes() throws Neo4jQueryException {
+  private String getCobolExternalFilter() {
     String detectionProperty = DetectorPropertyUtil.getDetectionProperty();
-    String additionalFilter = String.format(" AND ( obj.FullName STARTS WITH '[Unknown\\\\' OR EXISTS(obj.%s)) ", detectionProperty);
-    return DetectorNodesUtil.getExternalObjects(neo4jAL, languageProperties, application, additionalFilter);
+    return String.format(" AND ( obj.FullName STARTS WITH '[Unknown\\\\' OR EXISTS(obj.%s)) ", detectionProperty);
   }
 
   @Override
   public ATree getExternalBreakdown() throws Neo4jQueryException {
-    // Get the list of object to treat
-    List<Node> nodeList = this.getCobolExternalNodes();
-    // Create a treeD
-    return TreeFactory.createCobolTree(languageProperties, nodeList);
+    // Stream the objects to treat in a tree, sorted since the shape of the tree depends on the order
+    CobolFrameworkTree tree = new CobolFrameworkTree(languageProperties);
+    DetectorNodesUtil.forEachExternalCandidate(
+        neo4jAL, languageProperties, application, getCobolExternalFilter(), true, tree::insertCandidate);
+    return tree;
   }
 
   @Override
   public ATree getInternalBreakdown() throws Neo4jQueryException {
-    // Get the list of object to treat
-    List<Node> nodeList = DetectorNodesUtil.getInternalObjects(neo4jAL, languageProperties, application);
-
-    // Create a treeD
-    return TreeFactory.createCobolTree(languageProperties, nodeList);
+    // Stream the objects to treat in a tree
+    CobolFrameworkTree tree = new CobolFrameworkTree(languageProperties);
+    DetectorNodesUtil.forEachInternalCandidate(
+        neo4jAL, languageProperties, application, true, tree::insertCandidate);
+    return tree;
   }
 
   /**
-   * Find a cobol utility on Pythia
+   * Find a cobol utility on Pythia. The lookup runs on the Pythia transport and doesn't hold a
+   * thread while waiting for the response.
    *
    * @param name Name of the utility to search
-   * @return The Framework node or null
+   * @return The future Framework node, empty if not found. Completed exceptionally if Pythia could
+   *     not answer
    */
-  private Optional<FrameworkNode> findUtilityOnPythia(String name) {
+  private CompletableFuture<Optional<FrameworkNode>> findUtilityOnPythia(String name) {
 
-    // If not activated, return not found
-    if (!activatedPythia) return Optional.empty();
-
-    Optional<PythiaImagingFramework> framework =
-            this.findFrameworkOnPythia(name); // Find the framework
-
-    if(framework.isEmpty()) return Optional.empty(); // Framework not found
+    // If not activated, return not found. A failure if the Pythia mode was requested
+    if (!isPythiaLookupAvailable() && !isPythiaUnreachable()) {
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
 
     // Framework found, return framework node
-    FrameworkNode fn = DetectorTypeMapper.imagingFrameworkToFrameworkNode(neo4jAL, framework.get(), false);
-    return Optional.of(fn);
+    return this.findFrameworkOnPythiaAsync(name)
+        .thenApply(
+            framework ->
+                framework.map(
+                    f -> DetectorTypeMapper.imagingFrameworkToFrameworkNode(neo4jAL, f, false)));
   }
 
   /**
-   * Process a Candidate node
-   * @param n Node to investigate
-   * @return The Type detected
+   * Resolution of a candidate computed by the pipeline. Either a known framework, the result of an
+   * online search with its classification by the NLP engine, or nothing. A resolution is incomplete
+   * if one of the remote lookups failed.
    */
-  private Optional<FrameworkType> processNode(Node n) {
+  private static class CandidateResolution {
+    private final DetectionCandidate candidate;
+    private final FrameworkNode framework;
+    private GoogleResult onlineResult;
+    private NLPResults nlpResult; // Null if the classification is left to the writer
+    private final CandidateResolution origin; // Resolution of another candidate with the same name
+    private boolean complete;
+    private FrameworkNode applied; // Framework applied by the writer
+
+    private CandidateResolution(
+        DetectionCandidate candidate,
+        FrameworkNode framework,
+        GoogleResult onlineResult,
+        NLPResults nlpResult,
+        CandidateResolution origin,
+        boolean complete) {
+      this.candidate = candidate;
+      this.framework = framework;
+      this.onlineResult = onlineResult;
+      this.nlpResult = nlpResult;
+      this.origin = origin;
+      this.complete = complete;
+    }
 
-    // Ignore object without a name property
-    if (!n.hasProperty(IMAGING_OBJECT_NAME)) return Optional.empty();
+    private static CandidateResolution known(DetectionCandidate candidate, FrameworkNode fn) {
+      return new CandidateResolution(candidate, fn, null, null, null, true);
+    }
 
-    // Get properties
-    String objectName = (String) n.getProperty(IMAGING_OBJECT_NAME);
-    String internalType = (String) n.getProperty(IMAGING_INTERNAL_TYPE);
+    private static CandidateResolution online(
+        DetectionCandidate candidate, GoogleResult gr, NLPResults nlpResult, boolean complete) {
+      return new CandidateResolution(candidate, null, gr, nlpResult, null, complete);
+    }
 
-    // Check if the framework is already known
-    Optional<FrameworkNode> fb = Optional.empty();
+    private static CandidateResolution notFound(DetectionCandidate candidate, boolean complete) {
+      return new CandidateResolution(candidate, null, null, null, null, complete);
+    }
 
-    // Find the Framework on the local Database
-    try {
-      fb = FrameworkNode.findFrameworkByName(neo4jAL, objectName);
-    } catch (Neo4jQueryException | Neo4jBadNodeFormatException e) {
-       neo4jAL.logError(String.format("Failed to find framework with name '%s'. Produced an exception.", objectName), e);
+    private static CandidateResolution sameAs(
+        DetectionCandidate candidate, CandidateResolution origin) {
+      return new CandidateResolution(candidate, null, null, null, origin, true);
+    }
+  }
+
+  /**
+   * Get the fingerprint of a Cobol candidate. Each candidate is a branch of the incremental
+   * detection.
+   *
+   * @param candidate Candidate
+   * @param detected True if the candidate is tagged
+   * @return The fingerprint
+   */
+  private static long getFingerprint(DetectionCandidate candidate, boolean detected) {
+    return candidate.getFingerprint() * 31 + (detected ? 1 : 0);
+  }
+
+  /**
+   * Check if a candidate must be resolved. Objects without a name are ignored, as well as the objects
+   * unchanged since the previous run of an incremental detection.
+   *
+   * @param candidate Candidate to check
+   * @return True if the candidate must be resolved
+   */
+  private boolean isToResolve(DetectionCandidate candidate) {
+    if (!candidate.hasName()) return false;
+    return !isUnchanged(candidate.getFullName(), getFingerprint(candidate, candidate.isDetected()));
+  }
+
+  /**
+   * Submit a batch of candidates to the pipeline. The names of the batch are first resolved against
+   * the local database in bulk, only the unknown names go to Pythia and to the online search.
+   *
+   * @param pipeline Resolution pipeline
+   * @param batch Candidates to resolve
+   */
+  private void submitBatch(
+      ResolutionPipeline<CandidateResolution> pipeline, List<DetectionCandidate> batch) {
+    List<DetectionCandidate> toResolve = new ArrayList<>(batch.size());
+    Set<String> names = new HashSet<>();
+    for (DetectionCandidate candidate : batch) {
+      if (!isToResolve(candidate)) continue;
+      toResolve.add(candidate);
+      if (!remoteResolutions.containsKey(candidate.getName())) names.add(candidate.getName());
     }
+    if (toResolve.isEmpty()) return;
 
-    if(fb.isEmpty()) {
-      // Check on Pythia
-      fb = this.findUtilityOnPythia(objectName);
+    // Find the Frameworks on the local Database
+    Map<String, FrameworkNode> known = Collections.emptyMap();
+    try {
+      known = FrameworkNode.findFrameworksByNames(neo4jAL, names);
+    } catch (Neo4jQueryException e) {
+      neo4jAL.logError(String.format("Failed to find the frameworks of %d candidates. Produced an exception.", names.size()), e);
     }
+    numLocalHits += known.size();
+
+    for (DetectionCandidate candidate : toResolve) {
+      FrameworkNode fn = known.get(candidate.getName());
+      if (fn != null) {
+        pipeline.submit(CompletableFuture.completedFuture(CandidateResolution.known(candidate, fn)));
+      } else {
+        pipeline.submit(this.resolveRemotely(candidate));
+      }
+    }
+  }
 
-    // If the Framework is not known and the connection to google still possible, query google
-    if (fb.isEmpty()) {
-      fb = this.googleSearch(objectName, internalType);
+  /**
+   * Start the resolution of a candidate unknown in the local database. Pythia is queried
+   * asynchronously, and the online search on its own pool. A name not yet written is not sent twice, the candidate reuses the
+   * resolution of the first one.
+   *
+   * @param candidate Candidate to investigate
+   * @return The future resolution
+   */
+  private CompletableFuture<CandidateResolution> resolveRemotely(DetectionCandidate candidate) {
+    String objectName = candidate.getName();
+
+    CompletableFuture<CandidateResolution> previous = remoteResolutions.get(objectName);
+    if (previous != null) {
+      return previous.thenApply(r -> CandidateResolution.sameAs(candidate, r));
     }
 
-    // Add the framework to the list of it was detected
-    if (fb.isEmpty()) return Optional.empty();
+    // Check on Pythia, then online if the framework is still unknown
+    CompletableFuture<CandidateResolution> resolution =
+        this.findUtilityOnPythia(objectName)
+            .handle(
+                (pythiaFramework, pythiaError) -> {
+                  if (pythiaError == null && pythiaFramework.isPresent()) {
+                    return CompletableFuture.completedFuture(
+                        CandidateResolution.known(candidate, pythiaFramework.get()));
+                  }
+                  boolean pythiaCompleted = pythiaError == null;
+                  return this.searchOnline(candidate, pythiaCompleted);
+                })
+            .thenCompose(r -> r);
+    remoteResolutions.put(objectName, resolution);
+    numRemoteLookups++;
+    return resolution;
+  }
 
-    // The node exists
-    FrameworkNode fn = fb.get();
+  /**
+   * Search a candidate online. The result is classified when it reaches the writer, see {@link
+   * #classifyOnlineResults(List)}.
+   *
+   * @param candidate Candidate searched
+   * @param complete False if a previous lookup of the candidate failed
+   * @return The future resolution
+   */
+  private CompletableFuture<CandidateResolution> searchOnline(
+      DetectionCandidate candidate, boolean complete) {
+    return this.googleSearch(candidate.getName())
+        .handle(
+            (gr, searchError) -> {
+              if (searchError != null) return CandidateResolution.notFound(candidate, false);
+              if (gr.isEmpty()) return CandidateResolution.notFound(candidate, complete);
+              return CandidateResolution.online(candidate, gr.get(), null, complete);
+            });
+  }
 
-    // If flag option is set, apply a demeter tag to the nodes considered as framework
-    if (fn.getFrameworkType() == FrameworkType.FRAMEWORK) {
-      try {
+  /**
+   * Classify the online results of a batch of resolutions, with a single batch call to the NLP
+   * engine. Only called by the pipeline, on the thread of the procedure, before the batch is written.
+   * The results left unclassified are classified one by one by the writer.
+   *
+   * @param run Resolutions about to be written
+   */
+  private void classifyOnlineResults(List<CandidateResolution> run) {
+    List<CandidateResolution> toClassify = new ArrayList<>();
+    List<String> texts = new ArrayList<>();
+    for (CandidateResolution resolution : run) {
+      if (resolution == null || resolution.onlineResult == null || resolution.nlpResult != null) continue;
+      toClassify.add(resolution);
+      texts.add(resolution.onlineResult.getContent());
+    }
+    if (toClassify.isEmpty()) return;
 
-        tagNodeWithFramework(n, fn);
-      } catch (Neo4jQueryException e) {
-        neo4jAL.logError(String.format("Failed to flag utility [%s] after the detection.", objectName), e);
+    List<NLPResults> results;
+    try {
+      results = getNlpEngine().getNLPResults(texts);
+    } catch (IOException e) {
+      neo4jAL.logError(String.format("Failed to classify a batch of %d online results.", texts.size()), e);
+      return;
+    }
+
+    for (int i = 0; i < toClassify.size(); i++) {
+      CandidateResolution resolution = toClassify.get(i);
+      if (results.get(i) == null) resolution.onlineResult = null; // Nothing to analyze
+      else resolution.nlpResult = results.get(i);
+    }
+  }
+
+  /**
+   * Apply the resolution of a candidate. Only called by the writer of the pipeline, on the thread of
+   * the procedure. The candidate is fingerprinted if its resolution completed.
+   *
+   * @param resolution Resolution to apply
+   */
+  private void applyResolution(CandidateResolution resolution) {
+    DetectionCandidate candidate = resolution.candidate;
+    String objectName = candidate.getName();
+
+    FrameworkNode fn = resolution.framework;
+    if (resolution.origin != null) {
+      // Same name as a candidate already applied
+      fn = resolution.origin.applied;
+      resolution.complete = resolution.origin.complete;
+    } else if (resolution.onlineResult != null) {
+      Optional<FrameworkNode> analyzed =
+          this.analyzeOnlineResult(
+              objectName, candidate.getInternalType(), resolution.onlineResult, resolution.nlpResult);
+      if (analyzed.isPresent()) fn = analyzed.get();
+      else resolution.complete = false;
+    }
+    resolution.applied = fn;
+
+    boolean tagged = false;
+    if (fn != null) {
+      // If flag option is set, apply a demeter tag to the nodes considered as framework
+      if (fn.getFrameworkType() == FrameworkType.FRAMEWORK) {
+        try {
+          Node n = neo4jAL.getNodeById(candidate.getId());
+          tagNodeWithFramework(n, fn);
+          tagged = true;
+        } catch (Neo4jQueryException e) {
+          resolution.complete = false;
+          neo4jAL.logError(String.format("Failed to flag utility [%s] after the detection.", objectName), e);
+        }
       }
+
+      // Increment the number of detection and add it to the result lists
+      this.addFrameworkToResults(fn);
+      this.getReportGenerator().addFrameworkBean(fn);
     }
 
-    // Increment the number of detection and add it to the result lists
-    this.addFrameworkToResults(fn);
-    this.reportGenerator.addFrameworkBean(fn);
-    return Optional.of(fn.getFrameworkType());
+    if (resolution.complete) {
+      recordFingerprint(candidate.getFullName(), getFingerprint(candidate, candidate.isDetected() || tagged));
+    }
+    // The name is no longer shared once written, the next candidates find it in the database
+    CompletableFuture<CandidateResolution> shared = remoteResolutions.get(objectName);
+    if (shared != null && shared.isDone()) remoteResolutions.remove(objectName);
   }
 
   /**
-   * Search for results on google
+   * Search for results on google. The request is scheduled at the rate allowed by the search
+   * engine, the caller doesn't wait for it.
    * @param objectName Name of the object
-   * @param internalType Type of the object
-   * @return Optional returning a framework node
+   * @return The future result of the search, empty if nothing was found or if the online search is
+   *     off. Completed exceptionally if the search could not be done
    */
-  private Optional<FrameworkNode> googleSearch(String objectName, String internalType) {
-    // Start the google Search
-    neo4jAL.logInfo(String.format("Requesting on google : %s", objectName));
-
+  private CompletableFuture<Optional<GoogleResult>> googleSearch(String objectName) {
     // Check the configuration
-    if(!getOnlineMode() || googleParser == null || !languageProperties.getOnlineSearch()) {
-      neo4jAL.logInfo("Requesting on google has been cancelled due to the configuration.");
-      return Optional.empty();
+    if(!getOnlineMode() || !languageProperties.getOnlineSearch()) return CompletableFuture.completedFuture(Optional.empty());
+
+    // Results of the previous searches first
+    Optional<GoogleResult> cached = this.findCachedOnlineResult(objectName);
+    if (cached.isPresent()) return CompletableFuture.completedFuture(cached);
+
+    GoogleParser parser = this.googleParser;
+    if (parser == null) {
+      // Disabled after a refusal of the providers
+      remoteFailures.incrementAndGet();
+      return CompletableFuture.failedFuture(
+          new IllegalStateException("The online search was disabled after a refusal of the providers."));
     }
 
+    // Start the google Search
+    neo4jAL.logInfo(String.format("Searching the providers for : %s", objectName));
+
     // Request on google
+    CompletableFuture<GoogleResult> search = parser.requestAsync(objectName);
+    onlineSearches.add(search);
+    return search.handle((gr, e) -> {
+      onlineSearches.remove(search);
+      if (e == null) return Optional.of(gr);
+
+      Throwable cause = e.getCause() == null ? e : e.getCause();
+      remoteFailures.incrementAndGet();
+      if (cause instanceof GoogleBadResponseCodeException && !parser.isAvailable()) {
+        // Fatal error, every provider refused the connection
+        this.googleParser = null;
+        neo4jAL.logError("Every search provider refused the connection. The online search is now disabled.", cause);
+      } else if (cause instanceof GoogleBadResponseCodeException) {
+        // The refusing provider is disabled by the parser, the others are still queried
+        neo4jAL.logError(String.format("A search provider refused to search '%s'.", objectName), cause);
+      } else if (!(cause instanceof CancellationException)) {
+        neo4jAL.logError(String.format("Failed to query Google with Object name '%s'.", objectName), cause);
+      }
+      throw new CompletionException(cause);
+    });
+  }
+
+  /**
+   * Analyze the result of an online search with the NLP engine and persist the framework
+   * @param objectName Name of the object
+   * @param internalType Type of the object
+   * @param gr Result of the search
+   * @param classification Classification computed by the pipeline, null to classify the result now
+   * @return Optional returning a framework node
+   */
+  private Optional<FrameworkNode> analyzeOnlineResult(
+      String objectName, String internalType, GoogleResult gr, NLPResults classification) {
     try {
-      GoogleResult gr = googleParser.request(objectName);
       String requestResult = gr.getContent();
-      NLPResults nlpResult = nlpEngine.getNLPResult(requestResult);
+      NLPResults nlpResult =
+          classification != null ? classification : getNlpEngine().getNLPResult(requestResult);
       neo4jAL.logInfo(
               String.format("Results for %s : %s.", objectName, nlpResult.toString()));
 
@@ -190,7 +443,7 @@ public class CobolDetector extends ADetector {
       fn.updateLocation(GoogleParser.getBestUrl(languageProperties, gr.getUrls()));
 
       if (getLearningMode()) {
-        nlpSaver.writeNLPResult(nlpResult.getCategory(), requestResult);
+        getNlpSaver().writeNLPResult(nlpResult.getCategory(), requestResult);
       }
 
       // Send the framework on Pythia if it's a Framework
@@ -201,36 +454,24 @@ public class CobolDetector extends ADetector {
 
       return Optional.of(fn);
     } catch (NLPBlankInputException | IOException | Neo4jQueryException  e) {
-      neo4jAL.logError(String.format("Failed to query Google with Object name '%s'.", objectName), e);
-      return Optional.empty();
-    } catch ( GoogleBadResponseCodeException e) {
-      // Fatal error, the Google refused the connection
-      this.googleParser = null;
-      neo4jAL.logError("The Google API now refused the connection due to too many request. Good luck.", e);
+      neo4jAL.logError(String.format("Failed to analyze the Google results of '%s'.", objectName), e);
       return Optional.empty();
     }
   }
 
-
-
   /**
-   * Save a COBOL Framework node on pythia
+   * Save a COBOL Framework node on pythia. The upload is queued, it never blocks the detection.
    * @param fn Framework Node
    */
   private void saveOnPythia(FrameworkNode fn) {
-    if(!activatedPythia) return; // Pythia is not activated
     if(fn.getFrameworkType() != FrameworkType.FRAMEWORK) return; // Not a Framework
 
-    try {
-      PythiaFramework pf = DetectorTypeMapper.artemisFrameworkToPythia(fn, pythiaLanguage);
-      PythiaPattern pp = new PythiaPattern(pythiaLanguage, fn.getPattern(), false);
-      saveFrameworkOnPythia(pf, Collections.singletonList(pp));
-      neo4jAL.logError(String.format("[%s] has been saved on Pythia", fn.getPattern()));
-      savedOnPythia ++;
-    } catch (Exception e) {
-      neo4jAL.logError("Failed to save the cobol utility on Pythia.", e);
-    }
+    PythiaFramework pf = DetectorTypeMapper.artemisFrameworkToPythia(fn, pythiaLanguage);
+    PythiaPattern pp = new PythiaPattern(pythiaLanguage, fn.getPattern(), false);
+    saveFrameworkOnPythia(pf, Collections.singletonList(pp));
+    savedOnPythia.incrementAndGet();
   }
+
   /**
    * Process the external candidates
    *
@@ -239,50 +480,110 @@ public class CobolDetector extends ADetector {
   @Override
   public void extractFrameworks() throws IOException, Neo4jQueryException {
 
-    int numTreated = 0;
-    List<Node> toInvestigate = this.getCobolExternalNodes();
-    ListIterator<Node> listIterator = toInvestigate.listIterator();
+    String filter = getCobolExternalFilter();
+    long toInvestigate = DetectorNodesUtil.countExternalObjects(neo4jAL, languageProperties, application, filter);
+    AtomicLong numTreated = new AtomicLong(0);
 
     neo4jAL.logInfo("Launching artemis detection for Cobol.");
     neo4jAL.logInfo(
-            String.format("Investigation launched against %d objects.", toInvestigate.size()));
+            String.format("Investigation launched against %d objects.", toInvestigate));
 
-    try {
-      Optional<FrameworkType> frameworkType;
-      while (listIterator.hasNext()) {
-
-        Node n = listIterator.next();
-        frameworkType = this.processNode(n);
-
-        // If a framework has been found, remove it from the list
-        if(frameworkType.isPresent() && frameworkType.get() == FrameworkType.FRAMEWORK) listIterator.remove();
+    // Single writer, the resolutions are applied in order on this thread. The concurrency of the
+    // network tiers is bounded by the Pythia transport and the search scheduler.
+    ResolutionPipeline<CandidateResolution> pipeline =
+            new ResolutionPipeline<>(neo4jAL, PIPELINE_MAX_IN_FLIGHT, this::applyResolution);
+    // The online texts are classified by batches large enough to use the whole inference pool
+    pipeline.setPreparer(
+        this::classifyOnlineResults, r -> r.onlineResult != null, NLPEngine.getFullBatchSize());
 
-        numTreated++;
-
-        if (numTreated % 100 == 0) {
-          neo4jAL.logInfo(String.format("Investigation on going. Treating node %d/%d.",numTreated, toInvestigate.size()));
-        }
+    try {
+      if (checkpoint != null) {
+        // Chunked detection, each page of candidates is committed with the checkpoint
+        resolveByChunks(pipeline, filter, toInvestigate);
+      } else {
+        // The candidates are consumed while the query is read, they are never held in memory
+        List<DetectionCandidate> batch = new ArrayList<>(LOOKUP_BATCH_SIZE);
+        DetectorNodesUtil.forEachExternalCandidate(neo4jAL, languageProperties, application, filter, false, candidate -> {
+          batch.add(candidate);
+          if (batch.size() >= LOOKUP_BATCH_SIZE) {
+            submitBatch(pipeline, batch);
+            batch.clear();
+          }
+
+          if (numTreated.incrementAndGet() % 100 == 0) {
+            neo4jAL.logInfo(String.format("Investigation on going. Treating node %d/%d.", numTreated.get(), toInvestigate));
+          }
+        });
+        submitBatch(pipeline, batch);
+        pipeline.flush();
       }
 
     } catch (TransactionTerminatedException e) {
+      pipeline.cancel();
+      this.interrupted = true;
       neo4jAL.logError("The detection was interrupted. Saving the results...", e);
     } finally {
-      reportGenerator.generate(neo4jAL); // generate the report
-      nlpSaver.close();
+      onlineSearches.forEach(f -> f.cancel(false)); // Free the slots of the scheduler
+      neo4jAL.logInfo(String.format("%d resolutions applied, %d failed. %d names found locally, %d sent to the remote tiers. %d frameworks queued for Pythia.",
+              pipeline.getNumApplied(), pipeline.getNumFailed(), numLocalHits, numRemoteLookups, savedOnPythia.get()));
+      getReportGenerator().generate(neo4jAL); // generate the report
+      if (nlpSaver != null) nlpSaver.close();
     }
 
   }
 
-  public void extractUnknownNonUtilities() {
-    ListIterator<Node> itNode = toInvestigateNodes.listIterator();
-    while (itNode.hasNext()) {
-      Node n = itNode.next();
-      DetectorPropertyUtil.applyDetectionProperty(n, DetectionCategory.UNKNOWN_NOT_UTILITY);
-      // applyDemeterTags(n, "Unknown not utility ", detectionProp.getUnknownNonUtilities());
-      itNode.remove();
+  /**
+   * Resolve the candidates chunk by chunk. The candidates are read by a single query ordered by id,
+   * the pipeline is flushed at the end of each chunk, then the chunk is committed with the
+   * checkpoint. A resumed run starts after the last committed candidate.
+   *
+   * @param pipeline Resolution pipeline
+   * @param filter Filter applied on the candidates
+   * @param toInvestigate Total number of candidates
+   * @throws Neo4jQueryException
+   */
+  private void resolveByChunks(ResolutionPipeline<CandidateResolution> pipeline, String filter, long toInvestigate)
+      throws Neo4jQueryException {
+    int chunkSize = detectionParameters.getChunkSize();
+    long lastId = checkpoint.getLastObjectId();
+    long processed = checkpoint.getProcessed();
+
+    if (processed > 0) {
+      neo4jAL.logInfo(String.format("Resuming the investigation after object with id %d.", lastId));
+    }
+
+    List<DetectionCandidate> chunk = new ArrayList<>(chunkSize);
+    try (ResourceIterator<DetectionCandidate> candidates =
+        DetectorNodesUtil.streamExternalCandidatesAfter(neo4jAL, languageProperties, application, filter, lastId)) {
+      while (candidates.hasNext()) {
+        chunk.add(candidates.next());
+        if (chunk.size() < chunkSize && candidates.hasNext()) continue;
+
+        submitBatch(pipeline, chunk);
+        pipeline.flush(); // The whole chunk must be applied before the commit
+        remoteResolutions.clear(); // The frameworks applied are bound to the transaction of the chunk
+
+        lastId = chunk.get(chunk.size() - 1).getId();
+        processed += chunk.size();
+        commitCheckpoint(lastId, null, processed);
+        neo4jAL.logInfo(String.format("Investigation on going. %d/%d nodes treated and committed.", processed, toInvestigate));
+        chunk.clear();
+      }
     }
   }
 
+  public void extractUnknownNonUtilities() throws Neo4jQueryException {
+    DetectorNodesUtil.forEachExternalCandidate(neo4jAL, languageProperties, application, getCobolExternalFilter(), false, candidate -> {
+      try {
+        Node n = neo4jAL.getNodeById(candidate.getId());
+        DetectorPropertyUtil.applyDetectionProperty(n, DetectionCategory.UNKNOWN_NOT_UTILITY);
+        // applyDemeterTags(n, "Unknown not utility ", detectionProp.getUnknownNonUtilities());
+      } catch (Neo4jQueryException e) {
+        neo4jAL.logError(String.format("Failed to flag candidate with id [%d].", candidate.getId()), e);
+      }
+    });
+  }
+
   @Override
   protected void postLaunch() {
     super.postLaunch();
@@ -16,6 +16,7 @@ import com.castsoftware.artemis.datasets.FrameworkNode;
 import com.castsoftware.artemis.datasets.FrameworkType;
 import com.castsoftware.artemis.detector.plainAnalyzers.ADetector;
 import com.castsoftware.artemis.detector.statisticalAnalyzers.java.JavaStatisticalAnalyzer;
+import com.castsoftware.artemis.detector.utils.DetectionCandidate;
 import com.castsoftware.artemis.detector.utils.DetectionCategory;
 import com.castsoftware.artemis.detector.utils.DetectorNodesUtil;
 import com.castsoftware.artemis.detector.utils.DetectorPropertyUtil;
@@ -30,12 +31,12 @@ import com.castsoftware.artemis.modules.pythia.models.api.PythiaFramework;
 import com.castsoftware.artemis.modules.pythia.models.api.PythiaImagingFramework;
 import com.castsoftware.artemis.modules.pythia.models.api.PythiaPattern;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
-import com.castsoftware.artemis.utils.SetUtils;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Result;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /** Java detector */
@@ -81,12 +82,9 @@ public class JavaDetector extends ADetector {
    */
   @Override
   public JavaFrameworkTree getExternalBreakdown() throws Neo4jQueryException {
-    List<Node> nodeList = this.getNodesByExternality(true);
-    //this.filterJavaNodes(nodeList);
-
-    // Create a framework tree
+    // Stream the candidates in a framework tree
     JavaFrameworkTree ft = new JavaFrameworkTree(languageProperties);
-    ft.recursiveObjectsInsert(nodeList);
+    this.forEachCandidateByExternality(true, ft::insertCandidate);
     ft.print();
 
     return ft;
@@ -100,14 +98,9 @@ public class JavaDetector extends ADetector {
    */
   @Override
   public JavaFrameworkTree getInternalBreakdown() throws Neo4jQueryException {
-    List<Node> nodeList = this.getNodesByExternality(false);
-
-    // Filter nodes based to make sure :
-    //this.filterJavaNodes(nodeList);
-
-    // Create a framework tree
+    // Stream the candidates in a framework tree
     JavaFrameworkTree ft = new JavaFrameworkTree(languageProperties);
-    ft.recursiveObjectsInsert(nodeList);
+    this.forEachCandidateByExternality(false, ft::insertCandidate);
 
     return ft;
   }
@@ -128,6 +121,12 @@ public class JavaDetector extends ADetector {
     JavaFrameworkTree externals = this.getExternalBreakdown();
     externals.print();
 
+    // Chunked detection, the results are committed with the checkpoint
+    if (checkpoint != null) {
+      analyzeFrameworkTreeByChunks(externals, true);
+      return;
+    }
+
     List<FrameworkNode> frameworkNodes =  analyzeFrameworkTree(externals, true);
     frameworkNodes.forEach(this::addFrameworkToResults); // Add to final results
   }
@@ -171,47 +170,70 @@ public class JavaDetector extends ADetector {
       return returnSet;
   }
 
+  /** Leaf waiting to be resolved, with the framework found on its parent */
+  private static class PendingLeaf {
+    private final JavaFrameworkTreeLeaf leaf;
+    private final PythiaImagingFramework parentFramework;
+
+    private PendingLeaf(JavaFrameworkTreeLeaf leaf, PythiaImagingFramework parentFramework) {
+      this.leaf = leaf;
+      this.parentFramework = parentFramework;
+    }
+  }
+
   /**
-   * Parse the framework tree
-   * @param frameworkTreeLeaf Framework leaf to explore
-   * @return
+   * Parse the framework trees level by level. All the leaves of a level are resolved on Pythia
+   * together, then the children of the leaves found are resolved with the next level.
+   * @param frameworkTreeLeaves Framework leaves to explore
+   * @param external Type of investigation ( internal / external )
+   * @param depth Depth of the leaves
+   * @return The frameworks found
    */
-  private Set<FrameworkNode> recursiveParsing(JavaFrameworkTreeLeaf frameworkTreeLeaf, Boolean external, int depth, PythiaImagingFramework parentFramework) {
-    // Parse tree leaf and find on pythia
-    neo4jAL.logInfo("-".repeat(depth) + String.format("> Treating [%s] ", frameworkTreeLeaf.getFullName()));
+  private Set<FrameworkNode> parseByLevels(List<JavaFrameworkTreeLeaf> frameworkTreeLeaves, Boolean external, int depth) {
     Set<FrameworkNode> returnSet = new HashSet<>();
 
-    // Skip organisations packages
-    if(depth < 2) {
-      Set<FrameworkNode> tempSet;
-      for (JavaFrameworkTreeLeaf child : frameworkTreeLeaf.getChildren()) {
-        tempSet = this.recursiveParsing(child, external, depth + 1, parentFramework);
-        returnSet.addAll(tempSet);
-      }
-      return returnSet;
-    }
+    List<PendingLeaf> level = new ArrayList<>();
+    frameworkTreeLeaves.forEach(ftl -> level.add(new PendingLeaf(ftl, null)));
 
-    // if found a framework continue to check children
-    Optional<PythiaImagingFramework> pythiaFramework = this.findFrameworkOnPythia(frameworkTreeLeaf.getFullName()); // find on pythia by name and language
-    if (pythiaFramework.isEmpty()) {
-      // No pythia framework found, handle the unknowns
-      if(parentFramework != null)  returnSet.addAll(this.handleUnknownPattern(frameworkTreeLeaf, external, parentFramework));
-      else this.saveFrameworkLeafOnPythia(frameworkTreeLeaf);
-    } else {
-      // Add to return list
-      FrameworkNode fn = DetectorTypeMapper.imagingFrameworkToFrameworkNode(
-              neo4jAL, pythiaFramework.get(), true);
-      returnSet.add(fn);
-
-      // A framework has been found, flag the nodes an pursue
-      this.flagNodesWithImagingFramework(pythiaFramework.get(), external);
-
-      // Continue the recursive search
-      Set<FrameworkNode> tempSet;
-      for (JavaFrameworkTreeLeaf child : frameworkTreeLeaf.getChildren()) {
-        tempSet = this.recursiveParsing(child, external, depth+ 1, pythiaFramework.get());
-        returnSet = SetUtils.mergeSet(returnSet, tempSet);
+    while (!level.isEmpty()) {
+      List<PendingLeaf> nextLevel = new ArrayList<>();
+
+      // Skip organisations packages
+      if (depth < 2) {
+        for (PendingLeaf pl : level) {
+          pl.leaf.getChildren().forEach(child -> nextLevel.add(new PendingLeaf(child, pl.parentFramework)));
+        }
+      } else {
+        // Find the whole level on pythia by name and language
+        List<String> patterns = new ArrayList<>(level.size());
+        level.forEach(pl -> patterns.add(pl.leaf.getFullName()));
+        Map<String, PythiaImagingFramework> found = this.findFrameworksOnPythia(patterns);
+
+        for (PendingLeaf pl : level) {
+          JavaFrameworkTreeLeaf frameworkTreeLeaf = pl.leaf;
+          neo4jAL.logInfo("-".repeat(depth) + String.format("> Treating [%s] ", frameworkTreeLeaf.getFullName()));
+
+          PythiaImagingFramework pythiaFramework = found.get(frameworkTreeLeaf.getFullName());
+          if (pythiaFramework == null) {
+            // No pythia framework found, handle the unknowns
+            if (pl.parentFramework != null) returnSet.addAll(this.handleUnknownPattern(frameworkTreeLeaf, external, pl.parentFramework));
+            else this.saveFrameworkLeafOnPythia(frameworkTreeLeaf);
+            continue;
+          }
+
+          // Add to return list
+          FrameworkNode fn = DetectorTypeMapper.imagingFrameworkToFrameworkNode(neo4jAL, pythiaFramework, true);
+          returnSet.add(fn);
+
+          // A framework has been found, flag the nodes an pursue with the children
+          this.flagNodesWithImagingFramework(pythiaFramework, external);
+          frameworkTreeLeaf.getChildren().forEach(child -> nextLevel.add(new PendingLeaf(child, pythiaFramework)));
+        }
       }
+
+      level.clear();
+      level.addAll(nextLevel);
+      depth++;
     }
 
     return returnSet;
@@ -227,10 +249,14 @@ public class JavaDetector extends ADetector {
    */
   private List<FrameworkNode> analyzeFrameworkTree(JavaFrameworkTree tree, Boolean external) {
     // Initialize the list
-    Set<FrameworkNode> frameworkNodeList = new HashSet<>();
-    for(JavaFrameworkTreeLeaf ftl : tree.getRoot().getChildren()) {
-      frameworkNodeList.addAll(recursiveParsing(ftl, external,  1,  null));
+    List<JavaFrameworkTreeLeaf> units = new ArrayList<>();
+    for(JavaFrameworkTreeLeaf ftl : getAnalysisUnits(tree)) {
+      if (isUnchanged(ftl)) continue; // Branch already processed by the previous run
+      units.add(ftl);
     }
+    long failures = remoteFailures.get();
+    Set<FrameworkNode> frameworkNodeList = parseByLevels(units, external, 2);
+    if (remoteFailures.get() == failures) units.forEach(this::recordFingerprint); // Resolved again if a lookup failed
 
 
     return new ArrayList<>(frameworkNodeList);
@@ -238,6 +264,60 @@ public class JavaDetector extends ADetector {
 
 
 
+  /**
+   * Get the branches of the tree analyzed independently, sorted by full name
+   *
+   * @param tree Tree to split
+   * @return The list of leaves at the top of the branches
+   */
+  private List<JavaFrameworkTreeLeaf> getAnalysisUnits(JavaFrameworkTree tree) {
+    // The organisation level is skipped by the recursive parsing, start on the level below
+    List<JavaFrameworkTreeLeaf> units = new ArrayList<>();
+    for (JavaFrameworkTreeLeaf ftl : tree.getRoot().getChildren()) {
+      units.addAll(ftl.getChildren());
+    }
+    units.sort(Comparator.comparing(JavaFrameworkTreeLeaf::getFullName, Comparator.nullsFirst(Comparator.naturalOrder())));
+    return units;
+  }
+
+  /**
+   * Analyze a tree of Java Classes and commit the results every chunk of packages. The packages are
+   * treated in alphabetical order, so an interrupted analysis resumes after the last committed one.
+   *
+   * @param tree Tree to analyze
+   * @param external Type of investigation ( internal / external )
+   * @throws Neo4jQueryException
+   */
+  private void analyzeFrameworkTreeByChunks(JavaFrameworkTree tree, Boolean external) throws Neo4jQueryException {
+    List<JavaFrameworkTreeLeaf> units = getAnalysisUnits(tree);
+
+    String lastLeaf = checkpoint.getLastLeaf();
+    long processed = checkpoint.getProcessed();
+    int chunkSize = detectionParameters.getChunkSize();
+    List<JavaFrameworkTreeLeaf> chunk = new ArrayList<>(chunkSize);
+
+    for (int i = 0; i < units.size(); i++) {
+      JavaFrameworkTreeLeaf ftl = units.get(i);
+
+      // Skip the packages committed by a previous run, or unchanged since the last detection
+      boolean unchanged = isUnchanged(ftl);
+      boolean committed = !lastLeaf.isEmpty() && ftl.getFullName() != null && ftl.getFullName().compareTo(lastLeaf) <= 0;
+      if (!committed && !unchanged) chunk.add(ftl);
+
+      // The packages of a chunk are resolved together, then committed
+      if (chunk.size() >= chunkSize || (i == units.size() - 1 && !chunk.isEmpty())) {
+        long failures = remoteFailures.get();
+        parseByLevels(chunk, external, 2).forEach(this::addFrameworkToResults);
+        if (remoteFailures.get() == failures) chunk.forEach(this::recordFingerprint); // Resolved again if a lookup failed
+        processed += chunk.size();
+
+        commitCheckpoint(null, chunk.get(chunk.size() - 1).getFullName(), processed);
+        neo4jAL.logInfo(String.format("Investigation on going. %d/%d packages treated and committed.", processed, units.size()));
+        chunk.clear();
+      }
+    }
+  }
+
   /**
    * Save a Framework Leaf on Pythia
    *
@@ -288,30 +368,17 @@ public class JavaDetector extends ADetector {
       neo4jAL.logInfo("Missed item extraction launched.");
       // Get the list of nodes that were missed during the 1st analysis
       String detectionProperty = DetectorPropertyUtil.getDetectionProperty();
-      List<String> categories = languageProperties.getObjectsInternalType();
-      String selectMissed  =
-              String.format(
-                      "MATCH (obj:Object:`%s`) WHERE obj.InternalType in $internalTypes  " +
-                              "AND obj.External=true  " +
-                              "AND obj.Level='Java Class' AND NOT EXISTS(obj.%s) " +
-                              "RETURN DISTINCT obj as node",
-                      application, detectionProperty);
-      Map<String, Object>  params = Map.of("internalTypes", categories);;
-      Result res  = neo4jAL.executeQuery(selectMissed, params);
-      List<Node> nodeList = new ArrayList<>();
-
-      while (res.hasNext()) {
-        Map<String, Object> resMap = res.next();
-        Node node = (Node) resMap.get("node");
-        nodeList.add(node);
-      }
+      String filterMissed =
+          String.format("AND obj.Level='Java Class' AND NOT EXISTS(obj.%s) ", detectionProperty);
 
-      neo4jAL.logInfo(String.format("%d nodes will be investigated.", nodeList.size()));
+      // Create a tree and slice the leve 2 to get the name of the missing packages
+      JavaFrameworkTree frameworkTreeLeaf = new JavaFrameworkTree(this.languageProperties);
+      long numCandidates =
+          DetectorNodesUtil.forEachExternalCandidate(
+              neo4jAL, languageProperties, application, filterMissed, false, frameworkTreeLeaf::insertCandidate);
+      neo4jAL.logInfo(String.format("%d nodes will be investigated.", numCandidates));
 
       int numberDetected = 0;
-
-      // Create a tree and slice the leve 2 to get the name of the missing packages
-      JavaFrameworkTree frameworkTreeLeaf = TreeFactory.createJavaTree(this.languageProperties, nodeList);
       List<ALeaf> leafList =  frameworkTreeLeaf.getSliceByDepth(1); // Get the 2 package list
 
 
@@ -327,7 +394,7 @@ public class JavaDetector extends ADetector {
           // Get nodes under the leaf, and flag them as missing code
           List<Node> nodes = DetectorNodesUtil.getNodesByPatternAndExternality(neo4jAL, application, x.getFullName(), true);
           for (Node n : nodes) {
-            DetectorNodesUtil.tagNodeWithFramework(neo4jAL, n, DetectionCategory.MISSING_CODE, level4, level5, x.getName(), "");
+            DetectorNodesUtil.tagNodeWithFramework(tagWriter, n, DetectionCategory.MISSING_CODE, level4, level5, x.getName(), "");
           }
 
           // Send to list of framework
@@ -348,40 +415,33 @@ public class JavaDetector extends ADetector {
   }
 
   /**
-   * Get the list of node for the Java language by externality
+   * Stream the candidates for the Java language by externality
    *
    * @param externality Externality of the nodes
-   * @return The list of nodes
+   * @param consumer Consumer of the candidates
+   * @return The number of candidates streamed
    * @throws Neo4jQueryException If the Neo4j query failed
    */
-  public List<Node> getNodesByExternality(Boolean externality) throws Neo4jQueryException {
+  public long forEachCandidateByExternality(
+      Boolean externality, Consumer<DetectionCandidate> consumer) throws Neo4jQueryException {
     try {
       String detectionProperty = DetectorPropertyUtil.getDetectionProperty();
       List<String> categories = languageProperties.getObjectsInternalType();
-      List<Node> nodeList = new ArrayList<>();
-      String forgedRequest  =
-              String.format(
-                      "MATCH (obj:Object:`%s`) WHERE obj.InternalType in $internalTypes  "
-                              + "AND obj.External=$externality  " +
-                              "AND ( obj.Level='Java Class' OR obj.Level='Missing Java Class' OR EXISTS(obj.%s)) " +
-                              "RETURN DISTINCT obj as node",
-                      application, detectionProperty);
-      Map<String, Object>  params = Map.of("internalTypes", categories, "externality", externality);;
-      Result res  = neo4jAL.executeQuery(forgedRequest, params);
-
-      while (res.hasNext()) {
-        Map<String, Object> resMap = res.next();
-        Node node = (Node) resMap.get("node");
-        nodeList.add(node);
-      }
+      String filter =
+          String.format(
+              "AND ( obj.Level='Java Class' OR obj.Level='Missing Java Class' OR EXISTS(obj.%s)) ",
+              detectionProperty);
+      long count =
+          DetectorNodesUtil.forEachCandidate(
+              neo4jAL, languageProperties, application, externality, filter, false, consumer);
 
       String categoriesToPrint = String.join(", ", categories);
       neo4jAL.logInfo(
           String.format(
               "%d Java nodes were found with external property on '%s' for categories [ %s ].",
-              nodeList.size(), externality, categoriesToPrint));
+              count, externality, categoriesToPrint));
 
-      return nodeList;
+      return count;
     } catch (Neo4jQueryException err) {
       neo4jAL.logError(
           String.format(
@@ -16,6 +16,8 @@ import com.castsoftware.artemis.controllers.UtilsController;
 import com.castsoftware.artemis.datasets.FrameworkNode;
 import com.castsoftware.artemis.datasets.FrameworkType;
 import com.castsoftware.artemis.detector.plainAnalyzers.ADetector;
+import com.castsoftware.artemis.detector.utils.DetectionCandidate;
+import com.castsoftware.artemis.detector.utils.DetectorNodesUtil;
 import com.castsoftware.artemis.detector.utils.trees.java.JavaFrameworkTree;
 import com.castsoftware.artemis.detector.utils.trees.java.JavaFrameworkTreeLeaf;
 import com.castsoftware.artemis.detector.utils.functionalMaps.java.OldJavaFunctionalModule;
@@ -39,6 +41,8 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /** Java Framework detector */
 public class JavaOldDetector extends ADetector {
@@ -46,6 +50,7 @@ public class JavaOldDetector extends ADetector {
   private JavaFrameworkTree externalTree;
   private JavaFrameworkTree internalTree;
   private String corePrefix;
+  private final Set<Long> extractedIds; // Candidates already extracted by a previous step
 
   /**
    * Detector for the Java
@@ -58,6 +63,7 @@ public class JavaOldDetector extends ADetector {
   public JavaOldDetector(Neo4jAL neo4jAL, String application, DetectionParameters detectionParameters)
       throws IOException, Neo4jQueryException {
     super(neo4jAL, application, SupportedLanguage.JAVA, detectionParameters);
+    this.extractedIds = new HashSet<>();
     this.externalTree = getExternalBreakdown();
     this.internalTree = getInternalBreakDown();
     this.corePrefix = "";
@@ -67,10 +73,10 @@ public class JavaOldDetector extends ADetector {
   public JavaFrameworkTree getExternalBreakdown() throws Neo4jQueryException {
     // Filter nodes for java
     // Get node in Java Classes
-    List<Node> nodeList = getNodesByExternality(true);
-
-    nodeList.removeIf(n -> !n.hasProperty("Level") || !n.getProperty("Level").equals("Java Class"));
-    neo4jAL.logInfo("Java breakdown on : " + nodeList.size());
+    long numClasses =
+        forEachCandidateByExternality(
+            true, candidate -> {}, candidate -> "Java Class".equals(candidate.getLevel()));
+    neo4jAL.logInfo("Java breakdown on : " + numClasses);
     externalTree = new JavaFrameworkTree(languageProperties);
     return externalTree;
   }
@@ -209,53 +215,56 @@ public class JavaOldDetector extends ADetector {
   }
 
   /**
-   * Get the list of node for the Java language by externality
+   * Stream the candidates for the Java language by externality. The objects are projected as
+   * candidates while the query is read, they are never held in a list.
    *
    * @param externality Externality of the nodes
-   * @return The list of nodes
+   * @param consumer Consumer of the candidates
+   * @param filter Candidates to consume
+   * @return The number of candidates consumed
    * @throws Neo4jQueryException If the Neo4j query failed
    */
-  public List<Node> getNodesByExternality(Boolean externality) throws Neo4jQueryException {
+  public long forEachCandidateByExternality(
+      Boolean externality,
+      Consumer<DetectionCandidate> consumer,
+      Predicate<DetectionCandidate> filter)
+      throws Neo4jQueryException {
     try {
       List<String> categories = languageProperties.getObjectsInternalType();
-      List<Node> nodeList = new ArrayList<>();
-      Result res;
+      String forgedRequest;
+      Map<String, Object> params;
 
       if (categories.isEmpty()) {
-        String forgedRequest =
+        forgedRequest =
             String.format(
-                "MATCH (obj:Object:`%s`) WHERE obj.Level='Java Class' AND obj.External=$externality RETURN obj as node",
+                "MATCH (obj:Object:`%s`) WHERE obj.Level='Java Class' AND obj.External=$externality "
+                    + DetectionCandidate.getReturnClause(),
                 application);
-        Map<String, Object> params = Map.of("externality", externality);
-        res = neo4jAL.executeQuery(forgedRequest, params);
-
-        while (res.hasNext()) {
-          Map<String, Object> resMap = res.next();
-          Node node = (Node) resMap.get("node");
-          nodeList.add(node);
-        }
+        params = Map.of("externality", externality);
       } else {
-        String forgedRequest =
+        forgedRequest =
             String.format(
-                "MATCH (obj:Object:`%s`) WHERE  obj.InternalType in $internalTypes  AND obj.External=$externality  RETURN obj as node",
+                "MATCH (obj:Object:`%s`) WHERE  obj.InternalType in $internalTypes  AND obj.External=$externality  "
+                    + DetectionCandidate.getReturnClause(),
                 application);
-        Map<String, Object> params =
-            Map.of("internalTypes", categories, "externality", externality);
-        res = neo4jAL.executeQuery(forgedRequest, params);
+        params = Map.of("internalTypes", categories, "externality", externality);
+      }
 
+      long count = 0L;
+      try (Result res = neo4jAL.executeQuery(forgedRequest, params)) {
         while (res.hasNext()) {
-          Map<String, Object> resMap = res.next();
-          Node node = (Node) resMap.get("node");
-          nodeList.add(node);
+          DetectionCandidate candidate = DetectionCandidate.fromRecord(res.next());
+          if (!filter.test(candidate)) continue;
+          consumer.accept(candidate);
+          count++;
         }
       }
 
       neo4jAL.logInfo(
           String.format(
-              "%d Java nodes were found with external property on '%s'",
-              nodeList.size(), externality));
+              "%d Java nodes were found with external property on '%s'", count, externality));
 
-      return nodeList;
+      return count;
     } catch (Neo4jQueryException err) {
       neo4jAL.logError(
           String.format(
@@ -274,13 +283,17 @@ public class JavaOldDetector extends ADetector {
    */
   private Optional<NLPResults> getGoogleResult(String name) {
     try {
-      GoogleResult gr = null;
-      gr = googleParser.request(name);
+      // Results of the previous searches first
+      GoogleResult gr = this.findCachedOnlineResult(name).orElse(null);
+      if (gr == null) {
+        if (googleParser == null) return Optional.empty(); // Online mode is off
+        gr = googleParser.request(name);
+      }
       String requestResult = gr.getContent();
-      NLPResults np = nlpEngine.getNLPResult(requestResult);
+      NLPResults np = getNlpEngine().getNLPResult(requestResult);
 
       if (getLearningMode()) {
-        nlpSaver.writeNLPResult(np.getCategory(), requestResult);
+        getNlpSaver().writeNLPResult(np.getCategory(), requestResult);
       }
 
       return Optional.of(np);
@@ -289,7 +302,7 @@ public class JavaOldDetector extends ADetector {
       return Optional.empty();
     } catch (GoogleBadResponseCodeException err) {
       neo4jAL.logError("Banned from Google API due to too many request. Good luck.", err);
-      this.googleParser = null;
+      if (googleParser != null && !googleParser.isAvailable()) this.googleParser = null;
       return Optional.empty();
     }
   }
@@ -330,19 +343,22 @@ public class JavaOldDetector extends ADetector {
               "Extract the unkown matching the core of the application : %s", corePrefix));
 
       // If the object match the Ngram
-      ListIterator<Node> itNode = toInvestigateNodes.listIterator();
-      while (itNode.hasNext()) {
-        Node n = itNode.next();
-        if (!n.hasProperty("FullName")) continue;
-
-        String name = (String) n.getProperty("FullName");
-
-        // The name match the nGram
-        if (name.contains(corePrefix)) {
-          UtilsController.applyDemeterParentTag(neo4jAL, n, ": Unknowns Application code");
-          itNode.remove();
-        }
-      }
+      forEachRemainingCandidate(
+          candidate -> {
+            if (!candidate.hasFullName()) return;
+
+            // The name match the nGram
+            if (candidate.getFullName().contains(corePrefix)) {
+              try {
+                Node n = neo4jAL.getNodeById(candidate.getId());
+                UtilsController.applyDemeterParentTag(neo4jAL, n, ": Unknowns Application code");
+                extractedIds.add(candidate.getId());
+              } catch (Neo4jQueryException e) {
+                neo4jAL.logError(
+                    String.format("Failed to tag candidate with id [%d].", candidate.getId()), e);
+              }
+            }
+          });
 
     } catch (Neo4jQueryException e) {
       neo4jAL.logError("Failed to retrieve the core of the application.", e);
@@ -407,49 +423,87 @@ public class JavaOldDetector extends ADetector {
     }
 
     // Extract the objects
-    ListIterator<Node> itNode = toInvestigateNodes.listIterator();
-    while (itNode.hasNext()) {
-      try {
-
-        Node n = itNode.next();
-        if (!n.hasProperty("Name") || !n.hasProperty("InternalType")) continue;
-
-        String name = (String) n.getProperty("Name");
-        String internalType = (String) n.getProperty("InternalType");
-
-        String req =
-            "MATCH (o:Object) WHERE NOT $appName in LABELS(o) AND o.Name=$nodeName AND o.InternalType=$internalType "
-                + "RETURN [ x in LABELS(o) WHERE NOT x='Object'][0] as app";
-        Map<String, Object> params =
-            Map.of("appName", application, "nodeName", name, "internalType", internalType);
-
-        Result res = neo4jAL.executeQuery(req, params);
-        if (res.hasNext()) {
-          UtilsController.applyDemeterParentTag(neo4jAL, n, " : Unknowns other Applications");
-          itNode.remove();
-        }
-
-      } catch (Neo4jQueryException e) {
-        neo4jAL.logError(
-            String.format("Failed to extract node with name %s to  Unknown other applications", e));
-      }
+    try {
+      forEachRemainingCandidate(
+          candidate -> {
+            try {
+              if (!candidate.hasName() || candidate.getInternalType() == null) return;
+
+              String req =
+                  "MATCH (o:Object) WHERE NOT $appName in LABELS(o) AND o.Name=$nodeName AND o.InternalType=$internalType "
+                      + "RETURN [ x in LABELS(o) WHERE NOT x='Object'][0] as app";
+              Map<String, Object> params =
+                  Map.of(
+                      "appName",
+                      application,
+                      "nodeName",
+                      candidate.getName(),
+                      "internalType",
+                      candidate.getInternalType());
+
+              boolean inOtherApp;
+              try (Result res = neo4jAL.executeQuery(req, params)) {
+                inOtherApp = res.hasNext();
+              }
+              if (inOtherApp) {
+                Node n = neo4jAL.getNodeById(candidate.getId());
+                UtilsController.applyDemeterParentTag(neo4jAL, n, " : Unknowns other Applications");
+                extractedIds.add(candidate.getId());
+              }
+
+            } catch (Neo4jQueryException e) {
+              neo4jAL.logError(
+                  String.format(
+                      "Failed to extract node with name %s to  Unknown other applications",
+                      candidate.getName()),
+                  e);
+            }
+          });
+    } catch (Neo4jQueryException e) {
+      neo4jAL.logError("Failed to retrieve the candidates for the other applications.", e);
     }
   }
 
   public void extractUnknownNonUtilities() {
-    ListIterator<Node> itNode = toInvestigateNodes.listIterator();
-    while (itNode.hasNext()) {
-      Node n = itNode.next();
-      try {
-        UtilsController.applyDemeterParentTag(neo4jAL, n, ": Unknowns Non Utilities");
-      } catch (Neo4jQueryException e) {
-        neo4jAL.logError(
-            String.format("Failed to extract node with name %s to Unknown Non Utilities", e));
-      }
-      itNode.remove();
+    try {
+      forEachRemainingCandidate(
+          candidate -> {
+            try {
+              Node n = neo4jAL.getNodeById(candidate.getId());
+              UtilsController.applyDemeterParentTag(neo4jAL, n, ": Unknowns Non Utilities");
+            } catch (Neo4jQueryException e) {
+              neo4jAL.logError(
+                  String.format(
+                      "Failed to extract node with name %s to Unknown Non Utilities",
+                      candidate.getName()),
+                  e);
+            }
+            extractedIds.add(candidate.getId());
+          });
+    } catch (Neo4jQueryException e) {
+      neo4jAL.logError("Failed to retrieve the candidates for the Unknown Non Utilities.", e);
     }
   }
 
+  /**
+   * Stream the external candidates not yet extracted by a previous step
+   *
+   * @param consumer Consumer of the candidates
+   * @throws Neo4jQueryException
+   */
+  private void forEachRemainingCandidate(Consumer<DetectionCandidate> consumer)
+      throws Neo4jQueryException {
+    DetectorNodesUtil.forEachExternalCandidate(
+        neo4jAL,
+        languageProperties,
+        application,
+        "",
+        false,
+        candidate -> {
+          if (!extractedIds.contains(candidate.getId())) consumer.accept(candidate);
+        });
+  }
+
   /**
    * Get the internal breakdown of the package
    *
@@ -457,18 +511,11 @@ public class JavaOldDetector extends ADetector {
    * @throws Neo4jQueryException If the Neo4j Cypher request fails
    */
   public JavaFrameworkTree getInternalBreakDown() throws Neo4jQueryException {
-    List<Node> nodeList = getNodesByExternality(false);
     this.internalTree = new JavaFrameworkTree(languageProperties);
-
-    String fullName;
-
-    for (Node n : nodeList) {
-      if (!n.hasProperty(IMAGING_OBJECT_FULL_NAME)) continue;
-
-      fullName = (String) n.getProperty(IMAGING_OBJECT_FULL_NAME);
-
-      internalTree.insert(fullName, n);
-    }
+    forEachCandidateByExternality(
+        false,
+        candidate -> internalTree.insert(candidate.getFullName(), candidate),
+        DetectionCandidate::hasFullName);
 
     return internalTree;
   }
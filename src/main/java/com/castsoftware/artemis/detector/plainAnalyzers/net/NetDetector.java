@@ -17,6 +17,7 @@ import com.castsoftware.artemis.datasets.FrameworkType;
 import com.castsoftware.artemis.detector.plainAnalyzers.ADetector;
 import com.castsoftware.artemis.detector.plainAnalyzers.DetectorUtil;
 import com.castsoftware.artemis.detector.statisticalAnalyzers.net.NetStatisticalAnalyzer;
+import com.castsoftware.artemis.detector.utils.DetectionCandidate;
 import com.castsoftware.artemis.detector.utils.DetectionCategory;
 import com.castsoftware.artemis.detector.utils.DetectorNodesUtil;
 import com.castsoftware.artemis.detector.utils.DetectorPropertyUtil;
@@ -37,6 +38,7 @@ import org.neo4j.graphdb.Result;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /** NET detector */
 public class NetDetector extends ADetector {
@@ -62,11 +64,9 @@ public class NetDetector extends ADetector {
    */
   @Override
   public NetFrameworkTree getExternalBreakdown() throws Neo4jQueryException {
-    List<Node> nodeList = this.getNodesByExternality(true);
-
-    // Create a framework tree
+    // Stream the candidates in a framework tree
     NetFrameworkTree ft = new NetFrameworkTree(languageProperties);
-    ft.recursiveObjectsInsert(nodeList);
+    this.forEachCandidateByExternality(true, ft::insertCandidate);
     ft.print();
 
     return ft;
@@ -80,13 +80,9 @@ public class NetDetector extends ADetector {
    */
   @Override
   public NetFrameworkTree getInternalBreakdown() throws Neo4jQueryException {
-    List<Node> nodeList = this.getNodesByExternality(false);
-
-    // Filter nodes based to make sure :
-
-    // Create a framework tree
+    // Stream the candidates in a framework tree
     NetFrameworkTree ft = new NetFrameworkTree(languageProperties);
-    ft.recursiveObjectsInsert(nodeList);
+    this.forEachCandidateByExternality(false, ft::insertCandidate);
 
     return ft;
   }
@@ -106,6 +102,12 @@ public class NetDetector extends ADetector {
     NetFrameworkTree externals = this.getExternalBreakdown();
     externals.print();
 
+    // Chunked detection, the results are committed with the checkpoint
+    if (checkpoint != null) {
+      analyzeFrameworkTreeByChunks(externals, true);
+      return;
+    }
+
     List<FrameworkNode> frameworkNodes =  analyzeFrameworkTree(externals, true);
     frameworkNodes.forEach(this::addFrameworkToResults); // Add to final results
   }
@@ -208,8 +210,12 @@ public class NetDetector extends ADetector {
   private List<FrameworkNode> analyzeFrameworkTree(NetFrameworkTree tree, Boolean external) {
     // Initialize the list
     Set<FrameworkNode> frameworkNodeList = new HashSet<>();
-    for(NetFrameworkTreeLeaf ftl : tree.getRoot().getChildren()) {
+    for(NetFrameworkTreeLeaf ftl : getAnalysisUnits(tree)) {
+      if (isUnchanged(ftl)) continue; // Branch already processed by the previous run
+
+      long failures = remoteFailures.get();
       frameworkNodeList.addAll(recursiveParsing(ftl, external,  1,  null));
+      if (remoteFailures.get() == failures) recordFingerprint(ftl); // Resolved again if a lookup failed
     }
 
     return new ArrayList<>(frameworkNodeList);
@@ -217,6 +223,53 @@ public class NetDetector extends ADetector {
 
 
 
+  /**
+   * Get the branches of the tree analyzed independently, sorted by full name
+   *
+   * @param tree Tree to split
+   * @return The list of leaves at the top of the branches
+   */
+  private List<NetFrameworkTreeLeaf> getAnalysisUnits(NetFrameworkTree tree) {
+    List<NetFrameworkTreeLeaf> units = new ArrayList<>(tree.getRoot().getChildren());
+    units.sort(Comparator.comparing(NetFrameworkTreeLeaf::getFullName, Comparator.nullsFirst(Comparator.naturalOrder())));
+    return units;
+  }
+
+  /**
+   * Analyze a tree of Net Classes and commit the results every chunk of packages. The packages are
+   * treated in alphabetical order, so an interrupted analysis resumes after the last committed one.
+   *
+   * @param tree Tree to analyze
+   * @param external Type of investigation ( internal / external )
+   * @throws Neo4jQueryException
+   */
+  private void analyzeFrameworkTreeByChunks(NetFrameworkTree tree, Boolean external) throws Neo4jQueryException {
+    List<NetFrameworkTreeLeaf> units = getAnalysisUnits(tree);
+
+    String lastLeaf = checkpoint.getLastLeaf();
+    long processed = checkpoint.getProcessed();
+    int chunkSize = detectionParameters.getChunkSize();
+    int inChunk = 0;
+
+    for (NetFrameworkTreeLeaf ftl : units) {
+      // Skip the packages committed by a previous run, or unchanged since the last detection
+      boolean unchanged = isUnchanged(ftl);
+      if (!lastLeaf.isEmpty() && ftl.getFullName() != null && ftl.getFullName().compareTo(lastLeaf) <= 0) continue;
+      if (unchanged) continue;
+
+      long failures = remoteFailures.get();
+      recursiveParsing(ftl, external, 1, null).forEach(this::addFrameworkToResults);
+      if (remoteFailures.get() == failures) recordFingerprint(ftl); // Resolved again if a lookup failed
+      processed++;
+
+      if (++inChunk >= chunkSize) {
+        commitCheckpoint(null, ftl.getFullName(), processed);
+        neo4jAL.logInfo(String.format("Investigation on going. %d/%d packages treated and committed.", processed, units.size()));
+        inChunk = 0;
+      }
+    }
+  }
+
   /**
    * Save a Framework Leaf on Pythia
    *
@@ -272,30 +325,17 @@ public class NetDetector extends ADetector {
       String filterLevel = DetectorUtil.buildLevelFilter("obj", levels);
 
       String detectionProperty = DetectorPropertyUtil.getDetectionProperty();
-      List<String> categories = languageProperties.getObjectsInternalType();
-      String selectMissed  =
-              String.format(
-                      "MATCH (obj:Object:`%s`) WHERE obj.InternalType in $internalTypes  " +
-                              "AND obj.External=true  " +
-                              "AND ( " + filterLevel + " ) AND NOT EXISTS(obj.%s) " +
-                              "RETURN DISTINCT obj as node",
-                      application, detectionProperty);
-      Map<String, Object>  params = Map.of("internalTypes", categories);;
-      Result res  = neo4jAL.executeQuery(selectMissed, params);
-      List<Node> nodeList = new ArrayList<>();
-
-      while (res.hasNext()) {
-        Map<String, Object> resMap = res.next();
-        Node node = (Node) resMap.get("node");
-        nodeList.add(node);
-      }
+      String filterMissed =
+          String.format("AND ( %s ) AND NOT EXISTS(obj.%s) ", filterLevel, detectionProperty);
 
-      neo4jAL.logInfo(String.format("%d nodes will be investigated.", nodeList.size()));
+      // Create a tree and slice the leve 2 to get the name of the missing packages
+      NetFrameworkTree frameworkTreeLeaf = new NetFrameworkTree(this.languageProperties);
+      long numCandidates =
+          DetectorNodesUtil.forEachExternalCandidate(
+              neo4jAL, languageProperties, application, filterMissed, false, frameworkTreeLeaf::insertCandidate);
+      neo4jAL.logInfo(String.format("%d nodes will be investigated.", numCandidates));
 
       int numberDetected = 0;
-
-      // Create a tree and slice the leve 2 to get the name of the missing packages
-      NetFrameworkTree frameworkTreeLeaf = TreeFactory.createNetTree(this.languageProperties, nodeList);
       List<ALeaf> leafList =  frameworkTreeLeaf.getSliceByDepth(0); // Get the 2 package list
 
 
@@ -311,7 +351,7 @@ public class NetDetector extends ADetector {
           // Get nodes under the leaf, and flag them as missing code
           List<Node> nodes = DetectorNodesUtil.getNodesByPatternAndExternality(neo4jAL, application, x.getFullName(), true);
           for (Node n : nodes) {
-            DetectorNodesUtil.tagNodeWithFramework(neo4jAL, n, DetectionCategory.MISSING_CODE, level4, level5, x.getName(), "");
+            DetectorNodesUtil.tagNodeWithFramework(tagWriter, n, DetectionCategory.MISSING_CODE, level4, level5, x.getName(), "");
           }
 
           // Send to list of framework
@@ -332,42 +372,24 @@ public class NetDetector extends ADetector {
   }
 
   /**
-   * Get the list of node for the Net language by externality
+   * Stream the candidates for the Net language by externality
    *
    * @param externality Externality of the nodes
-   * @return The list of nodes
+   * @param consumer Consumer of the candidates
+   * @return The number of candidates streamed
    * @throws Neo4jQueryException If the Neo4j query failed
    */
-  public List<Node> getNodesByExternality(Boolean externality) throws Neo4jQueryException {
+  public long forEachCandidateByExternality(
+      Boolean externality, Consumer<DetectionCandidate> consumer) throws Neo4jQueryException {
     try {
-      // Return list
-      List<Node> nodeList = new ArrayList<>();
-
       // Initialize the parameters
       List<String> levels = List.of("VB.NET Class", "C# Class", ".NET Class");
       String filterLevel = DetectorUtil.buildLevelFilter("obj", levels);
       String detectionProperty = DetectorPropertyUtil.getDetectionProperty();
-      List<String> categories = languageProperties.getObjectsInternalType();
-
-      // Build the request  & associate parameters
-      String forgedRequest  =
-              String.format(
-                      "MATCH (obj:Object:`%s`) WHERE obj.InternalType in $internalTypes  "
-                              + "AND obj.External=$externality  " +
-                              "AND ( " + filterLevel +  " OR EXISTS(obj.%s)) " +
-                              "RETURN DISTINCT obj as node",
-                      application, detectionProperty);
-      Map<String, Object>  params = Map.of("internalTypes", categories, "externality", externality);;
-      Result res  = neo4jAL.executeQuery(forgedRequest, params);
-
-      // Transform results to list
-      while (res.hasNext()) {
-        Map<String, Object> resMap = res.next();
-        Node node = (Node) resMap.get("node");
-        nodeList.add(node);
-      }
+      String filter = String.format("AND ( %s OR EXISTS(obj.%s)) ", filterLevel, detectionProperty);
 
-      return nodeList;
+      return DetectorNodesUtil.forEachCandidate(
+          neo4jAL, languageProperties, application, externality, filter, false, consumer);
     } catch (Neo4jQueryException err) {
       neo4jAL.logError(
               String.format(
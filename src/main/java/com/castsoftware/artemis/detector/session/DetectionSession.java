@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.detector.session;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.config.detection.DetectionParameters;
+import com.castsoftware.artemis.config.detection.LanguageConfiguration;
+import com.castsoftware.artemis.config.detection.LanguageProp;
+import com.castsoftware.artemis.exceptions.nlp.NLPIncorrectConfigurationException;
+import com.castsoftware.artemis.global.SupportedLanguage;
+import com.castsoftware.artemis.modules.nlp.model.NLPEngine;
+import com.castsoftware.artemis.modules.nlp.parser.GoogleParser;
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResultCache;
+import com.castsoftware.artemis.modules.pythia.Pythia;
+import com.castsoftware.artemis.modules.pythia.cache.PythiaLookupCache;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaException;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaResponse;
+import com.castsoftware.artemis.modules.pythia.mirror.PythiaMirror;
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaLanguage;
+import com.castsoftware.artemis.modules.pythia.upload.PythiaUploadQueue;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import com.castsoftware.artemis.utils.Workspace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Heavy components of the detection, shared by the detectors of a language and a set of
+ * parameters. Each component is created on first use, only if the parameters need it, and kept
+ * until the session is invalidated.
+ */
+public class DetectionSession {
+
+  private final SupportedLanguage language;
+  private final DetectionParameters parameters;
+  private final long creationDate;
+
+  // Lazy components
+  private LanguageProp languageProperties;
+  private NLPEngine nlpEngine;
+  private GoogleParser googleParser;
+  private Pythia pythiaController;
+  private PythiaLanguage pythiaLanguage;
+  private volatile Boolean pythiaActivated; // Null until the connection is checked
+  private long pythiaCheckDate = 0L;
+  private PythiaUploadQueue uploadQueue;
+
+  public DetectionSession(SupportedLanguage language, DetectionParameters parameters) {
+    this.language = language;
+    this.parameters = parameters;
+    this.creationDate = System.currentTimeMillis();
+  }
+
+  /**
+   * Get the properties of the language
+   *
+   * @return The language properties
+   */
+  public synchronized LanguageProp getLanguageProperties() {
+    if (languageProperties == null) {
+      LanguageConfiguration lc = LanguageConfiguration.getInstance();
+      languageProperties = lc.getLanguageProperties(language.toString());
+    }
+    return languageProperties;
+  }
+
+  /**
+   * Get the NLP engine of the language. The model is loaded, or trained if missing, at the
+   * creation of the engine.
+   *
+   * @param neo4jAL Neo4j Access Layer used to locate the workspace
+   * @return The NLP engine
+   * @throws IOException If the model failed to load or to train
+   */
+  public synchronized NLPEngine getNlpEngine(Neo4jAL neo4jAL) throws IOException {
+    if (nlpEngine != null) return nlpEngine;
+
+    NLPEngine engine = new NLPEngine(neo4jAL, language);
+    if (engine.checkIfModelExists() == null) {
+      neo4jAL.logInfo(String.format("Training the NLP Engine for %s...", language.toString()));
+      engine.train();
+    } else {
+      try {
+        engine.importModelFile();
+      } catch (NLPIncorrectConfigurationException e) {
+        throw new IOException("Failed to load the NLP model.", e);
+      }
+    }
+
+    nlpEngine = engine;
+    return nlpEngine;
+  }
+
+  /**
+   * Get the parser querying the search providers. Only created if the online mode is activated.
+   *
+   * @param neo4jAL Neo4j Access Layer used to locate the workspace
+   * @return The parser, or an empty optional if the online mode is off
+   * @throws IOException If the headers failed to load
+   */
+  public synchronized Optional<GoogleParser> getGoogleParser(Neo4jAL neo4jAL) throws IOException {
+    if (!Boolean.TRUE.equals(parameters.getOnlineMode())) return Optional.empty();
+    if (googleParser == null) {
+      googleParser = new GoogleParser(neo4jAL);
+      getGoogleResultCache(neo4jAL).ifPresent(googleParser::setResultCache);
+    }
+    return Optional.of(googleParser);
+  }
+
+  /**
+   * Get the cache of the online search results. Only opened if the online mode is activated and the
+   * cache is enabled in the configuration. The cache stays usable after a ban of the parser.
+   *
+   * @param neo4jAL Neo4j Access Layer used to locate the workspace
+   * @return The cache, or an empty optional
+   */
+  public Optional<GoogleResultCache> getGoogleResultCache(Neo4jAL neo4jAL) {
+    if (!Boolean.TRUE.equals(parameters.getOnlineMode())) return Optional.empty();
+    if (!Boolean.parseBoolean(Configuration.get("artemis.online.cache.enabled"))) {
+      return Optional.empty();
+    }
+
+    Path file =
+        Workspace.getWorkspacePath(neo4jAL)
+            .resolve(Configuration.get("artemis.online.cache.folder"))
+            .resolve("google_results.cache");
+    return Optional.of(
+        GoogleResultCache.open(
+            file,
+            getIntProperty("artemis.online.cache.max_entries", 20000),
+            getIntProperty("artemis.online.cache.ttl", 2592000) * 1000L));
+  }
+
+  /**
+   * Get the Pythia controller. Its lookups are cached in the workspace, unless the cache is disabled
+   * in the configuration.
+   *
+   * @param neo4jAL Neo4j Access Layer used to locate the workspace
+   * @return The controller
+   */
+  public synchronized Pythia getPythia(Neo4jAL neo4jAL) {
+    if (pythiaController == null) {
+      pythiaController = new Pythia(parameters.getPythiaURL(), parameters.getPythiaToken());
+      if (Boolean.parseBoolean(Configuration.get("artemis.pythia.cache.enabled"))) {
+        pythiaController.setLookupCache(openPythiaCache(neo4jAL));
+      }
+    }
+    return pythiaController;
+  }
+
+  /**
+   * Open the cache of the Pythia lookups. One file is used per Pythia instance.
+   *
+   * @param neo4jAL Neo4j Access Layer used to locate the workspace
+   * @return The cache
+   */
+  private PythiaLookupCache openPythiaCache(Neo4jAL neo4jAL) {
+    String url = Objects.requireNonNullElse(parameters.getPythiaURL(), "");
+    Path file =
+        Workspace.getWorkspacePath(neo4jAL)
+            .resolve(Configuration.get("artemis.pythia.cache.folder"))
+            .resolve(String.format("pythia_%08x.cache", url.hashCode()));
+
+    return PythiaLookupCache.open(
+        file,
+        getIntProperty("artemis.pythia.cache.memory_size", 10000),
+        getIntProperty("artemis.pythia.cache.ttl", 604800) * 1000L,
+        getIntProperty("artemis.pythia.cache.negative_ttl", 86400) * 1000L);
+  }
+
+  /**
+   * Get the offline mirror of the Pythia catalog for the language, if one was exported in the
+   * workspace. The mirror is used even if Pythia can't be reached.
+   *
+   * @param neo4jAL Neo4j Access Layer used to locate the workspace
+   * @return The mirror, or an empty optional if there is none
+   */
+  public Optional<PythiaMirror> getPythiaMirror(Neo4jAL neo4jAL) {
+    try {
+      return PythiaMirror.get(Workspace.getPythiaMirrorFolder(neo4jAL), language.toString());
+    } catch (IOException e) {
+      neo4jAL.logError("Pythia :: Failed to open the offline mirror. Ignoring it.", e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Get the queue of the frameworks uploaded to Pythia. The frameworks are spooled in the workspace
+   * while Pythia can't be reached, and replayed once it is available.
+   *
+   * @param neo4jAL Neo4j Access Layer used to locate the workspace
+   * @return The queue, or an empty optional if the Pythia mode is off
+   */
+  public synchronized Optional<PythiaUploadQueue> getUploadQueue(Neo4jAL neo4jAL) {
+    if (!Boolean.TRUE.equals(parameters.getPythiaMode())) return Optional.empty();
+    if (uploadQueue != null) return Optional.of(uploadQueue);
+
+    Pythia pythia = getPythia(neo4jAL);
+    String url = Objects.requireNonNullElse(parameters.getPythiaURL(), "");
+    Path file =
+        Workspace.getWorkspacePath(neo4jAL)
+            .resolve(Configuration.get("artemis.pythia.cache.folder"))
+            .resolve(String.format("pythia_uploads_%s_%08x.spool", language, url.hashCode()));
+
+    uploadQueue =
+        new PythiaUploadQueue(
+            pythia,
+            language.toString(),
+            () -> isPythiaActivated(neo4jAL) && pythia.isAvailable(),
+            file,
+            getIntProperty("artemis.pythia.upload.capacity", 1000),
+            getIntProperty("artemis.pythia.upload.batch_size", 20));
+    return Optional.of(uploadQueue);
+  }
+
+  private static int getIntProperty(String key, int defaultValue) {
+    try {
+      return Integer.parseInt(Configuration.get(key));
+    } catch (NumberFormatException | NullPointerException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Get the language matching the detection on Pythia
+   *
+   * @return The language, null if Pythia is not activated
+   */
+  public synchronized PythiaLanguage getPythiaLanguage() {
+    return pythiaLanguage;
+  }
+
+  /**
+   * Check the connection to Pythia and look for the language of the detection. A successful check
+   * is kept for the session, a failed one is retried once its retry interval is over.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return True if Pythia can be used during the detection
+   */
+  public synchronized boolean isPythiaActivated(Neo4jAL neo4jAL) {
+    if (!Boolean.TRUE.equals(parameters.getPythiaMode())) {
+      neo4jAL.logInfo("Pythia is deactivated. Skipping.");
+      return false;
+    }
+
+    if (Boolean.TRUE.equals(pythiaActivated)) return true;
+    long retryInterval = getIntProperty("artemis.pythia.status.retry_interval", 60) * 1000L;
+    if (pythiaActivated != null && System.currentTimeMillis() - pythiaCheckDate < retryInterval) {
+      return false;
+    }
+
+    pythiaActivated = false;
+    pythiaCheckDate = System.currentTimeMillis();
+
+    Pythia pythia = getPythia(neo4jAL);
+
+    // Test Pythia communication
+    try {
+      neo4jAL.logInfo("Pythia :: Pythia is activated. Initializing.");
+      String status = pythia.getStatus();
+      neo4jAL.logInfo(String.format("Successful communication with Pythia. Status : %s", status));
+    } catch (Exception | PythiaException | PythiaResponse e) {
+      neo4jAL.logError("Pythia :: Failed to reach Pythia. Turning off Pythia mode.", e);
+      return false;
+    }
+
+    // Get the language of the detection
+    try {
+      neo4jAL.logInfo("Pythia :: Looking for a language.");
+      PythiaLanguage pl = pythia.findLanguage(language.toString());
+      if (pl == null) {
+        throw new Exception("Pythia language is null");
+      }
+
+      neo4jAL.logInfo(
+          String.format(
+              "Pythia :: Pythia found a corresponding language for the detector. Language : %s",
+              pl.toJson().toString()));
+      pythiaLanguage = pl;
+    } catch (Exception | PythiaResponse | PythiaException e) {
+      neo4jAL.logError(
+          String.format("Pythia :: Failed to find '%s' language on pythia .", language), e);
+      return false;
+    }
+
+    pythiaActivated = true;
+    return true;
+  }
+
+  /** Drop the components of the session. They will be created again on their next use. */
+  public synchronized void invalidate() {
+    if (uploadQueue != null) uploadQueue.close(5000); // The pending uploads are spooled
+    uploadQueue = null;
+    languageProperties = null;
+    nlpEngine = null;
+    googleParser = null;
+    pythiaController = null;
+    pythiaLanguage = null;
+    pythiaActivated = null;
+  }
+
+  public SupportedLanguage getLanguage() {
+    return language;
+  }
+
+  public DetectionParameters getParameters() {
+    return parameters;
+  }
+
+  public long getCreationDate() {
+    return creationDate;
+  }
+
+  /**
+   * Get the list of the components currently loaded, for display
+   *
+   * @return The components as a string
+   */
+  public synchronized String getLoadedComponents() {
+    StringBuilder sb = new StringBuilder();
+    if (languageProperties != null) sb.append("LanguageProperties ");
+    if (nlpEngine != null) sb.append("NLPEngine ");
+    if (googleParser != null) sb.append("GoogleParser ");
+    if (pythiaController != null) sb.append(String.format("Pythia(%s) ", pythiaActivated));
+    if (uploadQueue != null) sb.append(String.format("PythiaUploads(%d) ", uploadQueue.getNumPending()));
+    return sb.toString().trim();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.detector.session;
+
+import com.castsoftware.artemis.config.detection.DetectionParameters;
+import com.castsoftware.artemis.global.SupportedLanguage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the detection sessions, shared by the procedure calls. A session is identified by
+ * its language and the parameters changing its components.
+ */
+public class DetectionSessionRegistry {
+
+  private static final Map<String, DetectionSession> SESSIONS = new ConcurrentHashMap<>();
+
+  /**
+   * Get the key of a session
+   *
+   * @param language Language of the detection
+   * @param parameters Parameters of the detection
+   * @return The key
+   */
+  private static String getKey(SupportedLanguage language, DetectionParameters parameters) {
+    return String.join(
+        "|",
+        language.toString(),
+        String.valueOf(parameters.getOnlineMode()),
+        String.valueOf(parameters.getPythiaMode()),
+        String.valueOf(parameters.getPythiaURL()),
+        String.valueOf(parameters.getPythiaToken()));
+  }
+
+  /**
+   * Get the session of a language and of a set of parameters, or create it
+   *
+   * @param language Language of the detection
+   * @param parameters Parameters of the detection
+   * @return The session
+   */
+  public static DetectionSession getSession(
+      SupportedLanguage language, DetectionParameters parameters) {
+    return SESSIONS.computeIfAbsent(
+        getKey(language, parameters), k -> new DetectionSession(language, parameters));
+  }
+
+  /**
+   * Invalidate the sessions of a language
+   *
+   * @param language Language to invalidate
+   * @return The number of sessions invalidated
+   */
+  public static int invalidate(SupportedLanguage language) {
+    int count = 0;
+    for (Map.Entry<String, DetectionSession> en : SESSIONS.entrySet()) {
+      if (en.getValue().getLanguage() != language) continue;
+      en.getValue().invalidate();
+      SESSIONS.remove(en.getKey());
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Invalidate all the sessions
+   *
+   * @return The number of sessions invalidated
+   */
+  public static int invalidateAll() {
+    int count = SESSIONS.size();
+    SESSIONS.values().forEach(DetectionSession::invalidate);
+    SESSIONS.clear();
+    return count;
+  }
+
+  /**
+   * Get the sessions currently open
+   *
+   * @return The list of the sessions
+   */
+  public static List<DetectionSession> getSessions() {
+    return new ArrayList<>(SESSIONS.values());
+  }
+}
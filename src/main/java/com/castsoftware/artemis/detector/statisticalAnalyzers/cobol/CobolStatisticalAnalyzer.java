@@ -20,14 +20,12 @@ import com.castsoftware.artemis.detector.utils.DetectorPropertyUtil;
 import com.castsoftware.artemis.detector.utils.DetectorTypeMapper;
 import com.castsoftware.artemis.detector.utils.trees.ALeaf;
 import com.castsoftware.artemis.detector.utils.trees.ATree;
-import com.castsoftware.artemis.detector.utils.trees.TreeFactory;
 import com.castsoftware.artemis.detector.utils.trees.TreeUtil;
 import com.castsoftware.artemis.detector.utils.trees.cobol.CobolFrameworkTree;
 import com.castsoftware.artemis.detector.utils.trees.java.JavaFrameworkTree;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.artemis.global.SupportedLanguage;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
-import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Result;
 
 import javax.swing.text.html.Option;
@@ -133,12 +131,10 @@ public class CobolStatisticalAnalyzer extends AStatisticalAnalyzer {
 	public void flagCore() throws Neo4jQueryException {
 		log("Starting the analyzer.");
 
-		// Get the list of object to treat
-		List<Node> nodeList = DetectorNodesUtil.getInternalObjects(neo4jAL, languageProp, applicationName);
-		log(String.format("%d have been identified to build the module map.", nodeList.size()));
-
-		// Create a treeD
-		CobolFrameworkTree tree = TreeFactory.createCobolTree(languageProp, nodeList);
+		CobolFrameworkTree tree = new CobolFrameworkTree(languageProp);
+		// Stream the candidates in the tree ( sorted, the shape of the cobol tree depends on the insertion order )
+		long numCandidates = DetectorNodesUtil.forEachInternalCandidate(neo4jAL, languageProp, applicationName, true, tree::insertCandidate);
+		log(String.format("%d have been identified to build the module map.", numCandidates));
 		tree.print();
 
 		// Get Core of cobol application
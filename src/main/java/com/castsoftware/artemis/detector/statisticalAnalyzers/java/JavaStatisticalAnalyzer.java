@@ -16,9 +16,9 @@ import com.castsoftware.artemis.datasets.FrameworkType;
 import com.castsoftware.artemis.detector.utils.DetectionCategory;
 import com.castsoftware.artemis.detector.utils.DetectorNodesUtil;
 import com.castsoftware.artemis.detector.utils.DetectorPropertyUtil;
+import com.castsoftware.artemis.detector.utils.TagWriter;
 import com.castsoftware.artemis.detector.utils.DetectorTypeMapper;
 import com.castsoftware.artemis.detector.utils.trees.ALeaf;
-import com.castsoftware.artemis.detector.utils.trees.TreeFactory;
 import com.castsoftware.artemis.detector.utils.trees.java.JavaFrameworkTree;
 import com.castsoftware.artemis.detector.utils.trees.java.JavaFrameworkTreeLeaf;
 import com.castsoftware.artemis.detector.utils.functionalMaps.java.OldJavaFunctionalModule;
@@ -76,12 +76,10 @@ public class JavaStatisticalAnalyzer extends AStatisticalAnalyzer {
 	@Override
 	public void flagCore() throws Neo4jQueryException {
 		log("Starting the analyzer.");
-		// Get the list of object to treat
-		List<Node> nodeList = DetectorNodesUtil.getInternalObjects(neo4jAL, languageProp, applicationName);
-		log(String.format("%d have been identified to build the module map.", nodeList.size()));
-
-		// Create a treeD
-		JavaFrameworkTree tree = TreeFactory.createJavaTree(languageProp, nodeList);
+		JavaFrameworkTree tree = new JavaFrameworkTree(languageProp);
+		// Stream the candidates in the tree
+		long numCandidates = DetectorNodesUtil.forEachInternalCandidate(neo4jAL, languageProp, applicationName, false, tree::insertCandidate);
+		log(String.format("%d have been identified to build the module map.", numCandidates));
 
 		// Parse the tree slice on level 3 ( company )
 		ALeaf bestMatch = null;
@@ -115,11 +113,13 @@ public class JavaStatisticalAnalyzer extends AStatisticalAnalyzer {
 		String taxonomy = String.format("%s##%2$s##%2$s", DetectorPropertyUtil.getDefaultTaxonomy(), bestMatch.getName());
 		// Flag the node as Core logic of the application
 		int numFlagged = 0;
-		while(flagNodes.hasNext()) {
+		TagWriter writer = new TagWriter(neo4jAL);
+		while (flagNodes.hasNext()) {
 			Node n = (Node) flagNodes.next().get("node");
-			DetectorPropertyUtil.applyArtemisProperties(neo4jAL, n, DetectionCategory.MISSING_CODE, taxonomy, bestMatch.getName(), "Internal framework");
-			numFlagged ++;
+			writer.applyArtemisProperties(n, DetectionCategory.MISSING_CODE, taxonomy, bestMatch.getName(), "Internal framework");
+			numFlagged++;
 		}
+		writer.close();
 
 		log(String.format("The logic core seems to be located under '%s' has been extracted. " +
 				"%d nodes have been flagged.", bestMatch.getFullName(), numFlagged));
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.detector.utils;
+
+import com.castsoftware.artemis.config.Configuration;
+import org.neo4j.graphdb.Node;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Lightweight projection of an Imaging object used during the detection. Only the properties
+ * needed to build the trees and to query the frameworks are kept, the node itself is never
+ * loaded.
+ */
+public class DetectionCandidate {
+
+  private static final String IMAGING_OBJECT_NAME = Configuration.get("imaging.node.object.name");
+  private static final String IMAGING_OBJECT_FULL_NAME =
+      Configuration.get("imaging.node.object.fullName");
+  private static final String IMAGING_INTERNAL_TYPE =
+      Configuration.get("imaging.application.InternalType");
+  private static final String IMAGING_LEVEL_PROP = Configuration.get("imaging.node.object.level");
+  private static final String IMAGING_MODULE_PROP = Configuration.get("imaging.node.object.module");
+  private static final String IMAGING_SUBSET_PROP = Configuration.get("imaging.node.object.subset");
+  private static final String ARTEMIS_DETECTION_PROP = Configuration.get("artemis.node.detection");
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final Long id;
+  private final String name;
+  private final String fullName;
+  private final String internalType;
+  private final String level;
+  private final List<String> modules;
+  private final List<String> subsets;
+  private final Boolean external;
+  private final String detection; // Category applied by a previous detection, null if none
+
+  public DetectionCandidate(
+      Long id,
+      String name,
+      String fullName,
+      String internalType,
+      String level,
+      List<String> modules,
+      List<String> subsets,
+      Boolean external,
+      String detection) {
+    this.id = id;
+    this.name = name;
+    this.fullName = fullName;
+    this.internalType = internalType;
+    this.level = level;
+    this.modules = modules;
+    this.subsets = subsets;
+    this.external = external;
+    this.detection = detection;
+  }
+
+  /**
+   * Get the projection to use in a Cypher query returning candidates. The object must be bound to
+   * the variable "obj".
+   *
+   * @return The RETURN clause of the query
+   */
+  public static String getReturnClause() {
+    return String.format(
+        "RETURN ID(obj) as id, obj.%s as name, obj.%s as fullName, obj.%s as internalType, "
+            + "obj.%s as level, obj.%s as modules, obj.%s as subsets, obj.External as external, "
+            + "obj.`%s` as detection",
+        IMAGING_OBJECT_NAME,
+        IMAGING_OBJECT_FULL_NAME,
+        IMAGING_INTERNAL_TYPE,
+        IMAGING_LEVEL_PROP,
+        IMAGING_MODULE_PROP,
+        IMAGING_SUBSET_PROP,
+        ARTEMIS_DETECTION_PROP);
+  }
+
+  /**
+   * Create a candidate from a record returned by a query using the projection of {@link
+   * #getReturnClause()}
+   *
+   * @param record Record of the result
+   * @return The candidate
+   */
+  public static DetectionCandidate fromRecord(Map<String, Object> record) {
+    return new DetectionCandidate(
+        (Long) record.get("id"),
+        asString(record.get("name")),
+        asString(record.get("fullName")),
+        asString(record.get("internalType")),
+        asString(record.get("level")),
+        asStringList(record.get("modules")),
+        asStringList(record.get("subsets")),
+        asBoolean(record.get("external")),
+        asString(record.get("detection")));
+  }
+
+  /**
+   * Create a candidate from a node already loaded
+   *
+   * @param n Node to convert
+   * @return The candidate
+   */
+  public static DetectionCandidate fromNode(Node n) {
+    return new DetectionCandidate(
+        n.getId(),
+        asString(n.getProperty(IMAGING_OBJECT_NAME, null)),
+        asString(n.getProperty(IMAGING_OBJECT_FULL_NAME, null)),
+        asString(n.getProperty(IMAGING_INTERNAL_TYPE, null)),
+        asString(n.getProperty(IMAGING_LEVEL_PROP, null)),
+        asStringList(n.getProperty(IMAGING_MODULE_PROP, null)),
+        asStringList(n.getProperty(IMAGING_SUBSET_PROP, null)),
+        asBoolean(n.getProperty("External", null)),
+        asString(n.getProperty(ARTEMIS_DETECTION_PROP, null)));
+  }
+
+  private static String asString(Object o) {
+    return o == null ? null : o.toString();
+  }
+
+  private static Boolean asBoolean(Object o) {
+    if (o == null) return null;
+    if (o instanceof Boolean) return (Boolean) o;
+    return Boolean.parseBoolean(o.toString());
+  }
+
+  private static List<String> asStringList(Object o) {
+    if (o == null) return Collections.emptyList();
+    if (o instanceof String[]) return Arrays.asList((String[]) o);
+    if (o instanceof List) {
+      return ((List<?>) o).stream().map(String::valueOf).collect(Collectors.toList());
+    }
+    return Collections.singletonList(o.toString());
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getFullName() {
+    return fullName;
+  }
+
+  public String getInternalType() {
+    return internalType;
+  }
+
+  public String getLevel() {
+    return level;
+  }
+
+  public List<String> getModules() {
+    return modules;
+  }
+
+  public List<String> getSubsets() {
+    return subsets;
+  }
+
+  public Boolean getExternal() {
+    return external;
+  }
+
+  /**
+   * Check if the object was tagged by a previous detection
+   *
+   * @return True if the detection property is present on the object
+   */
+  public boolean isDetected() {
+    return detection != null;
+  }
+
+  /**
+   * Get the fingerprint of the candidate, computed on its full name, its internal type and its
+   * externality. The node id is ignored, as it changes when the application is rebuilt. The tags
+   * are not part of it, see {@link #isDetected()}.
+   *
+   * @return A 64 bits FNV-1a hash
+   */
+  public long getFingerprint() {
+    String key = String.join("|", String.valueOf(fullName), String.valueOf(internalType), String.valueOf(external));
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  public boolean hasName() {
+    return name != null;
+  }
+
+  public boolean hasFullName() {
+    return fullName != null;
+  }
+}
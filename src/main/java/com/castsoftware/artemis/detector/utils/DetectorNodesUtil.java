@@ -16,108 +16,127 @@ import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.artemis.modules.pythia.models.api.PythiaImagingFramework;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Result;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class DetectorNodesUtil {
 
 	/**
-	 * Get the list of internal objects
+	 * Stream the internal objects of the application as candidates. The result is consumed lazily and only
+	 * the projected properties are loaded, so the memory stays flat regardless of the size of the application.
 	 * @param neo4jAL Neo4j Access layer
 	 * @param languageProp Language property
 	 * @param application Name of the application
-	 * @return The list of internal objects in the application
+	 * @param sorted If true, the candidates are ordered by FullName (descending). Only use it if the consumer relies on the order
+	 * @param consumer Consumer of the candidates
+	 * @return The number of candidates consumed
+	 * @throws Neo4jQueryException
+	 */
+	public static long forEachInternalCandidate(Neo4jAL neo4jAL, LanguageProp languageProp, String application,
+												boolean sorted, Consumer<DetectionCandidate> consumer) throws Neo4jQueryException {
+		return forEachCandidate(neo4jAL, languageProp, application, false, "", sorted, consumer);
+	}
+
+	/**
+	 * Stream the external objects of the application as candidates.
+	 * @param neo4jAL Neo4j Access layer
+	 * @param languageProp Language property
+	 * @param application Name of the application
+	 * @param additionalFilters Additional filters as a string ( MUST START WITH AND/OR AND FILTER ON "obj" ), can be empty
+	 * @param sorted If true, the candidates are ordered by FullName (descending)
+	 * @param consumer Consumer of the candidates
+	 * @return The number of candidates consumed
+	 * @throws Neo4jQueryException
 	 */
-	public static List<Node> getInternalObjects(Neo4jAL neo4jAL, LanguageProp languageProp, String application) throws Neo4jQueryException {
-		List<String> categories = languageProp.getObjectsInternalType();
-		List<Node> internalNodes = new ArrayList<>();
+	public static long forEachExternalCandidate(Neo4jAL neo4jAL, LanguageProp languageProp, String application,
+												String additionalFilters, boolean sorted,
+												Consumer<DetectionCandidate> consumer) throws Neo4jQueryException {
+		return forEachCandidate(neo4jAL, languageProp, application, true, additionalFilters, sorted, consumer);
+	}
 
+	/**
+	 * Stream the objects of the application matching the externality as candidates. Each record is passed to the
+	 * consumer as soon as it is read.
+	 * @param neo4jAL Neo4j Access layer
+	 * @param languageProp Language property
+	 * @param application Name of the application
+	 * @param external Externality of the objects
+	 * @param additionalFilters Additional filters as a string ( MUST START WITH AND/OR AND FILTER ON "obj" ), can be empty
+	 * @param sorted If true, the candidates are ordered by FullName (descending)
+	 * @param consumer Consumer of the candidates
+	 * @return The number of candidates consumed
+	 * @throws Neo4jQueryException
+	 */
+	public static long forEachCandidate(Neo4jAL neo4jAL, LanguageProp languageProp, String application,
+										 Boolean external, String additionalFilters, boolean sorted,
+										 Consumer<DetectionCandidate> consumer) throws Neo4jQueryException {
 		String forgedRequest =
 				String.format(
-						"MATCH (obj:Object:`%s`) WHERE obj.InternalType in $internalTypes AND obj.External=false " +
-								"RETURN obj as node ORDER BY obj.FullName DESC",
-						application);
-		Map<String, Object> params = Map.of("internalTypes", categories);
-		Result res = neo4jAL.executeQuery(forgedRequest, params);
-
-		while (res.hasNext()) {
-			Map<String, Object> resMap = res.next();
-			Node node = (Node) resMap.get("node");
-			internalNodes.add(node);
+						"MATCH (obj:Object:`%s`) WHERE obj.InternalType in $internalTypes AND obj.External=$external %s "
+								+ DetectionCandidate.getReturnClause(),
+						application, additionalFilters);
+		if (sorted) forgedRequest += " ORDER BY fullName DESC";
+
+		Map<String, Object> params = Map.of("internalTypes", languageProp.getObjectsInternalType(), "external", external);
+		long count = 0L;
+		try (Result res = neo4jAL.executeQuery(forgedRequest, params)) {
+			while (res.hasNext()) {
+				consumer.accept(DetectionCandidate.fromRecord(res.next()));
+				count++;
+			}
 		}
-
-		return internalNodes;
+		return count;
 	}
 
 	/**
-	 * Get the list of external objects in the application
+	 * Count the external objects of the application without loading them
 	 * @param neo4jAL Neo4j Access layer
-	 * @param languageProp Language properties
+	 * @param languageProp Language property
 	 * @param application Name of the application
-	 * @return The list of external objects in the application
+	 * @param additionalFilters Additional filters as a string ( MUST START WITH AND/OR AND FILTER ON "obj" ), can be empty
+	 * @return The number of external candidates
+	 * @throws Neo4jQueryException
 	 */
-	public static List<Node> getExternalObjects(Neo4jAL neo4jAL, LanguageProp languageProp, String application) throws Neo4jQueryException {
-		List<String> categories = languageProp.getObjectsInternalType();
-		List<Node> externalNodes = new ArrayList<>();
-
+	public static long countExternalObjects(Neo4jAL neo4jAL, LanguageProp languageProp, String application, String additionalFilters) throws Neo4jQueryException {
 		String forgedRequest =
 				String.format(
-						"MATCH (obj:Object:`%s`) WHERE  obj.InternalType in $internalTypes " +
-								"AND obj.External=false " +
-								"RETURN obj as node ORDER BY obj.FullName DESC",
-						application);
-		Map<String, Object> params = Map.of("internalTypes", categories);
-		Result res = neo4jAL.executeQuery(forgedRequest, params);
-
-		while (res.hasNext()) {
-			Map<String, Object> resMap = res.next();
-			Node node = (Node) resMap.get("node");
-			externalNodes.add(node);
+						"MATCH (obj:Object:`%s`) WHERE obj.InternalType in $internalTypes AND obj.External=true %s " +
+								"RETURN COUNT(obj) as count",
+						application, additionalFilters);
+		try (Result res = neo4jAL.executeQuery(forgedRequest, Map.of("internalTypes", languageProp.getObjectsInternalType()))) {
+			if (!res.hasNext()) return 0L;
+			return (Long) res.next().get("count");
 		}
-
-		return externalNodes;
 	}
 
 	/**
-	 * Get external nodes with the additional filters ( obj must be filtered )
-	 * @param neo4jAL Neo4j Access Layer
-	 * @param languageProp Language Property
+	 * Stream the external candidates following an id, ordered by id. The query is run once on the transaction of the
+	 * procedure, so the chunked detections can commit their work while reading it. The iterator must be closed.
+	 * @param neo4jAL Neo4j Access layer
+	 * @param languageProp Language property
 	 * @param application Name of the application
-	 * @param additionalFilters Additional filters as a string ( MUST START WITH AND/OR AND FILTER ON "obj" )
-	 * @return The list of node
+	 * @param additionalFilters Additional filters as a string ( MUST START WITH AND/OR AND FILTER ON "obj" ), can be empty
+	 * @param lastId Id of the last candidate already processed, -1 to start from the first one
+	 * @return The iterator on the candidates following the last id
 	 * @throws Neo4jQueryException
 	 */
-	public static List<Node> getExternalObjects(Neo4jAL neo4jAL, LanguageProp languageProp, String application, String additionalFilters) throws Neo4jQueryException {
-		List<String> categories = languageProp.getObjectsInternalType();
-		List<Node> externalNodes = new ArrayList<>();
-
+	public static ResourceIterator<DetectionCandidate> streamExternalCandidatesAfter(Neo4jAL neo4jAL, LanguageProp languageProp, String application,
+																					 String additionalFilters, Long lastId) throws Neo4jQueryException {
 		String forgedRequest =
 				String.format(
-						"MATCH (obj:Object:`%s`) WHERE  obj.InternalType in $internalTypes " +
-								"AND obj.External=true " +
-								additionalFilters +
-								" RETURN obj as node ORDER BY obj.FullName DESC",
-						application);
-		neo4jAL.logInfo(String.format("Getting the list of Cobol external programs: \n %s", forgedRequest));
-		Map<String, Object> params = Map.of("internalTypes", categories);
-		Result res = neo4jAL.executeQuery(forgedRequest, params);
-
-		while (res.hasNext()) {
-			Map<String, Object> resMap = res.next();
-			Node node = (Node) resMap.get("node");
-			externalNodes.add(node);
-		}
-
-		neo4jAL.logInfo(String.format("Found %d External cobol objects.", externalNodes.size()));
+						"MATCH (obj:Object:`%s`) WHERE obj.InternalType in $internalTypes AND obj.External=true AND ID(obj) > $lastId %s "
+								+ DetectionCandidate.getReturnClause() + " ORDER BY id ASC",
+						application, additionalFilters);
 
-		return externalNodes;
+		Map<String, Object> params = Map.of("internalTypes", languageProp.getObjectsInternalType(), "lastId", lastId);
+		return neo4jAL.executeProcedureQuery(forgedRequest, params).map(DetectionCandidate::fromRecord);
 	}
 
-
 	/**
 	 * Get the nodes by pattern and externality
 	 * @param neo4jAL Neo4j Access Layer
@@ -152,12 +171,14 @@ public class DetectorNodesUtil {
 	 */
 	public static void flagNodesWithImagingFramework(Neo4jAL neo4jAL, String application, PythiaImagingFramework pythiaFramework, Boolean external) {
 		try {
+			TagWriter writer = new TagWriter(neo4jAL);
 			List<Node> toFlagNodes = DetectorNodesUtil.getNodesByPatternAndExternality(neo4jAL, application, pythiaFramework.getPattern(), external);
 			int numFlagged = 0;
 			for (Node n : toFlagNodes) {
-				tagNodeWithImagingFramework(neo4jAL, n, pythiaFramework);
+				tagNodeWithImagingFramework(writer, n, pythiaFramework);
 				numFlagged++;
 			}
+			writer.close();
 
 			neo4jAL.logInfo(
 					String.format(
@@ -171,20 +192,19 @@ public class DetectorNodesUtil {
 
 	/**
 	 * Tag a node with an Imaging Framework Node
+	 * @param writer Tag writer to use
 	 * @param n Node to tag
 	 * @param imagingFramework Imaging framework detected
 	 */
-	public static void tagNodeWithImagingFramework(Neo4jAL neo4jAL, Node n, PythiaImagingFramework imagingFramework) throws Neo4jQueryException {
-		DetectorPropertyUtil.applyDetectionProperty(n, DetectionCategory.KNOWN_UTILITY);
-		DetectorPropertyUtil.applyTaxonomyProperty(n, imagingFramework.getFormattedTaxonomy());
-		DetectorPropertyUtil.applyFrameworkName(neo4jAL, n, imagingFramework.getName());
-		DetectorPropertyUtil.applyDescriptionProperty(neo4jAL, n, imagingFramework.getDescription());
+	public static void tagNodeWithImagingFramework(TagWriter writer, Node n, PythiaImagingFramework imagingFramework) throws Neo4jQueryException {
+		writer.applyArtemisProperties(n, DetectionCategory.KNOWN_UTILITY, imagingFramework.getFormattedTaxonomy(),
+				imagingFramework.getName(), imagingFramework.getDescription());
 	}
 
 
 	/**
 	 * Apply all the properties on the node
-	 * @param neo4jAL Neo4j Access Layer
+	 * @param writer Tag writer to use
 	 * @param n Node
 	 * @param category Category of the detection
 	 * @param level4 Level 4
@@ -193,16 +213,13 @@ public class DetectorNodesUtil {
 	 * @param description Description
 	 * @throws Neo4jQueryException
 	 */
-	public static void tagNodeWithFramework(Neo4jAL neo4jAL, Node n,
+	public static void tagNodeWithFramework(TagWriter writer, Node n,
 											DetectionCategory category,
 											String level4,
 											String level5,
 											String name,
 											String description) throws Neo4jQueryException {
 		String defaultTaxonomy = DetectorPropertyUtil.getDefaultTaxonomy(level4, level5);
-		DetectorPropertyUtil.applyDetectionProperty(n, category);
-		DetectorPropertyUtil.applyTaxonomyProperty(n, defaultTaxonomy);
-		DetectorPropertyUtil.applyFrameworkName(neo4jAL, n,  name);
-		DetectorPropertyUtil.applyDescriptionProperty(neo4jAL, n, description);
+		writer.applyArtemisProperties(n, category, defaultTaxonomy, name, description);
 	}
-}
+}
\ No newline at end of file
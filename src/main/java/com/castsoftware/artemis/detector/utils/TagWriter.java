@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.detector.utils;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batching writer for the Artemis tags. The properties on the nodes are applied directly, while the
+ * links to the ObjectProperty nodes are buffered and written in UNWIND batches. Each ObjectProperty
+ * node is resolved only once per writer.
+ */
+public class TagWriter {
+
+  private static final int DEFAULT_BATCH_SIZE = 5000;
+
+  private static final String FLUSH_REQUEST =
+      "UNWIND $rows as row "
+          + "MATCH (p:ObjectProperty) WHERE ID(p)=row.propertyId "
+          + "MATCH (n) WHERE ID(n)=row.nodeId "
+          + "MERGE (p)<-[r:Property]-(n) SET r.value=row.value";
+
+  private final Neo4jAL neo4jAL;
+  private final int batchSize;
+
+  // Name of the properties, resolved once
+  private final String detectionProperty;
+  private final String taxonomyProperty;
+  private final String categoryProperty;
+  private final String nameProperty;
+
+  private final Map<String, Long> propertyNodes = new HashMap<>();
+  private List<Map<String, Object>> buffer;
+
+  // Statistics
+  private long numNodes = 0L;
+  private long numProperties = 0L;
+  private long numBatches = 0L;
+  private long flushTime = 0L;
+
+  /**
+   * Create a writer using the batch size of the configuration
+   *
+   * @param neo4jAL Neo4j Access Layer
+   */
+  public TagWriter(Neo4jAL neo4jAL) {
+    this(neo4jAL, getConfiguredBatchSize());
+  }
+
+  /**
+   * Create a writer
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param batchSize Number of property links buffered before a flush
+   */
+  public TagWriter(Neo4jAL neo4jAL, int batchSize) {
+    this.neo4jAL = neo4jAL;
+    this.batchSize = Math.max(1, batchSize);
+    this.buffer = new ArrayList<>(this.batchSize);
+
+    this.detectionProperty = Configuration.get("artemis.node.detection");
+    this.taxonomyProperty = Configuration.get("artemis.node.taxonomy");
+    this.categoryProperty = Configuration.get("artemis.node.category");
+    this.nameProperty = Configuration.get("artemis.node.name");
+  }
+
+  /**
+   * Get the batch size declared in the configuration
+   *
+   * @return The batch size, or the default one if the value is missing or incorrect
+   */
+  private static int getConfiguredBatchSize() {
+    try {
+      return Integer.parseInt(Configuration.get("artemis.tagging.batch_size"));
+    } catch (NumberFormatException | NullPointerException e) {
+      return DEFAULT_BATCH_SIZE;
+    }
+  }
+
+  /**
+   * Get the description of the property nodes linked to the tagged objects
+   *
+   * @return The descriptions of the shared property nodes
+   */
+  public static List<String> getPropertyDescriptions() {
+    return List.of(
+        Configuration.get("artemis.node.name"),
+        "Framework description",
+        Configuration.get("artemis.sub_node.in_other_apps.property"));
+  }
+
+  /**
+   * Get the id of the ObjectProperty node with this description. The node is merged the first time
+   * only.
+   *
+   * @param description Description of the property
+   * @return The id of the ObjectProperty node
+   * @throws Neo4jQueryException
+   */
+  private Long resolvePropertyNode(String description) throws Neo4jQueryException {
+    Long id = propertyNodes.get(description);
+    if (id != null) return id;
+
+    String req = "MERGE (o:ObjectProperty { Description : $DescName }) RETURN ID(o) as id";
+    Result res = neo4jAL.executeQuery(req, Map.of("DescName", description));
+    if (!res.hasNext()) {
+      throw new Neo4jQueryException(
+          String.format("Failed to merge the object property '%s'.", description),
+          req,
+          new Exception("No result returned"),
+          "TAGWxRESO1");
+    }
+
+    id = (Long) res.next().get("id");
+    propertyNodes.put(description, id);
+    return id;
+  }
+
+  /**
+   * Buffer a property link between a node and an ObjectProperty
+   *
+   * @param n Node
+   * @param description Description of the ObjectProperty
+   * @param value Value of the link
+   * @throws Neo4jQueryException
+   */
+  public void addProperty(Node n, String description, String value) throws Neo4jQueryException {
+    Map<String, Object> row = new HashMap<>();
+    row.put("nodeId", n.getId());
+    row.put("propertyId", resolvePropertyNode(description));
+    row.put("value", value == null ? "" : value);
+    buffer.add(row);
+
+    if (buffer.size() >= batchSize) flush();
+  }
+
+  /**
+   * Apply a Name of the Framework on the node
+   *
+   * @param n Node to tag
+   * @param name Name of the Framework
+   * @throws Neo4jQueryException
+   */
+  public void applyFrameworkName(Node n, String name) throws Neo4jQueryException {
+    addProperty(n, nameProperty, name);
+  }
+
+  /**
+   * Apply a description to the node
+   *
+   * @param n Node to process
+   * @param description Description on the node
+   * @throws Neo4jQueryException
+   */
+  public void applyDescriptionProperty(Node n, String description) throws Neo4jQueryException {
+    addProperty(n, "Framework description", description);
+  }
+
+  /**
+   * Apply the detection, taxonomy, name and description on a node
+   *
+   * @param n Node to flag
+   * @param cat Category
+   * @param taxonomy Taxonomy
+   * @param name Name
+   * @param description Description
+   * @throws Neo4jQueryException
+   */
+  public void applyArtemisProperties(
+      Node n, DetectionCategory cat, String taxonomy, String name, String description)
+      throws Neo4jQueryException {
+    n.setProperty(detectionProperty, cat.toString());
+    n.setProperty(taxonomyProperty, taxonomy);
+    applyFrameworkName(n, name);
+    applyDescriptionProperty(n, description);
+    numNodes++;
+  }
+
+  /**
+   * Apply the detection, category, name and description on a node
+   *
+   * @param n Node to flag
+   * @param cat Detection category
+   * @param category Category of the framework
+   * @param name Name
+   * @param description Description
+   * @throws Neo4jQueryException
+   */
+  public void applyCategoryProperties(
+      Node n, DetectionCategory cat, String category, String name, String description)
+      throws Neo4jQueryException {
+    n.setProperty(detectionProperty, cat.toString());
+    n.setProperty(categoryProperty, category);
+    applyFrameworkName(n, name);
+    applyDescriptionProperty(n, description);
+    numNodes++;
+  }
+
+  /**
+   * Write the buffered links
+   *
+   * @throws Neo4jQueryException
+   */
+  public void flush() throws Neo4jQueryException {
+    if (buffer.isEmpty()) return;
+
+    long start = System.currentTimeMillis();
+    List<Map<String, Object>> rows = buffer;
+    buffer = new ArrayList<>(batchSize);
+
+    neo4jAL.executeQuery(FLUSH_REQUEST, Map.of("rows", rows));
+
+    numProperties += rows.size();
+    numBatches++;
+    flushTime += System.currentTimeMillis() - start;
+  }
+
+  /**
+   * Drop the buffered links and the resolved ObjectProperty nodes, after a rollback of the
+   * transaction they were meant for
+   */
+  public void discard() {
+    buffer = new ArrayList<>(batchSize);
+    propertyNodes.clear();
+  }
+
+  /**
+   * Flush the remaining links and log the statistics of the writer
+   *
+   * @throws Neo4jQueryException
+   */
+  public void close() throws Neo4jQueryException {
+    flush();
+    if (numProperties > 0) neo4jAL.logInfo(getStatistics());
+  }
+
+  public long getNumNodes() {
+    return numNodes;
+  }
+
+  public long getNumProperties() {
+    return numProperties;
+  }
+
+  public long getNumBatches() {
+    return numBatches;
+  }
+
+  public long getFlushTime() {
+    return flushTime;
+  }
+
+  /**
+   * Get the number of property links written per second
+   *
+   * @return The throughput of the writer
+   */
+  public double getThroughput() {
+    if (flushTime == 0L) return numProperties;
+    return numProperties * 1000.0 / flushTime;
+  }
+
+  /**
+   * Get the statistics as a printable string
+   *
+   * @return The statistics
+   */
+  public String getStatistics() {
+    return String.format(
+        "Tag writer : %d nodes tagged, %d properties written in %d batches (%d ms, %.1f properties/s).",
+        numNodes, numProperties, numBatches, flushTime, getThroughput());
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.detector.utils.pipeline;
+
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Staged resolution pipeline. The resolutions are computed asynchronously on bounded pools, but
+ * their results are applied by a single writer, on the thread of the procedure, in the order of
+ * submission. The Neo4j transaction is therefore never used by the workers. The completed
+ * resolutions can be held until enough of them need a preparation, then prepared together as one
+ * batch before being written.
+ *
+ * @param <R> Type of the resolution
+ */
+public class ResolutionPipeline<R> {
+
+  private static final int MAX_HELD_BATCHES = 4;
+
+  private final Neo4jAL neo4jAL;
+  private final Consumer<R> writer;
+  private final int maxInFlight;
+  private final Deque<CompletableFuture<R>> pending = new ArrayDeque<>();
+  private final List<R> ready = new ArrayList<>(); // Completed, waiting for their batch
+  private Consumer<List<R>> preparer = null;
+  private Predicate<R> needsPreparation = r -> true;
+  private int preparationBatchSize = 1;
+  private int numToPrepare = 0;
+
+  private long numApplied = 0L;
+  private long numFailed = 0L;
+
+  /**
+   * Create a pipeline
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param maxInFlight Maximum number of resolutions waiting to be written
+   * @param writer Writer applying the resolutions, always called from the submitting thread
+   */
+  public ResolutionPipeline(Neo4jAL neo4jAL, int maxInFlight, Consumer<R> writer) {
+    this.neo4jAL = neo4jAL;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.writer = writer;
+  }
+
+  /**
+   * Set the step preparing the completed resolutions, before they are written. The completed
+   * resolutions are held, in order, until the batch holds enough resolutions to prepare, or until
+   * the pipeline is flushed. Called from the submitting thread, like the writer.
+   *
+   * @param preparer Preparer of the batches, null to write the resolutions directly
+   * @param needsPreparation Resolutions counted in the batch size
+   * @param batchSize Number of resolutions to prepare before the batch is prepared and written
+   */
+  public void setPreparer(Consumer<List<R>> preparer, Predicate<R> needsPreparation, int batchSize) {
+    this.preparer = preparer;
+    this.needsPreparation = needsPreparation;
+    this.preparationBatchSize = Math.max(1, batchSize);
+  }
+
+  /**
+   * Submit a resolution. The completed resolutions at the head of the queue are written, and the
+   * call blocks if too many resolutions are waiting.
+   *
+   * @param resolution Resolution to submit
+   */
+  public void submit(CompletableFuture<R> resolution) {
+    pending.addLast(resolution);
+    drain(false);
+  }
+
+  /**
+   * Collect the completed resolutions, in order. The head is awaited if necessary. The resolutions
+   * collected are written once the batch holds enough resolutions to prepare, or at the end of a
+   * flush.
+   *
+   * @param waitAll If true, wait for all the pending resolutions
+   */
+  private void drain(boolean waitAll) {
+    while (!pending.isEmpty()) {
+      CompletableFuture<R> head = pending.peekFirst();
+      boolean mustWait = waitAll || pending.size() > maxInFlight;
+      if (!head.isDone() && !mustWait) return;
+
+      if (!head.isDone()) neo4jAL.checkTermination(); // Stop before waiting if the procedure was killed
+
+      do {
+        CompletableFuture<R> next = pending.removeFirst();
+        try {
+          collect(next.get());
+        } catch (ExecutionException e) {
+          numFailed++;
+          neo4jAL.logError("A resolution failed in the pipeline.", e.getCause());
+        } catch (CancellationException e) {
+          numFailed++; // A cancelled resolution stays unresolved, the following ones are still written
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          writeReady(); // The resolutions already collected are not lost
+          next.cancel(true);
+          cancel();
+          return;
+        }
+      } while (!pending.isEmpty() && pending.peekFirst().isDone());
+
+      if (isBatchReady()) writeReady();
+    }
+    if (waitAll) writeReady();
+  }
+
+  /**
+   * Check if the collected resolutions must be written. Nothing is held if no resolution needs a
+   * preparation, and at most four batches of resolutions are held.
+   *
+   * @return True if the batch must be written now
+   */
+  private boolean isBatchReady() {
+    return preparer == null
+        || numToPrepare == 0
+        || numToPrepare >= preparationBatchSize
+        || ready.size() >= MAX_HELD_BATCHES * preparationBatchSize;
+  }
+
+  /**
+   * Add a completed resolution to the batch
+   *
+   * @param result Resolution, null if nothing must be written
+   */
+  private void collect(R result) {
+    ready.add(result);
+    if (result != null && needsPreparation.test(result)) numToPrepare++;
+  }
+
+  /** Prepare and write the collected resolutions, in order */
+  private void writeReady() {
+    if (ready.isEmpty()) return;
+    if (preparer != null && numToPrepare > 0) preparer.accept(ready);
+    for (R result : ready) {
+      if (result != null) writer.accept(result);
+      numApplied++;
+    }
+    ready.clear();
+    numToPrepare = 0;
+  }
+
+  /** Wait for the pending resolutions and write them */
+  public void flush() {
+    drain(true);
+  }
+
+  /** Cancel the resolutions not yet written */
+  public void cancel() {
+    pending.forEach(f -> f.cancel(true));
+    pending.clear();
+    ready.clear();
+    numToPrepare = 0;
+  }
+
+  public long getNumApplied() {
+    return numApplied;
+  }
+
+  public long getNumFailed() {
+    return numFailed;
+  }
+
+  public int getNumPending() {
+    return pending.size() + ready.size();
+  }
+}
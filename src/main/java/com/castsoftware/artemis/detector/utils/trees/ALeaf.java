@@ -13,7 +13,7 @@ package com.castsoftware.artemis.detector.utils.trees;
 
 import com.castsoftware.artemis.config.Configuration;
 import com.castsoftware.artemis.config.detection.LanguageProp;
-import com.castsoftware.artemis.neo4j.Neo4jTypeManager;
+import com.castsoftware.artemis.detector.utils.DetectionCandidate;
 import org.neo4j.graphdb.Node;
 
 import java.util.ArrayList;
@@ -58,6 +58,10 @@ public abstract class ALeaf {
   protected Set<String> subset = new HashSet<>();
   protected Set<Long> idNodes = new HashSet<>();
 
+  // Sum of the fingerprints of the candidates, independent of their insertion order
+  protected long fingerprint = 0L;
+  protected long numDetected = 0L; // Candidates tagged by a previous detection
+
   /**
    * Create a leaf to be inserted
    * @param fullName FullName of the leaf ( complete path from the top )
@@ -112,28 +116,39 @@ public abstract class ALeaf {
    * @param n Node to add in the leaf
    */
   public void addNode(Node n) {
+    this.addCandidate(DetectionCandidate.fromNode(n));
+  }
 
-    if (n.hasProperty(IMAGING_INTERNAL_TYPE)) {
-      String internalType = (String) n.getProperty(IMAGING_INTERNAL_TYPE);
-      this.addObjectType(internalType);
-    }
-
-    if (n.hasProperty(IMAGING_LEVEL_PROP)) {
-      String level = (String) n.getProperty(IMAGING_LEVEL_PROP);
-      this.addLevel(level);
-    }
+  /**
+   * Process the candidate in the leaf
+   *
+   * @param candidate Candidate to add in the leaf
+   */
+  public void addCandidate(DetectionCandidate candidate) {
+    if (candidate.getInternalType() != null) this.addObjectType(candidate.getInternalType());
+    if (candidate.getLevel() != null) this.addLevel(candidate.getLevel());
 
-    if (n.hasProperty(IMAGING_MODULE_PROP)) {
-      List<String> modules = Neo4jTypeManager.getAsStringList(n, IMAGING_MODULE_PROP);
-      this.addModules(modules);
-    }
+    this.addModules(candidate.getModules());
+    this.addSubset(candidate.getSubsets());
 
-    if (n.hasProperty(IMAGING_SUBSET_PROP)) {
-      List<String> subset = Neo4jTypeManager.getAsStringList(n, IMAGING_MODULE_PROP);
-      this.addSubset(subset);
+    if (this.idNodes.add(candidate.getId())) {
+      this.fingerprint += candidate.getFingerprint();
+      if (candidate.isDetected()) this.numDetected++;
     }
+  }
 
-    this.idNodes.add(n.getId());
+  /**
+   * Get the fingerprint of the branch starting at this leaf. Two branches containing the same
+   * objects, with the same number of objects tagged by a previous detection, have the same
+   * fingerprint. A rebuilt application loses its tags, so its branches are analyzed again.
+   *
+   * @return The fingerprint
+   */
+  public long getFingerprint() {
+    long hash = fingerprint;
+    hash = hash * 31 + idNodes.size();
+    hash = hash * 31 + numDetected;
+    return hash;
   }
 
   /**
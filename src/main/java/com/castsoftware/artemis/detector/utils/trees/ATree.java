@@ -12,6 +12,7 @@
 package com.castsoftware.artemis.detector.utils.trees;
 
 import com.castsoftware.artemis.config.detection.LanguageProp;
+import com.castsoftware.artemis.detector.utils.DetectionCandidate;
 import org.neo4j.graphdb.Node;
 
 import java.util.ArrayList;
@@ -37,11 +38,21 @@ public abstract class ATree {
 
   public abstract void print();
 
+  /**
+   * Insert a candidate in the tree. Can be used directly as a consumer of the candidate stream
+   * @param candidate Candidate to insert
+   */
+  public abstract void insertCandidate(DetectionCandidate candidate);
+
   /**
    * Insert recursively a list of node in the tree
    * @param nodeList List of node to insert
    */
-  public abstract void recursiveObjectsInsert(List<Node> nodeList);
+  public void recursiveObjectsInsert(List<Node> nodeList) {
+    for (Node n : nodeList) {
+      this.insertCandidate(DetectionCandidate.fromNode(n));
+    }
+  }
 
   /**
    * Get a slice of the tree for a specific depth
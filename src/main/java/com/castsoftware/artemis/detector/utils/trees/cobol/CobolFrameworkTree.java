@@ -12,12 +12,10 @@
 package com.castsoftware.artemis.detector.utils.trees.cobol;
 
 import com.castsoftware.artemis.config.detection.LanguageProp;
+import com.castsoftware.artemis.detector.utils.DetectionCandidate;
 import com.castsoftware.artemis.detector.utils.trees.ALeaf;
 import com.castsoftware.artemis.detector.utils.trees.ATree;
 import com.castsoftware.artemis.detector.utils.trees.java.JavaFrameworkTreeLeaf;
-import org.neo4j.graphdb.Node;
-
-import java.util.List;
 
 public class CobolFrameworkTree extends ATree {
 
@@ -52,7 +50,7 @@ public class CobolFrameworkTree extends ATree {
    * @param leaf Leaf to insert the package
    * @param fullName Name of the program to be inserted
    */
-  private void recInsert(CobolFrameworkTreeLeaf leaf, String fullName, Node n, Integer depth) {
+  private void recInsert(CobolFrameworkTreeLeaf leaf, String fullName, DetectionCandidate candidate, Integer depth) {
     try {
 
       // Check if a package already exist or create it
@@ -73,20 +71,20 @@ public class CobolFrameworkTree extends ATree {
       }
 
       CobolFrameworkTreeLeaf newLeaf = new CobolFrameworkTreeLeaf(fullName, fullName);
-      newLeaf.addNode(n);
+      newLeaf.addCandidate(candidate);
       newLeaf.setDepth(depth + 1);
 
       // If no match add it to the current leaf
       // If a matching leaf wasn't found, create a new one
       if (matchingLeaf == null) {
         // Add the leaf to the tree
-        leaf.addNode(n);
+        leaf.addCandidate(candidate);
         leaf.addLeaf(newLeaf);
       } else if ( matchingLeaf.getName().equals(fullName) || leaf.getName().equals(longestCommonPrefix)) {
-        matchingLeaf.addNode(n);
+        matchingLeaf.addCandidate(candidate);
       } else if( matchingLeaf.getName().equals(longestCommonPrefix)) {
-        matchingLeaf.addNode(n);
-        recInsert(matchingLeaf, fullName, n, depth + 1); // Continue to insert
+        matchingLeaf.addCandidate(candidate);
+        recInsert(matchingLeaf, fullName, candidate, depth + 1); // Continue to insert
       } else {
         // Update leaf
         matchingLeaf.setDepth(depth + 1);
@@ -115,8 +113,8 @@ public class CobolFrameworkTree extends ATree {
    *
    * @param fullName Name of the program to insert
    */
-  public void insert(String fullName, Node n) {
-    this.recInsert(root, fullName, n, 1);
+  public void insert(String fullName, DetectionCandidate candidate) {
+    this.recInsert(root, fullName, candidate, 1);
   }
 
   public String getDelimiterLeaves() {
@@ -135,14 +133,15 @@ public class CobolFrameworkTree extends ATree {
   /** Print the tree */
   public void print() {}
 
+  /**
+   * Insert a candidate in the tree using its name. The shape of the tree depends on the insertion
+   * order, candidates should be streamed sorted.
+   * @param candidate Candidate to insert
+   */
   @Override
-  public void recursiveObjectsInsert(List<Node> nodeList) {
-    // Create a framework tree
-    String fullName;
-    for (Node n : nodeList) {
-      fullName = n.getProperty("Name").toString();
-      this.insert(fullName, n); // Insert name
-    }
+  public void insertCandidate(DetectionCandidate candidate) {
+    if (!candidate.hasName()) return;
+    this.insert(candidate.getName(), candidate); // Insert name
   }
 
   /**
@@ -12,10 +12,8 @@
 package com.castsoftware.artemis.detector.utils.trees.net;
 
 import com.castsoftware.artemis.config.detection.LanguageProp;
+import com.castsoftware.artemis.detector.utils.DetectionCandidate;
 import com.castsoftware.artemis.detector.utils.trees.ATree;
-import org.neo4j.graphdb.Node;
-
-import java.util.List;
 
 public class NetFrameworkTree extends ATree {
 
@@ -34,7 +32,7 @@ public class NetFrameworkTree extends ATree {
    * @param remainingPackage Name of the package to insert
    */
   private void recInsert(
-          NetFrameworkTreeLeaf leaf, String remainingPackage, String fullName, Node n, Integer depth) {
+          NetFrameworkTreeLeaf leaf, String remainingPackage, String fullName, DetectionCandidate candidate, Integer depth) {
 
     String[] splitPackageName = remainingPackage.split("\\.", 2);
 
@@ -65,10 +63,10 @@ public class NetFrameworkTree extends ATree {
     }
 
     matchingLeaf.setDepth(depth);
-    matchingLeaf.addNode(n);
+    matchingLeaf.addCandidate(candidate);
 
     if (splitPackageName.length > 1) {
-      recInsert(matchingLeaf, splitPackageName[1], fullName, n, depth + 1);
+      recInsert(matchingLeaf, splitPackageName[1], fullName, candidate, depth + 1);
     }
   }
 
@@ -77,8 +75,8 @@ public class NetFrameworkTree extends ATree {
    *
    * @param packageName Full name of the package to insert
    */
-  public void insert(String packageName, Node node) {
-    this.recInsert(root, packageName, "", node, 0);
+  public void insert(String packageName, DetectionCandidate candidate) {
+    this.recInsert(root, packageName, "", candidate, 0);
   }
 
   public String getDelimiterLeaves() {
@@ -100,17 +98,13 @@ public class NetFrameworkTree extends ATree {
   }
 
   /**
-   * Insert the nodes in the tree recursively 
-   * @param nodeList List of node to insert
+   * Insert a candidate in the tree using its full name
+   * @param candidate Candidate to insert
    */
   @Override
-  public void recursiveObjectsInsert(List<Node> nodeList) {
-    // Create a framework tree
-    String fullName;
-    for (Node n : nodeList) {
-      fullName = n.getProperty("FullName").toString();
-      this.insert(fullName, n);
-    }
+  public void insertCandidate(DetectionCandidate candidate) {
+    if (!candidate.hasFullName()) return;
+    this.insert(candidate.getFullName(), candidate);
   }
 
   /**
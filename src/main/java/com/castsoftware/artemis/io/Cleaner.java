@@ -45,6 +45,7 @@ public class Cleaner {
       totalDeleted += (Long) res.next().get("deleted");
     }
 
+    FrameworkNode.markModified(neo4jAL);
     return totalDeleted;
   }
 
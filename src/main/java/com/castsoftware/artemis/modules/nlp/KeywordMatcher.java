@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton matching a set of keywords in a single pass over a text. The automaton is
+ * immutable once built, and can be shared by the threads. The transitions of each state are stored
+ * in sorted arrays, so the scan doesn't allocate.
+ */
+public class KeywordMatcher {
+
+  private final boolean ignoreCase;
+  private final boolean wholeWords;
+  private final int numKeywords;
+  private final int maxLength;
+
+  // Transitions of each state, sorted by label
+  private final char[][] labels;
+  private final int[][] targets;
+  private final int[] failure;
+  private final int[] length; // Length of the keyword ending on the state, 0 if none
+  private final int[] outputLink; // Next state on the failure chain ending a keyword, -1 if none
+
+  /**
+   * Build a matcher
+   *
+   * @param keywords Keywords to match, the blank ones are ignored
+   * @param ignoreCase If true, the case is ignored
+   * @param wholeWords If true, a keyword only matches between two word boundaries
+   */
+  public KeywordMatcher(Collection<String> keywords, boolean ignoreCase, boolean wholeWords) {
+    this.ignoreCase = ignoreCase;
+    this.wholeWords = wholeWords;
+
+    // Build the trie
+    List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+    List<Integer> lengths = new ArrayList<>();
+    trie.add(new TreeMap<>());
+    lengths.add(0);
+
+    Set<String> distinct = new HashSet<>();
+    for (String keyword : keywords) {
+      if (keyword == null || keyword.isBlank()) continue;
+      if (!distinct.add(ignoreCase ? keyword.toLowerCase(Locale.ROOT) : keyword)) continue;
+
+      int state = 0;
+      for (int i = 0; i < keyword.length(); i++) {
+        char c = normalize(keyword.charAt(i));
+        Integer next = trie.get(state).get(c);
+        if (next == null) {
+          next = trie.size();
+          trie.add(new TreeMap<>());
+          lengths.add(0);
+          trie.get(state).put(c, next);
+        }
+        state = next;
+      }
+      lengths.set(state, keyword.length());
+    }
+    this.numKeywords = distinct.size();
+    this.maxLength = lengths.stream().mapToInt(Integer::intValue).max().orElse(0);
+
+    // Freeze the transitions
+    int numStates = trie.size();
+    this.labels = new char[numStates][];
+    this.targets = new int[numStates][];
+    this.length = new int[numStates];
+    for (int s = 0; s < numStates; s++) {
+      TreeMap<Character, Integer> edges = trie.get(s);
+      labels[s] = new char[edges.size()];
+      targets[s] = new int[edges.size()];
+      int i = 0;
+      for (Map.Entry<Character, Integer> en : edges.entrySet()) {
+        labels[s][i] = en.getKey();
+        targets[s][i] = en.getValue();
+        i++;
+      }
+      length[s] = lengths.get(s);
+    }
+
+    // Failure and output links, in breadth-first order
+    this.failure = new int[numStates];
+    this.outputLink = new int[numStates];
+    Arrays.fill(outputLink, -1);
+
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int child : targets[0]) queue.add(child);
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      for (int i = 0; i < labels[state].length; i++) {
+        char c = labels[state][i];
+        int child = targets[state][i];
+
+        int f = failure[state];
+        while (f != 0 && transition(f, c) < 0) f = failure[f];
+        int next = transition(f, c);
+        failure[child] = next < 0 || next == child ? 0 : next;
+
+        int fc = failure[child];
+        outputLink[child] = length[fc] > 0 ? fc : outputLink[fc];
+        queue.add(child);
+      }
+    }
+  }
+
+  private char normalize(char c) {
+    return ignoreCase ? Character.toLowerCase(c) : c;
+  }
+
+  private int transition(int state, char c) {
+    int index = Arrays.binarySearch(labels[state], c);
+    return index < 0 ? -1 : targets[state][index];
+  }
+
+  private int next(int state, char c) {
+    while (true) {
+      int next = transition(state, c);
+      if (next >= 0) return next;
+      if (state == 0) return 0;
+      state = failure[state];
+    }
+  }
+
+  private boolean isWordChar(CharSequence text, int index) {
+    if (index < 0 || index >= text.length()) return false;
+    char c = text.charAt(index);
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  private boolean accept(CharSequence text, int start, int end) {
+    return !wholeWords || (!isWordChar(text, start - 1) && !isWordChar(text, end));
+  }
+
+  /** Receives the matches of a scan. Returns false to stop the scan. */
+  @FunctionalInterface
+  public interface MatchListener {
+    boolean onMatch(int start, int end);
+  }
+
+  /**
+   * Scan a text and report every occurrence of the keywords, overlapping ones included, by
+   * increasing end position
+   *
+   * @param text Text to scan
+   * @param listener Listener of the matches
+   */
+  public void scan(CharSequence text, MatchListener listener) {
+    if (numKeywords == 0 || text == null) return;
+
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      state = next(state, normalize(text.charAt(i)));
+
+      for (int s = length[state] > 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+        int start = i + 1 - length[s];
+        if (accept(text, start, i + 1) && !listener.onMatch(start, i + 1)) return;
+      }
+    }
+  }
+
+  /**
+   * Check if the text contains at least one keyword. The scan stops on the first match.
+   *
+   * @param text Text to scan
+   * @return True if a keyword was found
+   */
+  public boolean containsAny(CharSequence text) {
+    boolean[] found = {false};
+    scan(
+        text,
+        (start, end) -> {
+          found[0] = true;
+          return false;
+        });
+    return found[0];
+  }
+
+  /**
+   * Locate every occurrence of the keywords, overlapping ones included
+   *
+   * @param text Text to scan
+   * @return The matches, as [start, end) pairs, by increasing end position
+   */
+  public List<int[]> findAll(CharSequence text) {
+    List<int[]> matches = new ArrayList<>();
+    scan(
+        text,
+        (start, end) -> {
+          matches.add(new int[] {start, end});
+          return true;
+        });
+    return matches;
+  }
+
+  /**
+   * Count the occurrences of the keywords which don't overlap, picking the leftmost then the longest
+   * one. A regular expression alternation of the keywords picks the leftmost then the first listed
+   * one instead. Both counts are equal if no keyword is a prefix of a keyword listed after it.
+   *
+   * @param text Text to scan
+   * @return The number of matches
+   */
+  public int count(CharSequence text) {
+    if (numKeywords == 0 || text == null) return 0;
+
+    // Longest keyword starting at each of the last positions, in a ring buffer
+    int window = maxLength + 1;
+    int[] longest = new int[window];
+    int position = 0; // Next start to decide
+    int lastEnd = 0; // End of the last match counted
+    int count = 0;
+
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      state = next(state, normalize(text.charAt(i)));
+      for (int s = length[state] > 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+        int start = i + 1 - length[s];
+        if (start >= lastEnd && length[s] > longest[start % window] && accept(text, start, i + 1)) {
+          longest[start % window] = length[s];
+        }
+      }
+
+      // No match can start before this position anymore
+      int decided = i + 1 - maxLength;
+      for (; position <= decided; position++) {
+        int slot = position % window;
+        if (longest[slot] > 0 && position >= lastEnd) {
+          count++;
+          lastEnd = position + longest[slot];
+        }
+        longest[slot] = 0;
+      }
+    }
+
+    for (; position < text.length(); position++) {
+      int slot = position % window;
+      if (longest[slot] > 0 && position >= lastEnd) {
+        count++;
+        lastEnd = position + longest[slot];
+      }
+      longest[slot] = 0;
+    }
+    return count;
+  }
+
+  public int getNumKeywords() {
+    return numKeywords;
+  }
+}
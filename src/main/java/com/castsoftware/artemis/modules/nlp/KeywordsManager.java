@@ -15,13 +15,18 @@ import com.castsoftware.artemis.config.Configuration;
 import com.castsoftware.artemis.global.SupportedLanguage;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import static java.util.Map.entry;
 
+/**
+ * Keywords of the languages, counted in the results of the online searches. The keywords of a
+ * language are compiled once into a shared matcher.
+ */
 public class KeywordsManager {
 
   private static final String COBOL_KEYWORDS = Configuration.get("artemis.cobol.keywords");
@@ -30,6 +35,8 @@ public class KeywordsManager {
   private static final Map<SupportedLanguage, String> languageMap =
       Map.ofEntries(entry(SupportedLanguage.COBOL, COBOL_KEYWORDS));
 
+  private static final Map<SupportedLanguage, KeywordMatcher> MATCHERS = new ConcurrentHashMap<>();
+
   /**
    * Get the keywords related to the languages
    *
@@ -38,11 +45,26 @@ public class KeywordsManager {
    */
   public static List<String> getKeywords(SupportedLanguage language) {
     String keywords = languageMap.get(language);
-    return Arrays.asList(keywords.split(DEFAULT_DELIMITER));
+    if (keywords == null) return Collections.emptyList();
+    return Arrays.asList(keywords.split(Pattern.quote(DEFAULT_DELIMITER)));
+  }
+
+  /**
+   * Get the matcher of the keywords of a language, built on first use
+   *
+   * @param language Language selected
+   * @return The matcher
+   */
+  public static KeywordMatcher getMatcher(SupportedLanguage language) {
+    return MATCHERS.computeIfAbsent(
+        language, l -> new KeywordMatcher(getKeywords(l), false, false));
   }
 
   /**
-   * Get the number of Keyword matches
+   * Get the number of Keyword matches. The overlapping matches are counted once, the longest
+   * keyword wins. The former regex alternation let the first listed keyword win, so the counts only
+   * differ if a keyword is a prefix of a keyword listed after it, see {@link
+   * KeywordMatcher#count(CharSequence)}.
    *
    * @param language Language selected
    * @param text Text
@@ -50,15 +72,6 @@ public class KeywordsManager {
    */
   public static int getNumMatchKeywords(SupportedLanguage language, String text) {
     if (!languageMap.containsKey(language)) return 0;
-
-    String pattern = languageMap.get(language);
-    int i = 0;
-    Pattern p = Pattern.compile(pattern);
-    Matcher m = p.matcher(text);
-    while (m.find()) {
-      i++;
-    }
-
-    return i;
+    return getMatcher(language).count(text);
   }
 }
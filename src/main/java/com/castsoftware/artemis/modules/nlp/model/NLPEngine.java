@@ -17,13 +17,15 @@ import com.castsoftware.artemis.config.detection.LanguageProp;
 import com.castsoftware.artemis.exceptions.nlp.NLPBlankInputException;
 import com.castsoftware.artemis.exceptions.nlp.NLPIncorrectConfigurationException;
 import com.castsoftware.artemis.modules.nlp.KeywordsManager;
+import com.castsoftware.artemis.modules.nlp.model.training.NLPTrainingService;
+import com.castsoftware.artemis.modules.nlp.model.training.TrainingJob;
 import com.castsoftware.artemis.global.SupportedLanguage;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
+import com.castsoftware.artemis.utils.ThreadPools;
 import com.castsoftware.artemis.utils.Workspace;
 import opennlp.tools.doccat.*;
 import opennlp.tools.tokenize.SimpleTokenizer;
 import opennlp.tools.tokenize.TokenizerME;
-import opennlp.tools.tokenize.TokenizerModel;
 import opennlp.tools.util.*;
 import org.neo4j.logging.Log;
 
@@ -31,7 +33,10 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Scanner;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 import static com.castsoftware.artemis.global.SupportedLanguage.ALL;
 
@@ -44,14 +49,17 @@ public class NLPEngine {
       Integer.parseInt(Configuration.get("artemis.min.match.keywords"));
 
   private static final String ERROR_PREFIX = "NLPx";
+  private static final int MIN_CHUNK_SIZE = 16; // Smaller batches are classified by the caller
+
+  private static ExecutorService inferencePool = null;
+
   private final LanguageProp languageProperties;
 
   private final SimpleTokenizer tokenizer = SimpleTokenizer.INSTANCE;
 
-  private DocumentCategorizerME docCategorizer = null;
-  private DoccatModel model = null;
   private final SupportedLanguage language;
-  private final Neo4jAL neo4jAL;
+  private final Path workspace;
+  private final Path modelFile;
 
   private Path trainDatasetFilePath;
   private Path testDatasetFilePath;
@@ -59,12 +67,29 @@ public class NLPEngine {
   private final Log log;
 
   public NLPEngine(Neo4jAL neo4jAL, SupportedLanguage language) {
+    this(
+        neo4jAL.getLogger(),
+        language,
+        Workspace.getWorkspacePath(neo4jAL),
+        Workspace.getLanguageModelFile(neo4jAL, language));
+  }
+
+  /**
+   * Create an engine on a workspace already resolved
+   *
+   * @param log Logger
+   * @param language Language of the engine
+   * @param workspace Workspace of Artemis
+   * @param modelFile Model file of the language
+   */
+  NLPEngine(Log log, SupportedLanguage language, Path workspace, Path modelFile) {
     this.language = language;
-    this.neo4jAL = neo4jAL;
-    this.log = neo4jAL.getLogger();
+    this.log = log;
 
     LanguageConfiguration lc = LanguageConfiguration.getInstance();
     this.languageProperties = lc.getLanguageProperties(language.toString());
+    this.workspace = workspace;
+    this.modelFile = modelFile;
   }
 
   public static void load() {}
@@ -78,17 +103,14 @@ public class NLPEngine {
   private static String[] getTokens(Neo4jAL neo4jAL, String sentence) {
     Path tokenizerFilePath = Workspace.getWorkspacePath(neo4jAL).resolve(TOKENIZER_FILE_NAME);
 
-    // Use model that was created in earlier tokenizer
-    try (InputStream modelIn = new FileInputStream(tokenizerFilePath.toFile())) {
-
-      TokenizerME categorizer = new TokenizerME(new TokenizerModel(modelIn));
-      String[] tokens = categorizer.tokenize(sentence);
-      return tokens;
-
-    } catch (Exception e) {
-      e.printStackTrace();
+    // Use model that was created in earlier tokenizer, shared by the engines
+    try {
+      Optional<TokenizerME> tokenizer = NLPModelRegistry.getTokenizer(tokenizerFilePath);
+      if (tokenizer.isPresent()) return tokenizer.get().tokenize(sentence);
+    } catch (IOException e) {
+      neo4jAL.logError("Failed to load the tokenizer model.", e);
     }
-    return null;
+    return SimpleTokenizer.INSTANCE.tokenize(sentence);
   }
 
   /**
@@ -126,7 +148,7 @@ public class NLPEngine {
   /** Load Datasets and evaluate the model */
   public Double evaluateModel() throws IOException {
     Path testDtFile =
-        Workspace.getWorkspacePath(neo4jAL)
+        workspace
             .resolve(languageProperties.getName())
             .resolve(Configuration.get("nlp.dataset_test.name"));
 
@@ -136,9 +158,7 @@ public class NLPEngine {
     Integer falsePositive = 0;
     Integer falseNegative = 0;
 
-    if (docCategorizer == null || model == null) {
-      this.train();
-    }
+    DocumentCategorizerME docCategorizer = getCategorizer();
 
     File myObj = testDtFile.toFile();
     try (Scanner myReader = new Scanner(myObj)) {
@@ -176,38 +196,27 @@ public class NLPEngine {
   }
 
   /**
-   * Train the model with the Train and Test dataset passed in parameters. The model will be
-   * serialized into a file stored as a resource
+   * Train the model and wait for the end of the training. The training runs on the training
+   * service, so concurrent requests for the same language share a single training.
    *
-   * @throws IOException
+   * @throws IOException If the training failed
    */
   public void train() throws IOException {
+    trainInBackground().await();
+  }
+
+  /**
+   * Start the training of the model in the background. The new model is written to a versioned
+   * file, then replaces the live model. The current model stays in use until then.
+   *
+   * @return The job of the training
+   */
+  public TrainingJob trainInBackground() {
     Path trainDtFile =
-        Workspace.getWorkspacePath(neo4jAL)
+        workspace
             .resolve(languageProperties.getName())
             .resolve(Configuration.get("nlp.dataset_train.name"));
-
-    // Read file with classifications samples of sentences.
-    InputStreamFactory inputStreamFactory =
-        new MarkableFileInputStreamFactory(trainDtFile.toFile());
-    ObjectStream<String> lineStream =
-        new PlainTextByLineStream(inputStreamFactory, StandardCharsets.UTF_8);
-    ObjectStream<DocumentSample> sampleStream = new DocumentSampleStream(lineStream);
-
-    TrainingParameters params = new TrainingParameters();
-    params.put(TrainingParameters.ITERATIONS_PARAM, 500 + "");
-    params.put(TrainingParameters.CUTOFF_PARAM, 0);
-    DoccatFactory factory =
-        new DoccatFactory(new FeatureGenerator[] {new BagOfWordsFeatureGenerator()});
-
-    // Train a model
-    model = DocumentCategorizerME.train("en", sampleStream, params, factory);
-
-    // Serialize model
-    model.serialize(trainDtFile.toFile());
-
-    // Use the model to create the Categorizer
-    docCategorizer = new DocumentCategorizerME(model);
+    return NLPTrainingService.getInstance().submit(language, trainDtFile, modelFile, log);
   }
 
   /**
@@ -218,43 +227,42 @@ public class NLPEngine {
    * @throws IOException
    */
   public String predict(String text) throws IOException {
-    if (docCategorizer == null || model == null) {
-      getModelOrTrain();
-    }
-
+    DocumentCategorizerME docCategorizer = getCategorizer();
     double[] probabilitiesOfOutcomes = docCategorizer.categorize(tokenizer.tokenize(text));
     return docCategorizer.getBestCategory(probabilitiesOfOutcomes);
   }
 
-  /** Get the model or create a new one and train the model */
-  private void getModelOrTrain() throws IOException {
-    try {
-      importModelFile();
-    } catch (IOException | NLPIncorrectConfigurationException e) {
-      train();
-    }
+  /**
+   * Get the categorizer of the calling thread, built on the shared model. The model is trained if
+   * it doesn't exist yet.
+   *
+   * @return The categorizer, confined to the calling thread
+   * @throws IOException If the model failed to load or to train
+   */
+  private DocumentCategorizerME getCategorizer() throws IOException {
+    Optional<DocumentCategorizerME> categorizer = NLPModelRegistry.getCategorizer(modelFile);
+    if (categorizer.isPresent()) return categorizer.get();
+
+    train();
+    return NLPModelRegistry.getCategorizer(modelFile)
+        .orElseThrow(() -> new IOException("The NLP model is still missing after the training."));
   }
 
   /**
-   * Import the file model from the Artemis workspace
+   * Import the file model from the Artemis workspace. The model is loaded once per server, and
+   * shared by the engines.
    *
    * @throws IOException
    */
   public void importModelFile() throws IOException, NLPIncorrectConfigurationException {
-
-    Path modelFile = checkIfModelExists();
-
-    if (modelFile == null) {
+    if (checkIfModelExists() == null
+        || NLPModelRegistry.getCategorizerModel(modelFile).isEmpty()) {
       String message =
           String.format(
               "No model file with name '%s' was found under workspace '%s'.",
-              modelFile, Workspace.getWorkspacePath(neo4jAL).toString());
+              modelFile, workspace.toString());
       throw new NLPIncorrectConfigurationException(message, ERROR_PREFIX);
     }
-
-    InputStream is = new FileInputStream(modelFile.toFile());
-    this.model = new DoccatModel(is);
-    this.docCategorizer = new DocumentCategorizerME(model);
   }
 
   /**
@@ -263,7 +271,6 @@ public class NLPEngine {
    * @return
    */
   public Path checkIfModelExists() {
-    Path modelFile = Workspace.getLanguageModelFile(neo4jAL, this.language);
     log.info("Checking the existence of the model file at '%s'.", modelFile);
     if (Files.exists(modelFile)) {
       return modelFile;
@@ -282,14 +289,81 @@ public class NLPEngine {
    * @throws IOException
    */
   public NLPResults getNLPResult(String text) throws IOException, NLPBlankInputException {
-    if (docCategorizer == null || model == null) {
-      getModelOrTrain();
-    }
-
     if (text.isEmpty()) {
       throw new NLPBlankInputException("The input is empty", ERROR_PREFIX + "GRES1");
     }
 
+    return classify(getCategorizer(), text);
+  }
+
+  /**
+   * Classify a list of texts. The texts are split in chunks, scored in parallel on the shared
+   * inference pool, each thread with its own categorizer.
+   *
+   * @param texts Texts to classify
+   * @return The results, in the order of the texts. Null for the blank texts
+   * @throws IOException If the model failed to load
+   */
+  public List<NLPResults> getNLPResults(List<String> texts) throws IOException {
+    NLPResults[] results = new NLPResults[texts.size()];
+    getCategorizer(); // Load or train the model on the calling thread
+
+    int threads = getInferenceThreads();
+    int chunkSize = Math.max(MIN_CHUNK_SIZE, (texts.size() + threads - 1) / threads);
+    if (texts.size() <= chunkSize) {
+      classifyRange(texts, results, 0, texts.size());
+      return Arrays.asList(results);
+    }
+
+    List<CompletableFuture<Void>> chunks = new ArrayList<>();
+    for (int start = 0; start < texts.size(); start += chunkSize) {
+      final int from = start;
+      final int to = Math.min(texts.size(), start + chunkSize);
+      chunks.add(
+          CompletableFuture.runAsync(() -> classifyRange(texts, results, from, to), getInferencePool()));
+    }
+
+    try {
+      CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause() == null ? e : e.getCause();
+      if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+      throw new IOException("The classification of the batch failed.", cause);
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Classify a range of texts, with the categorizer of the current thread
+   *
+   * @param texts Texts to classify
+   * @param results Array receiving the results
+   * @param from First index, inclusive
+   * @param to Last index, exclusive
+   */
+  private void classifyRange(List<String> texts, NLPResults[] results, int from, int to) {
+    DocumentCategorizerME docCategorizer;
+    try {
+      docCategorizer = getCategorizer();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    for (int i = from; i < to; i++) {
+      String text = texts.get(i);
+      if (text == null || text.isEmpty()) continue;
+      results[i] = classify(docCategorizer, text);
+    }
+  }
+
+  /**
+   * Classify a text, and apply the keywords of the language
+   *
+   * @param docCategorizer Categorizer of the current thread
+   * @param text Text to classify
+   * @return The result
+   */
+  private NLPResults classify(DocumentCategorizerME docCategorizer, String text) {
     double[] probabilitiesOfOutcomes = docCategorizer.categorize(tokenizer.tokenize(text));
     String category = docCategorizer.getBestCategory(probabilitiesOfOutcomes);
 
@@ -302,6 +376,43 @@ public class NLPEngine {
     return new NLPResults(category, probabilitiesOfOutcomes);
   }
 
+  /**
+   * Get the smallest batch spread over every thread of the inference pool by {@link
+   * #getNLPResults(List)}. Smaller batches use fewer threads, down to the caller thread alone.
+   *
+   * @return The number of texts
+   */
+  public static int getFullBatchSize() {
+    return MIN_CHUNK_SIZE * getInferenceThreads();
+  }
+
+  /**
+   * Get the number of threads of the inference pool
+   *
+   * @return The number of threads declared in the configuration, or the number of cores
+   */
+  private static int getInferenceThreads() {
+    try {
+      int threads = Integer.parseInt(Configuration.get("artemis.nlp.inference.threads"));
+      if (threads > 0) return threads;
+    } catch (NumberFormatException | NullPointerException ignored) {
+      // Use the number of cores
+    }
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Get the pool shared by the engines for the classification
+   *
+   * @return The inference pool
+   */
+  private static synchronized ExecutorService getInferencePool() {
+    if (inferencePool == null) {
+      inferencePool = ThreadPools.newDaemonPool("nlp", getInferenceThreads());
+    }
+    return inferencePool;
+  }
+
   /**
    * Get the Category corresponding to the probabilities of outcomes
    *
@@ -310,9 +421,6 @@ public class NLPEngine {
    * @throws IOException
    */
   public String getBestCategory(double[] probabilitiesOfOutcomes) throws IOException {
-    if (docCategorizer == null || model == null) {
-      getModelOrTrain();
-    }
-    return docCategorizer.getBestCategory(probabilitiesOfOutcomes);
+    return getCategorizer().getBestCategory(probabilitiesOfOutcomes);
   }
 }
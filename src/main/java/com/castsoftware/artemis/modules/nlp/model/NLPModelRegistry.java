@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.model;
+
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.DocumentCategorizerME;
+import opennlp.tools.tokenize.TokenizerME;
+import opennlp.tools.tokenize.TokenizerModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Process-wide registry of the NLP models. Each model file is loaded once and shared by the
+ * engines. The models are immutable, but the OpenNLP categorizers and tokenizers are not
+ * thread-safe, so each thread receives its own instance, built on the shared model. A model is
+ * swapped atomically when its file changes on disk.
+ */
+public class NLPModelRegistry {
+
+  private static final long CHECK_INTERVAL = 5_000L; // Minimum delay between two checks, in ms
+  private static final AtomicLong VERSIONS = new AtomicLong(0L);
+
+  private static final Map<Path, Holder<DoccatModel>> CATEGORIZERS = new ConcurrentHashMap<>();
+  private static final Map<Path, Holder<TokenizerModel>> TOKENIZERS = new ConcurrentHashMap<>();
+
+  // Instances confined to the thread, rebuilt when the version of the model changes
+  private static final ThreadLocal<Map<Path, Confined<DocumentCategorizerME>>>
+      LOCAL_CATEGORIZERS = ThreadLocal.withInitial(HashMap::new);
+  private static final ThreadLocal<Map<Path, Confined<TokenizerME>>> LOCAL_TOKENIZERS =
+      ThreadLocal.withInitial(HashMap::new);
+
+  private NLPModelRegistry() {}
+
+  private static Path key(Path file) {
+    return file.toAbsolutePath().normalize();
+  }
+
+  private static Holder<DoccatModel> categorizerHolder(Path file) {
+    return CATEGORIZERS.computeIfAbsent(key(file), f -> new Holder<>(f, DoccatModel::new));
+  }
+
+  /**
+   * Get the categorization model stored in a file
+   *
+   * @param file Model file
+   * @return The model, or an empty optional if the file doesn't exist and no model was registered
+   * @throws IOException If the file could not be read
+   */
+  public static Optional<DoccatModel> getCategorizerModel(Path file) throws IOException {
+    Holder<DoccatModel> holder = categorizerHolder(file);
+    return holder.current().map(v -> v.model);
+  }
+
+  /**
+   * Get a categorizer for the calling thread. The instance must not be shared with other threads.
+   *
+   * @param file Model file
+   * @return The categorizer, or an empty optional if no model is available
+   * @throws IOException If the file could not be read
+   */
+  public static Optional<DocumentCategorizerME> getCategorizer(Path file) throws IOException {
+    Holder<DoccatModel> holder = categorizerHolder(file);
+    return confine(LOCAL_CATEGORIZERS.get(), holder, DocumentCategorizerME::new);
+  }
+
+  /**
+   * Get a tokenizer for the calling thread. The instance must not be shared with other threads.
+   *
+   * @param file Model file
+   * @return The tokenizer, or an empty optional if the file doesn't exist
+   * @throws IOException If the file could not be read
+   */
+  public static Optional<TokenizerME> getTokenizer(Path file) throws IOException {
+    Holder<TokenizerModel> holder =
+        TOKENIZERS.computeIfAbsent(key(file), f -> new Holder<>(f, TokenizerModel::new));
+    return confine(LOCAL_TOKENIZERS.get(), holder, TokenizerME::new);
+  }
+
+  /**
+   * Register a categorization model which was just trained. The engines use it immediately.
+   *
+   * @param file Model file the model belongs to
+   * @param model Model to register
+   */
+  public static void registerCategorizerModel(Path file, DoccatModel model) {
+    categorizerHolder(file).register(model);
+  }
+
+  /**
+   * Forget the models of a file. They are reloaded on the next request.
+   *
+   * @param file Model file
+   */
+  public static void invalidate(Path file) {
+    CATEGORIZERS.remove(key(file));
+    TOKENIZERS.remove(key(file));
+  }
+
+  private static <M, I> Optional<I> confine(
+      Map<Path, Confined<I>> local, Holder<M> holder, Function<M, I> factory) throws IOException {
+    Optional<Version<M>> version = holder.current();
+    if (version.isEmpty()) return Optional.empty();
+
+    Confined<I> confined = local.get(holder.file);
+    if (confined == null || confined.version != version.get().number) {
+      confined = new Confined<>(version.get().number, factory.apply(version.get().model));
+      local.put(holder.file, confined);
+    }
+    return Optional.of(confined.instance);
+  }
+
+  @FunctionalInterface
+  private interface Loader<M> {
+    M load(InputStream is) throws IOException;
+  }
+
+  /** Version of a model, immutable */
+  private static class Version<M> {
+    final long number = VERSIONS.incrementAndGet();
+    final M model;
+    final long lastModified; // Time of the registration if the model doesn't come from the file
+    final long size; // -1 if the model doesn't come from the file
+
+    Version(M model, long lastModified, long size) {
+      this.model = model;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+  }
+
+  /** Instance built on a version of a model */
+  private static class Confined<I> {
+    final long version;
+    final I instance;
+
+    Confined(long version, I instance) {
+      this.version = version;
+      this.instance = instance;
+    }
+  }
+
+  /** Current version of the model of a file */
+  private static class Holder<M> {
+    final Path file;
+    final Loader<M> loader;
+    volatile Version<M> version = null;
+    volatile long lastCheck = 0L;
+
+    Holder(Path file, Loader<M> loader) {
+      this.file = file;
+      this.loader = loader;
+    }
+
+    /**
+     * Get the current version, loading the file if it changed since the last check
+     *
+     * @return The current version, or an empty optional if no model is available
+     * @throws IOException If the file could not be read
+     */
+    Optional<Version<M>> current() throws IOException {
+      long now = System.currentTimeMillis();
+      Version<M> current = version;
+      if (current != null && now - lastCheck < CHECK_INTERVAL) return Optional.of(current);
+
+      synchronized (this) {
+        current = version;
+        if (current != null && now - lastCheck < CHECK_INTERVAL) return Optional.of(current);
+        lastCheck = now;
+
+        // A registered model is kept until a file replaces it
+        if (!Files.exists(file)) return Optional.ofNullable(current);
+
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long size = Files.size(file);
+        if (current != null && current.lastModified == lastModified && current.size == size) {
+          return Optional.of(current);
+        }
+        if (current != null && current.size == -1L && lastModified <= current.lastModified) {
+          return Optional.of(current); // The file is older than the registered model
+        }
+
+        try (InputStream is = Files.newInputStream(file)) {
+          version = new Version<>(loader.load(is), lastModified, size);
+        }
+        return Optional.of(version);
+      }
+    }
+
+    synchronized void register(M model) {
+      version = new Version<>(model, System.currentTimeMillis(), -1L);
+      lastCheck = System.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.model.training;
+
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.DocumentCategorizerME;
+import opennlp.tools.doccat.DocumentSample;
+import opennlp.tools.tokenize.SimpleTokenizer;
+import opennlp.tools.tokenize.WhitespaceTokenizer;
+import opennlp.tools.util.CollectionObjectStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * K-fold cross-validation of training configurations. Each (configuration, fold) pair is trained
+ * and scored as an independent task on a fork-join pool. The training samples are tokenized like
+ * the training dataset, and the test samples like the texts classified by the NLP engine.
+ */
+public class ModelEvaluator {
+
+  private final List<Sample> samples;
+  private final int folds;
+  private final int parallelism;
+
+  /**
+   * Create an evaluator
+   *
+   * @param dataset Dataset, one sample per line : category, whitespace, text
+   * @param folds Number of folds
+   * @param parallelism Number of folds trained in parallel
+   * @param seed Seed of the shuffle of the samples
+   * @throws IOException If the dataset could not be read, or holds fewer samples than folds
+   */
+  public ModelEvaluator(Path dataset, int folds, int parallelism, long seed) throws IOException {
+    this.samples = readSamples(dataset);
+    Collections.shuffle(samples, new Random(seed));
+
+    if (samples.size() < Math.max(2, folds)) {
+      throw new IOException(
+          String.format(
+              "The dataset '%s' holds %d samples, not enough for %d folds.",
+              dataset, samples.size(), folds));
+    }
+    this.folds = Math.max(2, folds);
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  private static List<Sample> readSamples(Path dataset) throws IOException {
+    List<Sample> samples = new ArrayList<>();
+    for (String line : Files.readAllLines(dataset, StandardCharsets.UTF_8)) {
+      String[] split = line.trim().split("\\s+", 2);
+      if (split.length < 2 || split[1].isBlank()) continue;
+      samples.add(new Sample(split[0], split[1]));
+    }
+    return samples;
+  }
+
+  /**
+   * Evaluate the configurations of a grid
+   *
+   * @param grid Configurations to evaluate
+   * @return The report of each configuration, in the order of the grid
+   * @throws IOException If a training failed
+   */
+  public List<Report> evaluate(List<TrainingConfiguration> grid) throws IOException {
+    List<Callable<FoldResult>> tasks = new ArrayList<>();
+    for (TrainingConfiguration configuration : grid) {
+      for (int fold = 0; fold < folds; fold++) {
+        final int testFold = fold;
+        tasks.add(() -> runFold(configuration, testFold));
+      }
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    List<FoldResult> results = new ArrayList<>(tasks.size());
+    try {
+      for (Future<FoldResult> future : pool.invokeAll(tasks)) results.add(future.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted during the evaluation of the models.", e);
+    } catch (ExecutionException e) {
+      throw new IOException("The training of a fold failed.", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+
+    List<Report> reports = new ArrayList<>(grid.size());
+    for (int i = 0; i < grid.size(); i++) {
+      reports.add(new Report(grid.get(i), results.subList(i * folds, (i + 1) * folds)));
+    }
+    return reports;
+  }
+
+  /**
+   * Train a model on every fold but one, then score the remaining fold
+   *
+   * @param configuration Training configuration
+   * @param testFold Index of the fold kept for the test
+   * @return The result of the fold
+   * @throws IOException If the training failed
+   */
+  private FoldResult runFold(TrainingConfiguration configuration, int testFold)
+      throws IOException {
+    List<DocumentSample> train = new ArrayList<>();
+    List<Sample> test = new ArrayList<>();
+    for (int i = 0; i < samples.size(); i++) {
+      Sample sample = samples.get(i);
+      if (i % folds == testFold) {
+        test.add(sample);
+      } else {
+        train.add(
+            new DocumentSample(
+                sample.category, WhitespaceTokenizer.INSTANCE.tokenize(sample.text)));
+      }
+    }
+
+    long start = System.nanoTime();
+    DoccatModel model =
+        DocumentCategorizerME.train(
+            "en",
+            new CollectionObjectStream<>(train),
+            configuration.toTrainingParameters(),
+            configuration.createFactory());
+    long trainingTime = System.nanoTime() - start;
+
+    FoldResult result = new FoldResult(trainingTime, getSerializedSize(model));
+    DocumentCategorizerME categorizer = new DocumentCategorizerME(model);
+
+    start = System.nanoTime();
+    for (Sample sample : test) {
+      double[] outcomes = categorizer.categorize(SimpleTokenizer.INSTANCE.tokenize(sample.text));
+      result.add(sample.category, categorizer.getBestCategory(outcomes));
+    }
+    result.inferenceTime = System.nanoTime() - start;
+    return result;
+  }
+
+  private static long getSerializedSize(DoccatModel model) throws IOException {
+    CountingOutputStream os = new CountingOutputStream();
+    model.serialize(os);
+    return os.count;
+  }
+
+  public int getNumSamples() {
+    return samples.size();
+  }
+
+  public int getFolds() {
+    return folds;
+  }
+
+  private static class Sample {
+    final String category;
+    final String text;
+
+    Sample(String category, String text) {
+      this.category = category;
+      this.text = text;
+    }
+  }
+
+  /** Counts of a fold */
+  private static class FoldResult {
+    final long trainingTime; // ns
+    final long modelSize; // bytes
+    long inferenceTime = 0L; // ns
+    int correct = 0;
+    int total = 0;
+    final Map<String, int[]> counts = new HashMap<>(); // Category -> [tp, fp, fn]
+
+    FoldResult(long trainingTime, long modelSize) {
+      this.trainingTime = trainingTime;
+      this.modelSize = modelSize;
+    }
+
+    void add(String expected, String predicted) {
+      total++;
+      if (expected.equals(predicted)) {
+        correct++;
+        counts.computeIfAbsent(expected, k -> new int[3])[0]++;
+      } else {
+        counts.computeIfAbsent(predicted, k -> new int[3])[1]++;
+        counts.computeIfAbsent(expected, k -> new int[3])[2]++;
+      }
+    }
+  }
+
+  /** Aggregated results of a configuration over the folds */
+  public static class Report {
+    private final TrainingConfiguration configuration;
+    private final double accuracy;
+    private final double accuracyStdDev;
+    private final Map<String, Double> precision = new TreeMap<>();
+    private final Map<String, Double> recall = new TreeMap<>();
+    private final double trainingTime; // Mean per fold, ms
+    private final double inferenceTime; // Mean per sample, µs
+    private final double modelSize; // Mean, bytes
+
+    private Report(TrainingConfiguration configuration, List<FoldResult> folds) {
+      this.configuration = configuration;
+
+      double[] accuracies = new double[folds.size()];
+      Map<String, int[]> counts = new HashMap<>();
+      long trainingNanos = 0L;
+      long inferenceNanos = 0L;
+      long sizes = 0L;
+      int tested = 0;
+
+      for (int i = 0; i < folds.size(); i++) {
+        FoldResult fold = folds.get(i);
+        accuracies[i] = fold.total == 0 ? 0.0 : (double) fold.correct / fold.total;
+        trainingNanos += fold.trainingTime;
+        inferenceNanos += fold.inferenceTime;
+        sizes += fold.modelSize;
+        tested += fold.total;
+        fold.counts.forEach(
+            (category, c) -> {
+              int[] sum = counts.computeIfAbsent(category, k -> new int[3]);
+              for (int j = 0; j < 3; j++) sum[j] += c[j];
+            });
+      }
+
+      double mean = Arrays.stream(accuracies).average().orElse(0.0);
+      double variance =
+          Arrays.stream(accuracies).map(a -> (a - mean) * (a - mean)).average().orElse(0.0);
+      this.accuracy = mean;
+      this.accuracyStdDev = Math.sqrt(variance);
+
+      counts.forEach(
+          (category, c) -> {
+            precision.put(category, c[0] + c[1] == 0 ? 0.0 : (double) c[0] / (c[0] + c[1]));
+            recall.put(category, c[0] + c[2] == 0 ? 0.0 : (double) c[0] / (c[0] + c[2]));
+          });
+
+      this.trainingTime = trainingNanos / 1e6 / folds.size();
+      this.inferenceTime = tested == 0 ? 0.0 : inferenceNanos / 1e3 / tested;
+      this.modelSize = (double) sizes / folds.size();
+    }
+
+    public TrainingConfiguration getConfiguration() {
+      return configuration;
+    }
+
+    public double getAccuracy() {
+      return accuracy;
+    }
+
+    public double getAccuracyStdDev() {
+      return accuracyStdDev;
+    }
+
+    public Map<String, Double> getPrecision() {
+      return precision;
+    }
+
+    public Map<String, Double> getRecall() {
+      return recall;
+    }
+
+    public double getTrainingTime() {
+      return trainingTime;
+    }
+
+    public double getInferenceTime() {
+      return inferenceTime;
+    }
+
+    public double getModelSize() {
+      return modelSize;
+    }
+  }
+
+  /** Stream counting the bytes written */
+  private static class CountingOutputStream extends OutputStream {
+    long count = 0L;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.model.training;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.global.SupportedLanguage;
+import com.castsoftware.artemis.modules.nlp.model.NLPModelRegistry;
+import com.castsoftware.artemis.utils.ThreadPools;
+import opennlp.tools.doccat.*;
+import opennlp.tools.util.*;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service training the NLP models in the background. The trainings are run one at a time. Each
+ * model is first written to a versioned file, then copied over the live model file with an atomic
+ * move, and registered so the engines switch to it. The detections keep using the previous model
+ * during the training.
+ */
+public class NLPTrainingService {
+
+  private static NLPTrainingService instance = null;
+
+  private final ExecutorService executor = ThreadPools.newDaemonPool("nlp-training", 1);
+  private final Map<SupportedLanguage, TrainingJob> jobs = new ConcurrentHashMap<>();
+
+  private NLPTrainingService() {}
+
+  public static synchronized NLPTrainingService getInstance() {
+    if (instance == null) instance = new NLPTrainingService();
+    return instance;
+  }
+
+  private static int getIntProperty(String key, int defaultValue) {
+    try {
+      return Integer.parseInt(Configuration.get(key));
+    } catch (NumberFormatException | NullPointerException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Submit the training of a language. If a training of the language is already queued or running,
+   * it is returned instead.
+   *
+   * @param language Language of the model
+   * @param trainDataset Training dataset
+   * @param modelFile Live model file of the language
+   * @param log Logger
+   * @return The job of the training
+   */
+  public TrainingJob submit(
+      SupportedLanguage language, Path trainDataset, Path modelFile, Log log) {
+    return submit(language, trainDataset, modelFile, TrainingConfiguration.getDefault(), log);
+  }
+
+  /**
+   * Submit the training of a language with a specific configuration. If a training of the language
+   * is already queued or running, it is returned instead.
+   *
+   * @param language Language of the model
+   * @param trainDataset Training dataset
+   * @param modelFile Live model file of the language
+   * @param configuration Parameters of the training
+   * @param log Logger
+   * @return The job of the training
+   */
+  public synchronized TrainingJob submit(
+      SupportedLanguage language,
+      Path trainDataset,
+      Path modelFile,
+      TrainingConfiguration configuration,
+      Log log) {
+    TrainingJob current = jobs.get(language);
+    if (current != null && !current.isDone()) return current;
+
+    TrainingJob job = new TrainingJob(language, trainDataset, modelFile, configuration);
+    jobs.put(language, job);
+    CompletableFuture.runAsync(() -> run(job, log), executor);
+    return job;
+  }
+
+  /**
+   * Get the last training of each language
+   *
+   * @return The list of jobs
+   */
+  public List<TrainingJob> getJobs() {
+    return jobs.values().stream()
+        .sorted(Comparator.comparingLong(TrainingJob::getSubmitted))
+        .collect(Collectors.toList());
+  }
+
+  private void run(TrainingJob job, Log log) {
+    try {
+      log.info(
+          String.format(
+              "Training of the NLP model for %s started (%s).",
+              job.getLanguage(), job.getConfiguration()));
+
+      job.setState(TrainingJob.State.READING);
+      if (!Files.exists(job.getTrainDataset())) {
+        throw new IOException(
+            String.format("The training dataset '%s' doesn't exist.", job.getTrainDataset()));
+      }
+      try (Stream<String> lines = Files.lines(job.getTrainDataset(), StandardCharsets.UTF_8)) {
+        job.setNumSamples(lines.filter(l -> !l.isBlank()).count());
+      }
+
+      job.setState(TrainingJob.State.TRAINING);
+      DoccatModel model = train(job.getTrainDataset(), job.getConfiguration());
+
+      job.setState(TrainingJob.State.SAVING);
+      Path versionFile = save(model, job.getModelFile());
+      NLPModelRegistry.registerCategorizerModel(job.getModelFile(), model);
+      pruneVersions(job.getModelFile(), log);
+
+      job.complete(versionFile);
+      log.info(
+          String.format(
+              "Training of the NLP model for %s done in %d ms with %d samples. New version : '%s'.",
+              job.getLanguage(), job.getElapsed(), job.getNumSamples(), versionFile));
+    } catch (Exception e) {
+      job.fail(e);
+      log.error(String.format("Training of the NLP model for %s failed.", job.getLanguage()), e);
+    }
+  }
+
+  /**
+   * Train a model on a dataset
+   *
+   * @param trainDataset Dataset, one sample per line : category, tab, text
+   * @param configuration Parameters of the training
+   * @return The model
+   * @throws IOException If the dataset could not be read
+   */
+  private DoccatModel train(Path trainDataset, TrainingConfiguration configuration)
+      throws IOException {
+    // Read file with classifications samples of sentences.
+    InputStreamFactory inputStreamFactory =
+        new MarkableFileInputStreamFactory(trainDataset.toFile());
+    ObjectStream<String> lineStream =
+        new PlainTextByLineStream(inputStreamFactory, StandardCharsets.UTF_8);
+
+    try (ObjectStream<DocumentSample> sampleStream = new DocumentSampleStream(lineStream)) {
+      return DocumentCategorizerME.train(
+          "en", sampleStream, configuration.toTrainingParameters(), configuration.createFactory());
+    }
+  }
+
+  /**
+   * Write the model to a new versioned file, then replace the live model file with an atomic move
+   *
+   * @param model Model to save
+   * @param modelFile Live model file
+   * @return The versioned file
+   * @throws IOException If the model could not be written
+   */
+  private Path save(DoccatModel model, Path modelFile) throws IOException {
+    Path folder = modelFile.toAbsolutePath().getParent();
+    Files.createDirectories(folder);
+
+    String name = modelFile.getFileName().toString();
+    Path versionFile = folder.resolve(String.format("%s.v%d", name, System.currentTimeMillis()));
+    Path tmpFile = folder.resolve(name + ".tmp");
+
+    try (OutputStream os = Files.newOutputStream(tmpFile)) {
+      model.serialize(os);
+    }
+    Files.move(tmpFile, versionFile, StandardCopyOption.ATOMIC_MOVE);
+
+    Files.copy(versionFile, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+    Files.move(
+        tmpFile, modelFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    return versionFile;
+  }
+
+  /**
+   * Delete the oldest versions of a model
+   *
+   * @param modelFile Live model file
+   * @param log Logger
+   */
+  private void pruneVersions(Path modelFile, Log log) {
+    int kept = Math.max(1, getIntProperty("artemis.nlp.training.kept_versions", 3));
+    String prefix = modelFile.getFileName().toString() + ".v";
+
+    List<Path> versions = new ArrayList<>();
+    try (Stream<Path> files = Files.list(modelFile.toAbsolutePath().getParent())) {
+      files.filter(f -> f.getFileName().toString().startsWith(prefix)).forEach(versions::add);
+    } catch (IOException e) {
+      log.error("Failed to list the versions of the NLP model.", e);
+      return;
+    }
+
+    versions.sort(
+        Comparator.comparingLong(
+            (Path f) -> {
+              try {
+                return Long.parseLong(f.getFileName().toString().substring(prefix.length()));
+              } catch (NumberFormatException e) {
+                return Long.MAX_VALUE; // Unknown versions are kept
+              }
+            }));
+
+    for (int i = 0; i < versions.size() - kept; i++) {
+      try {
+        Files.deleteIfExists(versions.get(i));
+      } catch (IOException e) {
+        log.error(String.format("Failed to delete the old model '%s'.", versions.get(i)), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.model.training;
+
+import com.castsoftware.artemis.config.Configuration;
+import opennlp.tools.doccat.BagOfWordsFeatureGenerator;
+import opennlp.tools.doccat.DoccatFactory;
+import opennlp.tools.doccat.FeatureGenerator;
+import opennlp.tools.doccat.NGramFeatureGenerator;
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.TrainingParameters;
+
+import java.util.Locale;
+
+/** Parameters of the training of a categorization model. */
+public class TrainingConfiguration {
+
+  /** Feature generators of the model */
+  public enum Features {
+    BOW("bow"),
+    NGRAM("ngram"), // Unigrams and bigrams
+    BOW_NGRAM("bow+ngram");
+
+    private final String value;
+
+    Features(String value) {
+      this.value = value;
+    }
+
+    /**
+     * Get the features from their name
+     *
+     * @param name Name of the features
+     * @return The features
+     * @throws IllegalArgumentException If the name is unknown
+     */
+    public static Features getFeatures(String name) {
+      String normalized = name.trim().toLowerCase(Locale.ROOT);
+      for (Features f : values()) {
+        if (f.value.equals(normalized)) return f;
+      }
+      throw new IllegalArgumentException(
+          String.format("Unknown features '%s'. Expected : bow, ngram or bow+ngram.", name));
+    }
+
+    @Override
+    public String toString() {
+      return value;
+    }
+  }
+
+  private static final int DEFAULT_ITERATIONS = 500;
+
+  private final int iterations;
+  private final int cutoff;
+  private final Features features;
+
+  public TrainingConfiguration(int iterations, int cutoff, Features features) {
+    this.iterations = Math.max(1, iterations);
+    this.cutoff = Math.max(0, cutoff);
+    this.features = features;
+  }
+
+  /**
+   * Get the configuration used by the regular trainings
+   *
+   * @return The default configuration
+   */
+  public static TrainingConfiguration getDefault() {
+    int iterations;
+    try {
+      iterations = Integer.parseInt(Configuration.get("artemis.nlp.training.iterations"));
+    } catch (NumberFormatException | NullPointerException e) {
+      iterations = DEFAULT_ITERATIONS;
+    }
+    return new TrainingConfiguration(iterations, 0, Features.BOW);
+  }
+
+  public TrainingParameters toTrainingParameters() {
+    TrainingParameters params = new TrainingParameters();
+    params.put(TrainingParameters.ITERATIONS_PARAM, iterations);
+    params.put(TrainingParameters.CUTOFF_PARAM, cutoff);
+    params.put("PrintMessages", false);
+    return params;
+  }
+
+  /**
+   * Create the factory of the model. The generators are built with their default parameters, so
+   * the model can be loaded back from its file.
+   *
+   * @return The factory
+   * @throws InvalidFormatException If a generator could not be created
+   */
+  public DoccatFactory createFactory() throws InvalidFormatException {
+    FeatureGenerator[] generators;
+    switch (features) {
+      case NGRAM:
+        generators = new FeatureGenerator[] {new NGramFeatureGenerator()};
+        break;
+      case BOW_NGRAM:
+        generators =
+            new FeatureGenerator[] {new BagOfWordsFeatureGenerator(), new NGramFeatureGenerator()};
+        break;
+      case BOW:
+      default:
+        generators = new FeatureGenerator[] {new BagOfWordsFeatureGenerator()};
+    }
+    return new DoccatFactory(generators);
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+  public int getCutoff() {
+    return cutoff;
+  }
+
+  public Features getFeatures() {
+    return features;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("iterations=%d, cutoff=%d, features=%s", iterations, cutoff, features);
+  }
+}
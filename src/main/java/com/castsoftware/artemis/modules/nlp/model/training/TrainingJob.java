@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.model.training;
+
+import com.castsoftware.artemis.global.SupportedLanguage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/** Training of the model of a language, run by the training service. */
+public class TrainingJob {
+
+  public enum State {
+    QUEUED,
+    READING,
+    TRAINING,
+    SAVING,
+    DONE,
+    FAILED
+  }
+
+  private final SupportedLanguage language;
+  private final Path trainDataset;
+  private final Path modelFile;
+  private final TrainingConfiguration configuration;
+  private final long submitted;
+  private final CompletableFuture<Path> completion = new CompletableFuture<>();
+
+  private volatile State state = State.QUEUED;
+  private volatile long numSamples = 0L;
+  private volatile long started = 0L;
+  private volatile long finished = 0L;
+  private volatile Path versionFile = null;
+  private volatile String error = null;
+
+  TrainingJob(
+      SupportedLanguage language,
+      Path trainDataset,
+      Path modelFile,
+      TrainingConfiguration configuration) {
+    this.language = language;
+    this.trainDataset = trainDataset;
+    this.modelFile = modelFile;
+    this.configuration = configuration;
+    this.submitted = System.currentTimeMillis();
+  }
+
+  void setState(State state) {
+    if (state == State.READING) this.started = System.currentTimeMillis();
+    this.state = state;
+  }
+
+  void setNumSamples(long numSamples) {
+    this.numSamples = numSamples;
+  }
+
+  void complete(Path versionFile) {
+    this.versionFile = versionFile;
+    this.finished = System.currentTimeMillis();
+    this.state = State.DONE;
+    completion.complete(versionFile);
+  }
+
+  void fail(Throwable cause) {
+    this.error = cause.getMessage() == null ? cause.toString() : cause.getMessage();
+    this.finished = System.currentTimeMillis();
+    this.state = State.FAILED;
+    completion.completeExceptionally(cause);
+  }
+
+  /**
+   * Wait for the end of the training
+   *
+   * @return The versioned file of the new model
+   * @throws IOException If the training failed
+   */
+  public Path await() throws IOException {
+    try {
+      return completion.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the training of the model.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException("The training of the model failed.", cause);
+    }
+  }
+
+  public boolean isDone() {
+    return completion.isDone();
+  }
+
+  /**
+   * Get the time spent since the start of the training, or the total duration once it ended
+   *
+   * @return The duration in milliseconds, 0 if the training didn't start yet
+   */
+  public long getElapsed() {
+    if (started == 0L) return 0L;
+    return (finished == 0L ? System.currentTimeMillis() : finished) - started;
+  }
+
+  public SupportedLanguage getLanguage() {
+    return language;
+  }
+
+  public Path getTrainDataset() {
+    return trainDataset;
+  }
+
+  public Path getModelFile() {
+    return modelFile;
+  }
+
+  public TrainingConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public long getNumSamples() {
+    return numSamples;
+  }
+
+  public long getSubmitted() {
+    return submitted;
+  }
+
+  public long getStarted() {
+    return started;
+  }
+
+  public long getFinished() {
+    return finished;
+  }
+
+  public Path getVersionFile() {
+    return versionFile;
+  }
+
+  public String getError() {
+    return error;
+  }
+}
@@ -14,207 +14,200 @@ package com.castsoftware.artemis.modules.nlp.parser;
 import com.castsoftware.artemis.config.Configuration;
 import com.castsoftware.artemis.config.detection.LanguageProp;
 import com.castsoftware.artemis.exceptions.google.GoogleBadResponseCodeException;
+import com.castsoftware.artemis.modules.nlp.KeywordMatcher;
+import com.castsoftware.artemis.modules.nlp.parser.provider.GoogleSearchProvider;
+import com.castsoftware.artemis.modules.nlp.parser.provider.LocalCorpusIndex;
+import com.castsoftware.artemis.modules.nlp.parser.provider.LocalCorpusProvider;
+import com.castsoftware.artemis.modules.nlp.parser.provider.SearchProvider;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
+import com.castsoftware.artemis.utils.Workspace;
 import org.neo4j.logging.Log;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Entry point of the online enrichment. The query is sent to the search providers declared in the
+ * configuration, in order, until one of them returns a result.
+ */
 public class GoogleParser {
-  private static final String GOOGLE_URL =
-      "https://www.google.com/search?q=%s&sourceid=chrome&ie=UTF-8";
-  private static final String ERROR_PREFIX = "GOOGPx";
-
-  private static final String RAW_BLACKLISTED_WEBSITE =
-      Configuration.get("artemis.online.website.blacklist");
-  private static final String RAW_BLACKLISTED_KEYWORDS =
-      Configuration.get("artemis.online.word.blacklist");
-  private static final List<String> BLACKLISTED_WEBSITE =
-      Arrays.asList(RAW_BLACKLISTED_WEBSITE.split(";"));
-  private static final List<String> BLACKLISTED_KEYWORDS =
-      Arrays.asList(RAW_BLACKLISTED_KEYWORDS.split(";"));
-
-  private static final Pattern TITLE_REGEX_PATTERN =
-      Pattern.compile("<a[\\s]+[^>]+>((?:.(?!\\<\\/a\\>))*.)<\\/a>");
+
+  // Matchers of the keywords of the languages, searched in the urls
+  private static final Map<String, KeywordMatcher> URL_KEYWORDS = new ConcurrentHashMap<>();
 
   private final Log log;
-  private final HeaderGenerator headerGenerator;
+  private final List<SearchProvider> providers;
+  private GoogleResultCache resultCache; // Null if the results are not cached
 
   public GoogleParser(Neo4jAL neo4jAL) throws IOException {
-    this.log = neo4jAL.getLogger();
-    this.headerGenerator = HeaderGenerator.getInstance(neo4jAL);
+    this(neo4jAL.getLogger(), createProviders(neo4jAL));
   }
 
-  public GoogleResult request(String query) throws IOException, GoogleBadResponseCodeException {
-    GoogleResult googleResult = new GoogleResult();
-    googleResult.setTitle(query);
-
-    // Wait
-    botBusterWait();
-
-    query = query.replaceAll("([^A-z0-9]|[\\\\])", "");
-    query = query.replace(" ", "+").toLowerCase();
-
-    String req = String.format(GOOGLE_URL, query);
-    URL obj = new URL(req);
-    HttpURLConnection con = (HttpURLConnection) obj.openConnection();
-
-    // optional default is GET
-    con.setRequestMethod("GET");
-
-    String header = headerGenerator.getRandomHeader();
-    log.info("Now using header : " + header);
-    con.setRequestProperty("User-Agent", header);
-
-    int responseCode = con.getResponseCode();
-
-    if (responseCode != 200) {
-      String respMessage = con.getResponseMessage();
-      log.info("An unexpected behavior was detected during framework list gathering.");
-      for (Map.Entry<String, List<String>> en : con.getHeaderFields().entrySet()) {
-        log.info(
-            String.format("Header : %s Value : %s", en.getKey(), String.join(", ", en.getValue())));
-      }
-
-      throw new GoogleBadResponseCodeException(
-          String.format(
-              "The request return a bad response code. Code : %d , Response Message : %s",
-              responseCode, respMessage),
-          ERROR_PREFIX + "RESC1");
-    }
-
-    String inputLine;
-    StringBuffer response = new StringBuffer();
-
-    try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
-      while ((inputLine = in.readLine()) != null) {
-        response.append(inputLine);
-      }
-    }
-
-    // log.info("The request returned \n \n " + response.toString() + " \n \n ");
-
-    StringBuilder fullResults = new StringBuilder();
-
-    // Analyze response with JSOUP
-    Document document = Jsoup.parse(response.toString());
-    List<String> extractedTitle = new ArrayList<>();
-    List<String> extractedUrls = new ArrayList<>();
-    List<String> extractedBody = new ArrayList<>();
-
-    // Get the title and verify the presence of blacklisted words in the first 4 elements
-    List<Element> titles = document.getElementsByClass("rc");
-    if (titles.isEmpty()) {
-      titles.addAll(document.getElementsByClass("g"));
-    }
-
-    googleResult.setNumberResult(titles.size());
-
-    int itTitle = 0;
-    for (Element title : titles) {
-      if (!title.getElementsByTag("h3").isEmpty()) {
-        String titleText = title.getElementsByTag("h3").get(0).text();
-
-        for (String blackListed : BLACKLISTED_KEYWORDS) {
-          if (titleText.contains(blackListed)) {
-            googleResult.setBlacklisted(true);
-            break;
-          }
-        }
-
-        extractedTitle.add(titleText);
-      }
+  /**
+   * Create a parser querying specific providers
+   *
+   * @param log Logger
+   * @param providers Providers, by order of priority
+   */
+  public GoogleParser(Log log, List<SearchProvider> providers) {
+    this.log = log;
+    this.providers = List.copyOf(providers);
+  }
 
-      if (!title.getElementsByTag("a").isEmpty()) {
-        String urlText = title.getElementsByTag("a").get(0).text();
-        extractedUrls.add(urlText);
+  /**
+   * Create the providers declared in the configuration. The unknown providers are ignored.
+   *
+   * @param neo4jAL Neo4j Access Layer used to locate the workspace
+   * @return The list of providers, by order of priority
+   * @throws IOException If the headers of the Google provider failed to load
+   */
+  private static List<SearchProvider> createProviders(Neo4jAL neo4jAL) throws IOException {
+    String raw = Configuration.get("artemis.online.providers");
+    if (raw == null || raw.isBlank()) raw = GoogleSearchProvider.NAME;
+
+    List<SearchProvider> providers = new ArrayList<>();
+    for (String name : raw.split(";")) {
+      switch (name.trim().toLowerCase()) {
+        case GoogleSearchProvider.NAME:
+          providers.add(
+              new GoogleSearchProvider(neo4jAL.getLogger(), HeaderGenerator.getInstance(neo4jAL)));
+          break;
+        case LocalCorpusProvider.NAME:
+          LocalCorpusIndex index =
+              LocalCorpusIndex.open(
+                  Workspace.getSearchCorpusFolder(neo4jAL),
+                  getIntProperty("artemis.online.corpus.passage_size", 80));
+          providers.add(
+              new LocalCorpusProvider(index, getIntProperty("artemis.online.corpus.max_passages", 5)));
+          break;
+        default:
+          neo4jAL.logInfo(String.format("Unknown search provider '%s' ignored.", name));
       }
-
-      itTitle++;
-    }
-
-    // Add aCOpRe / st
-    List<Element> bodies = document.getElementsByClass("rc");
-    for (Element body : bodies) {
-      extractedBody.add(body.text());
     }
+    return providers;
+  }
 
-    // Check website url and verify the first 4 results aren't blacklisted
-    // Regex
-    Matcher titleMatcher;
-    int itWebUrl = 0;
-    List<Element> urls = document.getElementsByClass("rc");
-    for (Element body : urls) {
-      if (itWebUrl > 4) {
-        break;
-      }
-      titleMatcher = TITLE_REGEX_PATTERN.matcher(body.text());
-      if (titleMatcher.matches()) {
-        for (int i = 0; i <= titleMatcher.groupCount(); i++) {
-          for (String forbidden : BLACKLISTED_WEBSITE) {
-            if (titleMatcher.group(i).toLowerCase().contains(forbidden)) {
-              googleResult.setBlacklisted(true);
-              break;
-            }
-          }
-        }
-      }
-      itWebUrl++;
+  private static int getIntProperty(String key, int defaultValue) {
+    try {
+      return Integer.parseInt(Configuration.get(key));
+    } catch (NumberFormatException | NullPointerException e) {
+      return defaultValue;
     }
+  }
 
-    googleResult.setUrls(extractedUrls);
-    Iterator<String> it1 = extractedTitle.iterator();
-    Iterator<String> it2 = extractedBody.iterator();
+  /**
+   * Cache the results of the remote requests
+   *
+   * @param resultCache Cache to use, null to disable the cache
+   */
+  public void setResultCache(GoogleResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
 
-    while (it1.hasNext() || it2.hasNext()) {
-      if (it1.hasNext()) fullResults.append(it1.next()).append(" ");
-      if (it2.hasNext()) fullResults.append(it2.next()).append(" ");
-    }
+  public List<SearchProvider> getProviders() {
+    return providers;
+  }
 
-    // Sanitize the text
-    // Remove Html anchors , http links, special characters and isolated numbers
-    String res =
-        fullResults
-            .toString()
-            .replaceAll(
-                "<\\/?\\s*\\w[^>]*\\/?>|[\\.]{2,}|([\\<\\>›»])|(\\b(\\d+)\\.?\\b)|(w{3}\\.[A-z0-9-]*\\.[A-z]{2,})|(?!([a-zA-Z\\s:,\\.-]))",
-                " ");
-    // Remove extra spaces
-    googleResult.setContent(res.replaceAll("\\s{2,}", ""));
-
-    return googleResult;
+  /**
+   * Check if at least one provider can still be queried
+   *
+   * @return True if a provider is available
+   */
+  public boolean isAvailable() {
+    return providers.stream().anyMatch(SearchProvider::isAvailable);
   }
 
-  /** Wait to avoid Google Bot detector to reject the query */
-  private void botBusterWait() {
+  /**
+   * Search a query. The caller waits for the result.
+   *
+   * @param query Query to search
+   * @return The result of the search
+   * @throws IOException If the request failed
+   * @throws GoogleBadResponseCodeException If every remaining provider refused the request
+   */
+  public GoogleResult request(String query) throws IOException, GoogleBadResponseCodeException {
     try {
-      int delay = getNormalLawArrival(1200, 500);
-      if (delay < 0) delay = 1500;
-      log.info("Will wait : " + delay + " ms");
-      Thread.sleep(delay);
-    } catch (InterruptedException ignore) {
+      return requestAsync(query).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause() == null ? e : e.getCause();
+      if (cause instanceof GoogleBadResponseCodeException) throw (GoogleBadResponseCodeException) cause;
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException("The online search failed.", cause);
     }
   }
 
   /**
-   * Get Random number following a normal law arrival
+   * Search a query without waiting. The providers are queried in order, and the first result with
+   * at least one entry is returned. A provider refusing the request is disabled, and the next one
+   * is used.
    *
-   * @param mean Mean of the poisson law
-   * @return
+   * @param query Query to search
+   * @return The future result, completed exceptionally with an IOException or a
+   *     GoogleBadResponseCodeException if no provider could answer
+   */
+  public CompletableFuture<GoogleResult> requestAsync(String query) {
+    GoogleResult empty = new GoogleResult();
+    empty.setTitle(query);
+    return searchFrom(0, query, empty, null);
+  }
+
+  /**
+   * Query the providers starting at an index
+   *
+   * @param index Index of the first provider to query
+   * @param query Query to search
+   * @param fallback Result returned if no provider finds anything
+   * @param failure Last failure, returned if no provider answered
+   * @return The future result
    */
-  private static int getNormalLawArrival(double mean, double std) {
-    Random r = new Random();
-    double delay = r.nextGaussian() * std + mean;
-    return (int) Math.round(delay);
+  private CompletableFuture<GoogleResult> searchFrom(
+      int index, String query, GoogleResult fallback, Throwable failure) {
+    // Skip the unavailable providers
+    while (index < providers.size() && !providers.get(index).isAvailable()) index++;
+    if (index >= providers.size()) {
+      if (failure != null) return CompletableFuture.failedFuture(failure);
+      return CompletableFuture.completedFuture(fallback);
+    }
+
+    SearchProvider provider = providers.get(index);
+    if (provider.isRemote() && resultCache != null) {
+      Optional<GoogleResult> cached = resultCache.get(query);
+      if (cached.isPresent()) return CompletableFuture.completedFuture(cached.get());
+    }
+
+    final int next = index + 1;
+    return provider
+        .search(query)
+        .handle(
+            (result, e) -> {
+              if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof GoogleBadResponseCodeException) {
+                  provider.disable();
+                  log.error(
+                      String.format(
+                          "The search provider '%s' refused the request and is now disabled.",
+                          provider.getName()),
+                      cause);
+                } else {
+                  log.error(
+                      String.format(
+                          "The search provider '%s' failed to search '%s'.", provider.getName(), query),
+                      cause);
+                }
+                return searchFrom(next, query, fallback, cause);
+              }
+
+              if (result.getNumberResult() > 0) {
+                if (provider.isRemote() && resultCache != null) resultCache.put(query, result);
+                return CompletableFuture.completedFuture(result);
+              }
+              return searchFrom(next, query, result, failure);
+            })
+        .thenCompose(f -> f);
   }
 
   /**
@@ -228,12 +221,13 @@ public class GoogleParser {
     if (urls.isEmpty()) return "";
 
     // Search for buzzword
+    KeywordMatcher buzzWords =
+        URL_KEYWORDS.computeIfAbsent(
+            lp.getName(), k -> new KeywordMatcher(lp.getKeywords(), false, false));
     for (String url : urls) {
-      for (String buzzWord : lp.getKeywords()) {
-        if (url.contains(buzzWord)) {
-          // If one url matches the buzz words, return
-          return url;
-        }
+      if (buzzWords.containsAny(url)) {
+        // If one url matches the buzz words, return
+        return url;
       }
     }
 
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.parser;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of the online search results, keyed by the normalized query. The sanitized
+ * results are kept in a size-bounded LRU map, and appended to a file of the workspace, one json
+ * record per line, so they survive the restarts and are shared by the applications. The file is
+ * compacted when it holds too many dead records.
+ */
+public class GoogleResultCache {
+
+  private static final Map<Path, GoogleResultCache> OPENED = new ConcurrentHashMap<>();
+  private static final int COMPACTION_THRESHOLD = 1000; // Minimum number of dead records
+
+  private final Gson gson = new Gson();
+  private final Path file;
+  private final int maxEntries;
+  private final long ttl;
+  private final LinkedHashMap<String, Record> entries;
+  private long numRecords = 0L; // Lines in the file
+
+  // Statistics
+  private long hits = 0L;
+  private long misses = 0L;
+  private long evictions = 0L;
+
+  /** Cached result, as written in the file. A null result removes the key. */
+  private static class Record {
+    private String key;
+    private long expiry;
+    private GoogleResult result;
+
+    private Record(String key, long expiry, GoogleResult result) {
+      this.key = key;
+      this.expiry = expiry;
+      this.result = result;
+    }
+  }
+
+  /**
+   * Open the cache stored in a file, or get the one already opened
+   *
+   * @param file File of the cache, null to keep the cache in memory only
+   * @param maxEntries Maximum number of results kept
+   * @param ttl Time to live of the results, in milliseconds
+   * @return The cache
+   */
+  public static GoogleResultCache open(Path file, int maxEntries, long ttl) {
+    if (file == null) return new GoogleResultCache(null, maxEntries, ttl);
+    return OPENED.computeIfAbsent(
+        file.toAbsolutePath(), f -> new GoogleResultCache(f, maxEntries, ttl));
+  }
+
+  private GoogleResultCache(Path file, int maxEntries, long ttl) {
+    this.file = file;
+    this.maxEntries = Math.max(1, maxEntries);
+    this.ttl = ttl;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Record> eldest) {
+            if (size() <= GoogleResultCache.this.maxEntries) return false;
+            evictions++;
+            return true;
+          }
+        };
+
+    if (file != null) load();
+  }
+
+  /**
+   * Normalize a query, as sent to the search engine
+   *
+   * @param query Query to normalize
+   * @return The normalized query
+   */
+  public static String normalize(String query) {
+    return query.replaceAll("([^A-z0-9]|[\\\\])", "").replace(" ", "+").toLowerCase();
+  }
+
+  /** Load the records of the file. The later records of a key replace the earlier ones. */
+  private void load() {
+    if (!Files.exists(file)) return;
+
+    long now = System.currentTimeMillis();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank()) continue;
+        numRecords++;
+        try {
+          Record record = gson.fromJson(line, Record.class);
+          if (record == null || record.key == null) continue;
+          if (record.result == null || record.expiry <= now) entries.remove(record.key);
+          else entries.put(record.key, record);
+        } catch (JsonParseException e) {
+          // Truncated or corrupted line, ignored
+        }
+      }
+    } catch (IOException e) {
+      // The cache stays usable in memory
+      return;
+    }
+    evictions = 0L;
+    if (numRecords - entries.size() >= COMPACTION_THRESHOLD) compact();
+  }
+
+  /**
+   * Get the cached result of a query
+   *
+   * @param query Query, normalized or not
+   * @return A copy of the result, or an empty optional if the query isn't cached or expired
+   */
+  public synchronized Optional<GoogleResult> get(String query) {
+    String key = normalize(query);
+    Record record = entries.get(key);
+    if (record == null || record.expiry <= System.currentTimeMillis()) {
+      if (record != null) entries.remove(key);
+      misses++;
+      return Optional.empty();
+    }
+
+    hits++;
+    // A copy is returned, the callers are free to modify it
+    return Optional.of(gson.fromJson(gson.toJson(record.result), GoogleResult.class));
+  }
+
+  /**
+   * Cache the result of a query
+   *
+   * @param query Query, normalized or not
+   * @param result Result of the search
+   */
+  public synchronized void put(String query, GoogleResult result) {
+    if (result == null) return;
+    Record record = new Record(normalize(query), System.currentTimeMillis() + ttl, result);
+    entries.put(record.key, record);
+    append(record);
+  }
+
+  /**
+   * Remove a query from the cache
+   *
+   * @param query Query, normalized or not
+   */
+  public synchronized void invalidate(String query) {
+    String key = normalize(query);
+    if (entries.remove(key) != null) append(new Record(key, 0L, null));
+  }
+
+  /** Remove all the results */
+  public synchronized void clear() {
+    entries.clear();
+    compact();
+  }
+
+  /**
+   * Append a record to the file
+   *
+   * @param record Record to write
+   */
+  private void append(Record record) {
+    if (file == null) return;
+    try {
+      Files.createDirectories(file.getParent());
+      try (BufferedWriter writer =
+          Files.newBufferedWriter(
+              file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+        writer.write(gson.toJson(record));
+        writer.newLine();
+      }
+      numRecords++;
+    } catch (IOException e) {
+      return; // The result stays in memory
+    }
+
+    if (numRecords - entries.size() >= COMPACTION_THRESHOLD && numRecords > 2L * entries.size()) {
+      compact();
+    }
+  }
+
+  /** Rewrite the file with the live records only */
+  private void compact() {
+    if (file == null) return;
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    long now = System.currentTimeMillis();
+    long written = 0L;
+    try {
+      Files.createDirectories(file.getParent());
+      try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        // Least recently used first, so the reload keeps the same order
+        for (Record record : entries.values()) {
+          if (record.expiry <= now) continue;
+          writer.write(gson.toJson(record));
+          writer.newLine();
+          written++;
+        }
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      numRecords = written;
+    } catch (IOException e) {
+      // The previous file is kept
+    }
+  }
+
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Get the statistics as a printable string
+   *
+   * @return The statistics
+   */
+  public synchronized String getStatistics() {
+    return String.format(
+        "Online result cache : %d results (max %d), %d hits, %d misses, %d evictions.",
+        entries.size(), maxEntries, hits, misses, evictions);
+  }
+}
@@ -15,57 +15,113 @@ import com.castsoftware.artemis.config.Configuration;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
 import com.castsoftware.artemis.utils.Workspace;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Pool of the user agents used by the online requests. The file of the workspace is read once into
+ * an array, and reloaded when it changes.
+ */
 public class HeaderGenerator {
 
+  private static final long CHECK_INTERVAL = 10_000L; // Minimum delay between two checks, in ms
+
   private static HeaderGenerator instance = null;
 
-  private Integer numberOfLine = 0;
-  private File headerFile = null;
+  private final Path headerFile;
   private final Neo4jAL neo4jAL;
 
-  private HeaderGenerator(Neo4jAL neo4jAL) throws IOException {
+  private volatile String[] headers;
+  private volatile long lastModified;
+  private volatile long lastCheck;
+
+  private HeaderGenerator(Neo4jAL neo4jAL, Path headerFile) throws IOException {
+    this.headerFile = headerFile;
+    this.neo4jAL = neo4jAL;
+
+    if (!Files.exists(headerFile)) {
+      throw new IOException(String.format("File with name '%s' does not exist.", headerFile));
+    }
+    reload();
+  }
+
+  public static synchronized HeaderGenerator getInstance(Neo4jAL neo4jAL) throws IOException {
     Path headerFilePath =
         Workspace.getWorkspacePath(neo4jAL)
             .resolve(Configuration.get("artemis.parser.header_file.name"));
-    this.headerFile = headerFilePath.toFile();
-    this.neo4jAL = neo4jAL;
 
-    if (!headerFile.exists()) {
-      throw new IOException(String.format("File with name '%s' does not exist.", headerFile));
+    // The workspace may have been moved since the creation
+    if (instance == null || !instance.headerFile.equals(headerFilePath)) {
+      instance = new HeaderGenerator(neo4jAL, headerFilePath);
     }
+    return instance;
+  }
 
-    byte[] c = new byte[1024];
-    int count = 0;
-    int readChars = 0;
-    boolean empty = true;
+  /**
+   * Read the file into the pool. The file is memory-mapped and split on the line feeds, the blank
+   * lines are ignored.
+   *
+   * @throws IOException If the file could not be read
+   */
+  private synchronized void reload() throws IOException {
+    long modified = Files.getLastModifiedTime(headerFile).toMillis();
+    List<String> lines = new ArrayList<>();
 
-    try (InputStream is = new BufferedInputStream(new FileInputStream(headerFile))) {
+    try (FileChannel channel = FileChannel.open(headerFile, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
 
-      while ((readChars = is.read(c)) != -1) {
-        empty = false;
-        for (int i = 0; i < readChars; ++i) {
-          if (c[i] == '\n') {
-            ++count;
-          }
-        }
+      int start = 0;
+      for (int i = 0; i <= bytes.length; i++) {
+        if (i < bytes.length && bytes[i] != '\n') continue;
+        String line = new String(bytes, start, i - start, StandardCharsets.UTF_8).trim();
+        if (!line.isEmpty()) lines.add(line);
+        start = i + 1;
       }
-
-      numberOfLine = (count == 0 && !empty) ? 1 : count;
     }
+
+    this.headers = lines.toArray(new String[0]);
+    this.lastModified = modified;
+    this.lastCheck = System.currentTimeMillis();
   }
 
-  public static HeaderGenerator getInstance(Neo4jAL neo4jAL) throws IOException {
-    if (instance == null) instance = new HeaderGenerator(neo4jAL);
-    return instance;
+  /** Reload the pool if the file changed. The previous pool is kept if the reload fails. */
+  private void reloadIfChanged() {
+    long now = System.currentTimeMillis();
+    if (now - lastCheck < CHECK_INTERVAL) return;
+    lastCheck = now;
+
+    try {
+      if (Files.getLastModifiedTime(headerFile).toMillis() != lastModified) {
+        reload();
+        neo4jAL.logInfo(
+            String.format("The user agents were reloaded : %d headers.", headers.length));
+      }
+    } catch (IOException e) {
+      neo4jAL.logError("Failed to reload the user agents, the previous ones are kept.", e);
+    }
   }
 
   public String getRandomHeader() throws IOException {
-    int randomLine = ThreadLocalRandom.current().nextInt(0, numberOfLine + 1);
-    return Files.readAllLines(headerFile.toPath()).get(randomLine);
+    reloadIfChanged();
+
+    String[] pool = headers;
+    if (pool.length == 0) {
+      throw new IOException(String.format("The file '%s' doesn't contain any header.", headerFile));
+    }
+    return pool[ThreadLocalRandom.current().nextInt(pool.length)];
+  }
+
+  public int getNumberOfHeaders() {
+    return headers.length;
   }
 }
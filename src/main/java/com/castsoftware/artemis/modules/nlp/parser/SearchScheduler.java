@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.parser;
+
+import com.castsoftware.artemis.config.Configuration;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler of the online search requests, shared by all the detections. The requests are released
+ * by a token bucket, with a random jitter, and run on a small pool of workers. The callers receive a
+ * future and don't wait for their slot. When the search engine answers with an unexpected code, the
+ * scheduler backs off, and the pause doubles at each new failure.
+ */
+public class SearchScheduler {
+
+  private static final int DEFAULT_INTERVAL = 1200; // ms between two requests
+  private static final int DEFAULT_BURST = 1;
+  private static final int DEFAULT_JITTER = 500; // ms
+  private static final int DEFAULT_WORKERS = 2;
+  private static final int DEFAULT_BACKOFF = 30000; // ms
+  private static final int DEFAULT_MAX_BACKOFF = 600000; // ms
+
+  private static SearchScheduler INSTANCE;
+
+  private final long interval;
+  private final int burst;
+  private final long jitter;
+  private final long baseBackoff;
+  private final long maxBackoff;
+
+  private final ScheduledExecutorService dispatcher;
+  private final ExecutorService workers;
+  private final Queue<Pending<?>> pending = new ConcurrentLinkedQueue<>();
+
+  // Token bucket, only modified by the dispatcher thread
+  private double tokens;
+  private long lastRefill;
+
+  // Back-off
+  private volatile long pausedUntil = 0L;
+  private long backoff;
+
+  private boolean pumpScheduled = false;
+
+  // Statistics
+  private final AtomicInteger numExecuted = new AtomicInteger(0);
+  private final AtomicInteger numBackoffs = new AtomicInteger(0);
+
+  /** Task waiting for a slot */
+  private static class Pending<T> {
+    private final Callable<T> task;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    private Pending(Callable<T> task) {
+      this.task = task;
+    }
+
+    private void run() {
+      if (future.isDone()) return; // Cancelled while waiting
+      try {
+        future.complete(task.call());
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * Get the scheduler shared by the detections
+   *
+   * @return The scheduler
+   */
+  public static synchronized SearchScheduler getInstance() {
+    if (INSTANCE == null) {
+      INSTANCE =
+          new SearchScheduler(
+              getIntProperty("artemis.online.scheduler.interval", DEFAULT_INTERVAL),
+              getIntProperty("artemis.online.scheduler.burst", DEFAULT_BURST),
+              getIntProperty("artemis.online.scheduler.jitter", DEFAULT_JITTER),
+              getIntProperty("artemis.online.scheduler.workers", DEFAULT_WORKERS),
+              getIntProperty("artemis.online.scheduler.backoff", DEFAULT_BACKOFF),
+              getIntProperty("artemis.online.scheduler.max_backoff", DEFAULT_MAX_BACKOFF));
+    }
+    return INSTANCE;
+  }
+
+  /**
+   * Create a scheduler
+   *
+   * @param interval Minimum mean time between two requests, in milliseconds
+   * @param burst Number of requests that can be released at once after an idle period
+   * @param jitter Maximum random delay added before a request, in milliseconds
+   * @param workers Number of requests running at the same time
+   * @param backoff First pause after a refused request, in milliseconds
+   * @param maxBackoff Maximum pause, in milliseconds
+   */
+  public SearchScheduler(
+      long interval, int burst, long jitter, int workers, long backoff, long maxBackoff) {
+    this.interval = Math.max(1L, interval);
+    this.burst = Math.max(1, burst);
+    this.jitter = Math.max(0L, jitter);
+    this.baseBackoff = Math.max(0L, backoff);
+    this.maxBackoff = Math.max(this.baseBackoff, maxBackoff);
+    this.backoff = this.baseBackoff;
+    this.tokens = this.burst;
+    this.lastRefill = System.currentTimeMillis();
+
+    AtomicInteger count = new AtomicInteger(0);
+    this.dispatcher =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "artemis-search-scheduler");
+              t.setDaemon(true);
+              return t;
+            });
+    this.workers =
+        Executors.newFixedThreadPool(
+            Math.max(1, workers),
+            r -> {
+              Thread t = new Thread(r, "artemis-search-" + count.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            });
+  }
+
+  private static int getIntProperty(String key, int defaultValue) {
+    try {
+      return Integer.parseInt(Configuration.get(key));
+    } catch (NumberFormatException | NullPointerException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Schedule a request. The call returns immediately.
+   *
+   * @param task Request to run once a slot is available
+   * @param <T> Type of the result
+   * @return The future result of the request
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task) {
+    Pending<T> p = new Pending<>(task);
+    pending.add(p);
+    dispatcher.execute(this::pump);
+    return p.future;
+  }
+
+  /**
+   * Release the pending requests while tokens are available, then plan the next release. Only runs
+   * on the dispatcher thread.
+   */
+  private void pump() {
+    pumpScheduled = false;
+    while (!pending.isEmpty()) {
+      long now = System.currentTimeMillis();
+      refill(now);
+
+      long wait = Math.max(pausedUntil - now, 0L);
+      if (tokens < 1.0) wait = Math.max(wait, (long) Math.ceil((1.0 - tokens) * interval));
+      if (wait > 0) {
+        schedulePump(wait);
+        return;
+      }
+
+      Pending<?> next = pending.poll();
+      if (next == null) return;
+      if (next.future.isDone()) continue; // Cancelled, the token is kept
+
+      tokens -= 1.0;
+      numExecuted.incrementAndGet();
+      long delay = jitter == 0 ? 0 : ThreadLocalRandom.current().nextLong(jitter + 1);
+      if (delay == 0) workers.execute(next::run);
+      else dispatcher.schedule(() -> workers.execute(next::run), delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Plan a new release of the requests
+   *
+   * @param delay Delay in milliseconds
+   */
+  private void schedulePump(long delay) {
+    if (pumpScheduled) return;
+    pumpScheduled = true;
+    dispatcher.schedule(this::pump, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Add the tokens earned since the last refill
+   *
+   * @param now Current time
+   */
+  private void refill(long now) {
+    if (now <= lastRefill) return;
+    tokens = Math.min(burst, tokens + (double) (now - lastRefill) / interval);
+    lastRefill = now;
+  }
+
+  /** Report a refused request. The next requests are paused, longer at each consecutive failure. */
+  public synchronized void reportFailure() {
+    numBackoffs.incrementAndGet();
+    pausedUntil = System.currentTimeMillis() + backoff;
+    backoff = Math.min(maxBackoff, Math.max(1L, backoff) * 2);
+  }
+
+  /** Report a successful request, the back-off is reset */
+  public synchronized void reportSuccess() {
+    backoff = baseBackoff;
+  }
+
+  public int getNumPending() {
+    return pending.size();
+  }
+
+  public int getNumExecuted() {
+    return numExecuted.get();
+  }
+
+  public int getNumBackoffs() {
+    return numBackoffs.get();
+  }
+
+  /**
+   * Check if the requests are currently paused after a refused request
+   *
+   * @return True if the scheduler is backing off
+   */
+  public boolean isPaused() {
+    return pausedUntil > System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.parser.provider;
+
+import com.castsoftware.artemis.exceptions.google.GoogleBadResponseCodeException;
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResult;
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResultCache;
+import com.castsoftware.artemis.modules.nlp.parser.HeaderGenerator;
+import com.castsoftware.artemis.modules.nlp.parser.SearchScheduler;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Provider scraping the result page of Google. The requests are released by the shared scheduler,
+ * at the rate allowed by the search engine.
+ */
+public class GoogleSearchProvider implements SearchProvider {
+  public static final String NAME = "google";
+
+  private static final String GOOGLE_URL =
+      "https://www.google.com/search?q=%s&sourceid=chrome&ie=UTF-8";
+  private static final String ERROR_PREFIX = "GOOGPx";
+
+  private final Log log;
+  private final HeaderGenerator headerGenerator;
+  private volatile boolean disabled = false;
+
+  public GoogleSearchProvider(Log log, HeaderGenerator headerGenerator) {
+    this.log = log;
+    this.headerGenerator = headerGenerator;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return !disabled;
+  }
+
+  @Override
+  public boolean isRemote() {
+    return true;
+  }
+
+  @Override
+  public void disable() {
+    this.disabled = true;
+  }
+
+  /**
+   * Get the charset declared in a content type
+   *
+   * @param contentType Content type of the response
+   * @return The charset, or null if not declared
+   */
+  private static String getCharset(String contentType) {
+    if (contentType == null) return null;
+    for (String param : contentType.split(";")) {
+      String trimmed = param.trim();
+      if (trimmed.toLowerCase().startsWith("charset=")) {
+        return trimmed.substring("charset=".length()).replace("\"", "").trim();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public CompletableFuture<GoogleResult> search(String query) {
+    SearchScheduler scheduler = SearchScheduler.getInstance();
+    return scheduler.submit(
+        () -> {
+          GoogleResult googleResult;
+          try {
+            googleResult = fetch(query);
+          } catch (GoogleBadResponseCodeException e) {
+            scheduler.reportFailure(); // Slow down every detection
+            throw new CompletionException(e);
+          }
+          scheduler.reportSuccess();
+          return googleResult;
+        });
+  }
+
+  /**
+   * Send a query to the search engine, and parse the results. Only called by the scheduler, once
+   * the slot of the request is reached.
+   *
+   * @param query Query to search
+   * @return The result of the search
+   * @throws IOException If the request failed
+   * @throws GoogleBadResponseCodeException If the search engine refused the request
+   */
+  private GoogleResult fetch(String query) throws IOException, GoogleBadResponseCodeException {
+    GoogleResult googleResult = new GoogleResult();
+    googleResult.setTitle(query);
+
+    query = GoogleResultCache.normalize(query);
+
+    String req = String.format(GOOGLE_URL, query);
+    URL obj = new URL(req);
+    HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+
+    // optional default is GET
+    con.setRequestMethod("GET");
+
+    String header = headerGenerator.getRandomHeader();
+    log.info("Now using header : " + header);
+    con.setRequestProperty("User-Agent", header);
+
+    int responseCode = con.getResponseCode();
+
+    if (responseCode != 200) {
+      String respMessage = con.getResponseMessage();
+      log.info("An unexpected behavior was detected during framework list gathering.");
+      for (Map.Entry<String, List<String>> en : con.getHeaderFields().entrySet()) {
+        log.info(
+            String.format("Header : %s Value : %s", en.getKey(), String.join(", ", en.getValue())));
+      }
+
+      throw new GoogleBadResponseCodeException(
+          String.format(
+              "The request return a bad response code. Code : %d , Response Message : %s",
+              responseCode, respMessage),
+          ERROR_PREFIX + "RESC1");
+    }
+
+    Document document;
+    try (InputStream in = con.getInputStream()) {
+      // Parse the stream directly, the charset is detected by Jsoup if the header doesn't declare it
+      document = Jsoup.parse(in, getCharset(con.getContentType()), obj.toString());
+    }
+
+    return SearchResultExtractor.extract(document, googleResult);
+  }
+}
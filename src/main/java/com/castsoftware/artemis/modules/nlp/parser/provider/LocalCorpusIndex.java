@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.parser.provider;
+
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index of a folder of documentation (vendor manuals, javadocs, etc.). The
+ * documents are split in passages of a fixed number of words, and the passages matching a query
+ * are ranked with BM25. The index is shared by the detections, and rebuilt when the content of the
+ * folder changes.
+ */
+public class LocalCorpusIndex {
+
+  private static final Map<Path, LocalCorpusIndex> OPENED = new ConcurrentHashMap<>();
+
+  private static final Set<String> EXTENSIONS =
+      Set.of("txt", "text", "md", "html", "htm", "xhtml", "xml");
+  private static final Pattern WORD_SPLIT = Pattern.compile("\\s+");
+  private static final Pattern TOKEN_SPLIT = Pattern.compile("[^\\p{Alnum}_$#@-]+");
+  private static final long MAX_FILE_SIZE = 20L * 1024 * 1024; // Bigger files are ignored
+  private static final long CHECK_INTERVAL = 60_000L; // Minimum delay between two scans, in ms
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  private final Path folder;
+  private final int passageSize;
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+  private volatile long lastCheck = 0L;
+
+  private LocalCorpusIndex(Path folder, int passageSize) {
+    this.folder = folder;
+    this.passageSize = Math.max(10, passageSize);
+  }
+
+  /**
+   * Get the index of a folder. The index is built on the first search.
+   *
+   * @param folder Folder containing the documents
+   * @param passageSize Number of words per passage
+   * @return The index
+   */
+  public static LocalCorpusIndex open(Path folder, int passageSize) {
+    return OPENED.computeIfAbsent(
+        folder.toAbsolutePath().normalize(), f -> new LocalCorpusIndex(f, passageSize));
+  }
+
+  /**
+   * Split a text in lower case tokens. The hyphenated tokens are also indexed by their parts.
+   *
+   * @param text Text to split
+   * @return The list of tokens
+   */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    for (String raw : TOKEN_SPLIT.split(text)) {
+      String token = trimHyphens(raw).toLowerCase(Locale.ROOT);
+      if (token.isEmpty()) continue;
+      tokens.add(token);
+
+      if (token.indexOf('-') < 0) continue;
+      for (String part : token.split("-+")) {
+        if (!part.isEmpty()) tokens.add(part);
+      }
+    }
+    return tokens;
+  }
+
+  private static String trimHyphens(String token) {
+    int start = 0;
+    int end = token.length();
+    while (start < end && token.charAt(start) == '-') start++;
+    while (end > start && token.charAt(end - 1) == '-') end--;
+    return token.substring(start, end);
+  }
+
+  private static boolean isDocument(Path file) {
+    String name = file.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return dot > 0 && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Check if the folder of the corpus exists
+   *
+   * @return True if the folder exists
+   */
+  public boolean exists() {
+    return Files.isDirectory(folder);
+  }
+
+  /**
+   * Search the passages matching a query
+   *
+   * @param query Query to search
+   * @param maxPassages Maximum number of passages returned
+   * @return The best passages, by decreasing score
+   * @throws IOException If the folder could not be indexed
+   */
+  public List<Passage> search(String query, int maxPassages) throws IOException {
+    Snapshot current = refreshIfNeeded();
+    if (current.passages.length == 0) return Collections.emptyList();
+
+    // Accumulate the BM25 score of the passages containing at least one term
+    Map<Integer, Double> scores = new HashMap<>();
+    for (String term : new LinkedHashSet<>(tokenize(query))) {
+      int[] postings = current.postings.get(term);
+      if (postings == null) continue;
+
+      int df = postings.length / 2;
+      double idf = Math.log(1.0 + (current.passages.length - df + 0.5) / (df + 0.5));
+      for (int i = 0; i < postings.length; i += 2) {
+        int passage = postings[i];
+        int tf = postings[i + 1];
+        double norm = K1 * (1 - B + B * current.passageLengths[passage] / current.averageLength);
+        scores.merge(passage, idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+      }
+    }
+
+    // Keep the best passages only
+    PriorityQueue<Map.Entry<Integer, Double>> best =
+        new PriorityQueue<>(Map.Entry.comparingByValue());
+    for (Map.Entry<Integer, Double> en : scores.entrySet()) {
+      best.add(en);
+      if (best.size() > maxPassages) best.poll();
+    }
+
+    List<Passage> passages = new ArrayList<>(best.size());
+    while (!best.isEmpty()) {
+      Map.Entry<Integer, Double> en = best.poll();
+      int id = en.getKey();
+      passages.add(
+          new Passage(
+              current.documents[current.passageDocuments[id]], current.passages[id], en.getValue()));
+    }
+    Collections.reverse(passages);
+    return passages;
+  }
+
+  /**
+   * Rebuild the index if the content of the folder changed since the last scan. The folder is
+   * scanned at most once per minute.
+   *
+   * @return The current snapshot of the index
+   * @throws IOException If the folder could not be scanned
+   */
+  private Snapshot refreshIfNeeded() throws IOException {
+    long now = System.currentTimeMillis();
+    if (now - lastCheck < CHECK_INTERVAL) return snapshot;
+
+    synchronized (this) {
+      if (now - lastCheck < CHECK_INTERVAL) return snapshot;
+
+      List<Path> files = listDocuments();
+      long fingerprint = fingerprint(files);
+      if (fingerprint != snapshot.fingerprint) snapshot = build(files, fingerprint);
+      lastCheck = System.currentTimeMillis();
+      return snapshot;
+    }
+  }
+
+  private List<Path> listDocuments() throws IOException {
+    if (!exists()) return Collections.emptyList();
+    try (Stream<Path> walk = Files.walk(folder)) {
+      return walk.filter(Files::isRegularFile)
+          .filter(LocalCorpusIndex::isDocument)
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private long fingerprint(List<Path> files) throws IOException {
+    long hash = 17L;
+    for (Path file : files) {
+      hash = 31 * hash + file.hashCode();
+      hash = 31 * hash + Files.size(file);
+      hash = 31 * hash + Files.getLastModifiedTime(file).toMillis();
+    }
+    return hash;
+  }
+
+  /**
+   * Build a new snapshot of the index
+   *
+   * @param files Documents to index
+   * @param fingerprint Fingerprint of the documents
+   * @return The snapshot
+   * @throws IOException If a document could not be read
+   */
+  private Snapshot build(List<Path> files, long fingerprint) throws IOException {
+    List<String> documents = new ArrayList<>();
+    List<String> passages = new ArrayList<>();
+    List<Integer> passageDocuments = new ArrayList<>();
+    List<Integer> passageLengths = new ArrayList<>();
+    Map<String, PostingList> postings = new HashMap<>();
+    long totalLength = 0L;
+
+    for (Path file : files) {
+      if (Files.size(file) > MAX_FILE_SIZE) continue;
+
+      String[] words = WORD_SPLIT.split(readText(file).trim());
+      if (words.length == 0 || words[0].isEmpty()) continue;
+
+      int documentId = documents.size();
+      documents.add(folder.relativize(file).toString());
+
+      for (int start = 0; start < words.length; start += passageSize) {
+        String text =
+            String.join(" ", Arrays.asList(words).subList(start, Math.min(words.length, start + passageSize)));
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) continue;
+
+        int passageId = passages.size();
+        passages.add(text);
+        passageDocuments.add(documentId);
+        passageLengths.add(tokens.size());
+        totalLength += tokens.size();
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) frequencies.merge(token, 1, Integer::sum);
+        for (Map.Entry<String, Integer> en : frequencies.entrySet()) {
+          postings.computeIfAbsent(en.getKey(), k -> new PostingList()).add(passageId, en.getValue());
+        }
+      }
+    }
+
+    Map<String, int[]> frozen = new HashMap<>(postings.size() * 2);
+    postings.forEach((term, list) -> frozen.put(term, list.toArray()));
+
+    return new Snapshot(
+        fingerprint,
+        documents.toArray(new String[0]),
+        passages.toArray(new String[0]),
+        passageDocuments.stream().mapToInt(Integer::intValue).toArray(),
+        passageLengths.stream().mapToInt(Integer::intValue).toArray(),
+        frozen,
+        passages.isEmpty() ? 1.0 : (double) totalLength / passages.size());
+  }
+
+  /**
+   * Read the text of a document. The markup of the html and xml files is removed.
+   *
+   * @param file Document to read
+   * @return The text of the document
+   * @throws IOException If the document could not be read
+   */
+  private String readText(Path file) throws IOException {
+    String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    if (name.endsWith(".txt") || name.endsWith(".text") || name.endsWith(".md")) return content;
+    return Jsoup.parse(content).text();
+  }
+
+  public Path getFolder() {
+    return folder;
+  }
+
+  public int getNumDocuments() {
+    return snapshot.documents.length;
+  }
+
+  public int getNumPassages() {
+    return snapshot.passages.length;
+  }
+
+  public int getNumTerms() {
+    return snapshot.postings.size();
+  }
+
+  /** Passage of a document matching a query */
+  public static class Passage {
+    private final String document;
+    private final String text;
+    private final double score;
+
+    private Passage(String document, String text, double score) {
+      this.document = document;
+      this.text = text;
+      this.score = score;
+    }
+
+    public String getDocument() {
+      return document;
+    }
+
+    public String getText() {
+      return text;
+    }
+
+    public double getScore() {
+      return score;
+    }
+  }
+
+  /** Growable list of (passage, term frequency) pairs */
+  private static class PostingList {
+    private int[] data = new int[4];
+    private int size = 0;
+
+    void add(int passage, int frequency) {
+      if (size + 2 > data.length) data = Arrays.copyOf(data, data.length * 2);
+      data[size++] = passage;
+      data[size++] = frequency;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(data, size);
+    }
+  }
+
+  /** Immutable content of the index, replaced as a whole after a rebuild */
+  private static class Snapshot {
+    static final Snapshot EMPTY =
+        new Snapshot(17L, new String[0], new String[0], new int[0], new int[0], Map.of(), 1.0);
+
+    final long fingerprint;
+    final String[] documents;
+    final String[] passages;
+    final int[] passageDocuments;
+    final int[] passageLengths;
+    final Map<String, int[]> postings;
+    final double averageLength;
+
+    Snapshot(
+        long fingerprint,
+        String[] documents,
+        String[] passages,
+        int[] passageDocuments,
+        int[] passageLengths,
+        Map<String, int[]> postings,
+        double averageLength) {
+      this.fingerprint = fingerprint;
+      this.documents = documents;
+      this.passages = passages;
+      this.passageDocuments = passageDocuments;
+      this.passageLengths = passageLengths;
+      this.postings = postings;
+      this.averageLength = averageLength;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.parser.provider;
+
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Offline provider, searching a folder of vendor documentation of the workspace. The text of the
+ * best passages is returned as the content of the result, so it can be classified by the NLP engine
+ * without network access.
+ */
+public class LocalCorpusProvider implements SearchProvider {
+  public static final String NAME = "local";
+
+  private final LocalCorpusIndex index;
+  private final int maxPassages;
+  private volatile boolean disabled = false;
+
+  /**
+   * Create a provider
+   *
+   * @param index Index of the corpus
+   * @param maxPassages Maximum number of passages in a result
+   */
+  public LocalCorpusProvider(LocalCorpusIndex index, int maxPassages) {
+    this.index = index;
+    this.maxPassages = Math.max(1, maxPassages);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return !disabled && index.exists();
+  }
+
+  @Override
+  public boolean isRemote() {
+    return false;
+  }
+
+  @Override
+  public void disable() {
+    this.disabled = true;
+  }
+
+  @Override
+  public CompletableFuture<GoogleResult> search(String query) {
+    List<LocalCorpusIndex.Passage> passages;
+    try {
+      passages = index.search(query, maxPassages);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    GoogleResult result = new GoogleResult();
+    result.setTitle(query);
+    result.setNumberResult(passages.size());
+
+    StringBuilder content = new StringBuilder();
+    Set<String> documents = new LinkedHashSet<>();
+    for (LocalCorpusIndex.Passage passage : passages) {
+      content.append(passage.getText()).append(" ");
+      documents.add(passage.getDocument());
+    }
+    result.setContent(content.toString().trim());
+    result.setUrls(new ArrayList<>(documents));
+
+    return CompletableFuture.completedFuture(result);
+  }
+
+  public LocalCorpusIndex getIndex() {
+    return index;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.parser.provider;
+
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source of documents used to enrich the objects with a text, classified by the NLP engine. The
+ * providers are queried in the order of the configuration by the GoogleParser.
+ */
+public interface SearchProvider {
+
+  /**
+   * Get the name of the provider, as declared in the configuration
+   *
+   * @return The name of the provider
+   */
+  String getName();
+
+  /**
+   * Check if the provider can be queried
+   *
+   * @return True if the provider is available
+   */
+  boolean isAvailable();
+
+  /**
+   * Check if the provider needs a network access. Only the results of the remote providers are
+   * kept in the cache of the online results.
+   *
+   * @return True if the provider is remote
+   */
+  boolean isRemote();
+
+  /**
+   * Search a query
+   *
+   * @param query Query to search
+   * @return The future result, with no result if nothing was found. Completed exceptionally with an
+   *     IOException or a GoogleBadResponseCodeException if the search failed
+   */
+  CompletableFuture<GoogleResult> search(String query);
+
+  /**
+   * Stop querying this provider, after a refusal of the service. The provider stays unavailable
+   * for the rest of the session.
+   */
+  void disable();
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.parser.provider;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.modules.nlp.KeywordMatcher;
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResult;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Extraction of the titles, bodies and urls of a page of search results. The result blocks are
+ * collected once, and the text is sanitized with precompiled patterns.
+ */
+public class SearchResultExtractor {
+
+  private static final KeywordMatcher BLACKLISTED_WEBSITE =
+      new KeywordMatcher(
+          Arrays.asList(Configuration.get("artemis.online.website.blacklist").split(";")),
+          false,
+          false);
+  private static final KeywordMatcher BLACKLISTED_KEYWORDS =
+      new KeywordMatcher(
+          Arrays.asList(Configuration.get("artemis.online.word.blacklist").split(";")),
+          false,
+          false);
+
+  private static final int CHECKED_WEBSITES = 5; // Number of results checked against the blacklist
+
+  // Remove Html anchors , http links, special characters and isolated numbers
+  private static final Pattern SANITIZE_PATTERN =
+      Pattern.compile(
+          "<\\/?\\s*\\w[^>]*\\/?>|[\\.]{2,}|([\\<\\>›»])|(\\b(\\d+)\\.?\\b)|(w{3}\\.[A-z0-9-]*\\.[A-z]{2,})|(?!([a-zA-Z\\s:,\\.-]))");
+
+  private SearchResultExtractor() {}
+
+  /**
+   * Extract the results of a page
+   *
+   * @param document Parsed page
+   * @param googleResult Result to fill
+   * @return The filled result
+   */
+  public static GoogleResult extract(Document document, GoogleResult googleResult) {
+    Elements results = document.getElementsByClass("rc");
+    Elements titles = results.isEmpty() ? document.getElementsByClass("g") : results;
+    googleResult.setNumberResult(titles.size());
+
+    List<String> extractedTitle = new ArrayList<>(titles.size());
+    List<String> extractedUrls = new ArrayList<>(titles.size());
+    boolean blacklisted = false;
+
+    for (Element title : titles) {
+      Element heading = title.selectFirst("h3");
+      if (heading != null) {
+        String titleText = heading.text();
+        if (!blacklisted) blacklisted = BLACKLISTED_KEYWORDS.containsAny(titleText);
+        extractedTitle.add(titleText);
+      }
+
+      Element anchor = title.selectFirst("a");
+      if (anchor != null) extractedUrls.add(anchor.text());
+    }
+
+    // Verify the websites of the first results, and interleave the titles with the bodies
+    StringBuilder fullResults = new StringBuilder();
+    int size = Math.max(extractedTitle.size(), results.size());
+    for (int i = 0; i < size; i++) {
+      if (i < extractedTitle.size()) fullResults.append(extractedTitle.get(i)).append(' ');
+      if (i >= results.size()) continue;
+
+      Element body = results.get(i);
+      fullResults.append(body.text()).append(' ');
+
+      if (!blacklisted && i < CHECKED_WEBSITES) {
+        Element anchor = body.selectFirst("a[href]");
+        if (anchor != null) {
+          blacklisted =
+              BLACKLISTED_WEBSITE.containsAny(anchor.attr("href").toLowerCase(Locale.ROOT));
+        }
+      }
+    }
+
+    googleResult.setBlacklisted(blacklisted);
+    googleResult.setUrls(extractedUrls);
+    googleResult.setContent(sanitize(fullResults));
+    return googleResult;
+  }
+
+  /**
+   * Sanitize the text of the results. The special characters are replaced by spaces, then the runs
+   * of spaces are removed.
+   *
+   * @param text Text to sanitize
+   * @return The sanitized text
+   */
+  public static String sanitize(CharSequence text) {
+    String replaced = SANITIZE_PATTERN.matcher(text).replaceAll(" ");
+    return removeSpaceRuns(replaced);
+  }
+
+  /**
+   * Remove the sequences of two whitespaces or more, in a single pass
+   *
+   * @param text Text to process
+   * @return The text without the runs
+   */
+  private static String removeSpaceRuns(String text) {
+    StringBuilder sb = new StringBuilder(text.length());
+    int i = 0;
+    int length = text.length();
+    while (i < length) {
+      char c = text.charAt(i);
+      if (!isSpace(c)) {
+        sb.append(c);
+        i++;
+        continue;
+      }
+
+      int end = i + 1;
+      while (end < length && isSpace(text.charAt(end))) end++;
+      if (end - i == 1) sb.append(c);
+      i = end;
+    }
+    return sb.toString();
+  }
+
+  // Same characters as the \\s class of the regular expressions
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+}
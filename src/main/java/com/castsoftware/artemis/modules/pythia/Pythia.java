@@ -11,6 +11,7 @@
 
 package com.castsoftware.artemis.modules.pythia;
 
+import com.castsoftware.artemis.modules.pythia.cache.PythiaLookupCache;
 import com.castsoftware.artemis.modules.pythia.controllers.PythiaFrameworkController;
 import com.castsoftware.artemis.modules.pythia.controllers.PythiaLanguageController;
 import com.castsoftware.artemis.modules.pythia.controllers.PythiaUtilController;
@@ -20,7 +21,10 @@ import com.castsoftware.artemis.modules.pythia.models.api.*;
 import com.castsoftware.artemis.modules.pythia.models.api.PythiaFramework;
 import com.castsoftware.artemis.modules.pythia.models.utils.PythiaParameters;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class Pythia {
 
@@ -29,6 +33,7 @@ public class Pythia {
   private final PythiaUtilController utilController;
   private final PythiaFrameworkController frameworkController;
   private final PythiaLanguageController languageController;
+  private PythiaLookupCache lookupCache;
 
   /**
    * Get the status of the Pythia connection
@@ -50,6 +55,24 @@ public class Pythia {
     return frameworkController.createFramework(framework, patterns);
   }
 
+  /**
+   * Create a Framework on Pythia, without blocking the caller
+   * @param framework Framework to create
+   * @param patterns Patterns of the framework
+   * @return The future framework created
+   */
+  public CompletableFuture<PythiaFramework> createFrameworkAsync(PythiaFramework framework, List<PythiaPattern> patterns) {
+    return frameworkController.createFrameworkAsync(framework, patterns);
+  }
+
+  /**
+   * Check if the requests can currently be sent to Pythia
+   * @return False if the server is considered unavailable after repeated failures
+   */
+  public boolean isAvailable() {
+    return !frameworkController.isCircuitOpen();
+  }
+
   /**
    * Find a framework based on its pattern and Language
    * @param pattern Pattern to search
@@ -62,6 +85,39 @@ public class Pythia {
     return frameworkController.findFrameworkByPattern(pattern, language);
   }
 
+  /**
+   * Find a framework based on its pattern and Language, without blocking the caller
+   * @param pattern Pattern to search
+   * @param language Language to query
+   * @return The future Framework, completed with null if nothing has been found
+   */
+  public CompletableFuture<PythiaImagingFramework> findFrameworkByPatternAsync(String pattern, String language) {
+    return frameworkController.findFrameworkByPatternAsync(pattern, language);
+  }
+
+  /**
+   * Find the frameworks of several patterns of a language, in as few requests as possible
+   * @param patterns Patterns to search
+   * @param language Language to query
+   * @return The frameworks found, by pattern. The patterns without framework are absent.
+   * @throws PythiaResponse If the query produced an error
+   */
+  public Map<String, PythiaImagingFramework> findFrameworksByPatterns(Collection<String> patterns, String language) throws PythiaResponse {
+    return frameworkController.findFrameworksByPatterns(patterns, language);
+  }
+
+  /**
+   * Export the frameworks of a language modified since a date
+   * @param language Language to export
+   * @param since Date of the last export in milliseconds, 0 to export the whole catalog
+   * @return The frameworks modified since the date
+   * @throws PythiaException If the server refused the export
+   * @throws PythiaResponse If the query produced an error
+   */
+  public List<PythiaImagingFramework> exportFrameworks(String language, long since) throws PythiaException, PythiaResponse {
+    return frameworkController.exportFrameworks(language, since);
+  }
+
   /**
    * Find a supported language in the Pythia Database
    *
@@ -74,6 +130,24 @@ public class Pythia {
     return languageController.searchLanguage(language);
   }
 
+  /**
+   * Cache the framework and language lookups
+   * @param lookupCache Cache to use, null to disable the cache
+   */
+  public void setLookupCache(PythiaLookupCache lookupCache) {
+    this.lookupCache = lookupCache;
+    this.frameworkController.setLookupCache(lookupCache);
+    this.languageController.setLookupCache(lookupCache);
+  }
+
+  /**
+   * Get the cache of the lookups
+   * @return The cache, null if the lookups are not cached
+   */
+  public PythiaLookupCache getLookupCache() {
+    return lookupCache;
+  }
+
   /**
    * Constructor of the Pythia Module
    * @param url Url to Pythia
@@ -17,14 +17,16 @@ import com.castsoftware.artemis.modules.pythia.models.utils.PythiaApiResponse;
 import com.castsoftware.artemis.modules.pythia.models.utils.PythiaParameters;
 import kong.unirest.HttpResponse;
 import kong.unirest.JsonNode;
-import kong.unirest.Unirest;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /** Class in charge of the communication with the API */
 public class PythiaProxyCom {
   private final PythiaParameters parameters;
+  private final PythiaTransport transport;
 
   /**
    * Constructor of the communication proxy
@@ -33,6 +35,7 @@ public class PythiaProxyCom {
    */
   public PythiaProxyCom(PythiaParameters parameters) {
     this.parameters = parameters;
+    this.transport = PythiaTransport.getTransport(parameters.getUrl());
   }
 
   /**
@@ -48,6 +51,72 @@ public class PythiaProxyCom {
     return headers;
   }
 
+  /**
+   * Convert the raw response of the transport
+   *
+   * @param <T> Type of the class to deserialize
+   * @param response Future raw response
+   * @param type Type of the object returned
+   * @return The future response
+   */
+  private static <T> CompletableFuture<PythiaApiResponse<T>> toApiResponse(
+      CompletableFuture<HttpResponse<JsonNode>> response, Class<T> type) {
+    return response.thenApply(
+        r -> {
+          try {
+            return new PythiaApiResponse<T>(r, type);
+          } catch (PythiaResponse e) {
+            throw new CompletionException(e);
+          }
+        });
+  }
+
+  /**
+   * Wait for a response, and unwrap the error of the transport
+   *
+   * @param <T> Type of the response
+   * @param future Future response
+   * @return The response
+   * @throws PythiaResponse If the request failed
+   */
+  private static <T> T await(CompletableFuture<T> future) throws PythiaResponse {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause() == null ? e : e.getCause();
+      if (cause instanceof PythiaResponse) throw (PythiaResponse) cause;
+      throw new PythiaResponse("The request to Pythia failed.", cause);
+    }
+  }
+
+  /**
+   * Asynchronous GET Request proxified. Identical requests in flight share the same response.
+   *
+   * @param <T> Type of the class to deserialize
+   * @param relativeURL Relative url to query
+   * @param type Type of the object returned
+   * @return The future response, completed exceptionally with a PythiaResponse on failure
+   */
+  public <T> CompletableFuture<PythiaApiResponse<T>> getAsync(String relativeURL, Class<T> type) {
+    String url = parameters.getUrl() + relativeURL;
+    return toApiResponse(transport.get(url, this.getHeaders()), type);
+  }
+
+  /**
+   * Asynchronous POST Request proxified
+   *
+   * @param <T> Type
+   * @param relativeURL Relative url to query
+   * @param data Data to pass to the API
+   * @param type Type of the object returned
+   * @return The future response, completed exceptionally with a PythiaResponse on failure
+   */
+  public <T> CompletableFuture<PythiaApiResponse<T>> postAsync(
+      String relativeURL, PythiaObject data, Class<T> type) {
+    String url = parameters.getUrl() + relativeURL;
+    return toApiResponse(transport.post(url, this.getHeaders(), data.toJson().toString()), type);
+  }
+
   /**
    * GET Request proxified
    *
@@ -56,9 +125,7 @@ public class PythiaProxyCom {
    * @param type Type of the object returned
    */
   public <T> PythiaApiResponse<T> get(String relativeURL, Class<T> type) throws PythiaResponse {
-    String url = parameters.getUrl() + relativeURL;
-    HttpResponse<JsonNode> response = Unirest.get(url).headers(this.getHeaders()).asJson();
-    return new PythiaApiResponse<T>(response, type);
+    return await(getAsync(relativeURL, type));
   }
 
   /**
@@ -69,10 +136,15 @@ public class PythiaProxyCom {
    * @param data Data to pass to the API
    */
   public <T> PythiaApiResponse<T> post(String relativeURL, PythiaObject data, Class<T> type) throws PythiaResponse {
-    String url = parameters.getUrl() + relativeURL;
+    return await(postAsync(relativeURL, data, type));
+  }
 
-    HttpResponse<JsonNode> response =
-        Unirest.post(url).headers(this.getHeaders()).body(data.toJson()).asJson();
-    return new PythiaApiResponse<T>(response, type);
+  /**
+   * Get the transport used by the proxy
+   *
+   * @return The transport
+   */
+  public PythiaTransport getTransport() {
+    return transport;
   }
 }
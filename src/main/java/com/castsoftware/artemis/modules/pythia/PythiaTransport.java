@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.pythia;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaResponse;
+import kong.unirest.HttpResponse;
+import kong.unirest.JsonNode;
+import kong.unirest.Unirest;
+import kong.unirest.UnirestInstance;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Shared HTTP transport to a Pythia server. The connections are pooled and kept alive, the number
+ * of requests in flight is bounded, the identical GET requests running concurrently share the same
+ * response, and the failed requests are retried with an exponential backoff. A circuit breaker
+ * stops the calls to an unhealthy server for a while, so they fail fast instead of waiting for
+ * the timeouts.
+ */
+public class PythiaTransport {
+
+  private static final Map<String, PythiaTransport> TRANSPORTS = new ConcurrentHashMap<>();
+
+  private static final ScheduledExecutorService RETRY_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          r -> {
+            Thread t = new Thread(r, "artemis-pythia-retry");
+            t.setDaemon(true);
+            return t;
+          });
+
+  // Default values, used if the configuration is missing or incorrect
+  private static final int DEFAULT_CONNECT_TIMEOUT = 5000; // ms
+  private static final int DEFAULT_SOCKET_TIMEOUT = 20000; // ms
+  private static final int DEFAULT_MAX_CONNECTIONS = 32;
+  private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+  private static final int DEFAULT_MAX_RETRIES = 3;
+  private static final int DEFAULT_BACKOFF = 250; // ms
+  private static final int DEFAULT_MAX_BACKOFF = 10000; // ms
+  private static final int DEFAULT_BREAKER_THRESHOLD = 5;
+  private static final int DEFAULT_BREAKER_COOLDOWN = 30000; // ms
+
+  private enum BreakerState {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final UnirestInstance client;
+  private final int maxInFlight;
+  private final int maxRetries;
+  private final long backoff;
+  private final long maxBackoff;
+  private final int breakerThreshold;
+  private final long breakerCooldown;
+
+  // Bounded in-flight requests. The requests over the limit wait in the queue.
+  private final Semaphore permits;
+  private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+  // GET requests in flight, by url
+  private final Map<String, CompletableFuture<HttpResponse<JsonNode>>> inFlightGets =
+      new ConcurrentHashMap<>();
+
+  // Circuit breaker
+  private BreakerState state = BreakerState.CLOSED;
+  private int consecutiveFailures = 0;
+  private long openedAt = 0L;
+  private boolean trialRunning = false;
+
+  // Statistics
+  private final AtomicInteger numRequests = new AtomicInteger(0);
+  private final AtomicInteger numCoalesced = new AtomicInteger(0);
+  private final AtomicInteger numRetries = new AtomicInteger(0);
+  private final AtomicInteger numRejected = new AtomicInteger(0);
+
+  private PythiaTransport() {
+    int connectTimeout = getIntProperty("artemis.pythia.http.connect_timeout", DEFAULT_CONNECT_TIMEOUT);
+    int socketTimeout = getIntProperty("artemis.pythia.http.socket_timeout", DEFAULT_SOCKET_TIMEOUT);
+    int maxConnections = getIntProperty("artemis.pythia.http.max_connections", DEFAULT_MAX_CONNECTIONS);
+
+    this.maxInFlight = Math.max(1, getIntProperty("artemis.pythia.http.max_in_flight", DEFAULT_MAX_IN_FLIGHT));
+    this.maxRetries = Math.max(0, getIntProperty("artemis.pythia.http.max_retries", DEFAULT_MAX_RETRIES));
+    this.backoff = Math.max(1, getIntProperty("artemis.pythia.http.backoff", DEFAULT_BACKOFF));
+    this.maxBackoff = Math.max(backoff, getIntProperty("artemis.pythia.http.max_backoff", DEFAULT_MAX_BACKOFF));
+    this.breakerThreshold =
+        Math.max(1, getIntProperty("artemis.pythia.http.breaker.threshold", DEFAULT_BREAKER_THRESHOLD));
+    this.breakerCooldown =
+        Math.max(0, getIntProperty("artemis.pythia.http.breaker.cooldown", DEFAULT_BREAKER_COOLDOWN));
+    this.permits = new Semaphore(maxInFlight);
+
+    // The retries are handled by the transport
+    this.client = Unirest.spawnInstance();
+    this.client
+        .config()
+        .connectTimeout(connectTimeout)
+        .socketTimeout(socketTimeout)
+        .concurrency(Math.max(1, maxConnections), Math.max(1, maxConnections))
+        .automaticRetries(false);
+  }
+
+  /**
+   * Get the transport shared by all the clients of a server
+   *
+   * @param baseUrl Url of the server
+   * @return The transport
+   */
+  public static PythiaTransport getTransport(String baseUrl) {
+    return TRANSPORTS.computeIfAbsent(baseUrl == null ? "" : baseUrl, k -> new PythiaTransport());
+  }
+
+  /** Close all the transports and their connections */
+  public static void shutdownAll() {
+    for (PythiaTransport transport : TRANSPORTS.values()) transport.client.shutDown();
+    TRANSPORTS.clear();
+  }
+
+  /**
+   * Read an integer property of the configuration
+   *
+   * @param key Key of the property
+   * @param defaultValue Value used if the property is missing or incorrect
+   * @return The value
+   */
+  private static int getIntProperty(String key, int defaultValue) {
+    try {
+      return Integer.parseInt(Configuration.get(key));
+    } catch (NumberFormatException | NullPointerException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Send a GET request. Identical requests sent while the first one is running share its
+   * response.
+   *
+   * @param url Url to query
+   * @param headers Headers of the request
+   * @return The future response
+   */
+  public CompletableFuture<HttpResponse<JsonNode>> get(String url, Map<String, String> headers) {
+    CompletableFuture<HttpResponse<JsonNode>> running = inFlightGets.get(url);
+    if (running != null) {
+      numCoalesced.incrementAndGet();
+      return running;
+    }
+
+    CompletableFuture<HttpResponse<JsonNode>> future = new CompletableFuture<>();
+    running = inFlightGets.putIfAbsent(url, future);
+    if (running != null) {
+      numCoalesced.incrementAndGet();
+      return running;
+    }
+
+    future.whenComplete((r, e) -> inFlightGets.remove(url, future));
+    execute(() -> client.get(url).headers(headers).asJsonAsync(), future, 0);
+    return future;
+  }
+
+  /**
+   * Send a POST request
+   *
+   * @param url Url to query
+   * @param headers Headers of the request
+   * @param body Body of the request, as a json string
+   * @return The future response
+   */
+  public CompletableFuture<HttpResponse<JsonNode>> post(
+      String url, Map<String, String> headers, String body) {
+    CompletableFuture<HttpResponse<JsonNode>> future = new CompletableFuture<>();
+    execute(() -> client.post(url).headers(headers).body(body).asJsonAsync(), future, 0);
+    return future;
+  }
+
+  /**
+   * Execute a request once a permit is available, and retry it on failure
+   *
+   * @param request Supplier sending the request
+   * @param result Future completed with the final response
+   * @param attempt Number of the attempt, starting at 0
+   */
+  private void execute(
+      Supplier<CompletableFuture<HttpResponse<JsonNode>>> request,
+      CompletableFuture<HttpResponse<JsonNode>> result,
+      int attempt) {
+    if (!acquireCall()) {
+      numRejected.incrementAndGet();
+      result.completeExceptionally(
+          new PythiaResponse("The circuit breaker is open. Pythia is considered unavailable."));
+      return;
+    }
+
+    waiting.add(() -> send(request, result, attempt));
+    dispatch();
+  }
+
+  /** Start the waiting requests while permits are available */
+  private void dispatch() {
+    while (!waiting.isEmpty() && permits.tryAcquire()) {
+      Runnable next = waiting.poll();
+      if (next == null) {
+        permits.release();
+        return;
+      }
+      next.run();
+    }
+  }
+
+  /**
+   * Send a request holding a permit
+   *
+   * @param request Supplier sending the request
+   * @param result Future completed with the final response
+   * @param attempt Number of the attempt
+   */
+  private void send(
+      Supplier<CompletableFuture<HttpResponse<JsonNode>>> request,
+      CompletableFuture<HttpResponse<JsonNode>> result,
+      int attempt) {
+    numRequests.incrementAndGet();
+
+    CompletableFuture<HttpResponse<JsonNode>> call;
+    try {
+      call = request.get();
+    } catch (RuntimeException e) {
+      call = CompletableFuture.failedFuture(e);
+    }
+
+    call.whenComplete(
+        (response, error) -> {
+          permits.release();
+          dispatch();
+
+          boolean failed = error != null || isServerError(response);
+          recordOutcome(!failed);
+
+          if (failed && attempt < maxRetries && !result.isDone()) {
+            numRetries.incrementAndGet();
+            RETRY_SCHEDULER.schedule(
+                () -> execute(request, result, attempt + 1),
+                getBackoff(attempt),
+                TimeUnit.MILLISECONDS);
+          } else if (error != null) {
+            result.completeExceptionally(
+                new PythiaResponse(
+                    String.format("The request failed after %d attempt(s).", attempt + 1),
+                    error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error));
+          } else {
+            result.complete(response);
+          }
+        });
+  }
+
+  /**
+   * Check if the response is worth a retry
+   *
+   * @param response Response to check
+   * @return True if the server failed to answer the request
+   */
+  private static boolean isServerError(HttpResponse<JsonNode> response) {
+    int status = response.getStatus();
+    // 501 is an answer, the server doesn't implement the request
+    return (status >= 500 && status != 501) || status == 429;
+  }
+
+  /**
+   * Get the delay before a retry, doubled at each attempt, with a random jitter
+   *
+   * @param attempt Number of the failed attempt
+   * @return The delay in milliseconds
+   */
+  private long getBackoff(int attempt) {
+    long delay = Math.min(maxBackoff, backoff << Math.min(attempt, 20));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  /**
+   * Check if a call can be sent according to the circuit breaker
+   *
+   * @return True if the call can be sent
+   */
+  private synchronized boolean acquireCall() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (System.currentTimeMillis() - openedAt < breakerCooldown) return false;
+        // Cool down over, let a single trial call through
+        state = BreakerState.HALF_OPEN;
+        trialRunning = true;
+        return true;
+      case HALF_OPEN:
+      default:
+        if (trialRunning) return false;
+        trialRunning = true;
+        return true;
+    }
+  }
+
+  /**
+   * Update the circuit breaker with the outcome of a call
+   *
+   * @param success True if the server answered
+   */
+  private synchronized void recordOutcome(boolean success) {
+    if (success) {
+      consecutiveFailures = 0;
+      trialRunning = false;
+      state = BreakerState.CLOSED;
+      return;
+    }
+
+    consecutiveFailures++;
+    if (state == BreakerState.HALF_OPEN || consecutiveFailures >= breakerThreshold) {
+      state = BreakerState.OPEN;
+      openedAt = System.currentTimeMillis();
+      trialRunning = false;
+    }
+  }
+
+  /**
+   * Check if the calls are currently rejected by the circuit breaker
+   *
+   * @return True if the circuit is open
+   */
+  public synchronized boolean isCircuitOpen() {
+    return state == BreakerState.OPEN
+        && System.currentTimeMillis() - openedAt < breakerCooldown;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public int getNumInFlight() {
+    return maxInFlight - permits.availablePermits();
+  }
+
+  public int getNumRequests() {
+    return numRequests.get();
+  }
+
+  public int getNumCoalesced() {
+    return numCoalesced.get();
+  }
+
+  public int getNumRetries() {
+    return numRetries.get();
+  }
+
+  public int getNumRejected() {
+    return numRejected.get();
+  }
+}
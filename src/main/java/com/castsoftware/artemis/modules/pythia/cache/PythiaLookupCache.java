@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.modules.pythia.cache;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Two-level cache of the Pythia lookups. The first level is an on-heap LRU map of the serialized
+ * answers. The second level is an append-only file, of which only the offsets are kept in memory.
+ * "Not found" answers are cached too, with their own time to live. One cache is opened per file, and
+ * shared by all the Pythia clients using it.
+ */
+public class PythiaLookupCache {
+
+  private static final Map<Path, PythiaLookupCache> OPENED = new ConcurrentHashMap<>();
+  private static final int COMPACTION_THRESHOLD = 1000; // Minimum number of dead records
+
+  private final Gson gson = new Gson();
+  private final Path file;
+  private final int memorySize;
+  private final long ttl;
+  private final long negativeTtl;
+
+  private final LinkedHashMap<String, MemoryEntry> memory;
+  private final Map<String, DiskEntry> diskIndex = new HashMap<>();
+  private RandomAccessFile disk;
+  private long deadRecords = 0L;
+
+  // Statistics
+  private long memoryHits = 0L;
+  private long diskHits = 0L;
+  private long misses = 0L;
+
+  /**
+   * Open the cache stored in a file, or get the one already opened
+   *
+   * @param file File of the second level, null to keep the cache in memory only
+   * @param memorySize Maximum number of answers kept on-heap
+   * @param ttl Time to live of the answers found, in milliseconds
+   * @param negativeTtl Time to live of the "not found" answers, in milliseconds
+   * @return The cache
+   */
+  public static PythiaLookupCache open(Path file, int memorySize, long ttl, long negativeTtl) {
+    if (file == null) return new PythiaLookupCache(null, memorySize, ttl, negativeTtl);
+    return OPENED.computeIfAbsent(
+        file.toAbsolutePath(), f -> new PythiaLookupCache(f, memorySize, ttl, negativeTtl));
+  }
+
+  /**
+   * Get the caches currently opened
+   *
+   * @return The list of caches
+   */
+  public static List<PythiaLookupCache> getOpened() {
+    return new ArrayList<>(OPENED.values());
+  }
+
+  private PythiaLookupCache(Path file, int memorySize, long ttl, long negativeTtl) {
+    this.file = file;
+    this.memorySize = Math.max(1, memorySize);
+    this.ttl = ttl;
+    this.negativeTtl = negativeTtl;
+    this.memory =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, MemoryEntry> eldest) {
+            return size() > PythiaLookupCache.this.memorySize;
+          }
+        };
+
+    if (file != null) {
+      try {
+        openDisk();
+      } catch (IOException e) {
+        // The cache stays usable in memory
+        closeDisk();
+      }
+    }
+  }
+
+  /**
+   * Answer of the cache
+   *
+   * @param <T> Type of the value
+   */
+  public static class Hit<T> {
+    private final T value;
+
+    private Hit(T value) {
+      this.value = value;
+    }
+
+    /** @return True if the cached answer is "not found" */
+    public boolean isNegative() {
+      return value == null;
+    }
+
+    public T getValue() {
+      return value;
+    }
+  }
+
+  /**
+   * Get a cached answer
+   *
+   * @param key Key of the lookup
+   * @param type Type of the value
+   * @param <T> Type of the value
+   * @return The answer, or null if the lookup isn't cached or expired
+   */
+  public synchronized <T> Hit<T> get(String key, Class<T> type) {
+    long now = System.currentTimeMillis();
+
+    MemoryEntry me = memory.get(key);
+    if (me != null) {
+      if (me.expiry > now) {
+        memoryHits++;
+        // A new object is returned for each hit, the callers are free to modify it
+        return new Hit<>(me.json == null ? null : gson.fromJson(me.json, type));
+      }
+      memory.remove(key);
+    }
+
+    DiskEntry de = diskIndex.get(key);
+    if (de != null && de.expiry > now && disk != null) {
+      try {
+        String json = de.negative ? null : readRecord(de);
+        T value = json == null ? null : gson.fromJson(json, type);
+        memory.put(key, new MemoryEntry(json, de.expiry));
+        diskHits++;
+        return new Hit<>(value);
+      } catch (IOException | RuntimeException e) {
+        diskIndex.remove(key);
+      }
+    }
+
+    misses++;
+    return null;
+  }
+
+  /**
+   * Cache an answer
+   *
+   * @param key Key of the lookup
+   * @param value Value found, null if nothing was found
+   */
+  public synchronized void put(String key, Object value) {
+    long expiry = System.currentTimeMillis() + (value == null ? negativeTtl : ttl);
+    String json = value == null ? null : gson.toJson(value);
+    memory.put(key, new MemoryEntry(json, expiry));
+    writeRecord(key, expiry, json);
+  }
+
+  /**
+   * Remove a lookup from the cache
+   *
+   * @param key Key of the lookup
+   */
+  public synchronized void invalidate(String key) {
+    memory.remove(key);
+    if (diskIndex.containsKey(key)) writeRecord(key, 0L, null);
+  }
+
+  /**
+   * Remove the "not found" answers of the lookups starting with a prefix. Used when a new entry is
+   * created on Pythia, since it can match lookups that failed before.
+   *
+   * @param prefix Prefix of the keys
+   */
+  public synchronized void invalidateNegatives(String prefix) {
+    memory.entrySet().removeIf(en -> en.getValue().json == null && en.getKey().startsWith(prefix));
+
+    List<String> toRemove = new ArrayList<>();
+    diskIndex.forEach(
+        (key, de) -> {
+          if (de.negative && key.startsWith(prefix)) toRemove.add(key);
+        });
+    toRemove.forEach(key -> writeRecord(key, 0L, null));
+  }
+
+  /** Remove all the answers */
+  public synchronized void clear() {
+    memory.clear();
+    diskIndex.clear();
+    if (disk == null) return;
+    try {
+      disk.setLength(0L);
+      deadRecords = 0L;
+    } catch (IOException e) {
+      closeDisk();
+    }
+  }
+
+  // Disk level
+
+  /**
+   * Open the file and index its records. Expired and replaced records are skipped, the file is
+   * compacted if they are too many.
+   *
+   * @throws IOException
+   */
+  private void openDisk() throws IOException {
+    Files.createDirectories(file.getParent());
+    disk = new RandomAccessFile(file.toFile(), "rw");
+
+    long now = System.currentTimeMillis();
+    long offset = 0L;
+    long records = 0L;
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+      int b;
+      while ((b = in.read()) != -1) {
+        if (b != '\n') {
+          bytes.write(b);
+          continue;
+        }
+
+        int length = bytes.size() + 1;
+        String[] parts = bytes.toString(StandardCharsets.UTF_8).split("\t", 4);
+        bytes.reset();
+        records++;
+
+        if (parts.length == 4) {
+          String key = unescape(parts[0]);
+          long expiry = parseLong(parts[1]);
+          boolean negative = "N".equals(parts[2]);
+          if (expiry > now) diskIndex.put(key, new DiskEntry(offset, length, expiry, negative));
+          else diskIndex.remove(key);
+        }
+        offset += length;
+      }
+    }
+
+    // Drop a record truncated by a crash
+    if (disk.length() != offset) disk.setLength(offset);
+    deadRecords = records - diskIndex.size();
+
+    if (deadRecords > COMPACTION_THRESHOLD && deadRecords > diskIndex.size()) compact();
+  }
+
+  /**
+   * Rewrite the file with the live records only
+   *
+   * @throws IOException
+   */
+  private void compact() throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    Map<String, DiskEntry> newIndex = new HashMap<>();
+
+    try (RandomAccessFile out = new RandomAccessFile(tmp.toFile(), "rw")) {
+      out.setLength(0L);
+      for (Map.Entry<String, DiskEntry> en : diskIndex.entrySet()) {
+        DiskEntry de = en.getValue();
+        String json = de.negative ? null : readRecord(de);
+        long offset = out.getFilePointer();
+        byte[] record = formatRecord(en.getKey(), de.expiry, json);
+        out.write(record);
+        newIndex.put(en.getKey(), new DiskEntry(offset, record.length, de.expiry, de.negative));
+      }
+    }
+
+    disk.close();
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    disk = new RandomAccessFile(file.toFile(), "rw");
+    diskIndex.clear();
+    diskIndex.putAll(newIndex);
+    deadRecords = 0L;
+  }
+
+  private void writeRecord(String key, long expiry, String json) {
+    if (disk == null) return;
+    try {
+      long offset = disk.length();
+      byte[] record = formatRecord(key, expiry, json);
+      disk.seek(offset);
+      disk.write(record);
+
+      if (diskIndex.containsKey(key)) deadRecords++;
+      if (expiry > 0L) diskIndex.put(key, new DiskEntry(offset, record.length, expiry, json == null));
+      else {
+        diskIndex.remove(key);
+        deadRecords++;
+      }
+    } catch (IOException e) {
+      closeDisk(); // The disk level is lost, keep the memory level
+    }
+  }
+
+  private static byte[] formatRecord(String key, long expiry, String json) {
+    String line =
+        String.format(
+            "%s\t%d\t%s\t%s\n", escape(key), expiry, json == null ? "N" : "F", json == null ? "" : json);
+    return line.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Read the value of a record
+   *
+   * @param de Position of the record
+   * @return The serialized value
+   * @throws IOException
+   */
+  private String readRecord(DiskEntry de) throws IOException {
+    byte[] bytes = new byte[de.length];
+    disk.seek(de.offset);
+    disk.readFully(bytes);
+    String[] parts = new String(bytes, 0, de.length - 1, StandardCharsets.UTF_8).split("\t", 4);
+    return parts.length == 4 ? parts[3] : "";
+  }
+
+  private void closeDisk() {
+    try {
+      if (disk != null) disk.close();
+    } catch (IOException ignored) {
+      // Ignored
+    }
+    disk = null;
+    diskIndex.clear();
+  }
+
+  private static long parseLong(String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return 0L;
+    }
+  }
+
+  private static String escape(String key) {
+    return key.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+  }
+
+  private static String unescape(String key) {
+    StringBuilder sb = new StringBuilder(key.length());
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      if (c == '\\' && i + 1 < key.length()) {
+        char next = key.charAt(++i);
+        sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  // Statistics
+
+  public Path getFile() {
+    return file;
+  }
+
+  public synchronized int getMemorySize() {
+    return memory.size();
+  }
+
+  public synchronized int getDiskSize() {
+    return diskIndex.size();
+  }
+
+  public synchronized long getMemoryHits() {
+    return memoryHits;
+  }
+
+  public synchronized long getDiskHits() {
+    return diskHits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /** Answer kept on-heap, serialized */
+  private static class MemoryEntry {
+    private final String json; // Null for a "not found" answer
+    private final long expiry;
+
+    private MemoryEntry(String json, long expiry) {
+      this.json = json;
+      this.expiry = expiry;
+    }
+  }
+
+  /** Position of an answer in the file */
+  private static class DiskEntry {
+    private final long offset;
+    private final int length;
+    private final long expiry;
+    private final boolean negative;
+
+    private DiskEntry(long offset, int length, long expiry, boolean negative) {
+      this.offset = offset;
+      this.length = length;
+      this.expiry = expiry;
+      this.negative = negative;
+    }
+  }
+}
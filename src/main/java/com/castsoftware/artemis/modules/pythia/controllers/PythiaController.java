@@ -12,6 +12,7 @@
 package com.castsoftware.artemis.modules.pythia.controllers;
 
 import com.castsoftware.artemis.modules.pythia.PythiaProxyCom;
+import com.castsoftware.artemis.modules.pythia.cache.PythiaLookupCache;
 import com.castsoftware.artemis.modules.pythia.models.utils.PythiaParameters;
 
 /**
@@ -20,6 +21,7 @@ import com.castsoftware.artemis.modules.pythia.models.utils.PythiaParameters;
 public abstract class PythiaController {
 
 	protected final PythiaProxyCom pythiaProxyCom;
+	protected PythiaLookupCache lookupCache; // Null if the lookups are not cached
 
 	/**
 	 * Constructor
@@ -29,4 +31,22 @@ public abstract class PythiaController {
 	public PythiaController(PythiaParameters parameters) {
 		this.pythiaProxyCom = new PythiaProxyCom(parameters);
 	}
+
+	/**
+	 * Set the cache of the lookups
+	 *
+	 * @param lookupCache Cache to use, null to disable the cache
+	 */
+	public void setLookupCache(PythiaLookupCache lookupCache) {
+		this.lookupCache = lookupCache;
+	}
+
+	/**
+	 * Check if the calls to the server are currently rejected after repeated failures
+	 *
+	 * @return True if the circuit breaker of the transport is open
+	 */
+	public boolean isCircuitOpen() {
+		return pythiaProxyCom.getTransport().isCircuitOpen();
+	}
 }
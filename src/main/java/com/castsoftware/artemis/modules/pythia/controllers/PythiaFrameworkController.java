@@ -11,21 +11,31 @@
 
 package com.castsoftware.artemis.modules.pythia.controllers;
 
+import com.castsoftware.artemis.modules.pythia.cache.PythiaLookupCache;
 import com.castsoftware.artemis.modules.pythia.controllers.bodies.CreateFrameworkBody;
+import com.castsoftware.artemis.modules.pythia.controllers.bodies.FindFrameworksBody;
 import com.castsoftware.artemis.modules.pythia.exceptions.PythiaException;
 import com.castsoftware.artemis.modules.pythia.exceptions.PythiaResponse;
 import com.castsoftware.artemis.modules.pythia.models.api.PythiaFramework;
-import com.castsoftware.artemis.modules.pythia.models.api.PythiaFramework;
 import com.castsoftware.artemis.modules.pythia.models.api.PythiaImagingFramework;
 import com.castsoftware.artemis.modules.pythia.models.api.PythiaPattern;
 import com.castsoftware.artemis.modules.pythia.models.utils.PythiaApiResponse;
 import com.castsoftware.artemis.modules.pythia.models.utils.PythiaParameters;
 
-import java.util.List;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /** Class handling the communication to pythia, and the different queries */
 public class PythiaFrameworkController extends PythiaController{
 
+  private static final int MAX_BATCH_SIZE = 200; // Patterns sent per batch request
+
+  // Set to false if the server doesn't know the batch endpoint, the lookups are then done one by one
+  private volatile boolean batchSupported = true;
+
   /**
    * Constructor
    *
@@ -45,8 +55,48 @@ public class PythiaFrameworkController extends PythiaController{
 
     PythiaApiResponse<PythiaFramework> response =
         this.pythiaProxyCom.post("api/framework/pythia/create", body, PythiaFramework.class);
+    return processCreateResponse(patterns, response);
+  }
+
+  /**
+   * Create a Framework on pythia, without blocking the caller
+   * @param framework Framework to create
+   * @param patterns Patterns of the framework
+   * @return The future Framework created, completed exceptionally with a PythiaException if the
+   *     server rejected the framework, or with a PythiaResponse if the query failed
+   */
+  public CompletableFuture<PythiaFramework> createFrameworkAsync(PythiaFramework framework, List<PythiaPattern> patterns) {
+    CreateFrameworkBody body = new CreateFrameworkBody(framework, patterns);
+
+    return this.pythiaProxyCom
+        .postAsync("api/framework/pythia/create", body, PythiaFramework.class)
+        .thenApply(response -> {
+          try {
+            return processCreateResponse(patterns, response);
+          } catch (PythiaException e) {
+            throw new CompletionException(e);
+          }
+        });
+  }
 
+  /**
+   * Process the response of a framework creation
+   * @param patterns Patterns of the framework
+   * @param response Response of Pythia
+   * @return The Framework created
+   * @throws PythiaException If the framework was rejected
+   */
+  private PythiaFramework processCreateResponse(List<PythiaPattern> patterns, PythiaApiResponse<PythiaFramework> response) throws PythiaException {
     if (response.isSuccess()) {
+      // The new patterns can match lookups that failed before
+      if (lookupCache != null) {
+        for (PythiaPattern pp : patterns) {
+          String language = pp.language == null ? "" : pp.language.name;
+          lookupCache.invalidate(getPatternKey(pp.pattern, language));
+          lookupCache.invalidateNegatives(getPatternKey("", language));
+        }
+      }
+
       // Return value if success
       return response.getData();
     }
@@ -55,34 +105,200 @@ public class PythiaFrameworkController extends PythiaController{
   }
 
   /**
-   * Find a framework based on its pattern and Language
+   * Get the key of a pattern lookup in the cache
+   * @param pattern Pattern searched
+   * @param language Language of the pattern
+   * @return The key
+   */
+  private static String getPatternKey(String pattern, String language) {
+    return String.format("framework|%s|%s", language, pattern);
+  }
+
+  /**
+   * Get the url of a single pattern lookup
    * @param pattern Pattern to search
    * @param language Language to query
+   * @return The relative url
+   */
+  private static String getPatternUrl(String pattern, String language) {
+    return "api/detection/byPatternAndLanguage?pattern=" + URLEncoder.encode(pattern, StandardCharsets.UTF_8)
+        + "&language=" + URLEncoder.encode(language, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Get a framework from the cache of the lookups
+   * @param key Key of the lookup
+   * @return The hit, or null if the lookup isn't cached
+   */
+  private PythiaLookupCache.Hit<PythiaImagingFramework> getCachedFramework(String key) {
+    return lookupCache == null ? null : lookupCache.get(key, PythiaImagingFramework.class);
+  }
+
+  /**
+   * Process the response of a single pattern lookup, and cache it
+   * @param key Key of the lookup
+   * @param response Response of Pythia
    * @return The Framework
    * @throws PythiaException if nothing has been found
-   * @throws PythiaResponse If the query produced an error
    */
-  public PythiaImagingFramework findFrameworkByPattern(String pattern, String language) throws PythiaException, PythiaResponse {
-    String url = "api/detection/byPatternAndLanguage?pattern=" + pattern + "&language=" + language;
-    PythiaApiResponse<PythiaImagingFramework> response = this.pythiaProxyCom.get(url, PythiaImagingFramework.class);
-    System.out.println("Payload : " + response.getRawData());
-    System.out.println("Message : " + response.getMessage());
-    System.out.println("Data : " + response.getData());
-    System.out.println("Status : " + response.getStatus());
+  private PythiaImagingFramework processPatternResponse(String key, PythiaApiResponse<PythiaImagingFramework> response) throws PythiaException {
     // If response has error throw them
     if(response.hasErrors()) {
-      System.out.println("findFrameworkByPattern :: Failed to find the framework: " + pattern);
       throw new PythiaException("Failed to find the framework", response.getErrorsAsString());
-    };
+    }
 
     // Otherwise process the data
     if (response.isSuccess()) {
-      System.out.printf("Found a framework: %s%n", response.getRawData());
       // Return value if success
+      if (lookupCache != null) lookupCache.put(key, response.getData());
       if(response.getData() == null) throw new PythiaException("Failed to find framework", "Empty Data");
       return response.getData();
     }
     // Response is not a success
     throw new PythiaException("Failed to find the framework", response.getErrors().toArray(String[]::new));
   }
+
+  /**
+   * Find a framework based on its pattern and Language
+   * @param pattern Pattern to search
+   * @param language Language to query
+   * @return The Framework
+   * @throws PythiaException if nothing has been found
+   * @throws PythiaResponse If the query produced an error
+   */
+  public PythiaImagingFramework findFrameworkByPattern(String pattern, String language) throws PythiaException, PythiaResponse {
+    String key = getPatternKey(pattern, language);
+    PythiaLookupCache.Hit<PythiaImagingFramework> hit = getCachedFramework(key);
+    if (hit != null) {
+      if (hit.isNegative()) throw new PythiaException("Failed to find framework", "Not found (cached)");
+      return hit.getValue();
+    }
+
+    PythiaApiResponse<PythiaImagingFramework> response =
+        this.pythiaProxyCom.get(getPatternUrl(pattern, language), PythiaImagingFramework.class);
+    return processPatternResponse(key, response);
+  }
+
+  /**
+   * Find a framework based on its pattern and Language, without blocking the caller
+   * @param pattern Pattern to search
+   * @param language Language to query
+   * @return The future Framework, completed with null if nothing has been found, or exceptionally
+   *     with a PythiaResponse if the query failed
+   */
+  public CompletableFuture<PythiaImagingFramework> findFrameworkByPatternAsync(String pattern, String language) {
+    String key = getPatternKey(pattern, language);
+    PythiaLookupCache.Hit<PythiaImagingFramework> hit = getCachedFramework(key);
+    if (hit != null) return CompletableFuture.completedFuture(hit.isNegative() ? null : hit.getValue());
+
+    return this.pythiaProxyCom
+        .getAsync(getPatternUrl(pattern, language), PythiaImagingFramework.class)
+        .thenApply(response -> {
+          try {
+            return processPatternResponse(key, response);
+          } catch (PythiaException e) {
+            return null; // Not found
+          }
+        });
+  }
+
+  /**
+   * Find the frameworks of several patterns of a language. The patterns are resolved by batches in
+   * one POST request. If the server doesn't support the batch requests, the patterns are resolved
+   * one by one.
+   * @param patterns Patterns to search
+   * @param language Language to query
+   * @return The frameworks found, by pattern. The patterns without framework are absent.
+   * @throws PythiaResponse If a single lookup produced an error
+   */
+  public Map<String, PythiaImagingFramework> findFrameworksByPatterns(Collection<String> patterns, String language) throws PythiaResponse {
+    Map<String, PythiaImagingFramework> results = new HashMap<>();
+    List<String> toResolve = new ArrayList<>();
+
+    // Answer from the cache first
+    for (String pattern : new LinkedHashSet<>(patterns)) {
+      PythiaLookupCache.Hit<PythiaImagingFramework> hit = getCachedFramework(getPatternKey(pattern, language));
+      if (hit == null) toResolve.add(pattern);
+      else if (!hit.isNegative()) results.put(pattern, hit.getValue());
+    }
+
+    int resolved = 0;
+    while (batchSupported && resolved < toResolve.size()) {
+      List<String> batch = toResolve.subList(resolved, Math.min(resolved + MAX_BATCH_SIZE, toResolve.size()));
+      try {
+        results.putAll(resolveBatch(batch, language));
+        resolved += batch.size();
+      } catch (PythiaException | PythiaResponse | RuntimeException e) {
+        break; // Resolve the rest one by one
+      }
+    }
+
+    // Fallback on the single lookups
+    for (String pattern : toResolve.subList(resolved, toResolve.size())) {
+      try {
+        results.put(pattern, findFrameworkByPattern(pattern, language));
+      } catch (PythiaException e) {
+        // Not found
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Resolve a batch of patterns in one request
+   * @param batch Patterns to resolve
+   * @param language Language to query
+   * @return The frameworks found, by pattern
+   * @throws PythiaException If the server rejected the batch
+   * @throws PythiaResponse If the response is malformed
+   */
+  private Map<String, PythiaImagingFramework> resolveBatch(List<String> batch, String language) throws PythiaException, PythiaResponse {
+    FindFrameworksBody body = new FindFrameworksBody(batch, language);
+    PythiaApiResponse<PythiaImagingFramework[]> response =
+        this.pythiaProxyCom.post("api/detection/byPatternsAndLanguage", body, PythiaImagingFramework[].class);
+
+    // The server doesn't expose the batch endpoint
+    int status = response.getStatus();
+    if (status == 404 || status == 405 || status == 501) {
+      batchSupported = false;
+      throw new PythiaException("The batch resolution is not supported", String.valueOf(status));
+    }
+
+    // The server returns one entry per pattern, in the order of the request
+    PythiaImagingFramework[] data = response.getData();
+    if (!response.isSuccess() || response.hasErrors() || data == null || data.length != batch.size()) {
+      throw new PythiaException("Failed to resolve a batch of patterns", response.getErrorsAsString());
+    }
+
+    Map<String, PythiaImagingFramework> results = new HashMap<>();
+    for (int i = 0; i < data.length; i++) {
+      if (lookupCache != null) lookupCache.put(getPatternKey(batch.get(i), language), data[i]);
+      if (data[i] != null) results.put(batch.get(i), data[i]);
+    }
+    return results;
+  }
+
+  /**
+   * Export the frameworks of a language modified since a date, to build an offline mirror
+   * @param language Language to export
+   * @param since Date of the last export in milliseconds, 0 to export the whole catalog
+   * @return The frameworks modified since the date
+   * @throws PythiaException If the server refused the export
+   * @throws PythiaResponse If the query produced an error
+   */
+  public List<PythiaImagingFramework> exportFrameworks(String language, long since) throws PythiaException, PythiaResponse {
+    String url = "api/detection/export?language=" + URLEncoder.encode(language, StandardCharsets.UTF_8)
+        + "&since=" + Math.max(0L, since);
+    PythiaApiResponse<PythiaImagingFramework[]> response = this.pythiaProxyCom.get(url, PythiaImagingFramework[].class);
+
+    if (!response.isSuccess() || response.hasErrors() || response.getData() == null) {
+      throw new PythiaException("Failed to export the frameworks", response.getErrorsAsString());
+    }
+
+    List<PythiaImagingFramework> frameworks = new ArrayList<>();
+    for (PythiaImagingFramework pif : response.getData()) {
+      if (pif != null && pif.pattern != null) frameworks.add(pif);
+    }
+    return frameworks;
+  }
 }
@@ -12,6 +12,7 @@
 package com.castsoftware.artemis.modules.pythia.controllers;
 
 import com.castsoftware.artemis.modules.pythia.PythiaProxyCom;
+import com.castsoftware.artemis.modules.pythia.cache.PythiaLookupCache;
 import com.castsoftware.artemis.modules.pythia.exceptions.PythiaException;
 import com.castsoftware.artemis.modules.pythia.exceptions.PythiaResponse;
 import com.castsoftware.artemis.modules.pythia.models.api.PythiaLanguage;
@@ -36,10 +37,17 @@ public class PythiaLanguageController extends PythiaController {
 	 * @return Language object on pythia
 	 */
 	public PythiaLanguage searchLanguage(String search) throws PythiaException, PythiaResponse {
+		String key = "language|" + search;
+		if (lookupCache != null) {
+			PythiaLookupCache.Hit<PythiaLanguage> hit = lookupCache.get(key, PythiaLanguage.class);
+			if (hit != null) return hit.getValue();
+		}
+
 		String url = "api/language/search?search=" + search;
 		PythiaApiResponse<PythiaLanguage> response = this.pythiaProxyCom.get(url, PythiaLanguage.class);
 
 		if (response.isSuccess()) {
+			if (lookupCache != null) lookupCache.put(key, response.getData());
 			// Return value if success
 			return response.getData();
 		}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.modules.pythia.controllers.bodies;
+
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaObject;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+
+import java.util.List;
+
+public class FindFrameworksBody extends PythiaObject {
+	public String language;
+	public List<String> patterns;
+
+	/**
+	 * Create a body to resolve several patterns of a language in one request
+	 * @param patterns Patterns to resolve
+	 * @param language Language of the patterns
+	 */
+	public FindFrameworksBody(List<String> patterns, String language) {
+		this.language = language;
+		this.patterns = patterns;
+	}
+
+	@Override
+	public JSONObject toJson() {
+		JSONObject object = new JSONObject();
+		object.put("language", language);
+		object.put("patterns", new JSONArray(patterns));
+		return object;
+	}
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.pythia.mirror;
+
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaImagingFramework;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Offline mirror of the Pythia catalog of a language. The catalog is stored in a read-only index
+ * file, memory-mapped at the opening:
+ *
+ * <pre>
+ *   header  : magic (int), version (int), sync timestamp (long), number of entries (int)
+ *   entries : pattern offset, pattern length, value offset, value length (4 ints per entry)
+ *   data    : patterns in UTF-8, and frameworks as UTF-8 json
+ * </pre>
+ *
+ * The entries are sorted by the bytes of their pattern, so a lookup is a binary search in the
+ * mapped file. Each synchronization writes a new file, suffixed by its timestamp, as a mapped file
+ * can't always be replaced in place.
+ */
+public class PythiaMirror {
+
+  private static final int MAGIC = 0x50594d52; // PYMR
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 20;
+  private static final int ENTRY_SIZE = 16;
+  private static final String EXTENSION = ".idx";
+
+  // Mirrors opened, by folder and language
+  private static final Map<String, PythiaMirror> OPENED = new ConcurrentHashMap<>();
+
+  private final Gson gson = new Gson();
+  private final Path file;
+  private final String language;
+  private final ByteBuffer buffer;
+  private final long syncTimestamp;
+  private final int size;
+
+  private PythiaMirror(Path file, String language) throws IOException {
+    this.file = file;
+    this.language = language;
+
+    try (FileChannel channel = FileChannel.open(file)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      this.buffer = mapped;
+    }
+
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException(String.format("'%s' is not a valid Pythia mirror.", file));
+    }
+    this.syncTimestamp = buffer.getLong(8);
+    this.size = buffer.getInt(16);
+    if ((long) HEADER_SIZE + (long) size * ENTRY_SIZE > buffer.limit()) {
+      throw new IOException(String.format("The Pythia mirror '%s' is truncated.", file));
+    }
+  }
+
+  /**
+   * Get the prefix of the index files of a language
+   *
+   * @param language Language of the mirror
+   * @return The prefix
+   */
+  private static String getFilePrefix(String language) {
+    return String.format("pythia_mirror_%s_", language.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Check if a file is an index file of a language
+   *
+   * @param file File to check
+   * @param language Language of the mirror
+   * @return True if the file belongs to the mirror of the language
+   */
+  private static boolean isIndexFile(Path file, String language) {
+    String name = file.getFileName().toString();
+    String prefix = getFilePrefix(language);
+    return name.startsWith(prefix) && name.substring(prefix.length()).matches("\\d{13}\\" + EXTENSION);
+  }
+
+  /**
+   * Get the mirror of a language. The most recent index file of the folder is opened, once.
+   *
+   * @param folder Folder of the mirrors
+   * @param language Language of the mirror
+   * @return The mirror, or an empty optional if no mirror was exported for this language
+   * @throws IOException If the index file is corrupted
+   */
+  public static Optional<PythiaMirror> get(Path folder, String language) throws IOException {
+    String key = folder.toAbsolutePath() + "|" + language.toLowerCase(Locale.ROOT);
+    PythiaMirror mirror = OPENED.get(key);
+    if (mirror != null) return Optional.of(mirror);
+
+    Optional<Path> latest = findLatestFile(folder, language);
+    if (latest.isEmpty()) return Optional.empty();
+
+    synchronized (OPENED) {
+      mirror = OPENED.get(key);
+      if (mirror == null || !mirror.file.equals(latest.get())) {
+        mirror = new PythiaMirror(latest.get(), language);
+        OPENED.put(key, mirror);
+      }
+    }
+    return Optional.of(mirror);
+  }
+
+  /**
+   * Find the most recent index file of a language
+   *
+   * @param folder Folder of the mirrors
+   * @param language Language of the mirror
+   * @return The file, or an empty optional if there is none
+   * @throws IOException If the folder can't be listed
+   */
+  private static Optional<Path> findLatestFile(Path folder, String language) throws IOException {
+    if (!Files.isDirectory(folder)) return Optional.empty();
+    try (Stream<Path> files = Files.list(folder)) {
+      return files
+          .filter(p -> isIndexFile(p, language))
+          .max(Comparator.comparing(p -> p.getFileName().toString()));
+    }
+  }
+
+  /**
+   * Write a new index file for a language, and open it. The previous files of the language are
+   * deleted when possible.
+   *
+   * @param folder Folder of the mirrors
+   * @param language Language of the mirror
+   * @param frameworks Frameworks as json, by pattern
+   * @param syncTimestamp Date of the synchronization, used as the start of the next delta
+   * @return The new mirror
+   * @throws IOException If the file couldn't be written
+   */
+  public static PythiaMirror write(
+      Path folder, String language, Map<String, String> frameworks, long syncTimestamp)
+      throws IOException {
+    Files.createDirectories(folder);
+
+    // Sort the patterns by their bytes, the order used by the lookups
+    List<byte[][]> entries = new ArrayList<>(frameworks.size());
+    for (Map.Entry<String, String> en : frameworks.entrySet()) {
+      if (en.getKey() == null || en.getValue() == null) continue;
+      entries.add(
+          new byte[][] {
+            en.getKey().getBytes(StandardCharsets.UTF_8),
+            en.getValue().getBytes(StandardCharsets.UTF_8)
+          });
+    }
+    entries.sort((a, b) -> Arrays.compareUnsigned(a[0], b[0]));
+
+    Path target =
+        folder.resolve(String.format("%s%013d%s", getFilePrefix(language), syncTimestamp, EXTENSION));
+    Path temp = folder.resolve(target.getFileName() + ".tmp");
+
+    try (OutputStream os = Files.newOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(syncTimestamp);
+      out.writeInt(entries.size());
+
+      long offset = HEADER_SIZE + (long) entries.size() * ENTRY_SIZE;
+      for (byte[][] en : entries) {
+        if (offset + en[0].length + en[1].length > Integer.MAX_VALUE) {
+          throw new IOException("The Pythia catalog is too large for a mirror.");
+        }
+        out.writeInt((int) offset);
+        out.writeInt(en[0].length);
+        out.writeInt((int) offset + en[0].length);
+        out.writeInt(en[1].length);
+        offset += en[0].length + en[1].length;
+      }
+      for (byte[][] en : entries) {
+        out.write(en[0]);
+        out.write(en[1]);
+      }
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    PythiaMirror mirror = new PythiaMirror(target, language);
+    synchronized (OPENED) {
+      OPENED.put(folder.toAbsolutePath() + "|" + language.toLowerCase(Locale.ROOT), mirror);
+    }
+    deletePreviousFiles(folder, language, target);
+    return mirror;
+  }
+
+  /**
+   * Delete the previous index files of a language. A file still mapped may not be deletable on
+   * some systems, it is then left for the next synchronization.
+   *
+   * @param folder Folder of the mirrors
+   * @param language Language of the mirror
+   * @param current File to keep
+   */
+  private static void deletePreviousFiles(Path folder, String language, Path current) {
+    try (Stream<Path> files = Files.list(folder)) {
+      files
+          .filter(p -> isIndexFile(p, language) && !p.equals(current))
+          .forEach(
+              p -> {
+                try {
+                  Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                  // Still mapped, deleted next time
+                }
+              });
+    } catch (IOException ignored) {
+      // Nothing to clean
+    }
+  }
+
+  private int getKeyOffset(int i) {
+    return buffer.getInt(HEADER_SIZE + i * ENTRY_SIZE);
+  }
+
+  private int getKeyLength(int i) {
+    return buffer.getInt(HEADER_SIZE + i * ENTRY_SIZE + 4);
+  }
+
+  /**
+   * Compare the pattern of an entry with the first bytes of a query
+   *
+   * @param i Index of the entry
+   * @param query Query
+   * @param length Number of bytes of the query to use
+   * @return The comparison of the pattern with the query
+   */
+  private int compare(int i, byte[] query, int length) {
+    int offset = getKeyOffset(i);
+    int keyLength = getKeyLength(i);
+    int n = Math.min(keyLength, length);
+    for (int k = 0; k < n; k++) {
+      int diff = (buffer.get(offset + k) & 0xff) - (query[k] & 0xff);
+      if (diff != 0) return diff;
+    }
+    return keyLength - length;
+  }
+
+  /**
+   * Get the length of the common prefix of a pattern and a query
+   *
+   * @param i Index of the entry
+   * @param query Query
+   * @param length Number of bytes of the query to use
+   * @return The length of the common prefix
+   */
+  private int commonPrefix(int i, byte[] query, int length) {
+    int offset = getKeyOffset(i);
+    int n = Math.min(getKeyLength(i), length);
+    int k = 0;
+    while (k < n && buffer.get(offset + k) == query[k]) k++;
+    return k;
+  }
+
+  /**
+   * Find the last entry lower or equal to the first bytes of a query
+   *
+   * @param query Query
+   * @param length Number of bytes of the query to use
+   * @return The index of the entry, -1 if all the entries are greater
+   */
+  private int floor(byte[] query, int length) {
+    int lo = 0;
+    int hi = size - 1;
+    int found = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compare(mid, query, length) <= 0) {
+        found = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Check if a pattern of the given length ends on a boundary of the query. A pattern only matches
+   * a longer name if the name continues with a delimiter, like a package separator.
+   *
+   * @param query Query
+   * @param length Length of the pattern
+   * @return True if the pattern can match the query
+   */
+  private static boolean isBoundary(byte[] query, int length) {
+    if (length == query.length) return true;
+    byte b = query[length];
+    return b >= 0 && !Character.isLetterOrDigit((char) b);
+  }
+
+  /**
+   * Find the entry matching a name: the pattern equal to the name, or else the longest pattern
+   * prefixing the name up to a delimiter
+   *
+   * @param name Name to search
+   * @return The index of the entry, -1 if nothing matches
+   */
+  private int findEntry(String name) {
+    if (size == 0 || name == null || name.isEmpty()) return -1;
+
+    byte[] query = name.getBytes(StandardCharsets.UTF_8);
+    int length = query.length;
+    while (length > 0) {
+      int i = floor(query, length);
+      if (i < 0) return -1;
+
+      int lcp = commonPrefix(i, query, length);
+      if (lcp == getKeyLength(i)) {
+        if (isBoundary(query, lcp)) return i;
+        length = lcp - 1; // Look for a shorter pattern
+      } else {
+        length = lcp;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Read the framework of an entry
+   *
+   * @param i Index of the entry
+   * @return A new framework object
+   */
+  private PythiaImagingFramework readFramework(int i) {
+    int base = HEADER_SIZE + i * ENTRY_SIZE;
+    int offset = buffer.getInt(base + 8);
+    int length = buffer.getInt(base + 12);
+
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(bytes);
+    try {
+      return gson.fromJson(new String(bytes, StandardCharsets.UTF_8), PythiaImagingFramework.class);
+    } catch (JsonParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Read the pattern of an entry
+   *
+   * @param i Index of the entry
+   * @return The pattern
+   */
+  private String readPattern(int i) {
+    byte[] bytes = new byte[getKeyLength(i)];
+    ByteBuffer view = buffer.duplicate();
+    view.position(getKeyOffset(i));
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Find the framework of a name
+   *
+   * @param name Name to search
+   * @return The framework, a new object at each call, or an empty optional if nothing matches
+   */
+  public Optional<PythiaImagingFramework> find(String name) {
+    int i = findEntry(name);
+    if (i < 0) return Optional.empty();
+    return Optional.ofNullable(readFramework(i));
+  }
+
+  /**
+   * Find the frameworks of several names
+   *
+   * @param names Names to search
+   * @return The frameworks found, by name
+   */
+  public Map<String, PythiaImagingFramework> findAll(Collection<String> names) {
+    Map<String, PythiaImagingFramework> results = new HashMap<>();
+    for (String name : names) find(name).ifPresent(f -> results.put(name, f));
+    return results;
+  }
+
+  /**
+   * Iterate over the entries of the mirror
+   *
+   * @param consumer Consumer of the patterns and of their framework as json
+   */
+  public void forEach(BiConsumer<String, String> consumer) {
+    for (int i = 0; i < size; i++) {
+      int base = HEADER_SIZE + i * ENTRY_SIZE;
+      byte[] bytes = new byte[buffer.getInt(base + 12)];
+      ByteBuffer view = buffer.duplicate();
+      view.position(buffer.getInt(base + 8));
+      view.get(bytes);
+      consumer.accept(readPattern(i), new String(bytes, StandardCharsets.UTF_8));
+    }
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  public String getLanguage() {
+    return language;
+  }
+
+  public long getSyncTimestamp() {
+    return syncTimestamp;
+  }
+
+  public int getSize() {
+    return size;
+  }
+}
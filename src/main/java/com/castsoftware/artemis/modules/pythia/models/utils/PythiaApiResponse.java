@@ -54,7 +54,6 @@ public class PythiaApiResponse<T> {
     // Test all the field
     if (body.has("message")) {
       this.message = body.getString("message");
-      System.out.println("Detected message " + this.message);
     }
 
     // Check for data
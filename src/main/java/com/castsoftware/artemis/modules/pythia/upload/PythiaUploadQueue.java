@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.pythia.upload;
+
+import com.castsoftware.artemis.modules.pythia.Pythia;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaException;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaResponse;
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaFramework;
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaLanguage;
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaPattern;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Write-behind queue of the frameworks uploaded to Pythia. The frameworks are submitted without
+ * waiting, and sent by batches by a background worker. When Pythia can't be reached, the frameworks
+ * are spooled in a file of the workspace, one json record per line, and replayed once Pythia is
+ * available again, during this run or the next one. The delivery is at least once: a framework
+ * replayed after a crash may be sent twice.
+ */
+public class PythiaUploadQueue {
+
+  private static final long POLL_INTERVAL = 1000L; // ms
+  private static final long REPLAY_INTERVAL = 60000L; // ms, between two replays of the spool
+
+  private final Pythia pythia;
+  private final String languageName;
+  private final BooleanSupplier available;
+  private final Path spoolFile;
+  private final Path replayFile;
+  private final int batchSize;
+  private final BlockingQueue<UploadRecord> queue;
+  private final Object spoolLock = new Object();
+  private final Gson gson = new Gson();
+  private final Thread worker;
+
+  private volatile boolean running = true;
+  private PythiaLanguage pythiaLanguage; // Resolved on the first upload
+  private long lastReplay = 0L;
+
+  // Statistics
+  private final AtomicLong numSubmitted = new AtomicLong(0);
+  private final AtomicLong numUploaded = new AtomicLong(0);
+  private final AtomicLong numRejected = new AtomicLong(0);
+  private final AtomicLong numSpooled = new AtomicLong(0);
+  private final AtomicLong numReplayed = new AtomicLong(0);
+  private volatile String lastError = "";
+
+  /** Framework waiting for its upload, as written in the spool */
+  private static class UploadRecord {
+    private PythiaFramework framework;
+    private List<PatternRecord> patterns;
+    private String language;
+  }
+
+  /** Pattern of a framework. The language is resolved at the upload. */
+  private static class PatternRecord {
+    private String pattern;
+    private Boolean isRegex;
+  }
+
+  /**
+   * Create the queue and start its worker
+   *
+   * @param pythia Pythia module used for the uploads
+   * @param languageName Name of the language of the frameworks on Pythia
+   * @param available Check if Pythia can be used. The frameworks are spooled otherwise.
+   * @param spoolFile File of the frameworks waiting for Pythia
+   * @param capacity Maximum number of frameworks waiting in memory, the others are spooled
+   * @param batchSize Number of frameworks sent together
+   */
+  public PythiaUploadQueue(
+      Pythia pythia,
+      String languageName,
+      BooleanSupplier available,
+      Path spoolFile,
+      int capacity,
+      int batchSize) {
+    this.pythia = pythia;
+    this.languageName = languageName;
+    this.available = available;
+    this.spoolFile = spoolFile;
+    this.replayFile = spoolFile.resolveSibling(spoolFile.getFileName() + ".replay");
+    this.batchSize = Math.max(1, batchSize);
+    this.queue = new LinkedBlockingQueue<>(Math.max(1, capacity));
+
+    this.worker = new Thread(this::run, "artemis-pythia-upload-" + languageName);
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * Submit a framework. The call never waits for Pythia.
+   *
+   * @param framework Framework to upload
+   * @param patterns Patterns of the framework. Their language is ignored, the language of the
+   *     queue is used.
+   */
+  public void submit(PythiaFramework framework, List<PythiaPattern> patterns) {
+    UploadRecord record = new UploadRecord();
+    record.framework = framework;
+    record.language = languageName;
+    record.patterns = new ArrayList<>(patterns.size());
+    for (PythiaPattern pp : patterns) {
+      PatternRecord pr = new PatternRecord();
+      pr.pattern = pp.pattern;
+      pr.isRegex = pp.isRegex;
+      record.patterns.add(pr);
+    }
+
+    numSubmitted.incrementAndGet();
+    if (!running || !queue.offer(record)) spool(Collections.singletonList(record));
+  }
+
+  /** Loop of the worker */
+  private void run() {
+    List<UploadRecord> batch = new ArrayList<>(batchSize);
+    while (running) {
+      try {
+        replayIfNeeded();
+
+        UploadRecord first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if (first == null) continue;
+
+        batch.clear();
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        send(batch);
+      } catch (InterruptedException e) {
+        break;
+      } catch (RuntimeException e) {
+        lastError = e.getMessage();
+      }
+    }
+
+    // Stopped, keep what couldn't be sent for the next run
+    List<UploadRecord> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!remaining.isEmpty()) spool(remaining);
+  }
+
+  /**
+   * Send a batch of frameworks. The frameworks of the batch are sent concurrently, and the ones
+   * that couldn't reach Pythia are spooled.
+   *
+   * @param batch Frameworks to send
+   * @return The number of frameworks spooled
+   */
+  private int send(List<UploadRecord> batch) {
+    PythiaLanguage language = available.getAsBoolean() ? getPythiaLanguage() : null;
+    if (language == null) {
+      spool(batch);
+      return batch.size();
+    }
+
+    List<CompletableFuture<PythiaFramework>> uploads = new ArrayList<>(batch.size());
+    for (UploadRecord record : batch) {
+      List<PythiaPattern> patterns = new ArrayList<>(record.patterns.size());
+      for (PatternRecord pr : record.patterns) {
+        patterns.add(new PythiaPattern(language, pr.pattern, pr.isRegex));
+      }
+      uploads.add(pythia.createFrameworkAsync(record.framework, patterns));
+    }
+
+    List<UploadRecord> failed = new ArrayList<>();
+    for (int i = 0; i < uploads.size(); i++) {
+      try {
+        uploads.get(i).join();
+        numUploaded.incrementAndGet();
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        lastError = cause.getMessage();
+        if (cause instanceof PythiaException) {
+          numRejected.incrementAndGet(); // Rejected by the server, sending it again won't help
+        } else {
+          failed.add(batch.get(i));
+        }
+      }
+    }
+
+    if (!failed.isEmpty()) spool(failed);
+    return failed.size();
+  }
+
+  /**
+   * Get the language of the queue on Pythia
+   *
+   * @return The language, or null if it can't be found for now
+   */
+  private PythiaLanguage getPythiaLanguage() {
+    if (pythiaLanguage != null) return pythiaLanguage;
+    try {
+      pythiaLanguage = pythia.findLanguage(languageName);
+    } catch (PythiaException | PythiaResponse e) {
+      lastError = e.getMessage();
+    }
+    return pythiaLanguage;
+  }
+
+  /**
+   * Append frameworks to the spool
+   *
+   * @param records Frameworks to spool
+   */
+  private void spool(List<UploadRecord> records) {
+    synchronized (spoolLock) {
+      try {
+        Files.createDirectories(spoolFile.getParent());
+        try (BufferedWriter writer =
+            Files.newBufferedWriter(
+                spoolFile,
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+          for (UploadRecord record : records) {
+            writer.write(gson.toJson(record));
+            writer.newLine();
+          }
+        }
+        numSpooled.addAndGet(records.size());
+      } catch (IOException e) {
+        lastError = String.format("Failed to spool %d frameworks: %s", records.size(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Replay the spooled frameworks if Pythia is available. The spool is moved aside during the
+   * replay, and only deleted once each of its frameworks was either sent or spooled again. A replay
+   * interrupted by a crash is resumed on the next start.
+   */
+  private void replayIfNeeded() {
+    long now = System.currentTimeMillis();
+    if (now - lastReplay < REPLAY_INTERVAL) return;
+    if (!Files.exists(replayFile) && !Files.exists(spoolFile)) return;
+    if (!available.getAsBoolean()) return;
+    lastReplay = now;
+
+    List<UploadRecord> records = new ArrayList<>();
+    synchronized (spoolLock) {
+      try {
+        if (!Files.exists(replayFile)) {
+          Files.move(spoolFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) continue;
+            try {
+              records.add(gson.fromJson(line, UploadRecord.class));
+            } catch (JsonParseException e) {
+              lastError = "Corrupted record ignored in the spool: " + e.getMessage();
+            }
+          }
+        }
+      } catch (IOException e) {
+        lastError = "Failed to read the spool: " + e.getMessage();
+        return;
+      }
+    }
+
+    for (int i = 0; i < records.size() && running; i += batchSize) {
+      List<UploadRecord> batch = records.subList(i, Math.min(i + batchSize, records.size()));
+      numReplayed.addAndGet(batch.size() - send(batch));
+    }
+    // Not finished, the rest of the replay file is kept
+    if (!running) return;
+
+    try {
+      Files.deleteIfExists(replayFile);
+    } catch (IOException e) {
+      lastError = "Failed to delete the replayed spool: " + e.getMessage();
+    }
+  }
+
+  /**
+   * Stop the worker. The frameworks still waiting are spooled for the next run.
+   *
+   * @param timeout Maximum time to wait for the worker, in milliseconds
+   */
+  public void close(long timeout) {
+    running = false;
+    try {
+      worker.join(timeout);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public int getNumPending() {
+    return queue.size();
+  }
+
+  public long getNumSubmitted() {
+    return numSubmitted.get();
+  }
+
+  public long getNumUploaded() {
+    return numUploaded.get();
+  }
+
+  public long getNumRejected() {
+    return numRejected.get();
+  }
+
+  public long getNumSpooled() {
+    return numSpooled.get();
+  }
+
+  public long getNumReplayed() {
+    return numReplayed.get();
+  }
+
+  public String getLastError() {
+    return lastError;
+  }
+
+  /**
+   * Get the statistics as a printable string
+   *
+   * @return The statistics
+   */
+  public String getStatistics() {
+    return String.format(
+        "Pythia uploads : %d submitted, %d uploaded, %d rejected, %d spooled, %d replayed, %d pending.",
+        getNumSubmitted(),
+        getNumUploaded(),
+        getNumRejected(),
+        getNumSpooled(),
+        getNumReplayed(),
+        getNumPending());
+  }
+}
@@ -15,11 +15,16 @@ import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadRequestException;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jConnectionError;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
 import org.neo4j.graphdb.*;
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.logging.Log;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 public class Neo4jAL {
 
@@ -31,6 +36,12 @@ public class Neo4jAL {
   private Transaction transaction = null;
   private Boolean activeTransaction = false;
 
+  // Transaction of the procedure, kept aside while chunk transactions are used
+  private Transaction procedureTransaction = null;
+
+  // Labels modified in the current transaction, not committed yet
+  private final Set<String> uncommittedLabels = new HashSet<>();
+
   /**
    * Constructor for the Neo4j Layer
    *
@@ -115,6 +126,26 @@ public class Neo4jAL {
     }
   }
 
+  /**
+   * Execute a query on the transaction of the procedure, even if a chunk is in progress. Used to
+   * stream a read across the commits of the chunks. The query must not modify the graph.
+   *
+   * @param query Cypher query to execute
+   * @param params Parameters of the query
+   * @return Result of the cypher query
+   * @throws Neo4jQueryException Exception during the processing of the query
+   */
+  public Result executeProcedureQuery(String query, Map<String, Object> params)
+      throws Neo4jQueryException {
+    Transaction tx = this.procedureTransaction != null ? this.procedureTransaction : this.transaction;
+    try {
+      return tx.execute(query, params);
+    } catch (QueryExecutionException e) {
+      throw new Neo4jQueryException(
+          "Error while executing query with parameters.", query, e, ERROR_PREFIX + "EXPQ1");
+    }
+  }
+
   public Result executeAtomicQuery(String query, Map<String, Object> params)
       throws Neo4jQueryException {
     try (Transaction tx = db.beginTx()) {
@@ -248,16 +279,130 @@ public class Neo4jAL {
    */
   public void commitTransaction() {
     this.transaction.commit();
+    this.uncommittedLabels.clear();
   }
 
   public void rollbackTransaction() {
     this.transaction.rollback();
+    this.uncommittedLabels.clear();
   }
 
   public Transaction getTransaction() {
     return this.transaction;
   }
 
+  /**
+   * Route the next operations to a new transaction opened on the database, instead of the
+   * transaction of the procedure. The work can then be committed in chunks with {@link
+   * #commitChunk()}. The nodes retrieved in a chunk must not be reused after its commit.
+   *
+   * @throws Neo4jQueryException If a chunk is already in progress
+   */
+  public void beginChunk() throws Neo4jQueryException {
+    if (this.procedureTransaction != null) {
+      throw new Neo4jQueryException(
+          "A chunk transaction is already in progress.",
+          new Exception("Nested chunk transaction"),
+          ERROR_PREFIX + "BECH1");
+    }
+
+    this.procedureTransaction = this.transaction;
+    this.transaction = db.beginTx();
+  }
+
+  /**
+   * Commit the current chunk and open a new one. Nothing is committed if the procedure was
+   * terminated in the meantime.
+   *
+   * @throws Neo4jQueryException If no chunk is in progress, or if the commit failed
+   * @throws TransactionTerminatedException If the transaction of the procedure was terminated
+   */
+  public void commitChunk() throws Neo4jQueryException {
+    if (this.procedureTransaction == null) {
+      throw new Neo4jQueryException(
+          "No chunk transaction in progress.",
+          new Exception("Missing chunk transaction"),
+          ERROR_PREFIX + "COCH1");
+    }
+    checkTermination();
+
+    try {
+      this.transaction.commit();
+    } catch (Exception e) {
+      throw new Neo4jQueryException("Failed to commit the chunk.", e, ERROR_PREFIX + "COCH2");
+    } finally {
+      this.transaction.close();
+      this.transaction = db.beginTx();
+      this.uncommittedLabels.clear();
+    }
+  }
+
+  /**
+   * Close the current chunk and route the operations to the transaction of the procedure again
+   *
+   * @param commit If true the chunk is committed, otherwise it is rolled back
+   * @throws Neo4jQueryException If the commit failed
+   */
+  public void endChunk(boolean commit) throws Neo4jQueryException {
+    if (this.procedureTransaction == null) return;
+
+    try {
+      if (commit) this.transaction.commit();
+      else this.transaction.rollback();
+    } catch (Exception e) {
+      throw new Neo4jQueryException("Failed to close the chunk.", e, ERROR_PREFIX + "ENCH1");
+    } finally {
+      this.transaction.close();
+      this.transaction = this.procedureTransaction;
+      this.procedureTransaction = null;
+      this.uncommittedLabels.clear();
+    }
+  }
+
+  /**
+   * Check if the operations are currently routed to a chunk transaction
+   *
+   * @return True if a chunk is in progress
+   */
+  public boolean inChunk() {
+    return this.procedureTransaction != null;
+  }
+
+  /**
+   * Check if the transaction of the procedure was terminated, for example by a kill of the query.
+   * The chunk transactions are not terminated with it, so the long operations must check it
+   * between their chunks.
+   *
+   * @throws TransactionTerminatedException If the transaction of the procedure was terminated
+   */
+  public void checkTermination() {
+    Transaction tx = this.procedureTransaction != null ? this.procedureTransaction : this.transaction;
+    if (!(tx instanceof InternalTransaction)) return;
+
+    Optional<Status> reason = ((InternalTransaction) tx).terminationReason();
+    if (reason.isPresent()) throw new TransactionTerminatedException(reason.get());
+  }
+
+  /**
+   * Flag the nodes of a label as modified in the current transaction. The flag is cleared once the
+   * transaction is committed or rolled back through this layer.
+   *
+   * @param label Label of the nodes modified
+   */
+  public void markUncommitted(String label) {
+    this.uncommittedLabels.add(label);
+  }
+
+  /**
+   * Check if nodes of a label were modified in the current transaction, and not committed yet
+   *
+   * @param label Label of the nodes
+   * @return True if the transaction holds uncommitted modifications of the label
+   */
+  public boolean hasUncommitted(String label) {
+    return this.uncommittedLabels.contains(label);
+  }
+
   public Boolean isOpen() {
     return this.activeTransaction;
   }
@@ -11,14 +11,18 @@
 
 package com.castsoftware.artemis.procedures;
 
+import com.castsoftware.artemis.controllers.BatchDetectionController;
 import com.castsoftware.artemis.controllers.DetectionController;
 import com.castsoftware.artemis.exceptions.ProcedureException;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadRequestException;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jConnectionError;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
+import com.castsoftware.artemis.results.BatchDetectionResult;
 import com.castsoftware.artemis.results.FrameworkResult;
+import com.castsoftware.artemis.results.ModelEvaluationResult;
 import com.castsoftware.artemis.results.OutputMessage;
+import com.castsoftware.artemis.results.TrainingStatusResult;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
@@ -59,6 +63,58 @@ public class DetectionProcedure {
     }
   }
 
+  @Procedure(value = "artemis.launch.detection.all", mode = Mode.WRITE)
+  @Description(
+      "artemis.launch.detection.all(String parameters, Long Concurrency, Double MemoryBudget) - Launch the detection on every application and language not scanned yet")
+  public Stream<BatchDetectionResult> launchDetectionAll(
+      @Name(value = "Parameters", defaultValue = "") String jsonParameters,
+      @Name(value = "Concurrency", defaultValue = "2") Long concurrency,
+      @Name(value = "MemoryBudget", defaultValue = "0.8") Double memoryBudget)
+      throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<BatchDetectionResult> results =
+          BatchDetectionController.launchBatchDetection(
+              nal, jsonParameters, concurrency, memoryBudget);
+
+      return results.stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "artemis.session.invalidate", mode = Mode.WRITE)
+  @Description(
+      "artemis.session.invalidate(String Language) - Invalidate the detection sessions of a language, or all of them if the language is empty")
+  public Stream<OutputMessage> invalidateSessions(
+      @Name(value = "Language", defaultValue = "") String language) throws ProcedureException {
+
+    try {
+      int count = DetectionController.invalidateSessions(language);
+      return Stream.of(new OutputMessage(String.format("%d sessions were invalidated.", count)));
+    } catch (Exception e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "artemis.session.list", mode = Mode.READ)
+  @Description("artemis.session.list() - List the detection sessions currently open")
+  public Stream<OutputMessage> listSessions() throws ProcedureException {
+
+    try {
+      return DetectionController.getSessions().stream().map(OutputMessage::new);
+    } catch (Exception e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
   @Procedure(value = "artemis.trainModel", mode = Mode.WRITE)
   @Description("artemis.trainModel() - Launch Detection for a specific language")
   public Stream<OutputMessage> trainModel() throws ProcedureException {
@@ -81,4 +137,53 @@ public class DetectionProcedure {
       throw ex;
     }
   }
+
+  @Procedure(value = "artemis.trainModel.background", mode = Mode.WRITE)
+  @Description(
+      "artemis.trainModel.background(String Language) - Train the model of a language in the background. The current model is used until the training ends")
+  public Stream<TrainingStatusResult> trainModelInBackground(
+      @Name(value = "Language", defaultValue = "") String language) throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return Stream.of(DetectionController.trainArtemisInBackground(nal, language));
+    } catch (Exception | Neo4jConnectionError e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "artemis.trainModel.status", mode = Mode.READ)
+  @Description("artemis.trainModel.status() - Get the status of the last training of each language")
+  public Stream<TrainingStatusResult> getTrainingStatus() throws ProcedureException {
+
+    try {
+      return DetectionController.getTrainingStatus().stream();
+    } catch (Exception e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "artemis.evaluateModel", mode = Mode.WRITE)
+  @Description(
+      "artemis.evaluateModel(String Language, Long Folds, String Grid, Boolean Promote) - Cross-validate a grid of training configurations, and optionally train the best one in the background")
+  public Stream<ModelEvaluationResult> evaluateModel(
+      @Name(value = "Language", defaultValue = "") String language,
+      @Name(value = "Folds", defaultValue = "5") Long folds,
+      @Name(value = "Grid", defaultValue = "") String grid,
+      @Name(value = "Promote", defaultValue = "false") Boolean promote)
+      throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return DetectionController.evaluateModel(nal, language, folds, grid, promote).stream();
+    } catch (Exception | Neo4jConnectionError e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
 }
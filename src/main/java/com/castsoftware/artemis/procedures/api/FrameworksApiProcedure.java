@@ -20,6 +20,7 @@ import com.castsoftware.artemis.exceptions.neo4j.Neo4jConnectionError;
 import com.castsoftware.artemis.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.artemis.neo4j.Neo4jAL;
 import com.castsoftware.artemis.results.BooleanResult;
+import com.castsoftware.artemis.results.FrameworkCatalogResult;
 import com.castsoftware.artemis.results.FrameworkResult;
 import com.castsoftware.artemis.results.LongResult;
 import com.castsoftware.artemis.results.OutputMessage;
@@ -507,4 +508,33 @@ public class FrameworksApiProcedure {
       throw ex;
     }
   }
+
+  @Procedure(value = "artemis.api.framework.cache.statistics", mode = Mode.READ)
+  @Description(
+      "artemis.api.framework.cache.statistics() - Get the hit and miss statistics of the in-memory framework catalog")
+  public Stream<FrameworkCatalogResult> getCatalogStatistics() throws ProcedureException {
+
+    try {
+      return FrameworkController.getCatalogs().stream().map(FrameworkCatalogResult::new);
+    } catch (Exception e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "artemis.api.framework.cache.invalidate", mode = Mode.WRITE)
+  @Description(
+      "artemis.api.framework.cache.invalidate() - Drop the in-memory framework catalog. It will be reloaded on the next lookup")
+  public Stream<OutputMessage> invalidateCatalog() throws ProcedureException {
+
+    try {
+      FrameworkController.invalidateCatalogs();
+      return Stream.of(new OutputMessage("The framework catalog has been invalidated."));
+    } catch (Exception e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.procedures.api;
+
+import com.castsoftware.artemis.controllers.api.PythiaMirrorController;
+import com.castsoftware.artemis.exceptions.ProcedureException;
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jBadRequestException;
+import com.castsoftware.artemis.exceptions.neo4j.Neo4jConnectionError;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaException;
+import com.castsoftware.artemis.modules.pythia.exceptions.PythiaResponse;
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import com.castsoftware.artemis.results.PythiaMirrorResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.stream.Stream;
+
+public class PythiaMirrorProcedure {
+  @Context public GraphDatabaseService db;
+
+  @Context public Transaction transaction;
+
+  @Context public Log log;
+
+  @Procedure(value = "artemis.api.pythia.mirror.export", mode = Mode.WRITE)
+  @Description(
+      "artemis.api.pythia.mirror.export(String Url, String Token, String Language) - Export the Pythia catalog of a language into an offline mirror of the workspace")
+  public Stream<PythiaMirrorResult> exportMirror(
+      @Name(value = "Url") String url,
+      @Name(value = "Token") String token,
+      @Name(value = "Language") String language)
+      throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return Stream.of(PythiaMirrorController.exportCatalog(nal, url, token, language));
+    } catch (Exception
+        | Neo4jConnectionError
+        | Neo4jBadRequestException
+        | PythiaException
+        | PythiaResponse e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "artemis.api.pythia.mirror.sync", mode = Mode.WRITE)
+  @Description(
+      "artemis.api.pythia.mirror.sync(String Url, String Token, String Language, Long Since) - Apply the changes made on Pythia since a timestamp to the offline mirror of a language. By default, since the last synchronization.")
+  public Stream<PythiaMirrorResult> syncMirror(
+      @Name(value = "Url") String url,
+      @Name(value = "Token") String token,
+      @Name(value = "Language") String language,
+      @Name(value = "Since", defaultValue = "-1") Long since)
+      throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return Stream.of(PythiaMirrorController.synchronize(nal, url, token, language, since));
+    } catch (Exception
+        | Neo4jConnectionError
+        | Neo4jBadRequestException
+        | PythiaException
+        | PythiaResponse e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "artemis.api.pythia.mirror.list", mode = Mode.READ)
+  @Description("artemis.api.pythia.mirror.list() - List the offline Pythia mirrors of the workspace")
+  public Stream<PythiaMirrorResult> listMirrors() throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return PythiaMirrorController.getMirrors(nal).stream();
+    } catch (Exception | Neo4jConnectionError e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.results;
+
+import com.castsoftware.artemis.datasets.FrameworkCatalog;
+
+public class FrameworkCatalogResult {
+  public String database;
+  public Boolean loaded;
+  public Boolean complete;
+  public Long size;
+  public Long maxSize;
+  public Long hits;
+  public Long misses;
+  public Long evictions;
+  public Double hitRatio;
+  public Long loadTime;
+
+  public FrameworkCatalogResult(FrameworkCatalog catalog) {
+    this.database = catalog.getDatabase();
+    this.loaded = catalog.isLoaded();
+    this.complete = catalog.isComplete();
+    this.size = (long) catalog.getSize();
+    this.maxSize = (long) catalog.getMaxSize();
+    this.hits = catalog.getHits();
+    this.misses = catalog.getMisses();
+    this.evictions = catalog.getEvictions();
+    this.hitRatio = catalog.getHitRatio();
+    this.loadTime = catalog.getLoadTime();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.results;
+
+import com.castsoftware.artemis.modules.nlp.model.training.ModelEvaluator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ModelEvaluationResult {
+  public Long iterations;
+  public Long cutoff;
+  public String features;
+  public Long folds;
+  public Long samples;
+  public Double accuracy;
+  public Double accuracyStdDev;
+  public Map<String, Object> precision;
+  public Map<String, Object> recall;
+  public Double trainingTime; // Mean per fold, in ms
+  public Double inferenceTime; // Mean per sample, in µs
+  public Long modelSize; // In bytes
+  public Boolean best;
+  public Boolean promoted;
+
+  public ModelEvaluationResult(
+      ModelEvaluator evaluator, ModelEvaluator.Report report, boolean best, boolean promoted) {
+    this.iterations = (long) report.getConfiguration().getIterations();
+    this.cutoff = (long) report.getConfiguration().getCutoff();
+    this.features = report.getConfiguration().getFeatures().toString();
+    this.folds = (long) evaluator.getFolds();
+    this.samples = (long) evaluator.getNumSamples();
+    this.accuracy = report.getAccuracy();
+    this.accuracyStdDev = report.getAccuracyStdDev();
+    this.precision = new HashMap<>(report.getPrecision());
+    this.recall = new HashMap<>(report.getRecall());
+    this.trainingTime = report.getTrainingTime();
+    this.inferenceTime = report.getInferenceTime();
+    this.modelSize = Math.round(report.getModelSize());
+    this.best = best;
+    this.promoted = promoted;
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.results;
+
+import com.castsoftware.artemis.modules.pythia.mirror.PythiaMirror;
+
+public class PythiaMirrorResult {
+  public String language;
+  public String file;
+  public Long size;
+  public Long received;
+  public Long syncTimestamp;
+
+  public PythiaMirrorResult(PythiaMirror mirror, long received) {
+    this.language = mirror.getLanguage();
+    this.file = mirror.getFile().toString();
+    this.size = (long) mirror.getSize();
+    this.received = received;
+    this.syncTimestamp = mirror.getSyncTimestamp();
+  }
+}
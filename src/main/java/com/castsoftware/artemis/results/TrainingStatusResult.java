@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.results;
+
+import com.castsoftware.artemis.modules.nlp.model.training.TrainingJob;
+
+public class TrainingStatusResult {
+  public String language;
+  public String state;
+  public String configuration;
+  public Long numSamples;
+  public Long submitted;
+  public Long elapsed;
+  public String modelFile;
+  public String version;
+  public String error;
+
+  public TrainingStatusResult(TrainingJob job) {
+    this.language = job.getLanguage().toString();
+    this.state = job.getState().toString();
+    this.configuration = job.getConfiguration().toString();
+    this.numSamples = job.getNumSamples();
+    this.submitted = job.getSubmitted();
+    this.elapsed = job.getElapsed();
+    this.modelFile = job.getModelFile().toString();
+    this.version = job.getVersionFile() == null ? "" : job.getVersionFile().toString();
+    this.error = job.getError() == null ? "" : job.getError();
+  }
+}
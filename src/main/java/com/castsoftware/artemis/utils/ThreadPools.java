@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Factory of the thread pools shared by the modules */
+public class ThreadPools {
+
+  /**
+   * Create a fixed pool of daemon threads. The daemon threads never block the shutdown of the
+   * database.
+   *
+   * @param name Name of the pool, used to name its threads
+   * @param size Number of threads
+   * @return The executor
+   */
+  public static ExecutorService newDaemonPool(String name, int size) {
+    AtomicInteger count = new AtomicInteger(0);
+    return Executors.newFixedThreadPool(
+        Math.max(1, size),
+        r -> {
+          Thread t = new Thread(r, String.format("artemis-%s-%d", name, count.incrementAndGet()));
+          t.setDaemon(true);
+          return t;
+        });
+  }
+}
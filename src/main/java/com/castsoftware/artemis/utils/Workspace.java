@@ -195,6 +195,20 @@ public class Workspace {
     }
   }
 
+  /**
+   * Get the path of the current Artemis Workspace without modifying the configuration node
+   *
+   * @return Path of the workspace
+   */
+  public static Path findWorkspacePath(Neo4jAL neo4jAL) {
+    try {
+      return NodeConfiguration.findWorkspaceNodeConf(neo4jAL);
+    } catch (Neo4jQueryException e) {
+      neo4jAL.logError("Failed to retrieve the workspace path set in the configuration node");
+      return Path.of(Configuration.get("artemis.workspace.folder"));
+    }
+  }
+
   /**
    * Check if the folder exist. If not, create it
    *
@@ -230,6 +244,27 @@ public class Workspace {
     return workspace.resolve(exportFolder);
   }
 
+  /**
+   * Get the full path of the folder of the offline Pythia mirrors. The configuration node is only
+   * read, the mirrors can be listed by a read only procedure
+   *
+   * @return
+   */
+  public static Path getPythiaMirrorFolder(Neo4jAL neo4jAL) {
+    Path workspace = findWorkspacePath(neo4jAL);
+    return workspace.resolve(Configuration.get("artemis.pythia.mirror.folder"));
+  }
+
+  /**
+   * Get the full path of the folder of documentation searched by the local provider
+   *
+   * @return
+   */
+  public static Path getSearchCorpusFolder(Neo4jAL neo4jAL) {
+    Path workspace = getWorkspacePath(neo4jAL);
+    return workspace.resolve(Configuration.get("artemis.online.corpus.folder"));
+  }
+
   /**
    * Get the configuration of the detection
    *
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.detector.utils.pipeline;
+
+import com.castsoftware.artemis.neo4j.Neo4jAL;
+import org.junit.Test;
+import org.neo4j.logging.NullLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/** Order, batching and failures of the resolution pipeline */
+public class ResolutionPipelineTest {
+
+  private final List<Integer> written = new ArrayList<>();
+  private final List<Integer> preparedSizes = new ArrayList<>();
+
+  private ResolutionPipeline<Integer> createPipeline(int maxInFlight, int batchSize) throws Throwable {
+    ResolutionPipeline<Integer> pipeline =
+        new ResolutionPipeline<>(new Neo4jAL(null, null, NullLog.getInstance()), maxInFlight, written::add);
+    // The even numbers need a preparation
+    pipeline.setPreparer(
+        batch -> preparedSizes.add((int) batch.stream().filter(i -> i % 2 == 0).count()),
+        i -> i % 2 == 0,
+        batchSize);
+    return pipeline;
+  }
+
+  @Test
+  public void completedResolutionsArePreparedByFullBatches() throws Throwable {
+    ResolutionPipeline<Integer> pipeline = createPipeline(20, 4);
+    for (int i = 0; i < 10; i++) pipeline.submit(CompletableFuture.completedFuture(i));
+
+    // 0, 2, 4, 6 make the first batch, 7 needs nothing, 8 and 9 wait for the flush
+    assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7), written);
+    assertEquals(List.of(4), preparedSizes);
+
+    pipeline.flush();
+    assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), written);
+    assertEquals(List.of(4, 1), preparedSizes);
+    assertEquals(10, pipeline.getNumApplied());
+  }
+
+  @Test
+  public void nothingIsHeldWithoutPreparation() throws Throwable {
+    ResolutionPipeline<Integer> pipeline = createPipeline(20, 4);
+    pipeline.submit(CompletableFuture.completedFuture(1));
+    pipeline.submit(CompletableFuture.completedFuture(3));
+
+    assertEquals(List.of(1, 3), written);
+    assertTrue(preparedSizes.isEmpty());
+  }
+
+  @Test
+  public void cancelledResolutionDoesNotStopTheDrain() throws Throwable {
+    ResolutionPipeline<Integer> pipeline = createPipeline(20, 1);
+    CompletableFuture<Integer> cancelled = new CompletableFuture<>();
+    cancelled.cancel(true);
+
+    pipeline.submit(cancelled);
+    pipeline.submit(CompletableFuture.completedFuture(2));
+    pipeline.flush();
+
+    assertEquals(List.of(2), written);
+    assertEquals(1, pipeline.getNumFailed());
+  }
+
+  @Test
+  public void interruptWritesTheCollectedResolutions() throws Throwable {
+    ResolutionPipeline<Integer> pipeline = createPipeline(1, 4);
+    pipeline.submit(CompletableFuture.completedFuture(0)); // Held, the batch is not full
+
+    Thread.currentThread().interrupt();
+    CompletableFuture<Integer> never = new CompletableFuture<>();
+    pipeline.submit(never);
+    pipeline.submit(new CompletableFuture<>()); // Over the limit, the head is awaited
+
+    assertTrue(Thread.interrupted());
+    assertEquals(List.of(0), written);
+    assertTrue(never.isCancelled());
+    assertEquals(0, pipeline.getNumPending());
+  }
+}
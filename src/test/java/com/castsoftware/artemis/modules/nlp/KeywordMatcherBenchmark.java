@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark of the keyword count. The matcher is compared with the former regex alternation,
+ * compiled on every call, and with the same alternation compiled once. Run with the main method,
+ * from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeywordMatcherBenchmark {
+
+  @Param({"2", "50", "500"})
+  public int numKeywords;
+
+  private String alternation;
+  private Pattern compiled;
+  private KeywordMatcher matcher;
+  private String text;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42L);
+    List<String> keywords = new ArrayList<>(List.of("IBM Knowledge Center", "Knowledge Center"));
+    while (keywords.size() < numKeywords) keywords.add(randomWord(random, 6 + random.nextInt(8)));
+
+    // A search result of about 10 KB, with some of the keywords inside
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 10000) {
+      if (random.nextInt(20) == 0) sb.append(keywords.get(random.nextInt(keywords.size())));
+      else sb.append(randomWord(random, 2 + random.nextInt(8)));
+      sb.append(' ');
+    }
+
+    alternation = String.join("|", keywords);
+    compiled = Pattern.compile(alternation);
+    matcher = new KeywordMatcher(keywords, false, false);
+    text = sb.toString();
+  }
+
+  private static String randomWord(Random random, int length) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) sb.append((char) ('a' + random.nextInt(26)));
+    return sb.toString();
+  }
+
+  private static int count(Matcher m) {
+    int count = 0;
+    while (m.find()) count++;
+    return count;
+  }
+
+  @Benchmark
+  public int matcher() {
+    return matcher.count(text);
+  }
+
+  @Benchmark
+  public int regexCompiledOnEachCall() {
+    return count(Pattern.compile(alternation).matcher(text));
+  }
+
+  @Benchmark
+  public int regexCompiledOnce() {
+    return count(compiled.matcher(text));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder().include(KeywordMatcherBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
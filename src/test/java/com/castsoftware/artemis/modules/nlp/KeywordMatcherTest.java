@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.global.SupportedLanguage;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Semantics of the keyword matcher. The count picks the leftmost then the longest keyword, where the
+ * former regex alternation picked the leftmost then the first listed one.
+ */
+public class KeywordMatcherTest {
+
+  private static int countWithRegex(List<String> keywords, String text) {
+    String alternation = keywords.stream().map(Pattern::quote).collect(Collectors.joining("|"));
+    Matcher m = Pattern.compile(alternation).matcher(text);
+    int count = 0;
+    while (m.find()) count++;
+    return count;
+  }
+
+  @Test
+  public void countPicksTheLongestKeyword() {
+    List<String> keywords = List.of("AB", "ABC", "CD");
+    KeywordMatcher matcher = new KeywordMatcher(keywords, false, false);
+
+    // "ABC" wins over "AB", then "D" alone doesn't match
+    assertEquals(1, matcher.count("ABCD"));
+    // The alternation takes "AB" then "CD"
+    assertEquals(2, countWithRegex(keywords, "ABCD"));
+  }
+
+  @Test
+  public void countIsTheRegexCountWithoutPrefixListedFirst() {
+    Random random = new Random(42L);
+    for (int run = 0; run < 500; run++) {
+      Set<String> distinct = new HashSet<>();
+      int numKeywords = 1 + random.nextInt(6);
+      while (distinct.size() < numKeywords) distinct.add(randomWord(random, 1 + random.nextInt(4)));
+
+      // Longest first, no keyword is a prefix of a keyword listed after it
+      List<String> keywords = new ArrayList<>(distinct);
+      keywords.sort(Comparator.comparingInt(String::length).reversed());
+
+      KeywordMatcher matcher = new KeywordMatcher(keywords, false, false);
+      String text = randomWord(random, random.nextInt(60));
+      assertEquals(keywords + " in " + text, countWithRegex(keywords, text), matcher.count(text));
+    }
+  }
+
+  private static String randomWord(Random random, int length) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) sb.append((char) ('a' + random.nextInt(3)));
+    return sb.toString();
+  }
+
+  @Test
+  public void countOfTheLanguageKeywordsIsTheRegexCount() {
+    String text =
+        "IBM Knowledge Center - CBLTDLI. See the Knowledge Center of IBM, "
+            + "IBM Knowledge CenterKnowledge Center.";
+    Matcher m = Pattern.compile(Configuration.get("artemis.cobol.keywords")).matcher(text);
+    int expected = 0;
+    while (m.find()) expected++;
+
+    assertEquals(4, expected);
+    assertEquals(expected, KeywordsManager.getNumMatchKeywords(SupportedLanguage.COBOL, text));
+  }
+
+  @Test
+  public void scanReportsTheOverlappingMatches() {
+    KeywordMatcher matcher = new KeywordMatcher(List.of("he", "she", "hers"), false, false);
+    List<String> found = new ArrayList<>();
+    matcher.scan(
+        "ushers",
+        (start, end) -> {
+          found.add("ushers".substring(start, end));
+          return true;
+        });
+    assertEquals(List.of("she", "he", "hers"), found);
+  }
+
+  @Test
+  public void wholeWordsAndCaseAreOptional() {
+    KeywordMatcher exact = new KeywordMatcher(List.of("cobol"), false, true);
+    assertFalse(exact.containsAny("COBOL program"));
+    assertFalse(exact.containsAny("cobolx program"));
+    assertTrue(exact.containsAny("a cobol, program"));
+
+    KeywordMatcher loose = new KeywordMatcher(List.of("cobol"), true, false);
+    assertTrue(loose.containsAny("MYCOBOLX"));
+    assertEquals(2, loose.count("Cobol and COBOL"));
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.model;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.global.SupportedLanguage;
+import com.castsoftware.artemis.modules.nlp.model.training.TrainingConfiguration;
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.DocumentCategorizerME;
+import opennlp.tools.doccat.DocumentSample;
+import opennlp.tools.util.CollectionObjectStream;
+import org.neo4j.logging.NullLog;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the classification of a synthetic corpus. A batch size of 1 classifies the texts
+ * one by one on the caller thread, the former path. The larger batches go through {@link
+ * NLPEngine#getNLPResults(List)}. The inference pool uses one thread per core by default, so the
+ * main method runs a fork per core count, limited with -XX:ActiveProcessorCount. The core counts
+ * can be given as arguments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NLPInferenceBenchmark {
+
+  private static final int CORPUS_SIZE = 256;
+  private static final int TEXT_WORDS = 120;
+
+  private static final String[] COMMON_WORDS = {
+    "the", "program", "call", "data", "file", "record", "module", "system", "user", "value"
+  };
+  private static final String[] UTILITY_WORDS = {
+    "library", "routine", "interface", "vendor", "api", "runtime", "dll", "package"
+  };
+  private static final String[] APPLICATION_WORDS = {
+    "customer", "invoice", "account", "order", "report", "batch", "ledger", "branch"
+  };
+
+  @Param({"1", "16", "256"})
+  public int batchSize;
+
+  private NLPEngine engine;
+  private List<String> corpus;
+
+  @Setup
+  public void setUp() throws IOException {
+    Path workspace = Files.createTempDirectory("artemis-nlp-bench");
+    Path modelFile = workspace.resolve("model.bin");
+    Random random = new Random(42L);
+
+    // Train a small model on texts of the same vocabulary
+    List<DocumentSample> samples = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      boolean framework = i % 2 == 0;
+      String category = framework ? Configuration.get("nlp.category.is_framework") : "NotFramework";
+      samples.add(new DocumentSample(category, randomText(random, framework).split(" ")));
+    }
+    TrainingConfiguration configuration =
+        new TrainingConfiguration(100, 0, TrainingConfiguration.Features.BOW);
+    DoccatModel model =
+        DocumentCategorizerME.train(
+            "en",
+            new CollectionObjectStream<>(samples),
+            configuration.toTrainingParameters(),
+            configuration.createFactory());
+    NLPModelRegistry.registerCategorizerModel(modelFile, model);
+
+    engine = new NLPEngine(NullLog.getInstance(), SupportedLanguage.COBOL, workspace, modelFile);
+    corpus = new ArrayList<>(CORPUS_SIZE);
+    for (int i = 0; i < CORPUS_SIZE; i++) corpus.add(randomText(random, random.nextBoolean()));
+  }
+
+  private static String randomText(Random random, boolean framework) {
+    String[] specific = framework ? UTILITY_WORDS : APPLICATION_WORDS;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < TEXT_WORDS; i++) {
+      String[] source = random.nextInt(3) == 0 ? specific : COMMON_WORDS;
+      if (i > 0) sb.append(' ');
+      sb.append(source[random.nextInt(source.length)]);
+    }
+    return sb.toString();
+  }
+
+  @Benchmark
+  public int classify() throws Throwable {
+    int classified = 0;
+    if (batchSize == 1) {
+      for (String text : corpus) {
+        if (engine.getNLPResult(text) != null) classified++;
+      }
+      return classified;
+    }
+
+    for (int start = 0; start < corpus.size(); start += batchSize) {
+      List<String> batch = corpus.subList(start, Math.min(corpus.size(), start + batchSize));
+      for (NLPResults result : engine.getNLPResults(batch)) {
+        if (result != null) classified++;
+      }
+    }
+    return classified;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    String[] coreCounts = args.length > 0 ? args : new String[] {"1", "2", "4"};
+    for (String cores : coreCounts) {
+      Options options =
+          new OptionsBuilder()
+              .include(NLPInferenceBenchmark.class.getSimpleName())
+              .jvmArgsAppend("-XX:ActiveProcessorCount=" + cores)
+              .build();
+      new Runner(options).run();
+    }
+  }
+}
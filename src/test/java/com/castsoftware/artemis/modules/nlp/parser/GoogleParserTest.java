@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+
+package com.castsoftware.artemis.modules.nlp.parser;
+
+import com.castsoftware.artemis.exceptions.google.GoogleBadResponseCodeException;
+import com.castsoftware.artemis.modules.nlp.parser.provider.SearchProvider;
+import org.junit.Test;
+import org.neo4j.logging.NullLog;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/** Fallback between the search providers of the parser */
+public class GoogleParserTest {
+
+  /** Provider answering from a fixed table, or refusing every request */
+  private static class StubProvider implements SearchProvider {
+    private final String name;
+    private final boolean remote;
+    private final boolean refuse;
+    private final String known;
+    private final AtomicInteger numSearches = new AtomicInteger(0);
+    private boolean available = true;
+
+    StubProvider(String name, boolean remote, boolean refuse, String known) {
+      this.name = name;
+      this.remote = remote;
+      this.refuse = refuse;
+      this.known = known;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return available;
+    }
+
+    @Override
+    public boolean isRemote() {
+      return remote;
+    }
+
+    @Override
+    public CompletableFuture<GoogleResult> search(String query) {
+      numSearches.incrementAndGet();
+      if (refuse) {
+        return CompletableFuture.failedFuture(
+            new GoogleBadResponseCodeException("Refused", "TEST"));
+      }
+      boolean found = query.equals(known);
+      return CompletableFuture.completedFuture(
+          new GoogleResult(query, found ? "Documentation of " + query : "", found ? 1 : 0, false));
+    }
+
+    @Override
+    public void disable() {
+      available = false;
+    }
+  }
+
+  @Test
+  public void refusalAfterEmptyLocalResultKeepsTheLocalProvider() throws Throwable {
+    StubProvider local = new StubProvider("local", false, false, "KNOWNPGM");
+    StubProvider google = new StubProvider("google", true, true, null);
+    GoogleParser parser = new GoogleParser(NullLog.getInstance(), List.of(local, google));
+
+    // Nothing locally, then Google refuses: the search fails, but only Google is disabled
+    try {
+      parser.requestAsync("UNKNOWNPGM").join();
+      fail("The refusal must be reported");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof GoogleBadResponseCodeException);
+    }
+    assertFalse(google.isAvailable());
+    assertTrue(local.isAvailable());
+    assertTrue(parser.isAvailable());
+
+    // The local corpus still answers, Google is no longer queried
+    GoogleResult result = parser.request("KNOWNPGM");
+    assertEquals(1, result.getNumberResult());
+    assertEquals(1, google.numSearches.get());
+
+    // A name unknown locally is now not found, without failure
+    assertEquals(0, parser.request("OTHERPGM").getNumberResult());
+    assertEquals(3, local.numSearches.get());
+  }
+
+  @Test
+  public void refusalOfEveryProviderMakesTheParserUnavailable() {
+    StubProvider google = new StubProvider("google", true, true, null);
+    GoogleParser parser = new GoogleParser(NullLog.getInstance(), List.of(google));
+
+    try {
+      parser.requestAsync("UNKNOWNPGM").join();
+      fail("The refusal must be reported");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof GoogleBadResponseCodeException);
+    }
+    assertFalse(parser.isAvailable());
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.nlp.parser.provider;
+
+import com.castsoftware.artemis.config.Configuration;
+import com.castsoftware.artemis.modules.nlp.parser.GoogleResult;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark of the extraction of a page of search results. The whole path, from the response
+ * stream to the result, is compared with the former extraction, and the sanitization with the
+ * former chain of regex replacements. Run with the main method, from the test classpath. The main
+ * method adds the GC profiler, which reports the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchResultExtractorBenchmark {
+
+  private static final String FORMER_SANITIZE_REGEX =
+      "<\\/?\\s*\\w[^>]*\\/?>|[\\.]{2,}|([\\<\\>›»])|(\\b(\\d+)\\.?\\b)|(w{3}\\.[A-z0-9-]*\\.[A-z]{2,})|(?!([a-zA-Z\\s:,\\.-]))";
+
+  private static final Pattern FORMER_TITLE_REGEX_PATTERN =
+      Pattern.compile("<a[\\s]+[^>]+>((?:.(?!\\<\\/a\\>))*.)<\\/a>");
+  private static final List<String> FORMER_BLACKLISTED_WEBSITE =
+      Arrays.asList(Configuration.get("artemis.online.website.blacklist").split(";"));
+  private static final List<String> FORMER_BLACKLISTED_KEYWORDS =
+      Arrays.asList(Configuration.get("artemis.online.word.blacklist").split(";"));
+
+  @Param({"10", "50"})
+  public int numResults;
+
+  private byte[] response;
+  private Document page;
+  private String text;
+
+  @Setup
+  public void setUp() {
+    StringBuilder html = new StringBuilder("<html><body>");
+    for (int i = 0; i < numResults; i++) {
+      html.append("<div class=\"g\"><div class=\"rc\">")
+          .append("<a href=\"https://www.example")
+          .append(i)
+          .append(".com/cobol/utility\"><h3>CBLTDLI utility ")
+          .append(i)
+          .append(" - IMS DL/I call interface</h3></a>")
+          .append("<span>12 mai 2020 ... The CBLTDLI routine is used by COBOL programs to issue ")
+          .append("DL/I calls.  It takes   the function code, the PCB and the I/O area » see ")
+          .append("www.ibm.com for the 3.2 reference › manuals.</span>")
+          .append("</div></div>");
+    }
+    html.append("</body></html>");
+
+    response = html.toString().getBytes(StandardCharsets.UTF_8);
+    page = Jsoup.parse(html.toString());
+    text = page.text();
+  }
+
+  /** Current path: the stream is parsed directly, then the results are extracted */
+  @Benchmark
+  public GoogleResult parseAndExtract() throws IOException {
+    Document document =
+        Jsoup.parse(new ByteArrayInputStream(response), "UTF-8", "https://www.google.com/search");
+    return SearchResultExtractor.extract(document, new GoogleResult());
+  }
+
+  /** Former path: the stream is copied line by line, then parsed and extracted */
+  @Benchmark
+  public GoogleResult formerParseAndExtract() throws IOException {
+    String inputLine;
+    StringBuffer buffer = new StringBuffer();
+    try (BufferedReader in =
+        new BufferedReader(
+            new InputStreamReader(new ByteArrayInputStream(response), StandardCharsets.UTF_8))) {
+      while ((inputLine = in.readLine()) != null) {
+        buffer.append(inputLine);
+      }
+    }
+    return formerExtract(Jsoup.parse(buffer.toString()), new GoogleResult());
+  }
+
+  @Benchmark
+  public GoogleResult extract() {
+    return SearchResultExtractor.extract(page, new GoogleResult());
+  }
+
+  @Benchmark
+  public String sanitize() {
+    return SearchResultExtractor.sanitize(text);
+  }
+
+  @Benchmark
+  public String sanitizeWithFormerRegexes() {
+    return text.replaceAll(FORMER_SANITIZE_REGEX, " ").replaceAll("\\s{2,}", "");
+  }
+
+  /** Former extraction of the results, kept as the baseline */
+  private static GoogleResult formerExtract(Document document, GoogleResult googleResult) {
+    StringBuilder fullResults = new StringBuilder();
+    List<String> extractedTitle = new ArrayList<>();
+    List<String> extractedUrls = new ArrayList<>();
+    List<String> extractedBody = new ArrayList<>();
+
+    List<Element> titles = document.getElementsByClass("rc");
+    if (titles.isEmpty()) {
+      titles.addAll(document.getElementsByClass("g"));
+    }
+
+    googleResult.setNumberResult(titles.size());
+
+    for (Element title : titles) {
+      if (!title.getElementsByTag("h3").isEmpty()) {
+        String titleText = title.getElementsByTag("h3").get(0).text();
+
+        for (String blackListed : FORMER_BLACKLISTED_KEYWORDS) {
+          if (titleText.contains(blackListed)) {
+            googleResult.setBlacklisted(true);
+            break;
+          }
+        }
+
+        extractedTitle.add(titleText);
+      }
+
+      if (!title.getElementsByTag("a").isEmpty()) {
+        String urlText = title.getElementsByTag("a").get(0).text();
+        extractedUrls.add(urlText);
+      }
+    }
+
+    List<Element> bodies = document.getElementsByClass("rc");
+    for (Element body : bodies) {
+      extractedBody.add(body.text());
+    }
+
+    Matcher titleMatcher;
+    int itWebUrl = 0;
+    List<Element> urls = document.getElementsByClass("rc");
+    for (Element body : urls) {
+      if (itWebUrl > 4) {
+        break;
+      }
+      titleMatcher = FORMER_TITLE_REGEX_PATTERN.matcher(body.text());
+      if (titleMatcher.matches()) {
+        for (int i = 0; i <= titleMatcher.groupCount(); i++) {
+          for (String forbidden : FORMER_BLACKLISTED_WEBSITE) {
+            if (titleMatcher.group(i).toLowerCase().contains(forbidden)) {
+              googleResult.setBlacklisted(true);
+              break;
+            }
+          }
+        }
+      }
+      itWebUrl++;
+    }
+
+    googleResult.setUrls(extractedUrls);
+    Iterator<String> it1 = extractedTitle.iterator();
+    Iterator<String> it2 = extractedBody.iterator();
+
+    while (it1.hasNext() || it2.hasNext()) {
+      if (it1.hasNext()) fullResults.append(it1.next()).append(" ");
+      if (it2.hasNext()) fullResults.append(it2.next()).append(" ");
+    }
+
+    String res = fullResults.toString().replaceAll(FORMER_SANITIZE_REGEX, " ");
+    googleResult.setContent(res.replaceAll("\\s{2,}", ""));
+    return googleResult;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder()
+            .include(SearchResultExtractorBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
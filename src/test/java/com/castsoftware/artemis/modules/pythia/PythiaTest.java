@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2020  Hugo JOBY
+ *
+ *  This library is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty ofnMERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNUnLesser General Public License v3 for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public v3 License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package com.castsoftware.artemis.modules.pythia;
+
+import com.castsoftware.artemis.modules.pythia.cache.PythiaLookupCache;
+import com.castsoftware.artemis.modules.pythia.models.api.PythiaImagingFramework;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Resolution of several patterns through a stub of the Pythia server. The batch endpoint answers
+ * one entry per pattern, in the order of the request. The single endpoint answers the framework
+ * named after the pattern, and "not found" for the patterns starting with "unknown".
+ */
+public class PythiaTest {
+
+  private static final String LANGUAGE = "Cobol";
+
+  private HttpServer server;
+  private String url;
+  private volatile int batchStatus = 200;
+  private final List<List<String>> batchRequests = new CopyOnWriteArrayList<>();
+  private final List<String> singleRequests = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/api/detection/byPatternsAndLanguage", this::handleBatch);
+    server.createContext("/api/detection/byPatternAndLanguage", this::handleSingle);
+    server.start();
+    url = String.format("http://localhost:%d/", server.getAddress().getPort());
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private void handleBatch(HttpExchange exchange) throws IOException {
+    JsonObject body =
+        JsonParser.parseString(
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+            .getAsJsonObject();
+    List<String> patterns = new ArrayList<>();
+    body.getAsJsonArray("patterns").forEach(p -> patterns.add(p.getAsString()));
+    batchRequests.add(patterns);
+
+    JsonObject response = new JsonObject();
+    if (batchStatus != 200) {
+      response.addProperty("message", "Not supported");
+      reply(exchange, batchStatus, response);
+      return;
+    }
+
+    JsonArray data = new JsonArray();
+    for (String pattern : patterns) data.add(toFramework(pattern));
+    response.add("data", data);
+    reply(exchange, 200, response);
+  }
+
+  private void handleSingle(HttpExchange exchange) throws IOException {
+    String pattern = getParameter(exchange.getRequestURI(), "pattern");
+    singleRequests.add(pattern);
+    JsonObject response = new JsonObject();
+    response.add("data", toFramework(pattern));
+    reply(exchange, 200, response);
+  }
+
+  private static JsonElement toFramework(String pattern) {
+    if (pattern.startsWith("unknown")) return JsonNull.INSTANCE;
+    JsonObject framework = new JsonObject();
+    framework.addProperty("language", LANGUAGE);
+    framework.addProperty("pattern", pattern);
+    framework.addProperty("name", "Framework " + pattern);
+    return framework;
+  }
+
+  private static String getParameter(URI uri, String name) {
+    for (String param : uri.getRawQuery().split("&")) {
+      String[] kv = param.split("=", 2);
+      if (kv[0].equals(name)) return URLDecoder.decode(kv[1], StandardCharsets.UTF_8);
+    }
+    return null;
+  }
+
+  private static void reply(HttpExchange exchange, int status, JsonObject body) throws IOException {
+    byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(bytes);
+    }
+  }
+
+  private static void assertFramework(
+      Map<String, PythiaImagingFramework> results, String pattern) {
+    assertTrue("Missing framework of " + pattern, results.containsKey(pattern));
+    assertEquals("Framework " + pattern, results.get(pattern).name);
+  }
+
+  @Test
+  public void batchAnswersAreMappedInRequestOrder() throws Throwable {
+    Pythia pythia = new Pythia(url, "token");
+
+    Map<String, PythiaImagingFramework> results =
+        pythia.findFrameworksByPatterns(
+            List.of("CBLTDLI", "unknownA", "MQPUT", "CBLTDLI", "DSNTIAR"), LANGUAGE);
+
+    assertEquals(1, batchRequests.size());
+    assertEquals(List.of("CBLTDLI", "unknownA", "MQPUT", "DSNTIAR"), batchRequests.get(0));
+    assertTrue(singleRequests.isEmpty());
+
+    assertEquals(3, results.size());
+    assertFramework(results, "CBLTDLI");
+    assertFramework(results, "MQPUT");
+    assertFramework(results, "DSNTIAR");
+    assertFalse(results.containsKey("unknownA"));
+  }
+
+  @Test
+  public void notFoundAnswersAreCached() throws Throwable {
+    Pythia pythia = new Pythia(url, "token");
+    pythia.setLookupCache(PythiaLookupCache.open(null, 100, 60000L, 60000L));
+
+    pythia.findFrameworksByPatterns(List.of("MQPUT", "unknownA"), LANGUAGE);
+    Map<String, PythiaImagingFramework> results =
+        pythia.findFrameworksByPatterns(List.of("MQPUT", "unknownA"), LANGUAGE);
+
+    // The second call is answered from the cache, the miss included
+    assertEquals(1, batchRequests.size());
+    assertTrue(singleRequests.isEmpty());
+    assertEquals(1, results.size());
+    assertFramework(results, "MQPUT");
+
+    // Only the new pattern is sent
+    pythia.findFrameworksByPatterns(List.of("MQPUT", "unknownA", "DSNTIAR"), LANGUAGE);
+    assertEquals(2, batchRequests.size());
+    assertEquals(List.of("DSNTIAR"), batchRequests.get(1));
+  }
+
+  @Test
+  public void fallbackOnSingleLookupsIfBatchIsNotFound() throws Throwable {
+    checkFallback(404);
+  }
+
+  @Test
+  public void fallbackOnSingleLookupsIfBatchIsNotAllowed() throws Throwable {
+    checkFallback(405);
+  }
+
+  @Test
+  public void fallbackOnSingleLookupsIfBatchIsNotImplemented() throws Throwable {
+    checkFallback(501);
+  }
+
+  private void checkFallback(int status) throws Throwable {
+    batchStatus = status;
+    Pythia pythia = new Pythia(url, "token");
+
+    Map<String, PythiaImagingFramework> results =
+        pythia.findFrameworksByPatterns(List.of("CBLTDLI", "unknownA", "MQPUT"), LANGUAGE);
+
+    assertEquals(1, batchRequests.size());
+    assertEquals(List.of("CBLTDLI", "unknownA", "MQPUT"), singleRequests);
+    assertEquals(2, results.size());
+    assertFramework(results, "CBLTDLI");
+    assertFramework(results, "MQPUT");
+
+    // The batch endpoint is not tried again
+    pythia.findFrameworksByPatterns(List.of("DSNTIAR"), LANGUAGE);
+    assertEquals(1, batchRequests.size());
+    assertEquals("DSNTIAR", singleRequests.get(singleRequests.size() - 1));
+  }
+}